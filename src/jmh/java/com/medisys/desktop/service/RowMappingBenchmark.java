@@ -0,0 +1,124 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Patient;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+
+import java.lang.reflect.Proxy;
+import java.sql.Date;
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.time.LocalDate;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Patient mapping throughput over an in-memory result set: name-based lookups into
+ * default-initialized entities versus {@link PatientService#PATIENT_EXTRACTOR}.
+ * The profile runs it with {@code -prof gc}, which reports the allocation rate per row.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.SECONDS)
+@Warmup(iterations = 3, time = 5)
+@Measurement(iterations = 5, time = 5)
+@Fork(1)
+public class RowMappingBenchmark {
+    private static final String[] COLUMNS = {
+            "id", "name", "date_of_birth", "contact_info", "gender", "blood_group", "city", "state", "country"};
+    private static final String[] GENDERS = {"Male", "Female", "Other"};
+    private static final String[] BLOOD_GROUPS = {"A+", "A-", "B+", "B-", "AB+", "AB-", "O+", "O-"};
+    private static final String[] CITIES = {"Hyderabad", "Mumbai", "Chennai", "Bengaluru", "Delhi", "Pune"};
+
+    @Param("1000000")
+    private int rows;
+
+    @Benchmark
+    public List<Patient> nameBasedMapper() throws SQLException {
+        ResultSet rs = resultSet(rows);
+        List<Patient> patients = new ArrayList<>();
+        while (rs.next()) {
+            Patient p = new Patient();
+            p.setId(rs.getLong("id"));
+            p.setName(rs.getString("name"));
+            Date sqlDate = rs.getDate("date_of_birth");
+            if (sqlDate != null) {
+                p.setDateOfBirth(sqlDate.toLocalDate());
+            }
+            p.setContactInfo(rs.getString("contact_info"));
+            p.setGender(rs.getString("gender"));
+            p.setBloodGroup(rs.getString("blood_group"));
+            p.setCity(rs.getString("city"));
+            p.setState(rs.getString("state"));
+            p.setCountry(rs.getString("country"));
+            patients.add(p);
+        }
+        return patients;
+    }
+
+    @Benchmark
+    public List<Patient> indexedExtractor() throws SQLException {
+        return PatientService.PATIENT_EXTRACTOR.extractData(resultSet(rows));
+    }
+
+    // Behaves like a forward-only driver result set: by-name access goes through a label
+    // lookup, and every getString returns a freshly decoded String
+    private static ResultSet resultSet(int rowCount) {
+        Map<String, Integer> labels = new HashMap<>();
+        for (int i = 0; i < COLUMNS.length; i++) {
+            labels.put(COLUMNS[i], i + 1);
+        }
+        Date dateOfBirth = Date.valueOf(LocalDate.of(1985, 6, 15));
+        ResultSetMetaData metaData = (ResultSetMetaData) Proxy.newProxyInstance(ResultSetMetaData.class.getClassLoader(),
+                new Class<?>[]{ResultSetMetaData.class}, (proxy, method, args) -> switch (method.getName()) {
+                    case "getColumnCount" -> COLUMNS.length;
+                    case "getColumnLabel", "getColumnName" -> COLUMNS[(Integer) args[0] - 1];
+                    default -> throw new UnsupportedOperationException(method.getName());
+                });
+        int[] row = {0};
+        return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(), new Class<?>[]{ResultSet.class},
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "next":
+                            return ++row[0] <= rowCount;
+                        case "getMetaData":
+                            return metaData;
+                        case "wasNull":
+                            return false;
+                        case "close":
+                            return null;
+                        default:
+                            break;
+                    }
+                    int column = args[0] instanceof String label ? labels.get(label) : (Integer) args[0];
+                    int r = row[0];
+                    return switch (method.getName()) {
+                        case "getLong" -> (long) r;
+                        case "getDate" -> dateOfBirth;
+                        case "getString" -> switch (column) {
+                            case 2 -> "Patient " + r;
+                            case 4 -> "+91-90000" + (r % 100_000);
+                            case 5 -> new String(GENDERS[r % GENDERS.length]);
+                            case 6 -> new String(BLOOD_GROUPS[r % BLOOD_GROUPS.length]);
+                            case 7 -> new String(CITIES[r % CITIES.length]);
+                            case 8 -> new String("Telangana");
+                            case 9 -> new String("India");
+                            default -> throw new IllegalArgumentException("column " + column);
+                        };
+                        default -> throw new UnsupportedOperationException(method.getName());
+                    };
+                });
+    }
+}
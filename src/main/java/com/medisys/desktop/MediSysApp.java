@@ -1,5 +1,6 @@
 package com.medisys.desktop;
 
+import com.medisys.desktop.config.AppConfig;
 import com.medisys.desktop.model.User;
 import com.medisys.desktop.ui.LoginWindow;
 import com.medisys.desktop.ui.MainDashboard;
@@ -9,6 +10,8 @@ import javafx.application.Platform;
 import javafx.scene.Scene;
 import javafx.scene.image.Image;
 import javafx.stage.Stage;
+import org.springframework.beans.BeansException;
+import org.springframework.context.annotation.AnnotationConfigApplicationContext;
 
 /**
  * Main MediSys Application with Modern UI
@@ -18,11 +21,24 @@ public class MediSysApp extends Application {
     private static MediSysApp instance;
     private Stage primaryStage;
     private User currentUser;
+    // Backend services; null when they could not start, and the screens show sample data
+    private AnnotationConfigApplicationContext services;
     
     public static MediSysApp getInstance() {
         return instance;
     }
     
+    @Override
+    public void init() {
+        // Off the FX thread: starting the services connects to the database and Redis
+        try {
+            services = new AnnotationConfigApplicationContext(AppConfig.class.getPackageName());
+            services.registerShutdownHook();
+        } catch (BeansException e) {
+            System.err.println("⚠️ Backend services unavailable, running offline: " + e.getMessage());
+        }
+    }
+    
     @Override
     public void start(Stage primaryStage) {
         try {
@@ -103,6 +119,27 @@ public class MediSysApp extends Application {
         showLoginWindow();
     }
     
+    /**
+     * The backend service of the given type, or null when running offline.
+     */
+    public <T> T getService(Class<T> type) {
+        if (services == null) {
+            return null;
+        }
+        try {
+            return services.getBean(type);
+        } catch (BeansException e) {
+            return null;
+        }
+    }
+    
+    @Override
+    public void stop() {
+        if (services != null) {
+            services.close();
+        }
+    }
+    
     public Stage getPrimaryStage() {
         return primaryStage;
     }
@@ -1,38 +1,122 @@
 package com.medisys.desktop.config;
 
 import com.medisys.desktop.controller.LoginController;
+import com.medisys.desktop.controller.DoctorController;
 import com.medisys.desktop.controller.PatientController;
+import com.medisys.desktop.datasource.ReadWriteRoutingDataSource;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.datasource.WorkloadRoutingDataSource;
+import com.medisys.desktop.event.ChangeNotifications;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.event.OutboxRelay;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import com.medisys.desktop.monitoring.InstrumentedDataSource;
+import com.medisys.desktop.service.AppointmentService;
+import com.medisys.desktop.service.AuditJournal;
+import com.medisys.desktop.service.AuditJournalReplayer;
+import com.medisys.desktop.service.AuditPartitionService;
 import com.medisys.desktop.service.AuditService;
 import com.medisys.desktop.service.AuthService;
+import com.medisys.desktop.service.BatchBillingJob;
+import com.medisys.desktop.service.BedService;
+import com.medisys.desktop.service.BillingEngine;
+import com.medisys.desktop.service.DoctorService;
+import com.medisys.desktop.service.FinanceService;
+import com.medisys.desktop.service.LiveStatisticsService;
+import com.medisys.desktop.service.PatientHistoryService;
+import com.medisys.desktop.service.PatientOverviewService;
 import com.medisys.desktop.service.PatientService;
+import com.medisys.desktop.service.PaymentReconciliationService;
+import com.medisys.desktop.service.TariffService;
+import com.medisys.desktop.service.TriageQueueService;
 // import org.flywaydb.core.Flyway;
 import org.springframework.context.ApplicationContext;
 import org.springframework.context.annotation.Bean;
 import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.data.redis.listener.ChannelTopic;
+import org.springframework.data.redis.listener.RedisMessageListenerContainer;
 import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DataSourceTransactionManager;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.springframework.transaction.PlatformTransactionManager;
+import org.springframework.transaction.support.TransactionTemplate;
 
 import javax.sql.DataSource;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.time.Duration;
+import java.util.EnumMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
 
 @Configuration
 public class AppConfig {
+    private static final String PRIMARY_URL = "jdbc:postgresql://localhost:5432/medisys?currentSchema=public";
+    private static final String DB_USERNAME = "postgres";
+    private static final String DB_PASSWORD = "secret";
 
     @Bean
-    public DataSource dataSource() {
+    public DataSource dataSource(ApplicationMetrics metrics) {
+        // One primary pool per workload class: size, max queue wait, statement timeout
+        Map<WorkloadClass, DataSource> pools = new EnumMap<>(WorkloadClass.class);
+        pools.put(WorkloadClass.INTERACTIVE, pool("interactive", PRIMARY_URL, 10, 5_000, 15_000, false, metrics));
+        pools.put(WorkloadClass.AUDIT, pool("audit", PRIMARY_URL, 3, 10_000, 30_000, false, metrics));
+        pools.put(WorkloadClass.REPORTING, pool("reporting", PRIMARY_URL, 4, 30_000, 300_000, false, metrics));
+        pools.put(WorkloadClass.BACKGROUND, pool("background", PRIMARY_URL, 2, 60_000, 600_000, false, metrics));
+        pools.put(WorkloadClass.BATCH, pool("batch", PRIMARY_URL, BatchBillingJob.PARALLELISM, 60_000, 600_000, false, metrics));
+        DataSource primary = new WorkloadRoutingDataSource(pools);
+
+        // Read replicas, e.g. -Dmedisys.db.replicas=jdbc:postgresql://localhost:5433/medisys
+        Map<String, DataSource> replicas = new LinkedHashMap<>();
+        String replicaUrls = System.getProperty("medisys.db.replicas", "");
+        for (String url : replicaUrls.split(",")) {
+            if (!url.isBlank()) {
+                String name = "replica-" + (replicas.size() + 1);
+                replicas.put(name, pool(name, url.trim(), 10, 5_000, 300_000, true, metrics));
+            }
+        }
+
+        DataSource routed = primary;
+        if (!replicas.isEmpty()) {
+            // Replicas more than 16 MB of WAL behind the primary are skipped
+            ReadWriteRoutingDataSource routing = new ReadWriteRoutingDataSource(primary, replicas, metrics,
+                    16L * 1024 * 1024, 1000);
+            routing.start();
+            routed = routing;
+        }
+
+        // Per-statement latency, rows read and pool wait; statements over 250 ms are logged
+        return new InstrumentedDataSource(routed, metrics, Duration.ofMillis(250));
+    }
+
+    private static DataSource pool(String name, String jdbcUrl, int maximumPoolSize, long connectionTimeoutMillis,
+                                   long statementTimeoutMillis, boolean readOnly, ApplicationMetrics metrics) {
         com.zaxxer.hikari.HikariDataSource dataSource = new com.zaxxer.hikari.HikariDataSource();
+        dataSource.setPoolName("medisys-" + name);
         dataSource.setDriverClassName("org.postgresql.Driver");
-        dataSource.setJdbcUrl("jdbc:postgresql://localhost:5432/medisys?currentSchema=public");
-        dataSource.setUsername("postgres");
-        dataSource.setPassword("secret");
+        dataSource.setJdbcUrl(jdbcUrl);
+        dataSource.setUsername(DB_USERNAME);
+        dataSource.setPassword(DB_PASSWORD);
+        dataSource.setReadOnly(readOnly);
+        dataSource.setConnectionInitSql("SET statement_timeout = " + statementTimeoutMillis);
+        // Batched INSERTs (ids are allocated client-side) go out as multi-row statements
+        dataSource.addDataSourceProperty("reWriteBatchedInserts", "true");
 
         // Connection pool settings
-        dataSource.setMaximumPoolSize(10);
-        dataSource.setMinimumIdle(2);
-        dataSource.setConnectionTimeout(30000);
+        dataSource.setMaximumPoolSize(maximumPoolSize);
+        dataSource.setMinimumIdle(Math.min(2, maximumPoolSize));
+        dataSource.setConnectionTimeout(connectionTimeoutMillis);
         dataSource.setIdleTimeout(600000);
         dataSource.setMaxLifetime(1800000);
-        dataSource.setLeakDetectionThreshold(60000);
+        dataSource.setLeakDetectionThreshold(Math.max(60000, statementTimeoutMillis + 5000));
 
+        metrics.registerConnectionPool(name,
+                () -> dataSource.getHikariPoolMXBean() != null ? dataSource.getHikariPoolMXBean().getActiveConnections() : 0,
+                () -> dataSource.getHikariPoolMXBean() != null ? dataSource.getHikariPoolMXBean().getThreadsAwaitingConnection() : 0,
+                maximumPoolSize);
         return dataSource;
     }
 
@@ -41,6 +125,16 @@ public class AppConfig {
         return new JdbcTemplate(dataSource);
     }
 
+    @Bean
+    public PlatformTransactionManager transactionManager(DataSource dataSource) {
+        return new DataSourceTransactionManager(dataSource);
+    }
+
+    @Bean
+    public TransactionTemplate transactionTemplate(PlatformTransactionManager transactionManager) {
+        return new TransactionTemplate(transactionManager);
+    }
+
     // Flyway disabled due to compatibility issues with PostgreSQL 16.9
     // @Bean
     // public Flyway flyway(DataSource dataSource) {
@@ -56,13 +150,163 @@ public class AppConfig {
     }
 
     @Bean
-    public PatientService patientService(JdbcTemplate jdbcTemplate, AuditService auditService) {
-        return new PatientService(jdbcTemplate, auditService);
+    public PatientService patientService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                         DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        PatientService patientService = new PatientService(jdbcTemplate, auditService);
+        patientService.setEventBus(domainEventBus);
+        patientService.setOutbox(eventOutbox);
+        return patientService;
+    }
+
+    @Bean
+    public DoctorService doctorService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                       DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        DoctorService doctorService = new DoctorService(jdbcTemplate, auditService);
+        doctorService.setEventBus(domainEventBus);
+        doctorService.setOutbox(eventOutbox);
+        return doctorService;
+    }
+
+    // Written by the outbox relay (see EventBusConfig), read for "as of" views of a patient
+    @Bean
+    public PatientHistoryService patientHistoryService(JdbcTemplate jdbcTemplate, AuditService auditService) {
+        return new PatientHistoryService(jdbcTemplate, auditService);
+    }
+
+    // Other desks' edits pushed as they commit, over one unpooled LISTEN connection to the primary;
+    // bursts within 250 ms are delivered together
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public ChangeNotifications changeNotifications(ApplicationMetrics metrics) {
+        return new ChangeNotifications(new DriverManagerDataSource(PRIMARY_URL, DB_USERNAME, DB_PASSWORD), metrics, 250);
+    }
+
+    // Patient screen data in one query, cached until a change to a row it was built from is announced
+    @Bean(destroyMethod = "close")
+    public PatientOverviewService patientOverviewService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                                         RedisTemplate<String, Object> redisTemplate,
+                                                         ApplicationMetrics metrics,
+                                                         RedisMessageListenerContainer redisMessageListenerContainer,
+                                                         ChangeNotifications changeNotifications) {
+        PatientOverviewService patientOverviewService =
+                new PatientOverviewService(jdbcTemplate, auditService, redisTemplate, metrics, 200);
+        redisMessageListenerContainer.addMessageListener(patientOverviewService,
+                new ChannelTopic(OutboxRelay.INVALIDATION_CHANNEL));
+        for (String entityType : List.of("Patient", "Finance", "Appointment", "Doctor", "Department")) {
+            changeNotifications.subscribe(entityType, patientOverviewService);
+        }
+        return patientOverviewService;
+    }
+
+    @Bean
+    public AppointmentService appointmentService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                                 DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        AppointmentService appointmentService = new AppointmentService(jdbcTemplate, auditService);
+        appointmentService.setEventBus(domainEventBus);
+        appointmentService.setOutbox(eventOutbox);
+        return appointmentService;
+    }
+
+    // Bed occupancy: loaded once, kept current from announced allocations and reconciled periodically
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public BedService bedService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                 RedisTemplate<String, Object> redisTemplate,
+                                 RedisMessageListenerContainer redisMessageListenerContainer,
+                                 DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        BedService bedService = new BedService(jdbcTemplate, auditService, redisTemplate);
+        bedService.setEventBus(domainEventBus);
+        bedService.setOutbox(eventOutbox);
+        redisMessageListenerContainer.addMessageListener(bedService, new ChannelTopic(BedService.OCCUPANCY_CHANNEL));
+        return bedService;
+    }
+
+    // Emergency triage queue: waiting cases reloaded on startup, kept in step with other workstations
+    @Bean(initMethod = "start")
+    public TriageQueueService triageQueueService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                                 RedisTemplate<String, Object> redisTemplate, ApplicationMetrics metrics,
+                                                 RedisMessageListenerContainer redisMessageListenerContainer,
+                                                 DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        TriageQueueService triageQueueService = new TriageQueueService(jdbcTemplate, auditService, redisTemplate, metrics);
+        triageQueueService.setEventBus(domainEventBus);
+        triageQueueService.setOutbox(eventOutbox);
+        redisMessageListenerContainer.addMessageListener(triageQueueService,
+                new ChannelTopic(TriageQueueService.QUEUE_CHANNEL));
+        return triageQueueService;
+    }
+
+    // Service price list, reloaded on every workstation when a tariff changes
+    @Bean(initMethod = "start")
+    public TariffService tariffService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                       RedisTemplate<String, Object> redisTemplate,
+                                       RedisMessageListenerContainer redisMessageListenerContainer,
+                                       DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        TariffService tariffService = new TariffService(jdbcTemplate, auditService, redisTemplate);
+        tariffService.setEventBus(domainEventBus);
+        tariffService.setOutbox(eventOutbox);
+        redisMessageListenerContainer.addMessageListener(tariffService, new ChannelTopic(TariffService.TARIFF_CHANNEL));
+        return tariffService;
+    }
+
+    @Bean
+    public BillingEngine billingEngine(TariffService tariffService) {
+        return new BillingEngine(tariffService);
+    }
+
+    @Bean
+    public FinanceService financeService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                         DomainEventBus domainEventBus, EventOutbox eventOutbox) {
+        FinanceService financeService = new FinanceService(jdbcTemplate, auditService);
+        financeService.setEventBus(domainEventBus);
+        financeService.setOutbox(eventOutbox);
+        return financeService;
+    }
+
+    // Nightly billing of the previous day's appointments, on the batch connection pool
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public BatchBillingJob batchBillingJob(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                           FinanceService financeService, BillingEngine billingEngine,
+                                           TariffService tariffService, ApplicationMetrics metrics) {
+        return new BatchBillingJob(jdbcTemplate, transactionTemplate, financeService, billingEngine, tariffService, metrics);
+    }
+
+    @Bean
+    public PaymentReconciliationService paymentReconciliationService(JdbcTemplate jdbcTemplate,
+                                                                     TransactionTemplate transactionTemplate,
+                                                                     FinanceService financeService,
+                                                                     ApplicationMetrics metrics) {
+        return new PaymentReconciliationService(jdbcTemplate, transactionTemplate, financeService, metrics);
+    }
+
+    // Dashboard counters: seeded once, then driven by write events (max 4 UI updates/sec)
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public LiveStatisticsService liveStatisticsService(JdbcTemplate jdbcTemplate) {
+        return new LiveStatisticsService(jdbcTemplate, 4);
     }
 
     @Bean
-    public AuditService auditService(JdbcTemplate jdbcTemplate) {
-        return new AuditService(jdbcTemplate);
+    public AuditService auditService(JdbcTemplate jdbcTemplate, AuditJournal auditJournal) {
+        AuditService auditService = new AuditService(jdbcTemplate);
+        auditService.setJournal(auditJournal);
+        return auditService;
+    }
+
+    // Audit records land in 8 MB memory-mapped segments first, so outages never lose them
+    @Bean(destroyMethod = "close")
+    public AuditJournal auditJournal() {
+        Path journalDirectory = Paths.get(System.getProperty("user.home"), ".medisys", "audit-journal");
+        return new AuditJournal(journalDirectory, 8 * 1024 * 1024);
+    }
+
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public AuditJournalReplayer auditJournalReplayer(AuditJournal auditJournal, AuditService auditService,
+                                                     ApplicationMetrics metrics) {
+        return new AuditJournalReplayer(auditJournal, auditService, metrics, 500, 1000);
+    }
+
+    // Keeps 24 monthly audit partitions online, pre-creates 2 months ahead
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public AuditPartitionService auditPartitionService(JdbcTemplate jdbcTemplate) {
+        Path archiveDirectory = Paths.get(System.getProperty("user.home"), ".medisys", "audit-archive");
+        return new AuditPartitionService(jdbcTemplate, archiveDirectory, 24, 2);
     }
 
     @Bean
@@ -71,7 +315,14 @@ public class AppConfig {
     }
 
     @Bean
-    public PatientController patientController(PatientService patientService) {
-        return new PatientController(patientService);
+    public PatientController patientController(PatientService patientService,
+                                               PatientOverviewService patientOverviewService,
+                                               ChangeNotifications changeNotifications) {
+        return new PatientController(patientService, patientOverviewService, changeNotifications);
+    }
+
+    @Bean
+    public DoctorController doctorController(DoctorService doctorService, ChangeNotifications changeNotifications) {
+        return new DoctorController(doctorService, changeNotifications);
     }
 }
\ No newline at end of file
@@ -0,0 +1,57 @@
+package com.medisys.desktop.config;
+
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.event.OutboxRelay;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import com.medisys.desktop.service.AuditService;
+import com.medisys.desktop.service.CachedPatientService;
+import com.medisys.desktop.service.LiveStatisticsService;
+import com.medisys.desktop.service.PatientHistoryService;
+import org.springframework.cache.CacheManager;
+import org.springframework.context.annotation.Bean;
+import org.springframework.context.annotation.Configuration;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.util.Locale;
+
+@Configuration
+public class EventBusConfig {
+
+    // In-process consumers, notified after the write transaction commits
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public DomainEventBus domainEventBus(LiveStatisticsService liveStatisticsService, ApplicationMetrics metrics) {
+        // 4096 slots absorb bursts from bulk edits without blocking the writing thread
+        DomainEventBus eventBus = new DomainEventBus(4096);
+
+        eventBus.addHandler("statistics", liveStatisticsService);
+        eventBus.addHandler("metrics", (event, sequence, endOfBatch) ->
+                metrics.recordUserAction(event.getEntityType().toLowerCase(Locale.ROOT) + "_"
+                        + event.getChangeType().name().toLowerCase(Locale.ROOT)));
+
+        return eventBus;
+    }
+
+    @Bean
+    public EventOutbox eventOutbox(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   DomainEventBus domainEventBus) {
+        return new EventOutbox(jdbcTemplate, transactionTemplate, domainEventBus);
+    }
+
+    // Durable side effects (audit rows, cache invalidation) are delivered from the outbox
+    @Bean(initMethod = "start", destroyMethod = "close")
+    public OutboxRelay outboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                   AuditService auditService, CacheManager cacheManager,
+                                   RedisTemplate<String, Object> redisTemplate, ApplicationMetrics metrics,
+                                   PatientHistoryService patientHistoryService) {
+        OutboxRelay relay = new OutboxRelay(jdbcTemplate, transactionTemplate, auditService, cacheManager,
+                redisTemplate, metrics, 500, 200);
+        // Partial patient updates patch the cached patient instead of clearing the whole cache
+        relay.addPatcher("Patient", CachedPatientService::patchCached);
+        // Patient versions are recorded after the fact, off the write path
+        relay.addHistoryWriter("Patient", patientHistoryService);
+        return relay;
+    }
+}
@@ -1,15 +1,20 @@
 package com.medisys.desktop.controller;
 
+import com.medisys.desktop.event.ChangeNotifications;
+import com.medisys.desktop.event.ChangeSubscriber;
+import com.medisys.desktop.model.ChangeSet;
 import com.medisys.desktop.model.Doctor;
+import com.medisys.desktop.model.DoctorSummary;
 import com.medisys.desktop.model.User;
 import com.medisys.desktop.service.DoctorService;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
-public class DoctorController {
+public class DoctorController implements AutoCloseable {
     @FXML
     private TextField doctorIdField;
     @FXML
@@ -34,17 +39,47 @@ public class DoctorController {
     private ListView<String> doctorListView;
 
     private final DoctorService doctorService;
+    private final ChangeNotifications changeNotifications;
+    private final ChangeSubscriber listRefresher = (entityType, ids) -> Platform.runLater(this::refreshList);
     private User loggedInUser;
+    private Doctor loadedDoctor;
+    // Refreshes fetch only the list rows changed since this
+    private LocalDateTime listWatermark;
 
     public DoctorController(DoctorService doctorService) {
+        this(doctorService, null);
+    }
+
+    /**
+     * With {@code changeNotifications}, the open list picks up other desks' edits as they commit,
+     * from {@link #setLoggedInUser} until {@link #close}.
+     */
+    public DoctorController(DoctorService doctorService, ChangeNotifications changeNotifications) {
         this.doctorService = doctorService;
+        this.changeNotifications = changeNotifications;
     }
 
     public void setLoggedInUser(User user) {
         this.loggedInUser = user;
+        listWatermark = null;
+        if (changeNotifications != null) {
+            // Opened again without being closed: still subscribed once
+            changeNotifications.unsubscribe(listRefresher);
+            changeNotifications.subscribe("Doctor", listRefresher);
+        }
         loadDoctors();
     }
 
+    /**
+     * Stops following other desks' edits. Call when the list's window closes.
+     */
+    @Override
+    public void close() {
+        if (changeNotifications != null) {
+            changeNotifications.unsubscribe(listRefresher);
+        }
+    }
+
     @FXML
     private void initialize() {
         doctorListView.setOnMouseClicked(event -> {
@@ -65,14 +100,39 @@ public class DoctorController {
         });
     }
 
-    private void loadDoctors() {
-        doctorListView.getItems().clear();
-        List<Doctor> doctors = doctorService.getAllDoctors(loggedInUser.getId());
-        for (Doctor doctor : doctors) {
-            doctorListView.getItems().add(doctor.getId() + " - " + doctor.getName());
+    // The changed rows are fetched by watermark whatever ids were announced, which also
+    // covers a resync after the notification connection was lost. They are read from the
+    // primary, since the notification can arrive before a replica has them.
+    private void refreshList() {
+        if (loggedInUser != null && doctorListView != null) {
+            try {
+                loadDoctors(true);
+            } catch (Exception e) {
+                errorLabel.setText("Could not refresh the list: " + e.getMessage());
+            }
         }
     }
 
+    // Changed rows are replaced in place; the first load (or one after a long gap) fills the list
+    private void loadDoctors() {
+        loadDoctors(false);
+    }
+
+    private void loadDoctors(boolean fromPrimary) {
+        ChangeSet<DoctorSummary> changes = doctorService.changedSince(listWatermark, fromPrimary, loggedInUser.getId());
+        changes.applyTo(doctorListView.getItems(), DoctorController::rowId, DoctorController::row);
+        listWatermark = changes.getWatermark();
+    }
+
+    private static String row(DoctorSummary doctor) {
+        String department = doctor.getDepartmentName() != null ? " (" + doctor.getDepartmentName() + ")" : "";
+        return doctor.getId() + " - " + doctor.getName() + department;
+    }
+
+    private static Long rowId(String row) {
+        return Long.parseLong(row.substring(0, row.indexOf(" - ")));
+    }
+
     @FXML
     private void handleCreateDoctor() {
         try {
@@ -100,6 +160,7 @@ public class DoctorController {
 
         try {
             Doctor doctor = doctorService.getDoctor(Long.parseLong(doctorId), loggedInUser.getId());
+            loadedDoctor = doctor;
             nameField.setText(doctor.getName());
             specialtyField.setText(doctor.getSpecialty());
             contactField.setText(doctor.getContactInfo());
@@ -113,8 +174,10 @@ public class DoctorController {
     @FXML
     private void handleUpdateDoctor() {
         try {
-            Doctor doctor = new Doctor();
-            doctor.setId(Long.parseLong(doctorIdField.getText()));
+            Long id = Long.parseLong(doctorIdField.getText());
+            // Editing the fetched doctor saves only the changed fields, checked against its version
+            Doctor doctor = loadedDoctor != null && id.equals(loadedDoctor.getId()) ? loadedDoctor : new Doctor();
+            doctor.setId(id);
             doctor.setName(nameField.getText());
             doctor.setSpecialty(specialtyField.getText());
             doctor.setContactInfo(contactField.getText());
@@ -3,6 +3,7 @@ package com.medisys.desktop.controller;
 import com.medisys.desktop.model.Finance;
 import com.medisys.desktop.model.User;
 import com.medisys.desktop.service.FinanceService;
+import com.medisys.desktop.util.Money;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
@@ -53,7 +54,7 @@ public class FinanceController {
                     Finance finance = financeService.getFinance(id, loggedInUser.getId());
                     financeIdField.setText(String.valueOf(finance.getId()));
                     patientIdField.setText(String.valueOf(finance.getPatientId()));
-                    amountField.setText(String.valueOf(finance.getAmount()));
+                    amountField.setText(finance.getAmount().toPlainString());
                     statusField.setText(finance.getStatus());
                 } catch (Exception e) {
                     errorLabel.setText("Error fetching finance record: " + e.getMessage());
@@ -64,9 +65,10 @@ public class FinanceController {
 
     private void loadFinanceRecords() {
         financeListView.getItems().clear();
-        List<Finance> finances = financeService.getAllFinance(loggedInUser.getId());
+        List<Finance> finances = financeService.getAllFinanceWithPatientNames(loggedInUser.getId());
         for (Finance finance : finances) {
-            financeListView.getItems().add(finance.getId() + " - Patient ID: " + finance.getPatientId());
+            String patient = finance.getPatientName() != null ? finance.getPatientName() : "Patient ID: " + finance.getPatientId();
+            financeListView.getItems().add(finance.getId() + " - " + patient);
         }
     }
 
@@ -75,7 +77,7 @@ public class FinanceController {
         try {
             Finance finance = new Finance();
             finance.setPatientId(Long.parseLong(patientIdField.getText()));
-            finance.setAmount(Double.parseDouble(amountField.getText()));
+            finance.setAmount(Money.toAmount(Money.parse(amountField.getText())));
             finance.setStatus(statusField.getText());
             financeService.createFinance(finance, loggedInUser.getId());
             errorLabel.setText("Finance record created successfully");
@@ -97,7 +99,7 @@ public class FinanceController {
         try {
             Finance finance = financeService.getFinance(Long.parseLong(financeId), loggedInUser.getId());
             patientIdField.setText(String.valueOf(finance.getPatientId()));
-            amountField.setText(String.valueOf(finance.getAmount()));
+            amountField.setText(finance.getAmount().toPlainString());
             statusField.setText(finance.getStatus());
             errorLabel.setText("");
         } catch (Exception e) {
@@ -111,7 +113,7 @@ public class FinanceController {
             Finance finance = new Finance();
             finance.setId(Long.parseLong(financeIdField.getText()));
             finance.setPatientId(Long.parseLong(patientIdField.getText()));
-            finance.setAmount(Double.parseDouble(amountField.getText()));
+            finance.setAmount(Money.toAmount(Money.parse(amountField.getText())));
             finance.setStatus(statusField.getText());
             financeService.updateFinance(finance, loggedInUser.getId());
             errorLabel.setText("Finance record updated successfully");
@@ -2,7 +2,6 @@ package com.medisys.desktop.controller;
 
 import com.medisys.desktop.model.User;
 import com.medisys.desktop.service.AuthService;
-import com.medisys.desktop.service.PatientService;
 import javafx.fxml.FXML;
 import javafx.fxml.FXMLLoader;
 import javafx.scene.Scene;
@@ -51,8 +50,8 @@ public class LoginController {
 
             // Load the patient dashboard
             FXMLLoader loader = new FXMLLoader(getClass().getResource("/patient.fxml"));
-            PatientService patientService = applicationContext.getBean(PatientService.class);
-            PatientController controller = new PatientController(patientService);
+            // The bean, which is subscribed to other workstations' changes
+            PatientController controller = applicationContext.getBean(PatientController.class);
             controller.setLoggedInUser(loggedInUser);
             loader.setController(controller);
             Scene scene = new Scene(loader.load(), 600, 400);
@@ -61,6 +60,7 @@ public class LoginController {
             Stage stage = (Stage) usernameField.getScene().getWindow();
             stage.setScene(scene);
             stage.setTitle("MediSys - Patient Dashboard");
+            stage.setOnHidden(e -> controller.close());
             stage.show();
         } catch (RuntimeException e) {
             errorLabel.setText("Login failed: " + e.getMessage());
@@ -1,15 +1,23 @@
 package com.medisys.desktop.controller;
 
+import com.medisys.desktop.event.ChangeNotifications;
+import com.medisys.desktop.event.ChangeSubscriber;
+import com.medisys.desktop.model.ChangeSet;
 import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.PatientOverview;
+import com.medisys.desktop.model.PatientSummary;
 import com.medisys.desktop.model.User;
+import com.medisys.desktop.service.PatientOverviewService;
 import com.medisys.desktop.service.PatientService;
+import com.medisys.desktop.util.Money;
+import javafx.application.Platform;
 import javafx.fxml.FXML;
 import javafx.scene.control.*;
 import javafx.scene.layout.VBox;
 
-import java.util.List;
+import java.time.LocalDateTime;
 
-public class PatientController {
+public class PatientController implements AutoCloseable {
     @FXML
     private TextField patientIdField;
     @FXML
@@ -32,31 +40,82 @@ public class PatientController {
     private ListView<String> patientListView;
 
     private final PatientService patientService;
+    private final PatientOverviewService overviewService;
+    private final ChangeNotifications changeNotifications;
+    private final ChangeSubscriber listRefresher = (entityType, ids) -> Platform.runLater(this::refreshList);
     private User loggedInUser;
+    private Patient loadedPatient;
+    // Refreshes fetch only the list rows changed since this
+    private LocalDateTime listWatermark;
 
     public PatientController(PatientService patientService) {
+        this(patientService, null);
+    }
+
+    public PatientController(PatientService patientService, PatientOverviewService overviewService) {
+        this(patientService, overviewService, null);
+    }
+
+    /**
+     * With {@code changeNotifications}, the open list picks up other desks' edits as they commit,
+     * from {@link #setLoggedInUser} until {@link #close}.
+     */
+    public PatientController(PatientService patientService, PatientOverviewService overviewService,
+                             ChangeNotifications changeNotifications) {
         this.patientService = patientService;
+        this.overviewService = overviewService;
+        this.changeNotifications = changeNotifications;
     }
 
     public void setLoggedInUser(User user) {
         this.loggedInUser = user;
+        listWatermark = null;
+        if (changeNotifications != null) {
+            // Opened again without being closed: still subscribed once
+            changeNotifications.unsubscribe(listRefresher);
+            changeNotifications.subscribe("Patient", listRefresher);
+        }
         loadPatients();
     }
 
+    /**
+     * Stops following other desks' edits. Call when the list's window closes.
+     */
+    @Override
+    public void close() {
+        if (changeNotifications != null) {
+            changeNotifications.unsubscribe(listRefresher);
+        }
+    }
+
     @FXML
     private void initialize() {
+        if (overviewService != null) {
+            // Selecting a row (click or arrow keys) starts the overview query before the row is opened
+            patientListView.getSelectionModel().selectedItemProperty().addListener((obs, previous, selected) -> {
+                if (selected != null) {
+                    try {
+                        overviewService.prefetch(Long.parseLong(selected.split(" - ")[0]));
+                    } catch (NumberFormatException ignored) {
+                        // Reported when the row is opened
+                    }
+                }
+            });
+        }
         patientListView.setOnMouseClicked(event -> {
             String selected = patientListView.getSelectionModel().getSelectedItem();
             if (selected != null && loggedInUser != null) {
                 try {
                     Long id = Long.parseLong(selected.split(" - ")[0]);
-                    Patient patient = patientService.getPatient(id, loggedInUser.getId());
+                    PatientOverview overview = overviewService != null
+                            ? overviewService.getPatientOverview(id, loggedInUser.getId()) : null;
+                    Patient patient = overview != null ? overview.getPatient() : patientService.getPatient(id, loggedInUser.getId());
                     if (patient != null) {
                         patientIdField.setText(String.valueOf(patient.getId()));
                         nameField.setText(patient.getName() != null ? patient.getName() : "");
                         dobField.setText(patient.getDateOfBirth() != null ? patient.getDateOfBirth().toString() : "");
                         contactField.setText(patient.getContactInfo() != null ? patient.getContactInfo() : "");
-                        errorLabel.setText("");
+                        errorLabel.setText(overview != null ? summary(overview) : "");
                     }
                 } catch (NumberFormatException e) {
                     errorLabel.setText("Invalid patient ID format");
@@ -69,14 +128,41 @@ public class PatientController {
         });
     }
 
-    private void loadPatients() {
-        patientListView.getItems().clear();
-        List<Patient> patients = patientService.getAllPatients(loggedInUser.getId());
-        for (Patient patient : patients) {
-            patientListView.getItems().add(patient.getId() + " - " + patient.getName());
+    private static String summary(PatientOverview overview) {
+        return overview.getBillCount() + " bills, " + Money.format(Money.toPaise(overview.getOutstandingAmount()))
+                + " outstanding; " + overview.getRecentAppointments().size() + " recent appointments with "
+                + overview.getDoctors().size() + " doctors";
+    }
+
+    // The changed rows are fetched by watermark whatever ids were announced, which also
+    // covers a resync after the notification connection was lost. They are read from the
+    // primary, since the notification can arrive before a replica has them.
+    private void refreshList() {
+        if (loggedInUser != null && patientListView != null) {
+            try {
+                loadPatients(true);
+            } catch (Exception e) {
+                errorLabel.setText("Could not refresh the list: " + e.getMessage());
+            }
         }
     }
 
+    // Changed rows are replaced in place; the first load (or one after a long gap) fills the list
+    private void loadPatients() {
+        loadPatients(false);
+    }
+
+    private void loadPatients(boolean fromPrimary) {
+        ChangeSet<PatientSummary> changes = patientService.changedSince(listWatermark, fromPrimary, loggedInUser.getId());
+        changes.applyTo(patientListView.getItems(), PatientController::rowId,
+                patient -> patient.getId() + " - " + patient.getName());
+        listWatermark = changes.getWatermark();
+    }
+
+    private static Long rowId(String row) {
+        return Long.parseLong(row.substring(0, row.indexOf(" - ")));
+    }
+
     @FXML
     private void handleCreatePatient() {
         try {
@@ -103,6 +189,7 @@ public class PatientController {
 
         try {
             Patient patient = patientService.getPatient(Long.parseLong(patientId), loggedInUser.getId());
+            loadedPatient = patient;
             nameField.setText(patient.getName());
             dobField.setText(patient.getDateOfBirth() != null ? patient.getDateOfBirth().toString() : "");
             contactField.setText(patient.getContactInfo());
@@ -115,8 +202,10 @@ public class PatientController {
     @FXML
     private void handleUpdatePatient() {
         try {
-            Patient patient = new Patient();
-            patient.setId(Long.parseLong(patientIdField.getText()));
+            Long id = Long.parseLong(patientIdField.getText());
+            // Editing the fetched patient saves only the changed fields, checked against its version
+            Patient patient = loadedPatient != null && id.equals(loadedPatient.getId()) ? loadedPatient : new Patient();
+            patient.setId(id);
             patient.setName(nameField.getText());
             patient.setDateOfBirth(dobField.getText());
             patient.setContactInfo(contactField.getText());
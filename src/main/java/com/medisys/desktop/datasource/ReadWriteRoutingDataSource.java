@@ -0,0 +1,201 @@
+package com.medisys.desktop.datasource;
+
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.DataAccessException;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Sends queries run under {@link RoutingContext#onReplica} to a streaming replica and
+ * everything else to the primary.
+ *
+ * A background check polls each replica's replay position (WAL LSN) against the
+ * primary's. A replica is used only if it answered the last check, is within
+ * {@code maxLagBytes} of the primary, and has replayed past this workstation's last
+ * write (read-your-writes). The write position is captured from the primary on the first
+ * replica read after {@link RoutingContext#recordWrite()}. If no replica qualifies, or
+ * one refuses a connection, the read goes to the primary.
+ */
+public class ReadWriteRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ReadWriteRoutingDataSource.class);
+    private static final String CURRENT_LSN = "SELECT (pg_current_wal_lsn() - '0/0'::pg_lsn)::bigint";
+    private static final String REPLAY_STATUS =
+            "SELECT pg_is_in_recovery() AS in_recovery, (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint AS replay_lsn";
+
+    private final DataSource primary;
+    private final JdbcTemplate primaryJdbc;
+    private final List<Replica> replicas = new ArrayList<>();
+    private final ApplicationMetrics metrics;
+    private final long maxLagBytes;
+    private final long checkIntervalMillis;
+    private final AtomicInteger nextReplica = new AtomicInteger();
+    private final ScheduledExecutorService scheduler;
+
+    private long capturedWrites;
+    private volatile long sessionWriteLsn;
+
+    public ReadWriteRoutingDataSource(DataSource primary, Map<String, DataSource> replicas, ApplicationMetrics metrics,
+                                      long maxLagBytes, long checkIntervalMillis) {
+        this.primary = primary;
+        this.primaryJdbc = checkTemplate(primary);
+        replicas.forEach((name, dataSource) -> this.replicas.add(new Replica(name, dataSource)));
+        this.metrics = metrics;
+        this.maxLagBytes = maxLagBytes;
+        this.checkIntervalMillis = checkIntervalMillis;
+        this.capturedWrites = RoutingContext.writeCount();
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(() -> RoutingContext.runAs(WorkloadClass.BACKGROUND, r), "Replica-Health");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        if (!replicas.isEmpty()) {
+            scheduler.scheduleWithFixedDelay(this::checkReplicas, 0, checkIntervalMillis, TimeUnit.MILLISECONDS);
+            logger.info("Read routing enabled over {} replica(s), max lag {} bytes", replicas.size(), maxLagBytes);
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        if (!RoutingContext.isReplicaRead() || replicas.isEmpty()) {
+            return primary.getConnection();
+        }
+        Replica replica = selectReplica();
+        if (replica != null) {
+            try {
+                Connection connection = replica.dataSource.getConnection();
+                metrics.recordRoutedRead(replica.name);
+                return connection;
+            } catch (SQLException e) {
+                replica.healthy = false;
+                logger.warn("Replica {} refused a connection; reading from the primary", replica.name, e);
+            }
+        }
+        metrics.recordRoutedRead("primary");
+        return primary.getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return primary.getConnection(username, password);
+    }
+
+    /**
+     * Polls the primary's WAL position and each replica's replay position.
+     */
+    public void checkReplicas() {
+        long primaryLsn;
+        try {
+            primaryLsn = primaryJdbc.queryForObject(CURRENT_LSN, Long.class);
+        } catch (DataAccessException e) {
+            logger.warn("Replica check could not reach the primary", e);
+            return;
+        }
+        for (Replica replica : replicas) {
+            try {
+                replica.jdbc.query(REPLAY_STATUS, rs -> {
+                    long replayLsn = rs.getLong("replay_lsn");
+                    boolean streaming = rs.getBoolean("in_recovery") && !rs.wasNull();
+                    replica.replayLsn = replayLsn;
+                    replica.lagBytes = Math.max(0, primaryLsn - replayLsn);
+                    // A promoted replica is no longer following this primary
+                    replica.healthy = streaming;
+                });
+                metrics.updateReplicaLag(replica.name, replica.lagBytes);
+            } catch (DataAccessException e) {
+                if (replica.healthy) {
+                    logger.warn("Replica {} failed its health check", replica.name, e);
+                }
+                replica.healthy = false;
+            }
+        }
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        for (Replica replica : replicas) {
+            closePool(replica.name, replica.dataSource);
+        }
+        closePool("primary", primary);
+    }
+
+    // At shutdown a pool that fails to close is logged, and the others are still closed
+    private static void closePool(String name, DataSource dataSource) {
+        if (dataSource instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Could not close the {} connection pool", name, e);
+            }
+        }
+    }
+
+    private Replica selectReplica() {
+        long requiredLsn;
+        try {
+            requiredLsn = requiredLsn();
+        } catch (DataAccessException e) {
+            logger.warn("Could not read the primary WAL position; reading from the primary", e);
+            return null;
+        }
+        int start = Math.floorMod(nextReplica.getAndIncrement(), replicas.size());
+        for (int i = 0; i < replicas.size(); i++) {
+            Replica replica = replicas.get((start + i) % replicas.size());
+            if (replica.healthy && replica.lagBytes <= maxLagBytes && replica.replayLsn >= requiredLsn) {
+                return replica;
+            }
+        }
+        return null;
+    }
+
+    // Position a replica must have replayed for this workstation to see its own writes
+    private long requiredLsn() {
+        long writes = RoutingContext.writeCount();
+        if (writes != capturedWrites) {
+            synchronized (this) {
+                if (writes != capturedWrites) {
+                    sessionWriteLsn = Math.max(sessionWriteLsn, primaryJdbc.queryForObject(CURRENT_LSN, Long.class));
+                    capturedWrites = writes;
+                }
+            }
+        }
+        return sessionWriteLsn;
+    }
+
+    private static JdbcTemplate checkTemplate(DataSource dataSource) {
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+        jdbcTemplate.setQueryTimeout(2);
+        return jdbcTemplate;
+    }
+
+    private static final class Replica {
+        private final String name;
+        private final DataSource dataSource;
+        private final JdbcTemplate jdbc;
+        private volatile boolean healthy;
+        private volatile long replayLsn;
+        private volatile long lagBytes = Long.MAX_VALUE;
+
+        private Replica(String name, DataSource dataSource) {
+            this.name = name;
+            this.dataSource = dataSource;
+            this.jdbc = checkTemplate(dataSource);
+        }
+    }
+}
@@ -0,0 +1,85 @@
+package com.medisys.desktop.datasource;
+
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.Supplier;
+
+/**
+ * Per-call routing hints for {@link ReadWriteRoutingDataSource} and {@link WorkloadRoutingDataSource}.
+ *
+ * Services wrap read-only queries in {@link #onReplica} and report completed writes with
+ * {@link #recordWrite()}; the routing data source uses the latter to keep this
+ * workstation's reads consistent with its own writes. Work outside the interactive
+ * path declares its {@link WorkloadClass} with {@link #as} / {@link #runAs}.
+ */
+public final class RoutingContext {
+    private static final ThreadLocal<Boolean> REPLICA_READ = new ThreadLocal<>();
+    private static final ThreadLocal<WorkloadClass> WORKLOAD = new ThreadLocal<>();
+    private static final AtomicLong WRITES = new AtomicLong();
+
+    private RoutingContext() {
+    }
+
+    /**
+     * Runs a read-only query; it may be served by a replica.
+     */
+    public static <T> T onReplica(Supplier<T> query) {
+        Boolean previous = REPLICA_READ.get();
+        REPLICA_READ.set(Boolean.TRUE);
+        try {
+            return query.get();
+        } finally {
+            if (previous == null) {
+                REPLICA_READ.remove();
+            } else {
+                REPLICA_READ.set(previous);
+            }
+        }
+    }
+
+    /**
+     * Runs database work on the pool of the given workload class.
+     */
+    public static <T> T as(WorkloadClass workload, Supplier<T> work) {
+        WorkloadClass previous = WORKLOAD.get();
+        WORKLOAD.set(workload);
+        try {
+            return work.get();
+        } finally {
+            if (previous == null) {
+                WORKLOAD.remove();
+            } else {
+                WORKLOAD.set(previous);
+            }
+        }
+    }
+
+    public static void runAs(WorkloadClass workload, Runnable work) {
+        as(workload, () -> {
+            work.run();
+            return null;
+        });
+    }
+
+    /**
+     * The workload class of the calling thread; {@link WorkloadClass#INTERACTIVE} unless declared.
+     */
+    public static WorkloadClass currentWorkload() {
+        WorkloadClass workload = WORKLOAD.get();
+        return workload != null ? workload : WorkloadClass.INTERACTIVE;
+    }
+
+    /**
+     * Called after a write has committed on the primary.
+     */
+    public static void recordWrite() {
+        WRITES.incrementAndGet();
+    }
+
+    static boolean isReplicaRead() {
+        return REPLICA_READ.get() != null;
+    }
+
+    static long writeCount() {
+        return WRITES.get();
+    }
+}
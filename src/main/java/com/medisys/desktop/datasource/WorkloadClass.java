@@ -0,0 +1,18 @@
+package com.medisys.desktop.datasource;
+
+/**
+ * Connection pool a piece of database work is charged to. Each class has its own pool
+ * size, wait limit and statement timeout, so one kind of work cannot starve another.
+ */
+public enum WorkloadClass {
+    /** UI-driven lookups and CRUD: small statements, short timeouts. */
+    INTERACTIVE,
+    /** Audit inserts from the journal replayer, outbox relay and direct fallbacks. */
+    AUDIT,
+    /** Reports and exports: few long-running statements. */
+    REPORTING,
+    /** Maintenance and housekeeping threads. */
+    BACKGROUND,
+    /** Bulk jobs such as the nightly billing run: several parallel writers, long transactions. */
+    BATCH
+}
@@ -0,0 +1,55 @@
+package com.medisys.desktop.datasource;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.AbstractDataSource;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.EnumMap;
+import java.util.Map;
+
+/**
+ * Hands out connections from the pool of the caller's {@link WorkloadClass}
+ * (see {@link RoutingContext#currentWorkload()}). A class without its own pool
+ * uses the interactive one.
+ */
+public class WorkloadRoutingDataSource extends AbstractDataSource implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(WorkloadRoutingDataSource.class);
+
+    private final Map<WorkloadClass, DataSource> pools;
+    private final DataSource interactive;
+
+    public WorkloadRoutingDataSource(Map<WorkloadClass, DataSource> pools) {
+        this.pools = new EnumMap<>(pools);
+        this.interactive = pools.get(WorkloadClass.INTERACTIVE);
+        if (interactive == null) {
+            throw new IllegalArgumentException("An INTERACTIVE pool is required");
+        }
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        return pools.getOrDefault(RoutingContext.currentWorkload(), interactive).getConnection();
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        return pools.getOrDefault(RoutingContext.currentWorkload(), interactive).getConnection(username, password);
+    }
+
+    // At shutdown a pool that fails to close is logged, and the others are still closed
+    @Override
+    public void close() {
+        pools.forEach((workload, pool) -> {
+            if (pool instanceof AutoCloseable closeable) {
+                try {
+                    closeable.close();
+                } catch (Exception e) {
+                    logger.warn("Could not close the {} connection pool", workload, e);
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,23 @@
+package com.medisys.desktop.event;
+
+import org.springframework.cache.Cache;
+
+import java.util.Map;
+
+/**
+ * Applies a partial update to the cached copies of one entity type. Registered with
+ * {@link OutboxRelay#addPatcher}; caches of entity types without a patcher are cleared.
+ */
+@FunctionalInterface
+public interface CachePatcher {
+
+    /**
+     * @param cache    the entity type's cache
+     * @param entityId the updated entity
+     * @param version  the row version the update produced
+     * @param changes  changed column to new value, as text (null for SQL NULL)
+     * @return false if the cached copies could not be brought to {@code version}
+     *         (they missed an earlier update); the relay then clears the cache
+     */
+    boolean patch(Cache cache, Long entityId, long version, Map<String, String> changes);
+}
@@ -0,0 +1,217 @@
+package com.medisys.desktop.event;
+
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.postgresql.PGConnection;
+import org.postgresql.PGNotification;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import javax.sql.DataSource;
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Pushes other workstations' edits to this one as they commit. Every outbox event is announced
+ * with PostgreSQL NOTIFY on {@link #CHANNEL}, a bulk event once per row it lists (see
+ * V15__change_notifications.sql and V18__notify_bulk_change_ids.sql); this class holds
+ * one dedicated connection LISTENing to it and fans the changes out to {@link ChangeSubscriber}s:
+ * open screens and local caches.
+ *
+ * Notifications arriving within {@code coalesceMillis} of the first are delivered together, one
+ * call per entity type with the ids deduplicated, so a burst of edits refreshes a screen once.
+ * A lost connection is re-established with backoff; whatever was announced meanwhile is gone, so
+ * after every (re)connect each subscriber is told that anything may have changed and resyncs.
+ */
+public class ChangeNotifications implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(ChangeNotifications.class);
+    public static final String CHANNEL = "medisys_changes";
+    static final String ANY_ROW = "*";
+    // Past this many ids per type, a subscriber reloads rather than looks up each one.
+    // Keep in step with notify_change(), which announces larger bulk events as any row.
+    static final int MAX_IDS = 500;
+    private static final int IDLE_POLL_MILLIS = 1000;
+    private static final long KEEPALIVE_MILLIS = 30_000;
+    private static final long MIN_BACKOFF_MILLIS = 1000;
+    private static final long MAX_BACKOFF_MILLIS = 30_000;
+
+    private final DataSource dataSource;
+    private final ApplicationMetrics metrics;
+    private final long coalesceMillis;
+    private final Map<String, List<ChangeSubscriber>> subscribers = new ConcurrentHashMap<>();
+    private final ExecutorService listener;
+    private volatile boolean running;
+    // Listener thread only: changed ids per entity type; null means any
+    private final Map<String, Set<Long>> pending = new LinkedHashMap<>();
+    private int received;
+
+    /**
+     * @param dataSource connections to the primary (NOTIFY is not replicated), outside any pool:
+     *                   the listening connection is held for the lifetime of the application
+     */
+    public ChangeNotifications(DataSource dataSource, ApplicationMetrics metrics, long coalesceMillis) {
+        this.dataSource = dataSource;
+        this.metrics = metrics;
+        this.coalesceMillis = coalesceMillis;
+        this.listener = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Change-Notifications");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void subscribe(String entityType, ChangeSubscriber subscriber) {
+        subscribers.computeIfAbsent(entityType, t -> new CopyOnWriteArrayList<>()).add(subscriber);
+    }
+
+    public void unsubscribe(ChangeSubscriber subscriber) {
+        subscribers.values().forEach(list -> list.remove(subscriber));
+    }
+
+    public void start() {
+        running = true;
+        listener.execute(this::listen);
+        logger.info("Listening for changes on {}, coalescing for {} ms", CHANNEL, coalesceMillis);
+    }
+
+    @Override
+    public void close() {
+        running = false;
+        listener.shutdown();
+        try {
+            listener.awaitTermination(IDLE_POLL_MILLIS * 2L, TimeUnit.MILLISECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private void listen() {
+        long backoff = MIN_BACKOFF_MILLIS;
+        while (running) {
+            try (Connection connection = dataSource.getConnection()) {
+                try (Statement statement = connection.createStatement()) {
+                    statement.execute("LISTEN " + CHANNEL);
+                }
+                backoff = MIN_BACKOFF_MILLIS;
+                resyncAll();
+                receive(connection);
+            } catch (SQLException | RuntimeException e) {
+                if (!running) {
+                    return;
+                }
+                logger.warn("Change notifications interrupted; reconnecting in {} ms", backoff, e);
+                metrics.recordError("notifications");
+                try {
+                    Thread.sleep(backoff);
+                } catch (InterruptedException interrupted) {
+                    return;
+                }
+                backoff = Math.min(backoff * 2, MAX_BACKOFF_MILLIS);
+            }
+        }
+    }
+
+    private void receive(Connection connection) throws SQLException {
+        PGConnection pgConnection = connection.unwrap(PGConnection.class);
+        long firstPendingAt = 0;
+        long lastHeard = System.currentTimeMillis();
+        while (running) {
+            long wait = pending.isEmpty() ? IDLE_POLL_MILLIS
+                    : Math.max(1, firstPendingAt + coalesceMillis - System.currentTimeMillis());
+            PGNotification[] notifications = pgConnection.getNotifications((int) Math.min(wait, IDLE_POLL_MILLIS));
+            long now = System.currentTimeMillis();
+            if (notifications != null && notifications.length > 0) {
+                if (pending.isEmpty()) {
+                    firstPendingAt = now;
+                }
+                for (PGNotification notification : notifications) {
+                    offer(notification.getParameter());
+                }
+                lastHeard = now;
+            }
+            if (!pending.isEmpty() && now - firstPendingAt >= coalesceMillis) {
+                flush();
+            } else if (now - lastHeard >= KEEPALIVE_MILLIS) {
+                // A dropped link can leave the socket silent rather than failing it
+                if (!connection.isValid(5)) {
+                    throw new SQLException("Change notification connection is no longer valid");
+                }
+                lastHeard = now;
+            }
+        }
+    }
+
+    /**
+     * Adds one notification payload ("Patient:42", "Patient:*") to the pending changes.
+     */
+    void offer(String payload) {
+        received++;
+        int colon = payload != null ? payload.indexOf(':') : -1;
+        if (colon <= 0) {
+            logger.warn("Ignoring unreadable change notification '{}'", payload);
+            return;
+        }
+        String entityType = payload.substring(0, colon);
+        String id = payload.substring(colon + 1);
+        if (!subscribers.containsKey(entityType) || (pending.containsKey(entityType) && pending.get(entityType) == null)) {
+            return;
+        }
+        if (ANY_ROW.equals(id)) {
+            pending.put(entityType, null);
+            return;
+        }
+        try {
+            Set<Long> ids = pending.computeIfAbsent(entityType, t -> new HashSet<>());
+            ids.add(Long.valueOf(id));
+            if (ids.size() > MAX_IDS) {
+                pending.put(entityType, null);
+            }
+        } catch (NumberFormatException e) {
+            logger.warn("Ignoring unreadable change notification '{}'", payload);
+        }
+    }
+
+    /**
+     * Hands the pending changes to the subscribers, one call per entity type.
+     */
+    void flush() {
+        int delivered = 0;
+        for (Map.Entry<String, Set<Long>> changed : pending.entrySet()) {
+            List<ChangeSubscriber> targets = subscribers.get(changed.getKey());
+            if (targets == null) {
+                continue;
+            }
+            Set<Long> ids = changed.getValue() != null ? Collections.unmodifiableSet(changed.getValue()) : null;
+            for (ChangeSubscriber subscriber : targets) {
+                try {
+                    subscriber.onChanges(changed.getKey(), ids);
+                    delivered++;
+                } catch (RuntimeException e) {
+                    logger.warn("Change subscriber failed for {}", changed.getKey(), e);
+                }
+            }
+        }
+        pending.clear();
+        metrics.recordChangeNotifications(received, delivered);
+        received = 0;
+    }
+
+    // Nothing announced while disconnected can be recovered, so everything may have changed
+    void resyncAll() {
+        for (String entityType : subscribers.keySet()) {
+            pending.put(entityType, null);
+        }
+        flush();
+    }
+}
@@ -0,0 +1,18 @@
+package com.medisys.desktop.event;
+
+import java.util.Set;
+
+/**
+ * Told about changes made on any workstation. Registered with {@link ChangeNotifications#subscribe}.
+ * Called on the notification thread; screens must hand the work to their UI thread.
+ */
+@FunctionalInterface
+public interface ChangeSubscriber {
+
+    /**
+     * @param entityType the changed entity type, e.g. "Patient"
+     * @param ids        the changed entities, or null if any of them may have changed (a change
+     *                   to a whole table, a large burst, or notifications missed while reconnecting)
+     */
+    void onChanges(String entityType, Set<Long> ids);
+}
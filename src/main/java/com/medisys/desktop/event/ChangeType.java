@@ -0,0 +1,10 @@
+package com.medisys.desktop.event;
+
+/**
+ * Kind of write a {@link DomainEvent} describes
+ */
+public enum ChangeType {
+    CREATE,
+    UPDATE,
+    DELETE
+}
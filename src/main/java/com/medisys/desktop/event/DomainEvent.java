@@ -0,0 +1,71 @@
+package com.medisys.desktop.event;
+
+import java.time.LocalDate;
+
+/**
+ * A create / update / delete of a domain entity.
+ *
+ * Instances are pre-allocated by {@link DomainEventBus} and overwritten in place,
+ * so publishing does not allocate.
+ */
+public class DomainEvent {
+    private String entityType;
+    private ChangeType changeType;
+    private Long entityId;
+    private Long userId;
+    private String action;
+    private long affectedRows;
+    private LocalDate eventDate;
+    private double amountDelta;
+    private long timestampMillis;
+
+    void set(String entityType, ChangeType changeType, Long entityId, Long userId, String action,
+             long affectedRows, LocalDate eventDate, double amountDelta, long timestampMillis) {
+        this.entityType = entityType;
+        this.changeType = changeType;
+        this.entityId = entityId;
+        this.userId = userId;
+        this.action = action;
+        this.affectedRows = affectedRows;
+        this.eventDate = eventDate;
+        this.amountDelta = amountDelta;
+        this.timestampMillis = timestampMillis;
+    }
+
+    public String getEntityType() { return entityType; }
+
+    public ChangeType getChangeType() { return changeType; }
+
+    public Long getEntityId() { return entityId; }
+
+    public Long getUserId() { return userId; }
+
+    /** Audit action name, e.g. CREATE_PATIENT */
+    public String getAction() { return action; }
+
+    /** Rows the write touched; 0 for an update or delete of a missing id */
+    public long getAffectedRows() { return affectedRows; }
+
+    /** Business date the change applies to (posting date for finance rows), may be null */
+    public LocalDate getEventDate() { return eventDate; }
+
+    /** Net change in money terms for finance events, 0 otherwise */
+    public double getAmountDelta() { return amountDelta; }
+
+    public long getTimestampMillis() { return timestampMillis; }
+
+    @Override
+    public String toString() {
+        return "DomainEvent{" +
+                "entityType='" + entityType + '\'' +
+                ", changeType=" + changeType +
+                ", entityId=" + entityId +
+                ", userId=" + userId +
+                ", action='" + action + '\'' +
+                ", affectedRows=" + affectedRows +
+                ", eventDate=" + eventDate +
+                ", amountDelta=" + amountDelta +
+                ", timestampMillis=" + timestampMillis +
+                '}';
+    }
+}
@@ -0,0 +1,184 @@
+package com.medisys.desktop.event;
+
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.time.LocalDate;
+import java.util.List;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.locks.LockSupport;
+
+/**
+ * In-process event bus for service writes, built on a pre-allocated ring buffer.
+ *
+ * Any thread may publish. Every registered handler gets its own thread and sequence
+ * and sees all events in order, so consumers such as dashboard counters and metrics
+ * run independently of each other. A publisher only waits when the slowest handler
+ * is a full ring behind.
+ */
+public class DomainEventBus implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(DomainEventBus.class);
+    private static final long IDLE_PARK_NANOS = 100_000L;
+    private static final long FULL_PARK_NANOS = 1_000L;
+
+    private final DomainEvent[] entries;
+    private final int mask;
+    private final int indexShift;
+    // Round number of the last publication in each slot; a slot is readable once it matches the sequence's round
+    private final AtomicIntegerArray publishedRounds;
+    private final AtomicLong claimSequence = new AtomicLong(-1);
+    private final List<EventProcessor> processors = new CopyOnWriteArrayList<>();
+    private volatile long cachedGatingSequence = -1;
+    private volatile boolean running;
+
+    public DomainEventBus(int bufferSize) {
+        if (bufferSize <= 0 || Integer.bitCount(bufferSize) != 1) {
+            throw new IllegalArgumentException("bufferSize must be a positive power of two");
+        }
+        this.entries = new DomainEvent[bufferSize];
+        for (int i = 0; i < bufferSize; i++) {
+            entries[i] = new DomainEvent();
+        }
+        this.mask = bufferSize - 1;
+        this.indexShift = Integer.numberOfTrailingZeros(bufferSize);
+        this.publishedRounds = new AtomicIntegerArray(bufferSize);
+        for (int i = 0; i < bufferSize; i++) {
+            publishedRounds.set(i, -1);
+        }
+    }
+
+    /**
+     * Registers a handler. Must be called before {@link #start()}.
+     */
+    public void addHandler(String name, DomainEventHandler handler) {
+        if (running) {
+            throw new IllegalStateException("Handlers must be registered before the bus is started");
+        }
+        processors.add(new EventProcessor(name, handler));
+    }
+
+    public void start() {
+        running = true;
+        for (EventProcessor processor : processors) {
+            processor.thread.start();
+        }
+        logger.info("Domain event bus started: {} slots, {} handlers", entries.length, processors.size());
+    }
+
+    public boolean isRunning() {
+        return running;
+    }
+
+    /**
+     * Publishes a write event. Returns false if the bus is not running, in which case
+     * the caller is responsible for its own side effects.
+     */
+    public boolean publish(String entityType, ChangeType changeType, Long entityId, Long userId, String action,
+                           long affectedRows, LocalDate eventDate, double amountDelta) {
+        if (!running) {
+            return false;
+        }
+        long sequence = claimSequence.incrementAndGet();
+        long wrapPoint = sequence - entries.length;
+        while (wrapPoint > cachedGatingSequence) {
+            long gating = minimumHandlerSequence(sequence - 1);
+            cachedGatingSequence = gating;
+            if (wrapPoint <= gating) {
+                break;
+            }
+            if (!running) {
+                // Slot was claimed but never filled; handlers stop at the gap on shutdown
+                return false;
+            }
+            LockSupport.parkNanos(FULL_PARK_NANOS);
+        }
+
+        int index = (int) sequence & mask;
+        entries[index].set(entityType, changeType, entityId, userId, action,
+                affectedRows, eventDate, amountDelta, System.currentTimeMillis());
+        publishedRounds.lazySet(index, (int) (sequence >>> indexShift));
+        return true;
+    }
+
+    /**
+     * Events published but not yet consumed by the slowest handler.
+     */
+    public long getBacklog() {
+        long published = claimSequence.get();
+        return published - minimumHandlerSequence(published);
+    }
+
+    /**
+     * Stops accepting events; handlers drain what was already published and exit.
+     */
+    @Override
+    public void close() {
+        running = false;
+        for (EventProcessor processor : processors) {
+            try {
+                processor.thread.join(5000);
+            } catch (InterruptedException e) {
+                Thread.currentThread().interrupt();
+                return;
+            }
+        }
+    }
+
+    private long minimumHandlerSequence(long defaultValue) {
+        long minimum = defaultValue;
+        for (EventProcessor processor : processors) {
+            minimum = Math.min(minimum, processor.sequence.get());
+        }
+        return minimum;
+    }
+
+    private long highestPublished(long lowerBound, long upperBound) {
+        for (long sequence = lowerBound; sequence <= upperBound; sequence++) {
+            if (publishedRounds.get((int) sequence & mask) != (int) (sequence >>> indexShift)) {
+                return sequence - 1;
+            }
+        }
+        return upperBound;
+    }
+
+    private final class EventProcessor implements Runnable {
+        private final String name;
+        private final DomainEventHandler handler;
+        private final AtomicLong sequence = new AtomicLong(-1);
+        private final Thread thread;
+
+        private EventProcessor(String name, DomainEventHandler handler) {
+            this.name = name;
+            this.handler = handler;
+            this.thread = new Thread(this, "EventBus-" + name);
+            this.thread.setDaemon(true);
+        }
+
+        @Override
+        public void run() {
+            long next = sequence.get() + 1;
+            while (true) {
+                long available = highestPublished(next, claimSequence.get());
+                if (available < next) {
+                    if (!running) {
+                        break;
+                    }
+                    LockSupport.parkNanos(IDLE_PARK_NANOS);
+                    continue;
+                }
+                for (long current = next; current <= available; current++) {
+                    try {
+                        handler.onEvent(entries[(int) current & mask], current, current == available);
+                    } catch (Exception e) {
+                        logger.error("Event handler '{}' failed at sequence {}", name, current, e);
+                    }
+                }
+                sequence.set(available);
+                next = available + 1;
+            }
+            logger.info("Event handler '{}' stopped at sequence {}", name, sequence.get());
+        }
+    }
+}
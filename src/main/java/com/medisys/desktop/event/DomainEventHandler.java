@@ -0,0 +1,18 @@
+package com.medisys.desktop.event;
+
+/**
+ * Consumer of {@link DomainEventBus} events. Each handler runs on its own thread and sees
+ * every event in publication order.
+ *
+ * The event instance is a reused ring buffer slot: copy what you need, never keep a reference.
+ */
+@FunctionalInterface
+public interface DomainEventHandler {
+
+    /**
+     * @param event      the event (valid only for the duration of this call)
+     * @param sequence   position of the event on the bus
+     * @param endOfBatch true when no further events are currently available, a good point to flush
+     */
+    void onEvent(DomainEvent event, long sequence, boolean endOfBatch) throws Exception;
+}
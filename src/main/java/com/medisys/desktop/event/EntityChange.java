@@ -0,0 +1,40 @@
+package com.medisys.desktop.event;
+
+import java.time.LocalDateTime;
+
+/**
+ * One delivered change to one entity, as handed to a {@link HistoryWriter}.
+ */
+public class EntityChange {
+    private final Long entityId;
+    private final ChangeType changeType;
+    private final Long version;
+    private final Long userId;
+    private final String changes;
+    private final LocalDateTime changedAt;
+
+    public EntityChange(Long entityId, ChangeType changeType, Long version, Long userId, String changes,
+                        LocalDateTime changedAt) {
+        this.entityId = entityId;
+        this.changeType = changeType;
+        this.version = version;
+        this.userId = userId;
+        this.changes = changes;
+        this.changedAt = changedAt;
+    }
+
+    public Long getEntityId() { return entityId; }
+
+    public ChangeType getChangeType() { return changeType; }
+
+    /** The row version a partial update produced; null for creations and deletions */
+    public Long getVersion() { return version; }
+
+    public Long getUserId() { return userId; }
+
+    /** Changed column to new value as a JSON object of text values; null unless {@link #getVersion()} is set */
+    public String getChanges() { return changes; }
+
+    /** When the change was written, not when it was delivered */
+    public LocalDateTime getChangedAt() { return changedAt; }
+}
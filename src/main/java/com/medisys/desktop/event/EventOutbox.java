@@ -0,0 +1,101 @@
+package com.medisys.desktop.event;
+
+import com.fasterxml.jackson.core.JsonProcessingException;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionSynchronization;
+import org.springframework.transaction.support.TransactionSynchronizationManager;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collection;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Transactional outbox for service writes.
+ *
+ * Services run the entity write and {@link #record} inside {@link #inTransaction}, so the
+ * change and its event row commit or roll back together. {@link OutboxRelay} delivers the
+ * rows afterwards; in-process consumers on the {@link DomainEventBus} are notified only
+ * once the transaction has committed.
+ */
+public class EventOutbox {
+    private static final ObjectMapper CHANGES_MAPPER = new ObjectMapper();
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final DomainEventBus eventBus;
+
+    public EventOutbox(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, DomainEventBus eventBus) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.eventBus = eventBus;
+    }
+
+    public <T> T inTransaction(Supplier<T> work) {
+        return transactionTemplate.execute(status -> work.get());
+    }
+
+    /**
+     * Appends an event row to the current transaction. Must be called from {@link #inTransaction}.
+     */
+    public void record(String entityType, ChangeType changeType, Long entityId, Long userId, String action,
+                       long affectedRows, LocalDate eventDate, double amountDelta) {
+        insert(entityType, changeType, entityId, userId, action, affectedRows, null, null, null);
+        notifyAfterCommit(entityType, changeType, entityId, userId, action, affectedRows, eventDate, amountDelta);
+    }
+
+    /**
+     * Appends one event for a change to several rows, listing their ids; the relay audits and
+     * records each row on its own. In-process consumers get a single event without an entity id.
+     * Must be called from {@link #inTransaction}.
+     */
+    public void recordBulk(String entityType, ChangeType changeType, Collection<Long> entityIds, Long userId,
+                           String action, LocalDate eventDate, double amountDelta) {
+        insert(entityType, changeType, null, userId, action, entityIds.size(), null, null, entityIds.toArray(new Long[0]));
+        notifyAfterCommit(entityType, changeType, null, userId, action, entityIds.size(), eventDate, amountDelta);
+    }
+
+    /**
+     * Appends a partial-update event carrying the new row version and the changed columns
+     * (column name to new value, as text), so the relay can patch cached copies of the
+     * entity instead of evicting them. Must be called from {@link #inTransaction}.
+     */
+    public void recordUpdate(String entityType, Long entityId, Long userId, String action, long affectedRows,
+                             long entityVersion, Map<String, String> changes) {
+        String json;
+        try {
+            json = CHANGES_MAPPER.writeValueAsString(changes);
+        } catch (JsonProcessingException e) {
+            throw new IllegalArgumentException("Unserializable changes for " + entityType + " " + entityId, e);
+        }
+        insert(entityType, ChangeType.UPDATE, entityId, userId, action, affectedRows, entityVersion, json, null);
+        notifyAfterCommit(entityType, ChangeType.UPDATE, entityId, userId, action, affectedRows, null, 0);
+    }
+
+    private void insert(String entityType, ChangeType changeType, Long entityId, Long userId, String action,
+                        long affectedRows, Long entityVersion, String changes, Long[] entityIds) {
+        if (!TransactionSynchronizationManager.isSynchronizationActive()) {
+            throw new IllegalStateException("Outbox events must be recorded inside EventOutbox.inTransaction");
+        }
+        String sql = "INSERT INTO event_outbox (entity_type, change_type, entity_id, entity_ids, user_id, action, " +
+                "affected_rows, entity_version, changes, created_at) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+        jdbcTemplate.update(sql, entityType, changeType.name(), entityId, entityIds, userId, action, affectedRows,
+                entityVersion, changes, Timestamp.valueOf(LocalDateTime.now()));
+    }
+
+    private void notifyAfterCommit(String entityType, ChangeType changeType, Long entityId, Long userId,
+                                   String action, long affectedRows, LocalDate eventDate, double amountDelta) {
+        if (eventBus != null) {
+            TransactionSynchronizationManager.registerSynchronization(new TransactionSynchronization() {
+                @Override
+                public void afterCommit() {
+                    eventBus.publish(entityType, changeType, entityId, userId, action, affectedRows, eventDate, amountDelta);
+                }
+            });
+        }
+    }
+}
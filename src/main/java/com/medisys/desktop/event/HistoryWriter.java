@@ -0,0 +1,19 @@
+package com.medisys.desktop.event;
+
+import java.util.List;
+
+/**
+ * Records the changes to one entity type as the outbox relay delivers them. Registered with
+ * {@link OutboxRelay#addHistoryWriter}. Called in the relay's transaction, in outbox order, so
+ * the history commits together with the removal of its events; a failure rolls the batch back
+ * and the same changes are handed over again, so writes must be idempotent.
+ */
+@FunctionalInterface
+public interface HistoryWriter {
+
+    /**
+     * @param changes the batch's changes to single entities of the writer's type; a bulk
+     *                event is handed over as one change per entity it lists
+     */
+    void write(List<EntityChange> changes);
+}
@@ -0,0 +1,316 @@
+package com.medisys.desktop.event;
+
+import com.fasterxml.jackson.core.type.TypeReference;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.model.AuditLog;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import com.medisys.desktop.service.AuditService;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.cache.Cache;
+import org.springframework.cache.CacheManager;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.sql.Array;
+import java.sql.SQLException;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Drains {@code event_outbox} in batches: writes the audit records and deletes the delivered
+ * rows, then clears the affected caches and announces the invalidation on Redis. Partial
+ * updates of an entity type with a registered {@link CachePatcher} patch the cached copies in
+ * place instead of clearing the cache. Entity types with a registered {@link HistoryWriter}
+ * also have their changes recorded. A bulk event listing several entity ids is audited,
+ * recorded and announced once per id.
+ *
+ * The database work happens in one transaction with the rows locked (SKIP LOCKED, so several
+ * workstations can relay side by side). A failure rolls the batch back and it is retried
+ * on the next tick, giving at-least-once delivery; consumers must tolerate duplicates.
+ * The cache work runs only once the batch has committed, so nobody is told of a change that
+ * is not visible yet and a Redis outage cannot hold events in the outbox. Invalidations that
+ * fail are kept and sent again on the next tick.
+ */
+public class OutboxRelay implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(OutboxRelay.class);
+    public static final String INVALIDATION_CHANNEL = "medisys:cache-invalidation";
+
+    private static final Map<String, String> CACHE_NAMES = Map.of(
+            "Patient", "patients",
+            "Doctor", "doctors",
+            "Department", "departments",
+            "Finance", "finance",
+            "Appointment", "appointments");
+    private static final ObjectMapper CHANGES_MAPPER = new ObjectMapper();
+    private static final TypeReference<Map<String, String>> CHANGES_TYPE = new TypeReference<>() {};
+    // Past this many unsent invalidations, each cache is invalidated whole instead
+    private static final int MAX_UNSENT = 1000;
+    // Past this many rows in one bulk event, the whole cache is announced instead
+    private static final int MAX_ANNOUNCED_IDS = 500;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final AuditService auditService;
+    private final CacheManager cacheManager;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ApplicationMetrics metrics;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final ScheduledExecutorService scheduler;
+    private final Map<String, CachePatcher> patchers = new ConcurrentHashMap<>();
+    private final Map<String, HistoryWriter> historyWriters = new ConcurrentHashMap<>();
+    // Invalidations of committed batches that could not be sent yet; guarded by drain()
+    private final Set<String> unsent = new LinkedHashSet<>();
+
+    public OutboxRelay(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate, AuditService auditService,
+                       CacheManager cacheManager, RedisTemplate<String, Object> redisTemplate,
+                       ApplicationMetrics metrics, int batchSize, long pollIntervalMillis) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.auditService = auditService;
+        this.cacheManager = cacheManager;
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(() -> RoutingContext.runAs(WorkloadClass.AUDIT, r), "Outbox-Relay");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Patches the cache of {@code entityType} (e.g. "Patient") on partial updates.
+     */
+    public void addPatcher(String entityType, CachePatcher patcher) {
+        patchers.put(entityType, patcher);
+    }
+
+    /**
+     * Hands the delivered changes to single entities of {@code entityType} to {@code writer}.
+     */
+    public void addHistoryWriter(String entityType, HistoryWriter writer) {
+        historyWriters.put(entityType, writer);
+    }
+
+    /**
+     * The cache holding {@code entityType} ("Patient": "patients"), or null if it is not cached.
+     * Invalidations on {@link #INVALIDATION_CHANNEL} name rows as "cacheName:id".
+     */
+    public static String cacheName(String entityType) {
+        return CACHE_NAMES.get(entityType);
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::drain, pollIntervalMillis, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Outbox relay started: batch size {}, polling every {} ms", batchSize, pollIntervalMillis);
+    }
+
+    /**
+     * Delivers batches until the outbox is empty. Returns the number of events delivered.
+     */
+    public synchronized int drain() {
+        int delivered = 0;
+        try {
+            resendUnsent();
+            int batch;
+            do {
+                batch = deliverBatch();
+                delivered += batch;
+            } while (batch == batchSize);
+            metrics.updateOutboxBacklog(countPending());
+        } catch (Exception e) {
+            logger.error("Outbox relay failed; undelivered events will be retried", e);
+            metrics.recordError("outbox");
+        }
+        return delivered;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int deliverBatch() {
+        Set<String> invalidations = new LinkedHashSet<>();
+        List<PendingPatch> patches = new ArrayList<>();
+        Integer delivered = transactionTemplate.execute(status -> {
+            String sql = "SELECT id, entity_type, change_type, entity_id, entity_ids, user_id, action, affected_rows, " +
+                    "entity_version, changes, created_at FROM event_outbox ORDER BY id LIMIT ? FOR UPDATE SKIP LOCKED";
+            List<Long> ids = new ArrayList<>();
+            List<AuditLog> auditLogs = new ArrayList<>();
+            Map<String, List<EntityChange>> history = new LinkedHashMap<>();
+            jdbcTemplate.query(sql, rs -> {
+                ids.add(rs.getLong("id"));
+                String entityType = rs.getString("entity_type");
+                Long entityId = rs.getObject("entity_id", Long.class);
+                List<Long> entityIds = entityIds(rs.getArray("entity_ids"), entityId);
+                for (Long rowId : entityIds) {
+                    auditLogs.add(new AuditLog(null, rs.getObject("user_id", Long.class), rs.getString("action"),
+                            entityType, rowId, rs.getTimestamp("created_at").toLocalDateTime()));
+                    if (rowId != null && rs.getInt("affected_rows") > 0 && historyWriters.containsKey(entityType)) {
+                        history.computeIfAbsent(entityType, t -> new ArrayList<>()).add(new EntityChange(rowId,
+                                ChangeType.valueOf(rs.getString("change_type")), rs.getObject("entity_version", Long.class),
+                                rs.getObject("user_id", Long.class), rs.getString("changes"),
+                                rs.getTimestamp("created_at").toLocalDateTime()));
+                    }
+                }
+                String cacheName = CACHE_NAMES.get(entityType);
+                if (cacheName != null && rs.getInt("affected_rows") > 0) {
+                    String changes = rs.getString("changes");
+                    CachePatcher patcher = patchers.get(entityType);
+                    if (changes != null && patcher != null) {
+                        patches.add(new PendingPatch(cacheName, patcher, entityId, rs.getLong("entity_version"), changes));
+                    } else if (entityIds.size() > MAX_ANNOUNCED_IDS) {
+                        invalidations.add(cacheName + ":*");
+                    } else {
+                        // An event without an entity id may have changed any row
+                        entityIds.forEach(rowId -> invalidations.add(cacheName + ":" + (rowId != null ? rowId : "*")));
+                    }
+                }
+            }, batchSize);
+            if (ids.isEmpty()) {
+                return 0;
+            }
+
+            auditService.logActions(auditLogs);
+            history.forEach((entityType, changes) -> historyWriters.get(entityType).write(changes));
+            jdbcTemplate.update("DELETE FROM event_outbox WHERE id = ANY(?)", (Object) ids.toArray(new Long[0]));
+
+            metrics.recordOutboxDelivery(ids.size(), Duration.between(auditLogs.get(0).getTimestamp(), LocalDateTime.now()));
+            return ids.size();
+        });
+        if (delivered == null || delivered == 0) {
+            return 0;
+        }
+        announce(invalidations, patches);
+        return delivered;
+    }
+
+    // The rows a bulk event lists, else its single entity id (null for a whole table)
+    private static List<Long> entityIds(Array array, Long entityId) throws SQLException {
+        if (array != null) {
+            Long[] ids = (Long[]) array.getArray();
+            if (ids.length > 0) {
+                return Arrays.asList(ids);
+            }
+        }
+        return Collections.singletonList(entityId);
+    }
+
+    // Runs after the batch committed: failures are kept for the next tick, never rolled back
+    private void announce(Set<String> invalidations, List<PendingPatch> patches) {
+        try {
+            patch(patches, invalidate(invalidations));
+        } catch (RuntimeException e) {
+            logger.warn("Could not invalidate caches for delivered events; retrying on the next tick", e);
+            metrics.recordError("outbox");
+            // A patch that did not go out is sent again as a plain invalidation, which is always safe
+            unsent.addAll(invalidations);
+            patches.forEach(patch -> unsent.add(patch.cacheName + ":" + patch.entityId));
+            if (unsent.size() > MAX_UNSENT) {
+                Set<String> wholeCaches = new LinkedHashSet<>();
+                unsent.forEach(row -> wholeCaches.add(row.substring(0, row.indexOf(':')) + ":*"));
+                unsent.clear();
+                unsent.addAll(wholeCaches);
+            }
+        }
+    }
+
+    private void resendUnsent() {
+        if (!unsent.isEmpty()) {
+            Set<String> retry = new LinkedHashSet<>(unsent);
+            unsent.clear();
+            announce(retry, List.of());
+        }
+    }
+
+    private Set<String> invalidate(Set<String> invalidations) {
+        // Entity caches also hold list entries, so each touched cache is cleared once per batch
+        Set<String> cleared = new LinkedHashSet<>();
+        for (String invalidation : invalidations) {
+            String cacheName = invalidation.substring(0, invalidation.indexOf(':'));
+            if (cleared.add(cacheName)) {
+                Cache cache = cacheManager.getCache(cacheName);
+                if (cache != null) {
+                    cache.clear();
+                }
+            }
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, invalidation);
+        }
+        return cleared;
+    }
+
+    // Patches run in outbox order after the clears; a cache cleared in this batch has nothing left to patch
+    private void patch(List<PendingPatch> patches, Set<String> cleared) {
+        for (PendingPatch patch : patches) {
+            if (!cleared.contains(patch.cacheName)) {
+                Cache cache = cacheManager.getCache(patch.cacheName);
+                if (cache != null) {
+                    if (apply(cache, patch)) {
+                        metrics.recordCacheOperation("patch");
+                    } else {
+                        cache.clear();
+                        cleared.add(patch.cacheName);
+                        metrics.recordCacheOperation("patch_rejected");
+                    }
+                }
+            }
+            redisTemplate.convertAndSend(INVALIDATION_CHANNEL, patch.cacheName + ":" + patch.entityId);
+        }
+    }
+
+    private boolean apply(Cache cache, PendingPatch patch) {
+        try {
+            Map<String, String> changes = CHANGES_MAPPER.readValue(patch.changes, CHANGES_TYPE);
+            return patch.patcher.patch(cache, patch.entityId, patch.version, changes);
+        } catch (Exception e) {
+            // A patch that cannot be applied must not block the outbox; clearing is always safe
+            logger.warn("Could not patch cached {} {}; clearing the cache", patch.cacheName, patch.entityId, e);
+            return false;
+        }
+    }
+
+    private long countPending() {
+        Long pending = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM event_outbox", Long.class);
+        return pending != null ? pending : 0L;
+    }
+
+    private static final class PendingPatch {
+        private final String cacheName;
+        private final CachePatcher patcher;
+        private final Long entityId;
+        private final long version;
+        private final String changes;
+
+        private PendingPatch(String cacheName, CachePatcher patcher, Long entityId, long version, String changes) {
+            this.cacheName = cacheName;
+            this.patcher = patcher;
+            this.entityId = entityId;
+            this.version = version;
+            this.changes = changes;
+        }
+    }
+}
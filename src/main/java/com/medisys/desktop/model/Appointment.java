@@ -0,0 +1,72 @@
+package com.medisys.desktop.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+
+/**
+ * A booked consultation: one doctor, one patient, a half-open time range [start, end).
+ */
+public class Appointment {
+    public static final String SCHEDULED = "SCHEDULED";
+    public static final String CANCELLED = "CANCELLED";
+
+    private Long id;
+    private Long patientId;
+    private Long doctorId;
+    private LocalDateTime startTime;
+    private LocalDateTime endTime;
+    private String appointmentType;
+    private String status;
+    private String notes;
+    private Long createdBy;
+
+    // Constructors
+    public Appointment() {
+        this.status = SCHEDULED;
+    }
+
+    public Appointment(Long patientId, Long doctorId, LocalDateTime startTime, LocalDateTime endTime) {
+        this();
+        this.patientId = patientId;
+        this.doctorId = doctorId;
+        this.startTime = startTime;
+        this.endTime = endTime;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public Long getPatientId() { return patientId; }
+    public void setPatientId(Long patientId) { this.patientId = patientId; }
+
+    public Long getDoctorId() { return doctorId; }
+    public void setDoctorId(Long doctorId) { this.doctorId = doctorId; }
+
+    public LocalDateTime getStartTime() { return startTime; }
+    public void setStartTime(LocalDateTime startTime) { this.startTime = startTime; }
+
+    public LocalDateTime getEndTime() { return endTime; }
+    public void setEndTime(LocalDateTime endTime) { this.endTime = endTime; }
+
+    public String getAppointmentType() { return appointmentType; }
+    public void setAppointmentType(String appointmentType) { this.appointmentType = appointmentType; }
+
+    public String getStatus() { return status; }
+    public void setStatus(String status) { this.status = status; }
+
+    public String getNotes() { return notes; }
+    public void setNotes(String notes) { this.notes = notes; }
+
+    public Long getCreatedBy() { return createdBy; }
+    public void setCreatedBy(Long createdBy) { this.createdBy = createdBy; }
+
+    public LocalDate getAppointmentDate() {
+        return startTime != null ? startTime.toLocalDate() : null;
+    }
+
+    @Override
+    public String toString() {
+        return "Appointment{id=" + id + ", doctorId=" + doctorId + ", start=" + startTime + ", end=" + endTime + "}";
+    }
+}
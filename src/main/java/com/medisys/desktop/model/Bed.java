@@ -0,0 +1,53 @@
+package com.medisys.desktop.model;
+
+/**
+ * A bed in a ward, numbered from 1 within the ward.
+ */
+public class Bed {
+    private Long id;
+    private String ward;
+    private int bedNumber;
+    private String bedType;
+    private String label;
+    private boolean occupied;
+    private long version;
+
+    // Constructors
+    public Bed() {}
+
+    public Bed(Long id, String ward, int bedNumber, String bedType, String label) {
+        this.id = id;
+        this.ward = ward;
+        this.bedNumber = bedNumber;
+        this.bedType = bedType;
+        this.label = label;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getWard() { return ward; }
+    public void setWard(String ward) { this.ward = ward; }
+
+    public int getBedNumber() { return bedNumber; }
+    public void setBedNumber(int bedNumber) { this.bedNumber = bedNumber; }
+
+    public String getBedType() { return bedType; }
+    public void setBedType(String bedType) { this.bedType = bedType; }
+
+    public String getLabel() { return label; }
+    public void setLabel(String label) { this.label = label; }
+
+    public boolean isOccupied() { return occupied; }
+    public void setOccupied(boolean occupied) { this.occupied = occupied; }
+
+    /** Row version of the last allocation or release seen for this bed */
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    @Override
+    public String toString() {
+        return label;
+    }
+}
@@ -0,0 +1,57 @@
+package com.medisys.desktop.model;
+
+import java.math.BigDecimal;
+
+/**
+ * Progress of one patient-id range of a billing run, as of its last committed chunk.
+ */
+public class BillingPartitionProgress {
+    private final int partitionNo;
+    private final long firstPatientId;
+    private final long lastPatientId;
+    private final Long checkpointPatientId;
+    private final int invoiceCount;
+    private final int encounterCount;
+    private final BigDecimal totalAmount;
+    private final boolean done;
+
+    public BillingPartitionProgress(int partitionNo, long firstPatientId, long lastPatientId, Long checkpointPatientId,
+                                    int invoiceCount, int encounterCount, BigDecimal totalAmount, boolean done) {
+        this.partitionNo = partitionNo;
+        this.firstPatientId = firstPatientId;
+        this.lastPatientId = lastPatientId;
+        this.checkpointPatientId = checkpointPatientId;
+        this.invoiceCount = invoiceCount;
+        this.encounterCount = encounterCount;
+        this.totalAmount = totalAmount;
+        this.done = done;
+    }
+
+    public int getPartitionNo() { return partitionNo; }
+
+    public long getFirstPatientId() { return firstPatientId; }
+
+    public long getLastPatientId() { return lastPatientId; }
+
+    /** Last patient whose invoices are committed; null before the first chunk */
+    public Long getCheckpointPatientId() { return checkpointPatientId; }
+
+    public int getInvoiceCount() { return invoiceCount; }
+
+    public int getEncounterCount() { return encounterCount; }
+
+    public BigDecimal getTotalAmount() { return totalAmount; }
+
+    public boolean isDone() { return done; }
+
+    /** Share of the patient-id range behind the checkpoint, 0.0 to 1.0 */
+    public double getFractionDone() {
+        if (done) {
+            return 1.0;
+        }
+        if (checkpointPatientId == null) {
+            return 0.0;
+        }
+        return (double) (checkpointPatientId - firstPatientId + 1) / (lastPatientId - firstPatientId + 1);
+    }
+}
@@ -0,0 +1,56 @@
+package com.medisys.desktop.model;
+
+import java.math.BigDecimal;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.util.List;
+
+/**
+ * State of a batch billing run after one invocation. Counts and totals cover the whole run,
+ * including partitions finished by an earlier, interrupted invocation; throughput covers only
+ * the invoices this invocation generated.
+ */
+public class BillingRunReport {
+    private final long runId;
+    private final LocalDate billingDate;
+    private final List<BillingPartitionProgress> partitions;
+    private final int invoicesGenerated;
+    private final Duration elapsed;
+
+    public BillingRunReport(long runId, LocalDate billingDate, List<BillingPartitionProgress> partitions,
+                            int invoicesGenerated, Duration elapsed) {
+        this.runId = runId;
+        this.billingDate = billingDate;
+        this.partitions = partitions;
+        this.invoicesGenerated = invoicesGenerated;
+        this.elapsed = elapsed;
+    }
+
+    public long getRunId() { return runId; }
+
+    public LocalDate getBillingDate() { return billingDate; }
+
+    public List<BillingPartitionProgress> getPartitions() { return partitions; }
+
+    /** Invoices generated by this invocation */
+    public int getInvoicesGenerated() { return invoicesGenerated; }
+
+    public Duration getElapsed() { return elapsed; }
+
+    public int getInvoiceCount() {
+        return partitions.stream().mapToInt(BillingPartitionProgress::getInvoiceCount).sum();
+    }
+
+    public int getEncounterCount() {
+        return partitions.stream().mapToInt(BillingPartitionProgress::getEncounterCount).sum();
+    }
+
+    public BigDecimal getTotalAmount() {
+        return partitions.stream().map(BillingPartitionProgress::getTotalAmount).reduce(BigDecimal.ZERO, BigDecimal::add);
+    }
+
+    public double getInvoicesPerSecond() {
+        double seconds = elapsed.toNanos() / 1e9;
+        return seconds > 0 ? invoicesGenerated / seconds : 0.0;
+    }
+}
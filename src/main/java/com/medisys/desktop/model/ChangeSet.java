@@ -0,0 +1,87 @@
+package com.medisys.desktop.model;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The rows of a list that changed since a watermark: inserted or updated rows, and the ids of
+ * deleted ones. Pass {@link #getWatermark()} to the next call to get the changes after this
+ * set. A full reload (first call, or a watermark too old to answer) holds every row instead.
+ *
+ * Consecutive sets overlap slightly, so a row may come again unchanged; applying it is harmless.
+ */
+public class ChangeSet<T> {
+    private final List<T> rows;
+    private final List<Long> deletedIds;
+    private final LocalDateTime watermark;
+    private final boolean fullReload;
+
+    public ChangeSet(List<T> rows, List<Long> deletedIds, LocalDateTime watermark, boolean fullReload) {
+        this.rows = rows;
+        this.deletedIds = deletedIds;
+        this.watermark = watermark;
+        this.fullReload = fullReload;
+    }
+
+    /** Inserted and updated rows; every row on a full reload */
+    public List<T> getRows() { return rows; }
+
+    public List<Long> getDeletedIds() { return deletedIds; }
+
+    /** Where the next call should start; null if there is nothing to start from yet */
+    public LocalDateTime getWatermark() { return watermark; }
+
+    /** True if the rows replace the list rather than update it */
+    public boolean isFullReload() { return fullReload; }
+
+    public boolean isEmpty() {
+        return !fullReload && rows.isEmpty() && deletedIds.isEmpty();
+    }
+
+    /**
+     * Applies the changes to a list shown on screen, in place: changed rows replace the row with
+     * the same id, new rows are appended and deleted rows removed. Rows that did not change are
+     * left untouched, so selection and scroll position survive.
+     *
+     * @param view      the displayed rows
+     * @param viewId    the id of a displayed row
+     * @param toViewRow turns a changed row into a displayed one
+     */
+    public <R> void applyTo(List<R> view, Function<? super R, Long> viewId, Function<? super T, ? extends R> toViewRow) {
+        if (fullReload) {
+            List<R> reloaded = new ArrayList<>(rows.size());
+            for (T row : rows) {
+                reloaded.add(toViewRow.apply(row));
+            }
+            view.clear();
+            view.addAll(reloaded);
+            return;
+        }
+
+        Map<Long, Integer> positions = new HashMap<>(view.size() * 2);
+        for (int i = 0; i < view.size(); i++) {
+            positions.put(viewId.apply(view.get(i)), i);
+        }
+        for (T row : rows) {
+            R viewRow = toViewRow.apply(row);
+            Long id = viewId.apply(viewRow);
+            Integer position = positions.get(id);
+            if (position != null) {
+                view.set(position, viewRow);
+            } else {
+                positions.put(id, view.size());
+                view.add(viewRow);
+            }
+        }
+        if (!deletedIds.isEmpty()) {
+            Set<Long> deleted = new HashSet<>(deletedIds);
+            view.removeIf(viewRow -> deleted.contains(viewId.apply(viewRow)));
+        }
+    }
+}
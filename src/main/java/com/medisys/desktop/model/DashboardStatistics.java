@@ -0,0 +1,54 @@
+package com.medisys.desktop.model;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Immutable snapshot of the live dashboard counters
+ */
+public class DashboardStatistics {
+    private final long totalPatients;
+    private final long activeDoctors;
+    private final long todaysAppointments;
+    private final double monthlyRevenue;
+    private final Map<LocalDate, Double> dailyRevenue;
+    private final LocalDateTime capturedAt;
+
+    public DashboardStatistics(long totalPatients, long activeDoctors, long todaysAppointments,
+                               double monthlyRevenue, Map<LocalDate, Double> dailyRevenue,
+                               LocalDateTime capturedAt) {
+        this.totalPatients = totalPatients;
+        this.activeDoctors = activeDoctors;
+        this.todaysAppointments = todaysAppointments;
+        this.monthlyRevenue = monthlyRevenue;
+        this.dailyRevenue = Collections.unmodifiableMap(dailyRevenue);
+        this.capturedAt = capturedAt;
+    }
+
+    public long getTotalPatients() { return totalPatients; }
+
+    public long getActiveDoctors() { return activeDoctors; }
+
+    public long getTodaysAppointments() { return todaysAppointments; }
+
+    public double getMonthlyRevenue() { return monthlyRevenue; }
+
+    /** Revenue per day for the trailing week, oldest first */
+    public Map<LocalDate, Double> getDailyRevenue() { return dailyRevenue; }
+
+    public LocalDateTime getCapturedAt() { return capturedAt; }
+
+    @Override
+    public String toString() {
+        return "DashboardStatistics{" +
+                "totalPatients=" + totalPatients +
+                ", activeDoctors=" + activeDoctors +
+                ", todaysAppointments=" + todaysAppointments +
+                ", monthlyRevenue=" + monthlyRevenue +
+                ", dailyRevenue=" + dailyRevenue +
+                ", capturedAt=" + capturedAt +
+                '}';
+    }
+}
@@ -3,6 +3,10 @@ package com.medisys.desktop.model;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.LocalTime;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Doctor model with comprehensive professional information
@@ -41,6 +45,10 @@ public class Doctor {
     private LocalDateTime createdDate;
     private LocalDateTime updatedDate;
     private Long createdBy;
+    private long version;
+    // Only doctors loaded from storage track changes; the set is allocated on the first change
+    private boolean tracked;
+    private Set<String> changedColumns;
 
     public Doctor() {
         this.active = true;
@@ -48,6 +56,20 @@ public class Doctor {
         this.updatedDate = LocalDateTime.now();
     }
 
+    private Doctor(Long id) {
+        this.id = id;
+        this.active = true;
+    }
+
+    /**
+     * A doctor read back from storage. Skips the defaults a new record gets
+     * (timestamps); the row mapper sets whatever the row holds and then calls
+     * {@link #markClean()} to start tracking changes.
+     */
+    public static Doctor stored(Long id) {
+        return new Doctor(id);
+    }
+
     public Doctor(String firstName, String lastName, String specialization, String email, String phone) {
         this();
         this.firstName = firstName;
@@ -92,6 +114,7 @@ public class Doctor {
     }
 
     public void setName(String name) {
+        track("name", this.name, name);
         this.name = name;
     }
 
@@ -100,6 +123,7 @@ public class Doctor {
     }
 
     public void setSpecialty(String specialty) {
+        track("specialty", this.specialty, specialty);
         this.specialty = specialty;
     }
 
@@ -108,6 +132,7 @@ public class Doctor {
     }
 
     public void setContactInfo(String contactInfo) {
+        track("contact_info", this.contactInfo, contactInfo);
         this.contactInfo = contactInfo;
     }
 
@@ -116,6 +141,7 @@ public class Doctor {
     }
 
     public void setDepartmentId(Long departmentId) {
+        track("department_id", this.departmentId, departmentId);
         this.departmentId = departmentId;
     }
 
@@ -182,19 +208,34 @@ public class Doctor {
     public void setLanguages(String languages) { this.languages = languages; }
 
     public LocalTime getMorningStartTime() { return morningStartTime; }
-    public void setMorningStartTime(LocalTime morningStartTime) { this.morningStartTime = morningStartTime; }
+    public void setMorningStartTime(LocalTime morningStartTime) {
+        track("morning_start_time", this.morningStartTime, morningStartTime);
+        this.morningStartTime = morningStartTime;
+    }
 
     public LocalTime getMorningEndTime() { return morningEndTime; }
-    public void setMorningEndTime(LocalTime morningEndTime) { this.morningEndTime = morningEndTime; }
+    public void setMorningEndTime(LocalTime morningEndTime) {
+        track("morning_end_time", this.morningEndTime, morningEndTime);
+        this.morningEndTime = morningEndTime;
+    }
 
     public LocalTime getEveningStartTime() { return eveningStartTime; }
-    public void setEveningStartTime(LocalTime eveningStartTime) { this.eveningStartTime = eveningStartTime; }
+    public void setEveningStartTime(LocalTime eveningStartTime) {
+        track("evening_start_time", this.eveningStartTime, eveningStartTime);
+        this.eveningStartTime = eveningStartTime;
+    }
 
     public LocalTime getEveningEndTime() { return eveningEndTime; }
-    public void setEveningEndTime(LocalTime eveningEndTime) { this.eveningEndTime = eveningEndTime; }
+    public void setEveningEndTime(LocalTime eveningEndTime) {
+        track("evening_end_time", this.eveningEndTime, eveningEndTime);
+        this.eveningEndTime = eveningEndTime;
+    }
 
     public String getWorkingDays() { return workingDays; }
-    public void setWorkingDays(String workingDays) { this.workingDays = workingDays; }
+    public void setWorkingDays(String workingDays) {
+        track("working_days", this.workingDays, workingDays);
+        this.workingDays = workingDays;
+    }
 
     public boolean isActive() { return active; }
     public void setActive(boolean active) { this.active = active; }
@@ -208,6 +249,43 @@ public class Doctor {
     public Long getCreatedBy() { return createdBy; }
     public void setCreatedBy(Long createdBy) { this.createdBy = createdBy; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    /**
+     * Starts tracking changes from the current state: called once the doctor has been
+     * read from storage, and again after each successful save.
+     */
+    public void markClean() {
+        tracked = true;
+        changedColumns = null;
+    }
+
+    /**
+     * Whether this doctor was loaded from storage and is tracking changes. Untracked
+     * doctors (built from scratch) are saved with every column.
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * The stored columns (name, specialty, contact_info, department_id and the consulting
+     * hours) changed since {@link #markClean()}.
+     */
+    public Set<String> getChangedColumns() {
+        return changedColumns != null ? Collections.unmodifiableSet(changedColumns) : Collections.emptySet();
+    }
+
+    private void track(String column, Object before, Object after) {
+        if (tracked && !Objects.equals(before, after)) {
+            if (changedColumns == null) {
+                changedColumns = new LinkedHashSet<>();
+            }
+            changedColumns.add(column);
+        }
+    }
+
     public int getExperience() {
         if (joiningDate != null) {
             return LocalDate.now().getYear() - joiningDate.getYear();
@@ -229,7 +307,7 @@ public class Doctor {
     public void setAvailableShifts(String shifts) {
         // Parse shifts and set schedule times
         // This is a simplified implementation
-        this.workingDays = shifts;
+        setWorkingDays(shifts);
     }
 
     public String getPhotoPath() {
@@ -0,0 +1,51 @@
+package com.medisys.desktop.model;
+
+/**
+ * The columns a doctor list row shows. List screens load these; the full {@link Doctor}
+ * (biography, schedule, licence...) is loaded only when a row is opened.
+ */
+public class DoctorSummary {
+    private final Long id;
+    private final String name;
+    private final String specialty;
+    private final String phone;
+    private final String email;
+    private final Long departmentId;
+    private final boolean active;
+    // Filled in from the departments table by a reference load
+    private String departmentName;
+
+    public DoctorSummary(Long id, String name, String specialty, String phone, String email, Long departmentId,
+                         boolean active) {
+        this.id = id;
+        this.name = name;
+        this.specialty = specialty;
+        this.phone = phone;
+        this.email = email;
+        this.departmentId = departmentId;
+        this.active = active;
+    }
+
+    public Long getId() { return id; }
+
+    public String getName() { return name; }
+
+    public String getSpecialty() { return specialty; }
+
+    public String getPhone() { return phone; }
+
+    public String getEmail() { return email; }
+
+    public Long getDepartmentId() { return departmentId; }
+
+    public boolean isActive() { return active; }
+
+    public String getDepartmentName() { return departmentName; }
+
+    public void setDepartmentName(String departmentName) { this.departmentName = departmentName; }
+
+    @Override
+    public String toString() {
+        return "DoctorSummary{id=" + id + ", name='" + name + "'}";
+    }
+}
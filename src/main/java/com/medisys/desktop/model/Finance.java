@@ -1,15 +1,22 @@
 package com.medisys.desktop.model;
 
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+
 public class Finance {
     private Long id;
     private Long patientId;
-    private Double amount;
+    private BigDecimal amount;
     private String status;
+    private Long departmentId;
+    private LocalDateTime createdDate;
+    // Display only, filled in from the patients table by a reference load; not stored
+    private String patientName;
 
     // Constructors
     public Finance() {}
 
-    public Finance(Long id, Long patientId, Double amount, String status) {
+    public Finance(Long id, Long patientId, BigDecimal amount, String status) {
         this.id = id;
         this.patientId = patientId;
         this.amount = amount;
@@ -33,11 +40,11 @@ public class Finance {
         this.patientId = patientId;
     }
 
-    public Double getAmount() {
+    public BigDecimal getAmount() {
         return amount;
     }
 
-    public void setAmount(Double amount) {
+    public void setAmount(BigDecimal amount) {
         this.amount = amount;
     }
 
@@ -49,6 +56,30 @@ public class Finance {
         this.status = status;
     }
 
+    public Long getDepartmentId() {
+        return departmentId;
+    }
+
+    public void setDepartmentId(Long departmentId) {
+        this.departmentId = departmentId;
+    }
+
+    public LocalDateTime getCreatedDate() {
+        return createdDate;
+    }
+
+    public void setCreatedDate(LocalDateTime createdDate) {
+        this.createdDate = createdDate;
+    }
+
+    public String getPatientName() {
+        return patientName;
+    }
+
+    public void setPatientName(String patientName) {
+        this.patientName = patientName;
+    }
+
     @Override
     public String toString() {
         return "Finance{" +
@@ -56,6 +87,8 @@ public class Finance {
                 ", patientId=" + patientId +
                 ", amount=" + amount +
                 ", status='" + status + '\'' +
+                ", departmentId=" + departmentId +
+                ", createdDate=" + createdDate +
                 '}';
     }
 }
\ No newline at end of file
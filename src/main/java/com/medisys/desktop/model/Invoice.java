@@ -0,0 +1,40 @@
+package com.medisys.desktop.model;
+
+import com.medisys.desktop.util.Money;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+/**
+ * A priced invoice. Amounts are in paise; {@link #getTotalAmount()} gives the total for a
+ * finance record.
+ */
+public class Invoice {
+    private final List<InvoiceLine> lines;
+    private final long subtotalPaise;
+    private final long discountPaise;
+    private final long taxPaise;
+
+    public Invoice(List<InvoiceLine> lines, long subtotalPaise, long discountPaise, long taxPaise) {
+        this.lines = lines;
+        this.subtotalPaise = subtotalPaise;
+        this.discountPaise = discountPaise;
+        this.taxPaise = taxPaise;
+    }
+
+    public List<InvoiceLine> getLines() { return lines; }
+
+    public long getSubtotalPaise() { return subtotalPaise; }
+
+    public long getDiscountPaise() { return discountPaise; }
+
+    public long getTaxPaise() { return taxPaise; }
+
+    public long getTotalPaise() {
+        return subtotalPaise - discountPaise + taxPaise;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return Money.toAmount(getTotalPaise());
+    }
+}
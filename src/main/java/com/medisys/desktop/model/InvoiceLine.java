@@ -0,0 +1,58 @@
+package com.medisys.desktop.model;
+
+/**
+ * One charge on an invoice. All amounts are in paise. The caller sets the tariff code,
+ * quantity and, for services billed at a per-bill amount, the unit price; the billing
+ * engine fills in the rest.
+ */
+public class InvoiceLine {
+    /** Unit price meaning "use the tariff's price" */
+    public static final long TARIFF_PRICE = -1;
+
+    private String tariffCode;
+    private int quantity;
+    private long unitPricePaise;
+    private long grossPaise;
+    private long discountPaise;
+    private long taxPaise;
+
+    // Constructors
+    public InvoiceLine() {}
+
+    /** A line billed at the tariff's price */
+    public InvoiceLine(String tariffCode, int quantity) {
+        this(tariffCode, quantity, TARIFF_PRICE);
+    }
+
+    public InvoiceLine(String tariffCode, int quantity, long unitPricePaise) {
+        this.tariffCode = tariffCode;
+        this.quantity = quantity;
+        this.unitPricePaise = unitPricePaise;
+    }
+
+    // Getters and Setters
+    public String getTariffCode() { return tariffCode; }
+    public void setTariffCode(String tariffCode) { this.tariffCode = tariffCode; }
+
+    public int getQuantity() { return quantity; }
+    public void setQuantity(int quantity) { this.quantity = quantity; }
+
+    public long getUnitPricePaise() { return unitPricePaise; }
+    public void setUnitPricePaise(long unitPricePaise) { this.unitPricePaise = unitPricePaise; }
+
+    /** Unit price times quantity */
+    public long getGrossPaise() { return grossPaise; }
+    public void setGrossPaise(long grossPaise) { this.grossPaise = grossPaise; }
+
+    /** This line's share of the invoice discount */
+    public long getDiscountPaise() { return discountPaise; }
+    public void setDiscountPaise(long discountPaise) { this.discountPaise = discountPaise; }
+
+    /** Tax on the discounted amount */
+    public long getTaxPaise() { return taxPaise; }
+    public void setTaxPaise(long taxPaise) { this.taxPaise = taxPaise; }
+
+    public long getTotalPaise() {
+        return grossPaise - discountPaise + taxPaise;
+    }
+}
@@ -2,6 +2,10 @@ package com.medisys.desktop.model;
 
 import java.time.LocalDate;
 import java.time.LocalDateTime;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.Objects;
+import java.util.Set;
 
 /**
  * Patient model with comprehensive medical and personal information
@@ -35,6 +39,10 @@ public class Patient {
     private LocalDateTime createdDate;
     private LocalDateTime updatedDate;
     private Long createdBy;
+    private long version;
+    // Only patients loaded from storage track changes; the set is allocated on the first change
+    private boolean tracked;
+    private Set<String> changedColumns;
 
     public Patient() {
         this.active = true;
@@ -43,6 +51,20 @@ public class Patient {
         this.country = "India";
     }
 
+    private Patient(Long id) {
+        this.id = id;
+        this.active = true;
+    }
+
+    /**
+     * A patient read back from storage. Skips the defaults a new record gets
+     * (timestamps, country); the row mapper sets whatever the row holds and then
+     * calls {@link #markClean()} to start tracking changes.
+     */
+    public static Patient stored(Long id) {
+        return new Patient(id);
+    }
+
     public Patient(String firstName, String lastName, LocalDate dateOfBirth, String email, String phone) {
         this();
         this.firstName = firstName;
@@ -75,10 +97,22 @@ public class Patient {
     public void setPatientId(String patientId) { this.patientId = patientId; }
 
     public String getFirstName() { return firstName; }
-    public void setFirstName(String firstName) { this.firstName = firstName; }
+    public void setFirstName(String firstName) {
+        String before = tracked ? getName() : null;
+        this.firstName = firstName;
+        if (tracked) {
+            track("name", before, getName());
+        }
+    }
 
     public String getLastName() { return lastName; }
-    public void setLastName(String lastName) { this.lastName = lastName; }
+    public void setLastName(String lastName) {
+        String before = tracked ? getName() : null;
+        this.lastName = lastName;
+        if (tracked) {
+            track("name", before, getName());
+        }
+    }
 
     public String getFullName() {
         return (firstName != null ? firstName : "") + " " + (lastName != null ? lastName : "");
@@ -90,6 +124,7 @@ public class Patient {
     }
 
     public void setName(String name) {
+        String before = tracked ? getName() : null;
         if (name != null && name.contains(" ")) {
             String[] parts = name.split(" ", 2);
             this.firstName = parts[0];
@@ -97,15 +132,21 @@ public class Patient {
         } else {
             this.firstName = name;
         }
+        if (tracked) {
+            track("name", before, getName());
+        }
     }
 
     public LocalDate getDateOfBirth() { return dateOfBirth; }
-    public void setDateOfBirth(LocalDate dateOfBirth) { this.dateOfBirth = dateOfBirth; }
+    public void setDateOfBirth(LocalDate dateOfBirth) {
+        track("date_of_birth", this.dateOfBirth, dateOfBirth);
+        this.dateOfBirth = dateOfBirth;
+    }
 
     // Legacy setter for compatibility
     public void setDateOfBirth(String dateOfBirth) {
         try {
-            this.dateOfBirth = LocalDate.parse(dateOfBirth);
+            setDateOfBirth(LocalDate.parse(dateOfBirth));
         } catch (Exception e) {
             // Handle parsing error
         }
@@ -121,11 +162,14 @@ public class Patient {
     public void setEmail(String email) { this.email = email; }
 
     public String getPhone() { return phone; }
-    public void setPhone(String phone) { this.phone = phone; }
+    public void setPhone(String phone) {
+        track("contact_info", this.phone, phone);
+        this.phone = phone;
+    }
 
     // Legacy getter for compatibility
     public String getContactInfo() { return phone; }
-    public void setContactInfo(String contactInfo) { this.phone = contactInfo; }
+    public void setContactInfo(String contactInfo) { setPhone(contactInfo); }
 
     public String getAddress() { return address; }
     public void setAddress(String address) { this.address = address; }
@@ -184,6 +228,42 @@ public class Patient {
     public Long getCreatedBy() { return createdBy; }
     public void setCreatedBy(Long createdBy) { this.createdBy = createdBy; }
 
+    public long getVersion() { return version; }
+    public void setVersion(long version) { this.version = version; }
+
+    /**
+     * Starts tracking changes from the current state: called once the patient has been
+     * read from storage, and again after each successful save.
+     */
+    public void markClean() {
+        tracked = true;
+        changedColumns = null;
+    }
+
+    /**
+     * Whether this patient was loaded from storage and is tracking changes. Untracked
+     * patients (built from scratch) are saved with every column.
+     */
+    public boolean isTracked() {
+        return tracked;
+    }
+
+    /**
+     * The stored columns (name, date_of_birth, contact_info) changed since {@link #markClean()}.
+     */
+    public Set<String> getChangedColumns() {
+        return changedColumns != null ? Collections.unmodifiableSet(changedColumns) : Collections.emptySet();
+    }
+
+    private void track(String column, Object before, Object after) {
+        if (tracked && !Objects.equals(before, after)) {
+            if (changedColumns == null) {
+                changedColumns = new LinkedHashSet<>();
+            }
+            changedColumns.add(column);
+        }
+    }
+
     public int getAge() {
         if (dateOfBirth != null) {
             return LocalDate.now().getYear() - dateOfBirth.getYear();
@@ -0,0 +1,45 @@
+package com.medisys.desktop.model;
+
+import java.time.LocalDateTime;
+import java.util.Map;
+
+/**
+ * One version of a patient record: what changed, who changed it and when the version held.
+ * A deletion is a final version with no changes.
+ */
+public class PatientChange {
+    private final Long patientId;
+    private final long version;
+    private final LocalDateTime validFrom;
+    private final LocalDateTime validTo;
+    private final Long changedBy;
+    private final Map<String, String> changes;
+    private final boolean deleted;
+
+    public PatientChange(Long patientId, long version, LocalDateTime validFrom, LocalDateTime validTo, Long changedBy,
+                         Map<String, String> changes, boolean deleted) {
+        this.patientId = patientId;
+        this.version = version;
+        this.validFrom = validFrom;
+        this.validTo = validTo;
+        this.changedBy = changedBy;
+        this.changes = changes;
+        this.deleted = deleted;
+    }
+
+    public Long getPatientId() { return patientId; }
+
+    public long getVersion() { return version; }
+
+    public LocalDateTime getValidFrom() { return validFrom; }
+
+    /** When the next version replaced this one; null for the current version */
+    public LocalDateTime getValidTo() { return validTo; }
+
+    public Long getChangedBy() { return changedBy; }
+
+    /** Column to new value, as text; every column for the version that created the patient */
+    public Map<String, String> getChanges() { return changes; }
+
+    public boolean isDeleted() { return deleted; }
+}
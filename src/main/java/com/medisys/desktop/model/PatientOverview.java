@@ -0,0 +1,54 @@
+package com.medisys.desktop.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Everything the patient screen shows about one patient: the patient, their most recent bills
+ * and appointments, the doctors they have seen and the recent changes to their record. Loaded
+ * in one query; lists are newest first.
+ */
+public class PatientOverview {
+    private final Patient patient;
+    private final List<Finance> recentBills;
+    private final int billCount;
+    private final BigDecimal outstandingAmount;
+    private final List<Appointment> recentAppointments;
+    private final List<DoctorSummary> doctors;
+    private final List<AuditLog> auditTrail;
+    private final LocalDateTime loadedAt;
+
+    public PatientOverview(Patient patient, List<Finance> recentBills, int billCount, BigDecimal outstandingAmount,
+                           List<Appointment> recentAppointments, List<DoctorSummary> doctors,
+                           List<AuditLog> auditTrail, LocalDateTime loadedAt) {
+        this.patient = patient;
+        this.recentBills = recentBills;
+        this.billCount = billCount;
+        this.outstandingAmount = outstandingAmount;
+        this.recentAppointments = recentAppointments;
+        this.doctors = doctors;
+        this.auditTrail = auditTrail;
+        this.loadedAt = loadedAt;
+    }
+
+    public Patient getPatient() { return patient; }
+
+    public List<Finance> getRecentBills() { return recentBills; }
+
+    /** All of the patient's bills, not only the recent ones */
+    public int getBillCount() { return billCount; }
+
+    /** Total of the patient's pending and overdue bills */
+    public BigDecimal getOutstandingAmount() { return outstandingAmount; }
+
+    public List<Appointment> getRecentAppointments() { return recentAppointments; }
+
+    /** Doctors the patient has appointments with, by name, with their department names */
+    public List<DoctorSummary> getDoctors() { return doctors; }
+
+    /** Recent changes to the patient record; views are not included */
+    public List<AuditLog> getAuditTrail() { return auditTrail; }
+
+    public LocalDateTime getLoadedAt() { return loadedAt; }
+}
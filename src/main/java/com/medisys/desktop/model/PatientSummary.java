@@ -0,0 +1,54 @@
+package com.medisys.desktop.model;
+
+import java.time.LocalDate;
+
+/**
+ * The columns a patient list row shows. List screens load these; the full {@link Patient}
+ * (history, medications, insurance...) is loaded only when a row is opened.
+ */
+public class PatientSummary {
+    private final Long id;
+    private final String name;
+    private final LocalDate dateOfBirth;
+    private final String gender;
+    private final String phone;
+    private final String email;
+    private final boolean active;
+
+    public PatientSummary(Long id, String name, LocalDate dateOfBirth, String gender, String phone, String email,
+                          boolean active) {
+        this.id = id;
+        this.name = name;
+        this.dateOfBirth = dateOfBirth;
+        this.gender = gender;
+        this.phone = phone;
+        this.email = email;
+        this.active = active;
+    }
+
+    public Long getId() { return id; }
+
+    public String getName() { return name; }
+
+    public LocalDate getDateOfBirth() { return dateOfBirth; }
+
+    public String getGender() { return gender; }
+
+    public String getPhone() { return phone; }
+
+    public String getEmail() { return email; }
+
+    public boolean isActive() { return active; }
+
+    public int getAge() {
+        if (dateOfBirth != null) {
+            return LocalDate.now().getYear() - dateOfBirth.getYear();
+        }
+        return 0;
+    }
+
+    @Override
+    public String toString() {
+        return "PatientSummary{id=" + id + ", name='" + name + "'}";
+    }
+}
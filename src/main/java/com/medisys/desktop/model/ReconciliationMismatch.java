@@ -0,0 +1,55 @@
+package com.medisys.desktop.model;
+
+/**
+ * One entry of a reconciliation's exceptions report: a settlement line that could not be
+ * applied, or an invoice whose payments in the file do not add up to its amount. Amounts are
+ * in paise.
+ */
+public class ReconciliationMismatch {
+
+    public enum Reason {
+        /** The line could not be read; nothing was applied */
+        UNREADABLE_LINE,
+        /** No finance record has this reference */
+        UNKNOWN_REFERENCE,
+        /** The finance record is not open (already paid or cancelled) */
+        NOT_OPEN,
+        /** Payments for the invoice add up to less than its amount; left open */
+        UNDERPAID,
+        /** Payments for the invoice add up to more than its amount; left open */
+        OVERPAID
+    }
+
+    private final Reason reason;
+    private final int lineNumber;
+    private final Long financeId;
+    private final long expectedPaise;
+    private final long settledPaise;
+    private final String detail;
+
+    public ReconciliationMismatch(Reason reason, int lineNumber, Long financeId, long expectedPaise,
+                                  long settledPaise, String detail) {
+        this.reason = reason;
+        this.lineNumber = lineNumber;
+        this.financeId = financeId;
+        this.expectedPaise = expectedPaise;
+        this.settledPaise = settledPaise;
+        this.detail = detail;
+    }
+
+    public Reason getReason() { return reason; }
+
+    /** Line in the settlement file; the first line paying the invoice for under- and overpayments */
+    public int getLineNumber() { return lineNumber; }
+
+    /** Null for unreadable lines */
+    public Long getFinanceId() { return financeId; }
+
+    /** The invoice amount; zero when there is no open invoice */
+    public long getExpectedPaise() { return expectedPaise; }
+
+    public long getSettledPaise() { return settledPaise; }
+
+    /** The offending line, or the record's status for {@link Reason#NOT_OPEN} */
+    public String getDetail() { return detail; }
+}
@@ -0,0 +1,41 @@
+package com.medisys.desktop.model;
+
+import java.time.Duration;
+import java.util.List;
+
+/**
+ * Outcome of reconciling one settlement file. Amounts are in paise.
+ */
+public class ReconciliationReport {
+    private final int linesRead;
+    private final int invoicesPaid;
+    private final long paidPaise;
+    private final List<ReconciliationMismatch> mismatches;
+    private final Duration elapsed;
+
+    public ReconciliationReport(int linesRead, int invoicesPaid, long paidPaise,
+                                List<ReconciliationMismatch> mismatches, Duration elapsed) {
+        this.linesRead = linesRead;
+        this.invoicesPaid = invoicesPaid;
+        this.paidPaise = paidPaise;
+        this.mismatches = mismatches;
+        this.elapsed = elapsed;
+    }
+
+    /** Settlement lines read, excluding the header */
+    public int getLinesRead() { return linesRead; }
+
+    /** Finance records this reconciliation marked paid */
+    public int getInvoicesPaid() { return invoicesPaid; }
+
+    public long getPaidPaise() { return paidPaise; }
+
+    public List<ReconciliationMismatch> getMismatches() { return mismatches; }
+
+    public Duration getElapsed() { return elapsed; }
+
+    public double getLinesPerSecond() {
+        double seconds = elapsed.toNanos() / 1_000_000_000.0;
+        return seconds > 0 ? linesRead / seconds : 0;
+    }
+}
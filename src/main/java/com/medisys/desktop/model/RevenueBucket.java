@@ -0,0 +1,78 @@
+package com.medisys.desktop.model;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+
+/**
+ * One pre-aggregated revenue bucket (period start / department / status).
+ */
+public class RevenueBucket {
+    private LocalDate periodStart;
+    private Long departmentId;
+    private String status;
+    private BigDecimal totalAmount;
+    private long billCount;
+
+    // Constructors
+    public RevenueBucket() {}
+
+    public RevenueBucket(LocalDate periodStart, Long departmentId, String status, BigDecimal totalAmount, long billCount) {
+        this.periodStart = periodStart;
+        this.departmentId = departmentId;
+        this.status = status;
+        this.totalAmount = totalAmount;
+        this.billCount = billCount;
+    }
+
+    // Getters and Setters
+    public LocalDate getPeriodStart() {
+        return periodStart;
+    }
+
+    public void setPeriodStart(LocalDate periodStart) {
+        this.periodStart = periodStart;
+    }
+
+    public Long getDepartmentId() {
+        return departmentId;
+    }
+
+    public void setDepartmentId(Long departmentId) {
+        this.departmentId = departmentId;
+    }
+
+    public String getStatus() {
+        return status;
+    }
+
+    public void setStatus(String status) {
+        this.status = status;
+    }
+
+    public BigDecimal getTotalAmount() {
+        return totalAmount;
+    }
+
+    public void setTotalAmount(BigDecimal totalAmount) {
+        this.totalAmount = totalAmount;
+    }
+
+    public long getBillCount() {
+        return billCount;
+    }
+
+    public void setBillCount(long billCount) {
+        this.billCount = billCount;
+    }
+
+    @Override
+    public String toString() {
+        return "RevenueBucket{" +
+                "periodStart=" + periodStart +
+                ", departmentId=" + departmentId +
+                ", status='" + status + '\'' +
+                ", totalAmount=" + totalAmount +
+                ", billCount=" + billCount +
+                '}';
+    }
+}
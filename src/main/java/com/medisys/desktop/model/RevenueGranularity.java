@@ -0,0 +1,21 @@
+package com.medisys.desktop.model;
+
+/**
+ * Bucket size for revenue summaries. The SQL unit matches PostgreSQL date_trunc fields.
+ */
+public enum RevenueGranularity {
+    DAY("day"),
+    WEEK("week"),
+    MONTH("month"),
+    YEAR("year");
+
+    private final String sqlUnit;
+
+    RevenueGranularity(String sqlUnit) {
+        this.sqlUnit = sqlUnit;
+    }
+
+    public String getSqlUnit() {
+        return sqlUnit;
+    }
+}
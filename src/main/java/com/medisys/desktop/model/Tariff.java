@@ -0,0 +1,35 @@
+package com.medisys.desktop.model;
+
+/**
+ * The price of a billable service. Amounts are in paise; the tax rate is in basis points
+ * (1800 = 18%).
+ */
+public class Tariff {
+    private String code;
+    private String description;
+    private long pricePaise;
+    private int taxRateBasisPoints;
+
+    // Constructors
+    public Tariff() {}
+
+    public Tariff(String code, String description, long pricePaise, int taxRateBasisPoints) {
+        this.code = code;
+        this.description = description;
+        this.pricePaise = pricePaise;
+        this.taxRateBasisPoints = taxRateBasisPoints;
+    }
+
+    // Getters and Setters
+    public String getCode() { return code; }
+    public void setCode(String code) { this.code = code; }
+
+    public String getDescription() { return description; }
+    public void setDescription(String description) { this.description = description; }
+
+    public long getPricePaise() { return pricePaise; }
+    public void setPricePaise(long pricePaise) { this.pricePaise = pricePaise; }
+
+    public int getTaxRateBasisPoints() { return taxRateBasisPoints; }
+    public void setTaxRateBasisPoints(int taxRateBasisPoints) { this.taxRateBasisPoints = taxRateBasisPoints; }
+}
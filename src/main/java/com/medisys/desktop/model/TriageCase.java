@@ -0,0 +1,51 @@
+package com.medisys.desktop.model;
+
+import java.time.LocalDateTime;
+
+/**
+ * A patient waiting in the emergency department to be seen.
+ */
+public class TriageCase {
+    private Long id;
+    private String patientName;
+    private Long patientId;
+    private TriagePriority priority;
+    private String emergencyType;
+    private LocalDateTime arrivedAt;
+
+    // Constructors
+    public TriageCase() {}
+
+    public TriageCase(String patientName, TriagePriority priority, String emergencyType) {
+        this.patientName = patientName;
+        this.priority = priority;
+        this.emergencyType = emergencyType;
+    }
+
+    // Getters and Setters
+    public Long getId() { return id; }
+    public void setId(Long id) { this.id = id; }
+
+    public String getPatientName() { return patientName; }
+    public void setPatientName(String patientName) { this.patientName = patientName; }
+
+    /** The registered patient, once known; null while the case is only a name at the desk */
+    public Long getPatientId() { return patientId; }
+    public void setPatientId(Long patientId) { this.patientId = patientId; }
+
+    public TriagePriority getPriority() { return priority; }
+    public void setPriority(TriagePriority priority) { this.priority = priority; }
+
+    public String getEmergencyType() { return emergencyType; }
+    public void setEmergencyType(String emergencyType) { this.emergencyType = emergencyType; }
+
+    public LocalDateTime getArrivedAt() { return arrivedAt; }
+    public void setArrivedAt(LocalDateTime arrivedAt) { this.arrivedAt = arrivedAt; }
+
+    /**
+     * When the case should have been seen by: arrival plus the priority's target wait.
+     */
+    public LocalDateTime getDueAt() {
+        return arrivedAt.plus(priority.getTargetWait());
+    }
+}
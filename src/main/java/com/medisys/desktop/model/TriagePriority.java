@@ -0,0 +1,39 @@
+package com.medisys.desktop.model;
+
+import java.time.Duration;
+
+/**
+ * Emergency triage category, with the longest a case of that category should wait to be seen.
+ */
+public enum TriagePriority {
+    CRITICAL("Critical", Duration.ZERO),
+    HIGH("High", Duration.ofMinutes(10)),
+    MEDIUM("Medium", Duration.ofMinutes(60)),
+    LOW("Low", Duration.ofMinutes(120));
+
+    private final String label;
+    private final Duration targetWait;
+
+    TriagePriority(String label, Duration targetWait) {
+        this.label = label;
+        this.targetWait = targetWait;
+    }
+
+    public String getLabel() {
+        return label;
+    }
+
+    public Duration getTargetWait() {
+        return targetWait;
+    }
+
+    /** The priority shown as {@code label} on the admission form */
+    public static TriagePriority fromLabel(String label) {
+        for (TriagePriority priority : values()) {
+            if (priority.label.equalsIgnoreCase(label)) {
+                return priority;
+            }
+        }
+        throw new IllegalArgumentException("Unknown triage priority: " + label);
+    }
+}
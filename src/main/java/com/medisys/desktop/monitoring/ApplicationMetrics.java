@@ -1,13 +1,19 @@
 package com.medisys.desktop.monitoring;
 
 import io.micrometer.core.instrument.Counter;
+import io.micrometer.core.instrument.DistributionSummary;
+import io.micrometer.core.instrument.Gauge;
 import io.micrometer.core.instrument.MeterRegistry;
+import io.micrometer.core.instrument.Tags;
 import io.micrometer.core.instrument.Timer;
 import org.springframework.stereotype.Component;
 
 import java.time.Duration;
+import java.util.Map;
 import java.util.concurrent.ConcurrentHashMap;
 import java.util.concurrent.atomic.AtomicLong;
+import java.util.function.IntSupplier;
+import java.util.function.Supplier;
 
 @Component
 public class ApplicationMetrics {
@@ -16,6 +22,7 @@ public class ApplicationMetrics {
     private final ConcurrentHashMap<String, Counter> counters = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, Timer> timers = new ConcurrentHashMap<>();
     private final ConcurrentHashMap<String, AtomicLong> gauges = new ConcurrentHashMap<>();
+    private final ConcurrentHashMap<String, DistributionSummary> summaries = new ConcurrentHashMap<>();
     
     public ApplicationMetrics(MeterRegistry meterRegistry) {
         this.meterRegistry = meterRegistry;
@@ -47,6 +54,12 @@ public class ApplicationMetrics {
         
         // Active sessions gauge
         gauges.put("active.sessions", meterRegistry.gauge("application.active.sessions", new AtomicLong(0)));
+
+        // Outbox relay backlog gauge
+        gauges.put("outbox.backlog", meterRegistry.gauge("outbox.events.pending", new AtomicLong(0)));
+
+        // Audit journal segments waiting to be shipped
+        gauges.put("audit.journal.backlog", meterRegistry.gauge("audit.journal.segments.pending", new AtomicLong(0)));
     }
     
     public void recordDatabaseOperation(String operation, Duration duration) {
@@ -66,6 +79,130 @@ public class ApplicationMetrics {
         getCounter("cache.operations.total", "operation", operation).increment();
     }
     
+    public void recordOutboxDelivery(int events, Duration oldestEventLag) {
+        getCounter("outbox.events.delivered").increment(events);
+        getTimer("outbox.delivery.lag").record(oldestEventLag);
+    }
+
+    public void updateOutboxBacklog(long pending) {
+        AtomicLong gauge = gauges.get("outbox.backlog");
+        if (gauge != null) {
+            gauge.set(pending);
+        }
+    }
+
+    public void recordAuditJournalShipped(int records, Duration oldestRecordLag) {
+        getCounter("audit.journal.records.shipped").increment(records);
+        getTimer("audit.journal.shipping.lag").record(oldestRecordLag);
+    }
+
+    public void updateAuditJournalBacklog(long segments) {
+        AtomicLong gauge = gauges.get("audit.journal.backlog");
+        if (gauge != null) {
+            gauge.set(segments);
+        }
+    }
+
+    /**
+     * Latency of one JDBC statement, tagged with its normalized SQL (literals stripped).
+     */
+    public void recordStatement(String normalizedSql, String operation, Duration duration, boolean failed) {
+        getHistogramTimer("jdbc.statement.duration",
+                "sql", normalizedSql, "operation", operation, "outcome", failed ? "error" : "success").record(duration);
+    }
+
+    public void recordRowsReturned(String normalizedSql, long rows) {
+        summaries.computeIfAbsent("jdbc.statement.rows:" + normalizedSql, k ->
+            DistributionSummary.builder("jdbc.statement.rows")
+                .tags("sql", normalizedSql)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+        ).record(rows);
+    }
+
+    public void recordConnectionAcquire(String workload, Duration wait) {
+        getHistogramTimer("jdbc.connection.acquire", "workload", workload).record(wait);
+    }
+
+    /**
+     * Saturation gauges for one connection pool: connections in use, callers queued for
+     * one, and in-use as a fraction of the pool's maximum size.
+     */
+    public void registerConnectionPool(String pool, IntSupplier active, IntSupplier pending, int maximumSize) {
+        Gauge.builder("jdbc.pool.active", active::getAsInt).tag("pool", pool).register(meterRegistry);
+        Gauge.builder("jdbc.pool.pending", pending::getAsInt).tag("pool", pool).register(meterRegistry);
+        Gauge.builder("jdbc.pool.utilization", () -> (double) active.getAsInt() / maximumSize)
+            .tag("pool", pool)
+            .register(meterRegistry);
+    }
+
+    public void recordSlowQuery(String operation) {
+        getCounter("jdbc.statement.slow", "operation", operation).increment();
+    }
+
+    public void recordRoutedRead(String target) {
+        getCounter("jdbc.routing.reads", "target", target).increment();
+    }
+
+    public void updateReplicaLag(String replica, long lagBytes) {
+        gauges.computeIfAbsent("replica.lag:" + replica, k ->
+            meterRegistry.gauge("jdbc.replica.lag.bytes", Tags.of("replica", replica), new AtomicLong(0))
+        ).set(lagBytes);
+    }
+
+    /**
+     * Emergency triage queue gauges: cases waiting per priority, and how long the
+     * longest-waiting case has waited so far.
+     */
+    public void registerTriageQueue(Map<String, IntSupplier> waitingByPriority, Supplier<Duration> longestWait) {
+        waitingByPriority.forEach((priority, waiting) ->
+            Gauge.builder("triage.queue.length", waiting::getAsInt).tag("priority", priority).register(meterRegistry));
+        Gauge.builder("triage.queue.longest.wait", () -> longestWait.get().toMillis() / 1000.0)
+            .baseUnit("seconds")
+            .register(meterRegistry);
+    }
+
+    /**
+     * Time from arrival to being called, per triage priority. Median and tail percentiles are
+     * published directly, so they can be read without a Prometheus server.
+     */
+    public void recordTriageWait(String priority, Duration wait) {
+        timers.computeIfAbsent("triage.wait:priority:" + priority, k ->
+            Timer.builder("triage.wait")
+                .tags("priority", priority)
+                .publishPercentiles(0.5, 0.9, 0.99)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+        ).record(wait);
+    }
+
+    /**
+     * One committed batch billing chunk: invoices generated and how long the chunk took.
+     * The counter's rate is the run's throughput.
+     */
+    public void recordBillingChunk(int invoices, Duration elapsed) {
+        getCounter("billing.invoices.generated").increment(invoices);
+        getTimer("billing.chunk.duration").record(elapsed);
+    }
+
+    /**
+     * One settlement file reconciled: lines read, exceptions reported, and the time taken.
+     */
+    public void recordReconciliation(int lines, int exceptions, Duration elapsed) {
+        getCounter("reconciliation.lines.total").increment(lines);
+        getCounter("reconciliation.exceptions.total").increment(exceptions);
+        getTimer("reconciliation.duration").record(elapsed);
+    }
+
+    /**
+     * Change notifications received from other workstations, and how many deliveries to
+     * subscribers they were coalesced into.
+     */
+    public void recordChangeNotifications(int received, int delivered) {
+        getCounter("notifications.received.total").increment(received);
+        getCounter("notifications.delivered.total").increment(delivered);
+    }
+
     public void updateActiveSessionsCount(long count) {
         AtomicLong gauge = gauges.get("active.sessions");
         if (gauge != null) {
@@ -99,6 +236,16 @@ public class ApplicationMetrics {
         );
     }
     
+    private Timer getHistogramTimer(String name, String... tags) {
+        String key = name + ":" + String.join(":", tags);
+        return timers.computeIfAbsent(key, k ->
+            Timer.builder(name)
+                .tags(tags)
+                .publishPercentileHistogram()
+                .register(meterRegistry)
+        );
+    }
+
     // Health check methods
     public boolean isDatabaseHealthy() {
         // Check if database errors are below threshold
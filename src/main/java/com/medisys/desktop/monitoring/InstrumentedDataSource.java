@@ -0,0 +1,267 @@
+package com.medisys.desktop.monitoring;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.datasource.DelegatingDataSource;
+
+import javax.sql.DataSource;
+import java.lang.reflect.InvocationHandler;
+import java.lang.reflect.InvocationTargetException;
+import java.lang.reflect.Method;
+import java.lang.reflect.Proxy;
+import java.sql.CallableStatement;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Statement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.regex.Pattern;
+
+/**
+ * Wraps the pooled {@link DataSource} and reports every statement to {@link ApplicationMetrics}:
+ * latency per normalized SQL, rows read per query and how long callers of each workload
+ * class waited for a pooled connection. Statements slower than the threshold are logged
+ * with the shape of their bind parameters (types and array sizes only; values may be
+ * patient data and are never logged).
+ */
+public class InstrumentedDataSource extends DelegatingDataSource implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(InstrumentedDataSource.class);
+
+    // Statements are compile-time constants here, so this only guards against dynamic SQL
+    private static final int MAX_DISTINCT_STATEMENTS = 500;
+    private static final String OTHER_STATEMENT = "other";
+
+    private static final Pattern STRING_LITERAL = Pattern.compile("'(?:[^']|'')*'");
+    private static final Pattern NUMBER_LITERAL = Pattern.compile("\\b\\d+(?:\\.\\d+)?\\b");
+    private static final Pattern WHITESPACE = Pattern.compile("\\s+");
+    private static final Pattern PARAMETER_LIST = Pattern.compile("\\(\\s*\\?(?:\\s*,\\s*\\?)+\\s*\\)");
+
+    private final ApplicationMetrics metrics;
+    private final long slowQueryThresholdNanos;
+    private final ConcurrentHashMap<String, String> normalizedStatements = new ConcurrentHashMap<>();
+
+    public InstrumentedDataSource(DataSource target, ApplicationMetrics metrics, Duration slowQueryThreshold) {
+        super(target);
+        this.metrics = metrics;
+        this.slowQueryThresholdNanos = slowQueryThreshold.toNanos();
+    }
+
+    @Override
+    public Connection getConnection() throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection();
+        metrics.recordConnectionAcquire(RoutingContext.currentWorkload().name().toLowerCase(Locale.ROOT),
+                Duration.ofNanos(System.nanoTime() - start));
+        return wrapConnection(connection);
+    }
+
+    @Override
+    public Connection getConnection(String username, String password) throws SQLException {
+        long start = System.nanoTime();
+        Connection connection = super.getConnection(username, password);
+        metrics.recordConnectionAcquire(RoutingContext.currentWorkload().name().toLowerCase(Locale.ROOT),
+                Duration.ofNanos(System.nanoTime() - start));
+        return wrapConnection(connection);
+    }
+
+    /**
+     * Closes the wrapped pool. A pool that fails to close is logged, not rethrown: this runs
+     * at shutdown, when there is nothing left to do about it.
+     */
+    @Override
+    public void close() {
+        if (getTargetDataSource() instanceof AutoCloseable closeable) {
+            try {
+                closeable.close();
+            } catch (Exception e) {
+                logger.warn("Could not close the connection pool", e);
+            }
+        }
+    }
+
+    /**
+     * Collapses whitespace, replaces literals with {@code ?} and folds parameter lists,
+     * so the same statement always maps to the same metric tag.
+     */
+    static String normalize(String sql) {
+        String normalized = STRING_LITERAL.matcher(sql).replaceAll("?");
+        normalized = NUMBER_LITERAL.matcher(normalized).replaceAll("?");
+        normalized = WHITESPACE.matcher(normalized).replaceAll(" ").trim();
+        return PARAMETER_LIST.matcher(normalized).replaceAll("(?)");
+    }
+
+    private String normalizedTag(String sql) {
+        if (sql == null) {
+            return OTHER_STATEMENT;
+        }
+        String cached = normalizedStatements.get(sql);
+        if (cached != null) {
+            return cached;
+        }
+        String normalized = normalize(sql);
+        if (normalizedStatements.size() < MAX_DISTINCT_STATEMENTS) {
+            normalizedStatements.putIfAbsent(sql, normalized);
+            return normalized;
+        }
+        return OTHER_STATEMENT;
+    }
+
+    private static String operationOf(String normalizedSql) {
+        int end = normalizedSql.indexOf(' ');
+        return (end > 0 ? normalizedSql.substring(0, end) : normalizedSql).toLowerCase(Locale.ROOT);
+    }
+
+    private Connection wrapConnection(Connection connection) {
+        return (Connection) Proxy.newProxyInstance(Connection.class.getClassLoader(),
+                new Class<?>[]{Connection.class}, new ConnectionHandler(connection));
+    }
+
+    private static Object invoke(Object target, Method method, Object[] args) throws Throwable {
+        try {
+            return method.invoke(target, args);
+        } catch (InvocationTargetException e) {
+            throw e.getCause();
+        }
+    }
+
+    private final class ConnectionHandler implements InvocationHandler {
+        private final Connection target;
+
+        private ConnectionHandler(Connection target) {
+            this.target = target;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedDataSource.invoke(target, method, args);
+            String name = method.getName();
+            if (result instanceof Statement statement
+                    && (name.equals("createStatement") || name.equals("prepareStatement") || name.equals("prepareCall"))) {
+                String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : null;
+                Class<?> type = result instanceof CallableStatement ? CallableStatement.class
+                        : result instanceof PreparedStatement ? PreparedStatement.class : Statement.class;
+                return Proxy.newProxyInstance(Connection.class.getClassLoader(), new Class<?>[]{type},
+                        new StatementHandler(statement, (Connection) proxy, sql));
+            }
+            return result;
+        }
+    }
+
+    private final class StatementHandler implements InvocationHandler {
+        private final Statement target;
+        private final Connection connection;
+        private final String preparedSql;
+        private final List<String> parameterShapes = new ArrayList<>();
+        private int batchSize;
+
+        private StatementHandler(Statement target, Connection connection, String preparedSql) {
+            this.target = target;
+            this.connection = connection;
+            this.preparedSql = preparedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            String name = method.getName();
+            if (name.startsWith("execute")) {
+                return execute(method, args);
+            }
+            if (name.startsWith("set") && args != null && args.length >= 2 && args[0] instanceof Integer index) {
+                recordParameterShape(index, name.equals("setNull") ? null : args[1]);
+            } else if (name.equals("clearParameters")) {
+                parameterShapes.clear();
+            } else if (name.equals("addBatch")) {
+                batchSize++;
+            } else if (name.equals("clearBatch")) {
+                batchSize = 0;
+            } else if (name.equals("getConnection")) {
+                return connection;
+            } else if (name.equals("getResultSet")) {
+                ResultSet resultSet = (ResultSet) InstrumentedDataSource.invoke(target, method, args);
+                return resultSet != null ? wrapResultSet(resultSet, normalizedTag(preparedSql)) : null;
+            }
+            return InstrumentedDataSource.invoke(target, method, args);
+        }
+
+        private Object execute(Method method, Object[] args) throws Throwable {
+            String sql = args != null && args.length > 0 && args[0] instanceof String s ? s : preparedSql;
+            String normalized = normalizedTag(sql);
+            String operation = operationOf(normalized);
+            boolean failed = true;
+            long start = System.nanoTime();
+            try {
+                Object result = InstrumentedDataSource.invoke(target, method, args);
+                failed = false;
+                return result instanceof ResultSet resultSet ? wrapResultSet(resultSet, normalized) : result;
+            } finally {
+                long elapsed = System.nanoTime() - start;
+                metrics.recordStatement(normalized, operation, Duration.ofNanos(elapsed), failed);
+                if (elapsed >= slowQueryThresholdNanos) {
+                    metrics.recordSlowQuery(operation);
+                    logger.warn("Slow query ({} ms{}): {} | params {}{}", elapsed / 1_000_000,
+                            failed ? ", failed" : "", normalized, parameterShapes,
+                            batchSize > 0 ? " | batch " + batchSize : "");
+                }
+                batchSize = 0;
+            }
+        }
+
+        private void recordParameterShape(int index, Object value) {
+            while (parameterShapes.size() < index) {
+                parameterShapes.add("?");
+            }
+            parameterShapes.set(index - 1, shapeOf(value));
+        }
+
+        private ResultSet wrapResultSet(ResultSet resultSet, String normalizedSql) {
+            return (ResultSet) Proxy.newProxyInstance(ResultSet.class.getClassLoader(),
+                    new Class<?>[]{ResultSet.class}, new ResultSetHandler(resultSet, normalizedSql));
+        }
+    }
+
+    private static String shapeOf(Object value) {
+        if (value == null) {
+            return "null";
+        }
+        if (value instanceof Object[] array) {
+            return value.getClass().getComponentType().getSimpleName() + "[" + array.length + "]";
+        }
+        if (value instanceof java.sql.Array) {
+            return "Array";
+        }
+        return value.getClass().getSimpleName();
+    }
+
+    private final class ResultSetHandler implements InvocationHandler {
+        private final ResultSet target;
+        private final String normalizedSql;
+        private long rows;
+        private boolean closed;
+
+        private ResultSetHandler(ResultSet target, String normalizedSql) {
+            this.target = target;
+            this.normalizedSql = normalizedSql;
+        }
+
+        @Override
+        public Object invoke(Object proxy, Method method, Object[] args) throws Throwable {
+            Object result = InstrumentedDataSource.invoke(target, method, args);
+            String name = method.getName();
+            if (name.equals("next")) {
+                if (Boolean.TRUE.equals(result)) {
+                    rows++;
+                }
+            } else if (name.equals("close") && !closed) {
+                closed = true;
+                metrics.recordRowsReturned(normalizedSql, rows);
+            }
+            return result;
+        }
+    }
+}
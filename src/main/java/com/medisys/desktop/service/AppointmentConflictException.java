@@ -0,0 +1,18 @@
+package com.medisys.desktop.service;
+
+import org.springframework.dao.DataIntegrityViolationException;
+
+/**
+ * The requested time overlaps a live booking of the same doctor.
+ */
+public class AppointmentConflictException extends DataIntegrityViolationException {
+    private static final long serialVersionUID = 1L;
+
+    public AppointmentConflictException(String msg) {
+        super(msg);
+    }
+
+    public AppointmentConflictException(String msg, Throwable cause) {
+        super(msg, cause);
+    }
+}
@@ -0,0 +1,210 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.Appointment;
+import com.medisys.desktop.model.Doctor;
+import org.springframework.dao.DataIntegrityViolationException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.SQLException;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Books appointments against each doctor's consulting hours.
+ *
+ * Free-slot queries and double-booking checks run against an in-memory
+ * {@link DoctorSchedule} per doctor, loaded on first use and reloaded once it is older than
+ * {@link #SCHEDULE_MAX_AGE}. Clerks on this workstation are serialized per doctor by
+ * locking that schedule. Clerks on other workstations are not, so the exclusion constraint
+ * on the appointments table decides the race. A booking it rejects raises
+ * {@link AppointmentConflictException}, and that doctor's schedule is reloaded so the next
+ * offer is accurate.
+ */
+public class AppointmentService {
+    static final Duration SCHEDULE_MAX_AGE = Duration.ofSeconds(30);
+    // PostgreSQL SQLSTATE for exclusion_violation
+    private static final String EXCLUSION_VIOLATION = "23P01";
+
+    private static final RowMapper<Appointment> APPOINTMENT_ROW_MAPPER = (rs, rowNum) -> {
+        Appointment a = new Appointment();
+        a.setId(rs.getLong("id"));
+        a.setPatientId(rs.getLong("patient_id"));
+        a.setDoctorId(rs.getLong("doctor_id"));
+        a.setStartTime(rs.getTimestamp("start_time").toLocalDateTime());
+        a.setEndTime(rs.getTimestamp("end_time").toLocalDateTime());
+        a.setAppointmentType(rs.getString("appointment_type"));
+        a.setStatus(rs.getString("status"));
+        a.setNotes(rs.getString("notes"));
+        a.setCreatedBy(rs.getObject("created_by", Long.class));
+        return a;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final HiLoIdAllocator appointmentIds;
+    private final ConcurrentHashMap<Long, DoctorSchedule> schedules = new ConcurrentHashMap<>();
+    private final ChangeWriter writer;
+
+    public AppointmentService(JdbcTemplate jdbcTemplate, AuditService auditService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+        this.writer = new ChangeWriter("Appointment", auditService);
+        this.appointmentIds = new HiLoIdAllocator(jdbcTemplate, "appointments_id_seq");
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    /**
+     * The next {@code count} free slots of {@code length} with the doctor, from {@code from}
+     * on (never in the past).
+     */
+    public List<LocalDateTime> findFreeSlots(Long doctorId, LocalDateTime from, int count, Duration length) {
+        LocalDateTime now = LocalDateTime.now();
+        DoctorSchedule schedule = scheduleFor(doctorId);
+        synchronized (schedule) {
+            return schedule.nextFreeSlots(from.isBefore(now) ? now : from, count, length);
+        }
+    }
+
+    public boolean isAvailable(Long doctorId, LocalDateTime start, LocalDateTime end) {
+        DoctorSchedule schedule = scheduleFor(doctorId);
+        synchronized (schedule) {
+            return schedule.getHours().covers(start, end) && schedule.isFree(start, end);
+        }
+    }
+
+    /**
+     * Books the appointment.
+     *
+     * @throws IllegalArgumentException     if it is in the past or outside the doctor's consulting hours
+     * @throws AppointmentConflictException if the doctor is already booked for part of that time
+     */
+    public Appointment bookAppointment(Appointment appointment, Long userId) {
+        LocalDateTime start = appointment.getStartTime();
+        LocalDateTime end = appointment.getEndTime();
+        if (!end.isAfter(start) || start.isBefore(LocalDateTime.now())) {
+            throw new IllegalArgumentException("Appointments must end after they start and cannot be in the past");
+        }
+
+        DoctorSchedule schedule = scheduleFor(appointment.getDoctorId());
+        synchronized (schedule) {
+            if (!schedule.getHours().covers(start, end)) {
+                throw new IllegalArgumentException("Doctor " + appointment.getDoctorId()
+                        + " does not consult at " + start);
+            }
+            if (!schedule.isFree(start, end)) {
+                throw new AppointmentConflictException("Doctor " + appointment.getDoctorId()
+                        + " is already booked between " + start + " and " + end);
+            }
+
+            appointment.setId(appointmentIds.next());
+            appointment.setStatus(Appointment.SCHEDULED);
+            appointment.setCreatedBy(userId);
+            try {
+                writer.inTransaction(() -> {
+                    String sql = "INSERT INTO appointments (id, patient_id, doctor_id, start_time, end_time, " +
+                            "appointment_type, status, notes, created_by) VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?)";
+                    jdbcTemplate.update(sql, appointment.getId(), appointment.getPatientId(), appointment.getDoctorId(),
+                            Timestamp.valueOf(start), Timestamp.valueOf(end), appointment.getAppointmentType(),
+                            appointment.getStatus(), appointment.getNotes(), userId);
+                    writer.publish(ChangeType.CREATE, "BOOK_APPOINTMENT", appointment.getId(), userId, 1,
+                            appointment.getAppointmentDate(), 0);
+                    return null;
+                });
+            } catch (DataIntegrityViolationException e) {
+                if (e.getMostSpecificCause() instanceof SQLException sqlException
+                        && EXCLUSION_VIOLATION.equals(sqlException.getSQLState())) {
+                    // Booked from another workstation since the schedule was loaded
+                    schedules.remove(appointment.getDoctorId(), schedule);
+                    throw new AppointmentConflictException("Doctor " + appointment.getDoctorId()
+                            + " was just booked between " + start + " and " + end, e);
+                }
+                throw e;
+            }
+            schedule.book(start, end);
+        }
+        return appointment;
+    }
+
+    public void cancelAppointment(Long id, Long userId) {
+        String sql = "UPDATE appointments SET status = ? WHERE id = ? AND status <> ? RETURNING doctor_id, start_time";
+        Appointment cancelled = writer.inTransaction(() -> {
+            Appointment a = DataAccessUtils.singleResult(jdbcTemplate.query(sql, (rs, rowNum) -> {
+                Appointment row = new Appointment();
+                row.setDoctorId(rs.getLong("doctor_id"));
+                row.setStartTime(rs.getTimestamp("start_time").toLocalDateTime());
+                return row;
+            }, Appointment.CANCELLED, id, Appointment.CANCELLED));
+            if (a != null) {
+                // The slot leaves the schedule, so statistics count it as a removed booking
+                writer.publish(ChangeType.DELETE, "CANCEL_APPOINTMENT", id, userId, 1, a.getAppointmentDate(), 0);
+            }
+            return a;
+        });
+
+        if (cancelled != null) {
+            DoctorSchedule schedule = schedules.get(cancelled.getDoctorId());
+            if (schedule != null) {
+                synchronized (schedule) {
+                    schedule.release(cancelled.getStartTime());
+                }
+            }
+        }
+    }
+
+    public List<Appointment> getAppointments(Long doctorId, LocalDate day, Long userId) {
+        String sql = "SELECT * FROM appointments WHERE doctor_id = ? AND start_time >= ? AND start_time < ? " +
+                "ORDER BY start_time";
+        List<Appointment> appointments = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, APPOINTMENT_ROW_MAPPER,
+                doctorId, Timestamp.valueOf(day.atStartOfDay()), Timestamp.valueOf(day.plusDays(1).atStartOfDay())));
+
+        auditService.logAction(userId, "LIST_APPOINTMENTS", "Appointment", null);
+        return appointments;
+    }
+
+    // Loaded outside the map, since compute would hold the bin lock through the queries. A
+    // schedule that was installed or dropped meanwhile is looked at again.
+    private DoctorSchedule scheduleFor(Long doctorId) {
+        while (true) {
+            DoctorSchedule current = schedules.get(doctorId);
+            if (current != null && !current.isOlderThan(SCHEDULE_MAX_AGE)) {
+                return current;
+            }
+            DoctorSchedule loaded = loadSchedule(doctorId);
+            boolean installed = current == null
+                    ? schedules.putIfAbsent(doctorId, loaded) == null
+                    : schedules.replace(doctorId, current, loaded);
+            if (installed) {
+                return loaded;
+            }
+        }
+    }
+
+    // Read from the primary: a lagging replica could offer a slot that was just taken
+    private DoctorSchedule loadSchedule(Long doctorId) {
+        Doctor doctor = DataAccessUtils.requiredSingleResult(
+                jdbcTemplate.query("SELECT * FROM doctors WHERE id = ?", DoctorService.DOCTOR_EXTRACTOR, doctorId));
+        DoctorSchedule schedule = new DoctorSchedule(DoctorSchedule.WorkingHours.of(doctor));
+        String sql = "SELECT start_time, end_time FROM appointments WHERE doctor_id = ? AND status <> ? AND end_time > ?";
+        jdbcTemplate.query(sql, rs -> {
+            schedule.book(rs.getTimestamp("start_time").toLocalDateTime(), rs.getTimestamp("end_time").toLocalDateTime());
+        }, doctorId, Appointment.CANCELLED, Timestamp.valueOf(LocalDate.now().atStartOfDay()));
+        return schedule;
+    }
+}
@@ -0,0 +1,281 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.AuditLog;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.Instant;
+import java.time.LocalDateTime;
+import java.time.ZoneId;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.stream.Stream;
+import java.util.zip.CRC32C;
+
+/**
+ * Local append-only audit journal made of fixed-size, memory-mapped segment files.
+ *
+ * Appending copies one CRC-protected record into the mapped page cache, so it costs
+ * microseconds and survives the database being slow or down (and the process crashing).
+ * {@link AuditJournalReplayer} ships the records to audit_logs and deletes segments once
+ * every record in them has been acknowledged.
+ *
+ * Segment layout: 16-byte header (magic, version, shipped offset), then records of
+ * [int length][int crc32c][payload]; a zero length marks the end of written data.
+ */
+public class AuditJournal implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AuditJournal.class);
+
+    static final int MAGIC = 0x4D534A31; // "MSJ1"
+    static final int VERSION = 1;
+    static final int HEADER_SIZE = 16;
+    static final int SHIPPED_OFFSET_POSITION = 8;
+    static final int RECORD_HEADER_SIZE = 8;
+    private static final long NULL_ID = Long.MIN_VALUE;
+    private static final int MAX_TEXT_BYTES = 1024;
+
+    private final Path directory;
+    private final int segmentSize;
+    private final byte[] scratch;
+    private final ByteBuffer scratchBuffer;
+    private final CRC32C crc = new CRC32C();
+
+    private Segment active;
+    private long nextSegmentNumber;
+
+    public AuditJournal(Path directory, int segmentSize) {
+        if (segmentSize < HEADER_SIZE + RECORD_HEADER_SIZE + 4 * MAX_TEXT_BYTES) {
+            throw new IllegalArgumentException("segmentSize too small: " + segmentSize);
+        }
+        this.directory = directory;
+        this.segmentSize = segmentSize;
+        this.scratch = new byte[3 * Long.BYTES + 2 * (Short.BYTES + MAX_TEXT_BYTES)];
+        this.scratchBuffer = ByteBuffer.wrap(scratch);
+        try {
+            Files.createDirectories(directory);
+            List<Path> existing = listSegments();
+            nextSegmentNumber = existing.isEmpty() ? 0 : segmentNumber(existing.get(existing.size() - 1)) + 1;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot open audit journal in " + directory, e);
+        }
+        // Segments left by a previous run stay sealed and are shipped by the replayer
+        this.active = openSegment(nextSegmentNumber++);
+    }
+
+    /**
+     * Appends one audit record. Thread-safe.
+     */
+    public synchronized void append(Long userId, String action, String entityType, Long entityId, long timestampMillis) {
+        scratchBuffer.clear();
+        scratchBuffer.putLong(timestampMillis);
+        scratchBuffer.putLong(userId != null ? userId : NULL_ID);
+        scratchBuffer.putLong(entityId != null ? entityId : NULL_ID);
+        putText(action);
+        putText(entityType);
+        int length = scratchBuffer.position();
+
+        crc.reset();
+        crc.update(scratch, 0, length);
+
+        if (active.writePosition + RECORD_HEADER_SIZE + length > segmentSize) {
+            rotate();
+        }
+        if (active.writePosition == HEADER_SIZE) {
+            active.firstRecordNanos = System.nanoTime();
+        }
+        MappedByteBuffer buffer = active.buffer;
+        int position = active.writePosition;
+        buffer.putInt(position + 4, (int) crc.getValue());
+        buffer.put(position + RECORD_HEADER_SIZE, scratch, 0, length);
+        // Length last: a record is only visible once it is complete
+        buffer.putInt(position, length);
+        active.writePosition = position + RECORD_HEADER_SIZE + length;
+    }
+
+    /**
+     * Seals the active segment if it holds records, so the replayer can ship and delete it.
+     */
+    public synchronized void sealActiveSegment() {
+        if (active.writePosition > HEADER_SIZE) {
+            rotate();
+        }
+    }
+
+    /**
+     * Seals the active segment if it is at least {@code fillRatio} full or its first record was
+     * appended {@code maxAge} ago or more. Returns whether it was sealed.
+     */
+    public synchronized boolean sealActiveSegment(double fillRatio, Duration maxAge) {
+        if (active.writePosition == HEADER_SIZE) {
+            return false;
+        }
+        if (active.writePosition < fillRatio * segmentSize
+                && System.nanoTime() - active.firstRecordNanos < maxAge.toNanos()) {
+            return false;
+        }
+        rotate();
+        return true;
+    }
+
+    /**
+     * Forces mapped pages of the active segment to disk.
+     */
+    public synchronized void force() {
+        active.buffer.force();
+    }
+
+    /**
+     * Sealed segment files, oldest first (the active segment is excluded).
+     */
+    public synchronized List<Path> sealedSegments() {
+        try {
+            List<Path> sealed = new ArrayList<>(listSegments());
+            sealed.remove(active.path);
+            return sealed;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot list audit journal segments", e);
+        }
+    }
+
+    @Override
+    public synchronized void close() {
+        active.buffer.force();
+    }
+
+    /**
+     * Reads the records of a sealed segment past its shipped offset, stopping at the end
+     * marker or at the first record whose checksum does not match (a torn write).
+     */
+    static List<Entry> readUnshipped(ByteBuffer segment) {
+        List<Entry> entries = new ArrayList<>();
+        if (segment.getInt(0) != MAGIC) {
+            logger.warn("Audit journal segment has an unknown header; skipping it");
+            return entries;
+        }
+        CRC32C checksum = new CRC32C();
+        int limit = segment.capacity();
+        int position = segment.getInt(SHIPPED_OFFSET_POSITION);
+        while (position + RECORD_HEADER_SIZE <= limit) {
+            int length = segment.getInt(position);
+            if (length <= 0 || position + RECORD_HEADER_SIZE + length > limit) {
+                break;
+            }
+            byte[] payload = new byte[length];
+            segment.get(position + RECORD_HEADER_SIZE, payload);
+            checksum.reset();
+            checksum.update(payload);
+            if ((int) checksum.getValue() != segment.getInt(position + 4)) {
+                logger.warn("Audit journal record at offset {} failed its checksum; ignoring the rest of the segment", position);
+                break;
+            }
+            position += RECORD_HEADER_SIZE + length;
+            entries.add(new Entry(decode(ByteBuffer.wrap(payload)), position));
+        }
+        return entries;
+    }
+
+    /**
+     * Marks everything before {@code offset} as shipped, so a restart does not resend it.
+     */
+    static void markShipped(MappedByteBuffer segment, int offset) {
+        segment.putInt(SHIPPED_OFFSET_POSITION, offset);
+        segment.force();
+    }
+
+    private static AuditLog decode(ByteBuffer payload) {
+        long timestampMillis = payload.getLong();
+        long userId = payload.getLong();
+        long entityId = payload.getLong();
+        String action = getText(payload);
+        String entityType = getText(payload);
+        return new AuditLog(null, userId == NULL_ID ? null : userId, action, entityType,
+                entityId == NULL_ID ? null : entityId,
+                LocalDateTime.ofInstant(Instant.ofEpochMilli(timestampMillis), ZoneId.systemDefault()));
+    }
+
+    private void putText(String value) {
+        if (value == null) {
+            scratchBuffer.putShort((short) -1);
+            return;
+        }
+        byte[] bytes = value.getBytes(StandardCharsets.UTF_8);
+        int length = Math.min(bytes.length, MAX_TEXT_BYTES);
+        scratchBuffer.putShort((short) length);
+        scratchBuffer.put(bytes, 0, length);
+    }
+
+    private static String getText(ByteBuffer payload) {
+        short length = payload.getShort();
+        if (length < 0) {
+            return null;
+        }
+        byte[] bytes = new byte[length];
+        payload.get(bytes);
+        return new String(bytes, StandardCharsets.UTF_8);
+    }
+
+    private void rotate() {
+        active.buffer.force();
+        active = openSegment(nextSegmentNumber++);
+    }
+
+    private Segment openSegment(long number) {
+        Path path = directory.resolve(String.format("audit-%020d.seg", number));
+        try (FileChannel channel = FileChannel.open(path, StandardOpenOption.CREATE_NEW,
+                StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, segmentSize);
+            buffer.putInt(0, MAGIC);
+            buffer.putInt(4, VERSION);
+            buffer.putInt(SHIPPED_OFFSET_POSITION, HEADER_SIZE);
+            return new Segment(path, buffer);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot create audit journal segment " + path, e);
+        }
+    }
+
+    private List<Path> listSegments() throws IOException {
+        try (Stream<Path> files = Files.list(directory)) {
+            return files.filter(p -> p.getFileName().toString().matches("audit-\\d{20}\\.seg")).sorted().toList();
+        }
+    }
+
+    private static long segmentNumber(Path segment) {
+        String name = segment.getFileName().toString();
+        return Long.parseLong(name.substring("audit-".length(), name.length() - ".seg".length()));
+    }
+
+    /**
+     * A decoded record and the segment offset just past it.
+     */
+    static final class Entry {
+        final AuditLog auditLog;
+        final int endOffset;
+
+        Entry(AuditLog auditLog, int endOffset) {
+            this.auditLog = auditLog;
+            this.endOffset = endOffset;
+        }
+    }
+
+    private static final class Segment {
+        private final Path path;
+        private final MappedByteBuffer buffer;
+        private int writePosition = HEADER_SIZE;
+        private long firstRecordNanos;
+
+        private Segment(Path path, MappedByteBuffer buffer) {
+            this.path = path;
+            this.buffer = buffer;
+        }
+    }
+}
@@ -0,0 +1,139 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.model.AuditLog;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+
+import java.io.IOException;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardOpenOption;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Ships {@link AuditJournal} segments to audit_logs in JDBC batches and deletes each
+ * segment once all of its records are in the database.
+ *
+ * The shipped offset in the segment header is advanced after every batch, so a crash or
+ * a database outage mid-segment resends at most one batch. While the database is down,
+ * nothing is sealed and the active segment keeps filling; shipping resumes on the first
+ * tick after it comes back.
+ *
+ * The active segment is sealed only once it is 80% full or its first record is
+ * {@code sealAfter} (30 s by default) old, not on every tick: each seal maps a new segment file, and
+ * a quiet workstation would otherwise create and delete one every second.
+ */
+public class AuditJournalReplayer implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AuditJournalReplayer.class);
+    static final double SEAL_FILL_RATIO = 0.8;
+    private static final Duration SEAL_AFTER = Duration.ofSeconds(30);
+
+    private final AuditJournal journal;
+    private final AuditService auditService;
+    private final ApplicationMetrics metrics;
+    private final int batchSize;
+    private final long pollIntervalMillis;
+    private final Duration sealAfter;
+    private final ScheduledExecutorService scheduler;
+
+    public AuditJournalReplayer(AuditJournal journal, AuditService auditService, ApplicationMetrics metrics,
+                                int batchSize, long pollIntervalMillis) {
+        this(journal, auditService, metrics, batchSize, pollIntervalMillis, SEAL_AFTER);
+    }
+
+    /**
+     * @param sealAfter how long a record may wait in the active segment before it is sealed and shipped
+     */
+    public AuditJournalReplayer(AuditJournal journal, AuditService auditService, ApplicationMetrics metrics,
+                                int batchSize, long pollIntervalMillis, Duration sealAfter) {
+        this.journal = journal;
+        this.auditService = auditService;
+        this.metrics = metrics;
+        this.batchSize = batchSize;
+        this.pollIntervalMillis = pollIntervalMillis;
+        this.sealAfter = sealAfter;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(() -> RoutingContext.runAs(WorkloadClass.AUDIT, r), "Audit-Journal-Replayer");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::replay, 0, pollIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Audit journal replayer started: batch size {}, polling every {} ms", batchSize, pollIntervalMillis);
+    }
+
+    /**
+     * Ships every pending segment, then seals and ships the active one if it is full or old
+     * enough. Returns the number of records written to the database.
+     */
+    public int replay() {
+        int shipped = 0;
+        try {
+            for (Path segment : journal.sealedSegments()) {
+                shipped += ship(segment);
+            }
+            if (journal.sealActiveSegment(SEAL_FILL_RATIO, sealAfter)) {
+                for (Path segment : journal.sealedSegments()) {
+                    shipped += ship(segment);
+                }
+            }
+        } catch (Exception e) {
+            logger.warn("Audit journal replay stopped; pending records will be retried", e);
+            metrics.recordError("audit_journal");
+        }
+        metrics.updateAuditJournalBacklog(journal.sealedSegments().size());
+        return shipped;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdown();
+        try {
+            scheduler.awaitTermination(5, TimeUnit.SECONDS);
+        } catch (InterruptedException e) {
+            Thread.currentThread().interrupt();
+        }
+    }
+
+    private int ship(Path segment) throws IOException {
+        MappedByteBuffer buffer;
+        try (FileChannel channel = FileChannel.open(segment, StandardOpenOption.READ, StandardOpenOption.WRITE)) {
+            buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, channel.size());
+        }
+
+        List<AuditJournal.Entry> entries = AuditJournal.readUnshipped(buffer);
+        for (int from = 0; from < entries.size(); from += batchSize) {
+            List<AuditJournal.Entry> batch = entries.subList(from, Math.min(from + batchSize, entries.size()));
+            List<AuditLog> auditLogs = new ArrayList<>(batch.size());
+            for (AuditJournal.Entry entry : batch) {
+                auditLogs.add(entry.auditLog);
+            }
+            auditService.logActions(auditLogs);
+            AuditJournal.markShipped(buffer, batch.get(batch.size() - 1).endOffset);
+            metrics.recordAuditJournalShipped(auditLogs.size(),
+                    Duration.between(auditLogs.get(0).getTimestamp(), LocalDateTime.now()));
+        }
+
+        try {
+            Files.delete(segment);
+        } catch (IOException e) {
+            // Some platforms refuse to delete a file that is still mapped; the segment is
+            // fully shipped, so the next tick just retries the delete
+            logger.debug("Could not delete shipped audit journal segment {} yet", segment, e);
+        }
+        return entries.size();
+    }
+}
@@ -0,0 +1,146 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import org.postgresql.PGConnection;
+import org.postgresql.copy.CopyManager;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.nio.file.StandardCopyOption;
+import java.time.LocalDate;
+import java.time.YearMonth;
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+import java.util.zip.GZIPOutputStream;
+
+/**
+ * Maintains the monthly audit_logs partitions: creates upcoming months ahead of time and
+ * archives partitions past the retention window to gzip'd CSV files before dropping them.
+ */
+public class AuditPartitionService implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(AuditPartitionService.class);
+    private static final Pattern PARTITION_NAME = Pattern.compile("audit_logs_y(\\d{4})m(\\d{2})");
+
+    private final JdbcTemplate jdbcTemplate;
+    private final Path archiveDirectory;
+    private final int retentionMonths;
+    private final int monthsAhead;
+    private final ScheduledExecutorService scheduler;
+
+    public AuditPartitionService(JdbcTemplate jdbcTemplate, Path archiveDirectory, int retentionMonths, int monthsAhead) {
+        if (retentionMonths < 1) {
+            throw new IllegalArgumentException("retentionMonths must be at least 1");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.archiveDirectory = archiveDirectory;
+        this.retentionMonths = retentionMonths;
+        this.monthsAhead = monthsAhead;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(() -> RoutingContext.runAs(WorkloadClass.BACKGROUND, r), "Audit-Partitions");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void start() {
+        scheduler.scheduleWithFixedDelay(this::runMaintenance, 0, 6, TimeUnit.HOURS);
+    }
+
+    public void runMaintenance() {
+        try {
+            ensureUpcomingPartitions(YearMonth.now());
+            archiveExpiredPartitions(YearMonth.now());
+        } catch (Exception e) {
+            logger.error("Audit partition maintenance failed", e);
+        }
+    }
+
+    public void ensureUpcomingPartitions(YearMonth currentMonth) {
+        for (int i = 0; i <= monthsAhead; i++) {
+            LocalDate month = currentMonth.plusMonths(i).atDay(1);
+            jdbcTemplate.queryForObject("SELECT audit_logs_ensure_partition(?)", String.class, java.sql.Date.valueOf(month));
+        }
+    }
+
+    /**
+     * Archives and drops every monthly partition older than the retention window.
+     * Returns the archive files written.
+     */
+    public List<Path> archiveExpiredPartitions(YearMonth currentMonth) {
+        YearMonth oldestKept = currentMonth.minusMonths(retentionMonths - 1L);
+        List<Path> archives = new ArrayList<>();
+        for (Map.Entry<String, Boolean> partition : listMonthlyPartitions().entrySet()) {
+            Matcher matcher = PARTITION_NAME.matcher(partition.getKey());
+            if (!matcher.matches()) {
+                continue;
+            }
+            YearMonth month = YearMonth.of(Integer.parseInt(matcher.group(1)), Integer.parseInt(matcher.group(2)));
+            if (month.isBefore(oldestKept)) {
+                archives.add(archivePartition(partition.getKey(), partition.getValue()));
+            }
+        }
+        return archives;
+    }
+
+    // Monthly tables by name -> still attached; a table left detached by an interrupted
+    // archive run is picked up again on the next run.
+    private Map<String, Boolean> listMonthlyPartitions() {
+        String sql = "SELECT relname, relispartition FROM pg_class " +
+                "WHERE relkind = 'r' AND relname ~ '^audit_logs_y[0-9]{4}m[0-9]{2}$' ORDER BY relname";
+        Map<String, Boolean> partitions = new LinkedHashMap<>();
+        jdbcTemplate.query(sql, rs -> {
+            partitions.put(rs.getString("relname"), rs.getBoolean("relispartition"));
+        });
+        return partitions;
+    }
+
+    private Path archivePartition(String partition, boolean attached) {
+        // Detach first so new writes can never land in a table that is being archived
+        if (attached) {
+            jdbcTemplate.execute("ALTER TABLE audit_logs DETACH PARTITION " + partition);
+        }
+
+        Path target = archiveDirectory.resolve(partition + ".csv.gz");
+        Path temporary = archiveDirectory.resolve(partition + ".csv.gz.tmp");
+        long rows = jdbcTemplate.execute((ConnectionCallback<Long>) connection -> {
+            CopyManager copyManager = connection.unwrap(PGConnection.class).getCopyAPI();
+            try {
+                Files.createDirectories(archiveDirectory);
+                try (OutputStream out = new GZIPOutputStream(Files.newOutputStream(temporary))) {
+                    return copyManager.copyOut("COPY " + partition + " TO STDOUT WITH (FORMAT csv, HEADER)", out);
+                }
+            } catch (IOException e) {
+                throw new UncheckedIOException("Failed to archive " + partition, e);
+            }
+        });
+        try {
+            Files.move(temporary, target, StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to finalize archive " + target, e);
+        }
+
+        jdbcTemplate.execute("DROP TABLE " + partition);
+        logger.info("Archived audit partition {} ({} rows) to {}", partition, rows, target);
+        return target;
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+}
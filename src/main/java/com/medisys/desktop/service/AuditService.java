@@ -1,24 +1,95 @@
 package com.medisys.desktop.service;
 
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.model.AuditLog;
 import org.slf4j.Logger;
 import org.slf4j.LoggerFactory;
 import org.springframework.jdbc.core.JdbcTemplate;
 
+import java.sql.Timestamp;
 import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
 
 public class AuditService {
     private static final Logger logger = LoggerFactory.getLogger(AuditService.class);
     private final JdbcTemplate jdbcTemplate;
+    private AuditJournal journal;
 
     public AuditService(JdbcTemplate jdbcTemplate) {
         this.jdbcTemplate = jdbcTemplate;
     }
 
+    /**
+     * Routes {@link #logAction} through the local journal; {@link AuditJournalReplayer}
+     * then ships the records to audit_logs.
+     */
+    public void setJournal(AuditJournal journal) {
+        this.journal = journal;
+    }
+
     public void logAction(Long userId, String action, String entityType, Long entityId) {
+        if (journal != null) {
+            try {
+                journal.append(userId, action, entityType, entityId, System.currentTimeMillis());
+                logger.debug("Audit journaled: userId={}, action={}, entityType={}, entityId={}", userId, action, entityType, entityId);
+                return;
+            } catch (RuntimeException e) {
+                logger.warn("Audit journal append failed, writing to the database directly", e);
+            }
+        }
         String sql = "INSERT INTO audit_logs (user_id, action, entity_type, entity_id, timestamp) VALUES (?, ?, ?, ?, ?)";
-        jdbcTemplate.update(sql, userId, action, entityType, entityId, LocalDateTime.now());
+        RoutingContext.as(WorkloadClass.AUDIT, () -> jdbcTemplate.update(sql, userId, action, entityType, entityId, LocalDateTime.now()));
 
         // Also log to console/file for debugging
         logger.info("Audit: userId={}, action={}, entityType={}, entityId={}", userId, action, entityType, entityId);
     }
+
+    /**
+     * Audit records in [from, to), newest first. The timestamp range lets PostgreSQL prune
+     * to the monthly partitions it covers; entityType / entityId are optional filters.
+     */
+    public List<AuditLog> findAuditLogs(LocalDateTime from, LocalDateTime to, String entityType, Long entityId, int limit) {
+        StringBuilder sql = new StringBuilder(
+                "SELECT id, user_id, action, entity_type, entity_id, timestamp FROM audit_logs WHERE timestamp >= ? AND timestamp < ?");
+        List<Object> params = new ArrayList<>(List.of(Timestamp.valueOf(from), Timestamp.valueOf(to)));
+        if (entityType != null) {
+            sql.append(" AND entity_type = ?");
+            params.add(entityType);
+        }
+        if (entityId != null) {
+            sql.append(" AND entity_id = ?");
+            params.add(entityId);
+        }
+        sql.append(" ORDER BY timestamp DESC LIMIT ?");
+        params.add(limit);
+
+        return RoutingContext.as(WorkloadClass.REPORTING, () -> jdbcTemplate.query(sql.toString(), (rs, rowNum) -> new AuditLog(
+                rs.getLong("id"),
+                rs.getObject("user_id", Long.class),
+                rs.getString("action"),
+                rs.getString("entity_type"),
+                rs.getObject("entity_id", Long.class),
+                rs.getTimestamp("timestamp").toLocalDateTime()), params.toArray()));
+    }
+
+    /**
+     * Writes several audit records in one JDBC batch, keeping each record's own timestamp.
+     */
+    public void logActions(List<AuditLog> auditLogs) {
+        if (auditLogs.isEmpty()) {
+            return;
+        }
+        String sql = "INSERT INTO audit_logs (user_id, action, entity_type, entity_id, timestamp) VALUES (?, ?, ?, ?, ?)";
+        RoutingContext.as(WorkloadClass.AUDIT, () -> jdbcTemplate.batchUpdate(sql, auditLogs, auditLogs.size(), (ps, log) -> {
+            ps.setObject(1, log.getUserId());
+            ps.setString(2, log.getAction());
+            ps.setString(3, log.getEntityType());
+            ps.setObject(4, log.getEntityId());
+            ps.setTimestamp(5, Timestamp.valueOf(log.getTimestamp() != null ? log.getTimestamp() : LocalDateTime.now()));
+        }));
+
+        logger.info("Audit: {} records written in batch", auditLogs.size());
+    }
 }
\ No newline at end of file
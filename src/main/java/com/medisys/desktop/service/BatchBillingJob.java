@@ -0,0 +1,345 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.model.BillingPartitionProgress;
+import com.medisys.desktop.model.BillingRunReport;
+import com.medisys.desktop.model.Finance;
+import com.medisys.desktop.model.Invoice;
+import com.medisys.desktop.model.InvoiceLine;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.Objects;
+import java.util.concurrent.ConcurrentSkipListMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.ForkJoinTask;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.function.Consumer;
+
+/**
+ * Nightly batch billing: invoices every appointment that has taken place and is not billed yet,
+ * one finance record per patient and department.
+ *
+ * A run splits the unbilled patients into patient-id ranges and bills the ranges in parallel on a
+ * fork/join pool, each range in chunks of {@link #PATIENTS_PER_CHUNK} patients. A chunk is priced
+ * by the {@link BillingEngine} and written in one transaction: the finance rows (batched), the
+ * appointments' links to them, and the range's checkpoint. An interrupted run is resumed by
+ * running the same billing date again; it carries on after each range's checkpoint. Appointments
+ * are only ever billed once, since a chunk locks its range and skips appointments already linked
+ * to a finance record, so runs started on several workstations at once share the work safely.
+ */
+public class BatchBillingJob implements AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BatchBillingJob.class);
+    public static final int PARALLELISM = 4;
+    // More ranges than threads, so one dense patient range does not leave the other threads idle
+    private static final int PARTITIONS_PER_THREAD = 4;
+    static final int PATIENTS_PER_CHUNK = 200;
+    private static final String DEFAULT_TARIFF = "CONSULTATION";
+    private static final String UNBILLED = "finance_id IS NULL AND status <> 'CANCELLED' AND start_time < ?";
+
+    private static final RowMapper<BillingPartitionProgress> PARTITION_ROW_MAPPER = (rs, rowNum) ->
+            new BillingPartitionProgress(rs.getInt("partition_no"), rs.getLong("first_patient_id"),
+                    rs.getLong("last_patient_id"), rs.getObject("checkpoint_patient_id", Long.class),
+                    rs.getInt("invoice_count"), rs.getInt("encounter_count"), rs.getBigDecimal("total_amount"),
+                    "DONE".equals(rs.getString("status")));
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FinanceService financeService;
+    private final BillingEngine billingEngine;
+    private final TariffService tariffService;
+    private final ApplicationMetrics metrics;
+    private final Map<Integer, BillingPartitionProgress> progress = new ConcurrentSkipListMap<>();
+    private final List<Consumer<BillingPartitionProgress>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService scheduler;
+
+    public BatchBillingJob(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                           FinanceService financeService, BillingEngine billingEngine, TariffService tariffService,
+                           ApplicationMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.financeService = financeService;
+        this.billingEngine = billingEngine;
+        this.tariffService = tariffService;
+        this.metrics = metrics;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Batch-Billing");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * Bills the previous day every night at 02:00.
+     */
+    public void start() {
+        LocalDateTime now = LocalDateTime.now();
+        LocalDateTime next = now.toLocalDate().atTime(LocalTime.of(2, 0));
+        if (!next.isAfter(now)) {
+            next = next.plusDays(1);
+        }
+        scheduler.scheduleAtFixedRate(() -> {
+            try {
+                run(LocalDate.now().minusDays(1), null);
+            } catch (Exception e) {
+                // The run keeps its checkpoints; tomorrow's run (or a manual rerun) picks up the rest
+                logger.error("Nightly billing run failed", e);
+                metrics.recordError("billing");
+            }
+        }, Duration.between(now, next).toMillis(), TimeUnit.DAYS.toMillis(1), TimeUnit.MILLISECONDS);
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+    }
+
+    /**
+     * Called with each range's progress after every committed chunk, on the billing thread.
+     */
+    public void addProgressListener(Consumer<BillingPartitionProgress> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeProgressListener(Consumer<BillingPartitionProgress> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Progress of the current (or last) run on this workstation, by range.
+     */
+    public List<BillingPartitionProgress> getProgress() {
+        return new ArrayList<>(progress.values());
+    }
+
+    /**
+     * Bills every unbilled appointment that started before the end of {@code billingDate}, or
+     * resumes the run of that date. A run that already completed is reported as it stands;
+     * appointments recorded late are picked up by the next date's run.
+     */
+    public synchronized BillingRunReport run(LocalDate billingDate, Long userId) {
+        long started = System.nanoTime();
+        Timestamp cutoff = Timestamp.valueOf(billingDate.plusDays(1).atStartOfDay());
+        long runId = RoutingContext.as(WorkloadClass.BATCH, () -> openRun(billingDate, cutoff));
+        List<BillingPartitionProgress> partitions = RoutingContext.as(WorkloadClass.BATCH, () -> jdbcTemplate.query(
+                "SELECT * FROM billing_run_partitions WHERE run_id = ? ORDER BY partition_no", PARTITION_ROW_MAPPER, runId));
+        progress.clear();
+        partitions.forEach(p -> progress.put(p.getPartitionNo(), p));
+
+        AtomicInteger generated = new AtomicInteger();
+        ForkJoinPool pool = new ForkJoinPool(PARALLELISM);
+        try {
+            List<ForkJoinTask<?>> tasks = new ArrayList<>();
+            for (BillingPartitionProgress partition : partitions) {
+                if (!partition.isDone()) {
+                    tasks.add(pool.submit(() -> RoutingContext.runAs(WorkloadClass.BATCH, () ->
+                            generated.addAndGet(billPartition(runId, partition.getPartitionNo(), billingDate, cutoff, userId)))));
+                }
+            }
+            // Let every range finish what it can before reporting a failure
+            RuntimeException failure = null;
+            for (ForkJoinTask<?> task : tasks) {
+                try {
+                    task.join();
+                } catch (RuntimeException e) {
+                    if (failure == null) {
+                        failure = e;
+                    } else {
+                        failure.addSuppressed(e);
+                    }
+                }
+            }
+            if (failure != null) {
+                throw failure;
+            }
+        } finally {
+            pool.shutdown();
+        }
+
+        RoutingContext.runAs(WorkloadClass.BATCH, () -> jdbcTemplate.update(
+                "UPDATE billing_runs SET status = 'DONE', finished_at = CURRENT_TIMESTAMP WHERE id = ? AND status <> 'DONE'",
+                runId));
+        BillingRunReport report = new BillingRunReport(runId, billingDate, getProgress(), generated.get(),
+                Duration.ofNanos(System.nanoTime() - started));
+        logger.info("Billing run {} for {}: {} invoices generated in {} ms ({} invoices/s); run total {} invoices, {}",
+                runId, billingDate, report.getInvoicesGenerated(), report.getElapsed().toMillis(),
+                String.format(Locale.ROOT, "%.0f", report.getInvoicesPerSecond()), report.getInvoiceCount(),
+                report.getTotalAmount().toPlainString());
+        return report;
+    }
+
+    // Creates the run and its patient-id ranges, or returns the existing run of that date
+    private long openRun(LocalDate billingDate, Timestamp cutoff) {
+        Long runId = transactionTemplate.execute(status -> {
+            Long created = jdbcTemplate.query(
+                    "INSERT INTO billing_runs (billing_date) VALUES (?) ON CONFLICT (billing_date) DO NOTHING RETURNING id",
+                    rs -> rs.next() ? rs.getLong(1) : null, java.sql.Date.valueOf(billingDate));
+            if (created == null) {
+                return jdbcTemplate.queryForObject("SELECT id FROM billing_runs WHERE billing_date = ?", Long.class,
+                        java.sql.Date.valueOf(billingDate));
+            }
+
+            Map<String, Object> range = jdbcTemplate.queryForMap(
+                    "SELECT MIN(patient_id) AS first_id, MAX(patient_id) AS last_id FROM appointments WHERE " + UNBILLED,
+                    cutoff);
+            if (range.get("first_id") != null) {
+                long first = ((Number) range.get("first_id")).longValue();
+                long last = ((Number) range.get("last_id")).longValue();
+                List<Object[]> partitions = new ArrayList<>();
+                long size = Math.max(1, (last - first) / (PARALLELISM * PARTITIONS_PER_THREAD) + 1);
+                for (long from = first; from <= last; from += size) {
+                    partitions.add(new Object[]{created, partitions.size(), from, Math.min(last, from + size - 1)});
+                }
+                jdbcTemplate.batchUpdate("INSERT INTO billing_run_partitions (run_id, partition_no, first_patient_id, " +
+                        "last_patient_id) VALUES (?, ?, ?, ?)", partitions);
+            }
+            return created;
+        });
+        return Objects.requireNonNull(runId);
+    }
+
+    // Bills one range chunk by chunk; returns the invoices generated
+    private int billPartition(long runId, int partitionNo, LocalDate billingDate, Timestamp cutoff, Long userId) {
+        int generated = 0;
+        while (true) {
+            long chunkStarted = System.nanoTime();
+            ChunkResult chunk = transactionTemplate.execute(status ->
+                    billChunk(runId, partitionNo, billingDate, cutoff, userId));
+            if (chunk == null) {
+                return generated;
+            }
+            generated += chunk.invoices;
+            progress.put(partitionNo, chunk.progress);
+            metrics.recordBillingChunk(chunk.invoices, Duration.ofNanos(System.nanoTime() - chunkStarted));
+            for (Consumer<BillingPartitionProgress> listener : listeners) {
+                listener.accept(chunk.progress);
+            }
+            if (chunk.progress.isDone()) {
+                return generated;
+            }
+        }
+    }
+
+    private ChunkResult billChunk(long runId, int partitionNo, LocalDate billingDate, Timestamp cutoff, Long userId) {
+        // Locking the range serializes its chunks across workstations, and the checkpoint is read under the lock
+        BillingPartitionProgress partition = jdbcTemplate.queryForObject("SELECT * FROM billing_run_partitions " +
+                "WHERE run_id = ? AND partition_no = ? FOR UPDATE", PARTITION_ROW_MAPPER, runId, partitionNo);
+        if (partition.isDone()) {
+            return null;
+        }
+        long after = partition.getCheckpointPatientId() != null
+                ? partition.getCheckpointPatientId() : partition.getFirstPatientId() - 1;
+
+        // The appointments are locked too, so a run of another date cannot bill them at the same time
+        String sql = "SELECT a.id, a.patient_id, a.appointment_type, d.department_id " +
+                "FROM appointments a JOIN doctors d ON d.id = a.doctor_id " +
+                "WHERE a.patient_id IN (SELECT DISTINCT patient_id FROM appointments " +
+                "    WHERE patient_id > ? AND patient_id <= ? AND " + UNBILLED + " ORDER BY patient_id LIMIT ?) " +
+                "AND a.finance_id IS NULL AND a.status <> 'CANCELLED' AND a.start_time < ? " +
+                "ORDER BY a.patient_id, d.department_id NULLS FIRST, a.id FOR UPDATE OF a";
+        List<Encounter> encounters = jdbcTemplate.query(sql, (rs, rowNum) -> new Encounter(rs.getLong("id"),
+                        rs.getLong("patient_id"), rs.getString("appointment_type"), rs.getObject("department_id", Long.class)),
+                after, partition.getLastPatientId(), cutoff, PATIENTS_PER_CHUNK, cutoff);
+
+        if (encounters.isEmpty()) {
+            BillingPartitionProgress done = jdbcTemplate.queryForObject("UPDATE billing_run_partitions " +
+                    "SET status = 'DONE', updated_at = CURRENT_TIMESTAMP WHERE run_id = ? AND partition_no = ? " +
+                    "RETURNING *", PARTITION_ROW_MAPPER, runId, partitionNo);
+            return new ChunkResult(done, 0);
+        }
+
+        // One invoice per patient and department; rows arrive grouped that way
+        List<Finance> finances = new ArrayList<>();
+        List<Integer> invoiceStarts = new ArrayList<>();
+        BigDecimal chunkTotal = BigDecimal.ZERO;
+        for (int start = 0, end; start < encounters.size(); start = end) {
+            Encounter first = encounters.get(start);
+            List<InvoiceLine> lines = new ArrayList<>();
+            for (end = start; end < encounters.size() && encounters.get(end).sameInvoiceAs(first); end++) {
+                lines.add(new InvoiceLine(tariffCode(encounters.get(end).appointmentType), 1));
+            }
+            Invoice invoice = billingEngine.price(lines, 0);
+            Finance finance = new Finance(null, first.patientId, invoice.getTotalAmount(), "PENDING");
+            finance.setDepartmentId(first.departmentId);
+            // Posted on the billing date, so the revenue rollup attributes it to that day
+            finance.setCreatedDate(billingDate.atStartOfDay());
+            finances.add(finance);
+            invoiceStarts.add(start);
+            chunkTotal = chunkTotal.add(invoice.getTotalAmount());
+        }
+        financeService.createFinances(finances, userId);
+
+        List<Object[]> links = new ArrayList<>(encounters.size());
+        for (int i = 0; i < finances.size(); i++) {
+            int end = i + 1 < invoiceStarts.size() ? invoiceStarts.get(i + 1) : encounters.size();
+            for (int e = invoiceStarts.get(i); e < end; e++) {
+                links.add(new Object[]{finances.get(i).getId(), encounters.get(e).id});
+            }
+        }
+        jdbcTemplate.batchUpdate("UPDATE appointments SET finance_id = ? WHERE id = ?", links);
+
+        BillingPartitionProgress updated = jdbcTemplate.queryForObject("UPDATE billing_run_partitions " +
+                        "SET checkpoint_patient_id = ?, status = 'RUNNING', invoice_count = invoice_count + ?, " +
+                        "encounter_count = encounter_count + ?, total_amount = total_amount + ?, " +
+                        "updated_at = CURRENT_TIMESTAMP WHERE run_id = ? AND partition_no = ? RETURNING *",
+                PARTITION_ROW_MAPPER, encounters.get(encounters.size() - 1).patientId, finances.size(),
+                encounters.size(), chunkTotal, runId, partitionNo);
+        return new ChunkResult(updated, finances.size());
+    }
+
+    // "Follow-up" bills as FOLLOW_UP; appointment types without a tariff bill as a consultation
+    private String tariffCode(String appointmentType) {
+        if (appointmentType == null) {
+            return DEFAULT_TARIFF;
+        }
+        String code = appointmentType.trim().toUpperCase(Locale.ROOT).replaceAll("[^A-Z0-9]+", "_");
+        return tariffService.getTariff(code) != null ? code : DEFAULT_TARIFF;
+    }
+
+    private static final class Encounter {
+        private final long id;
+        private final long patientId;
+        private final String appointmentType;
+        private final Long departmentId;
+
+        private Encounter(long id, long patientId, String appointmentType, Long departmentId) {
+            this.id = id;
+            this.patientId = patientId;
+            this.appointmentType = appointmentType;
+            this.departmentId = departmentId;
+        }
+
+        private boolean sameInvoiceAs(Encounter other) {
+            return patientId == other.patientId && Objects.equals(departmentId, other.departmentId);
+        }
+    }
+
+    private static final class ChunkResult {
+        private final BillingPartitionProgress progress;
+        private final int invoices;
+
+        private ChunkResult(BillingPartitionProgress progress, int invoices) {
+            this.progress = progress;
+            this.invoices = invoices;
+        }
+    }
+}
@@ -0,0 +1,89 @@
+package com.medisys.desktop.service;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Consumer;
+import java.util.function.Function;
+
+/**
+ * Collects keys while a screen or a service call is being built, then resolves all of them
+ * with one call to the batch function (typically one {@code WHERE id = ANY(?)} query) instead
+ * of one lookup per row.
+ *
+ * {@link #load} only queues the key with the code that wants its value; {@link #dispatch}
+ * runs the batch and hands out the values. Resolved keys are remembered, including keys the
+ * batch function did not return (they resolve to null), so asking again costs nothing. A
+ * loader lives for one request: the memo is never invalidated, so make a new one for the next
+ * render. Not thread-safe.
+ */
+public class BatchLoader<K, V> {
+    private final Function<Set<K>, Map<K, V>> batchFunction;
+    private final Map<K, V> resolved = new HashMap<>();
+    private Map<K, List<Consumer<? super V>>> pending = new LinkedHashMap<>();
+
+    /**
+     * @param batchFunction returns the values of the given keys; keys without a value may be left out
+     */
+    public BatchLoader(Function<Set<K>, Map<K, V>> batchFunction) {
+        this.batchFunction = batchFunction;
+    }
+
+    /**
+     * Hands the key's value to {@code target}: right away if it is already resolved, otherwise on
+     * the next {@link #dispatch}. A null key resolves to null without being queued.
+     */
+    public void load(K key, Consumer<? super V> target) {
+        if (key == null) {
+            target.accept(null);
+        } else if (resolved.containsKey(key)) {
+            target.accept(resolved.get(key));
+        } else {
+            pending.computeIfAbsent(key, k -> new ArrayList<>(1)).add(target);
+        }
+    }
+
+    /**
+     * The key's value, resolving it now (with anything else queued) if needed.
+     */
+    public V get(K key) {
+        if (key == null) {
+            return null;
+        }
+        if (!resolved.containsKey(key)) {
+            pending.computeIfAbsent(key, k -> new ArrayList<>(1));
+            dispatch();
+        }
+        return resolved.get(key);
+    }
+
+    public boolean hasPending() {
+        return !pending.isEmpty();
+    }
+
+    /**
+     * Resolves every queued key with one call to the batch function. Returns the number of keys
+     * resolved; zero (and no call) when nothing is queued. Keys queued by the targets while this
+     * runs are left for the next dispatch.
+     */
+    public int dispatch() {
+        if (pending.isEmpty()) {
+            return 0;
+        }
+        Map<K, List<Consumer<? super V>>> batch = pending;
+        pending = new LinkedHashMap<>();
+        Map<K, V> values = batchFunction.apply(Collections.unmodifiableSet(batch.keySet()));
+        for (K key : batch.keySet()) {
+            resolved.put(key, values.get(key));
+        }
+        batch.forEach((key, targets) -> {
+            V value = resolved.get(key);
+            targets.forEach(target -> target.accept(value));
+        });
+        return batch.size();
+    }
+}
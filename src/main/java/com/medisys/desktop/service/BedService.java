@@ -0,0 +1,346 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.Bed;
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.function.Consumer;
+
+/**
+ * Bed inventory with live occupancy.
+ *
+ * Occupancy is held in memory as one {@link WardOccupancy} bitmap per ward, loaded on
+ * {@link #start()}, so free-bed queries never touch the database. Allocation claims the bed
+ * in the bitmap first and then with a conditional update ({@code WHERE patient_id IS NULL}),
+ * which is what decides a race with another workstation. Every committed allocation and
+ * release is announced on {@link #OCCUPANCY_CHANNEL}; each workstation applies the
+ * announcements to its bitmaps in row-version order and pushes the new state to the
+ * registered listeners (open forms), on the UI executor.
+ *
+ * Announcements are fire-and-forget: one sent while Redis or this workstation's subscription
+ * was down is lost. Every {@link #RECONCILE_INTERVAL_SECONDS} seconds the occupancy is therefore
+ * re-read and any newer row version applied, so a missed change is corrected within that time.
+ *
+ * Wards and beds are read once; beds added later appear after a restart.
+ */
+public class BedService implements MessageListener, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(BedService.class);
+    public static final String OCCUPANCY_CHANNEL = "medisys:bed-occupancy";
+    static final long RECONCILE_INTERVAL_SECONDS = 30;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final Executor uiExecutor;
+    private final Map<String, WardOccupancy> wards = new LinkedHashMap<>();
+    private final Map<Long, WardOccupancy> wardsByBed = new ConcurrentHashMap<>();
+    private final List<Consumer<Bed>> listeners = new CopyOnWriteArrayList<>();
+    private final ScheduledExecutorService reconciler;
+    private final ChangeWriter writer;
+
+    public BedService(JdbcTemplate jdbcTemplate, AuditService auditService, RedisTemplate<String, Object> redisTemplate) {
+        this(jdbcTemplate, auditService, redisTemplate, Platform::runLater);
+    }
+
+    public BedService(JdbcTemplate jdbcTemplate, AuditService auditService, RedisTemplate<String, Object> redisTemplate,
+                      Executor uiExecutor) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+        this.writer = new ChangeWriter("Bed", auditService);
+        this.redisTemplate = redisTemplate;
+        this.uiExecutor = uiExecutor;
+        this.reconciler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Bed-Reconciler");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    /**
+     * Loads the wards and their current occupancy, and starts the periodic reconciliation.
+     */
+    public synchronized void start() {
+        Map<String, List<Bed>> bedsByWard = new LinkedHashMap<>();
+        RoutingContext.runAs(WorkloadClass.BACKGROUND, () -> {
+            String sql = "SELECT id, ward, bed_number, bed_type, label, patient_id, version FROM beds " +
+                    "ORDER BY ward, bed_number";
+            jdbcTemplate.query(sql, rs -> {
+                Bed bed = new Bed(rs.getLong("id"), rs.getString("ward"), rs.getInt("bed_number"),
+                        rs.getString("bed_type"), rs.getString("label"));
+                bed.setOccupied(rs.getObject("patient_id") != null);
+                bed.setVersion(rs.getLong("version"));
+                bedsByWard.computeIfAbsent(bed.getWard(), ward -> new ArrayList<>()).add(bed);
+            });
+        });
+        bedsByWard.forEach((ward, beds) -> {
+            WardOccupancy occupancy = new WardOccupancy(beds);
+            wards.put(ward, occupancy);
+            for (Bed bed : beds) {
+                wardsByBed.put(bed.getId(), occupancy);
+            }
+        });
+        logger.info("Bed occupancy loaded: {} beds in {} wards", wardsByBed.size(), wards.size());
+        reconciler.scheduleWithFixedDelay(this::reconcile, RECONCILE_INTERVAL_SECONDS, RECONCILE_INTERVAL_SECONDS,
+                TimeUnit.SECONDS);
+    }
+
+    /**
+     * Re-reads every bed's occupancy and applies the rows newer than the bitmaps, catching up on
+     * announcements that never arrived. Returns how many beds changed.
+     */
+    int reconcile() {
+        List<Bed> changed = new ArrayList<>();
+        try {
+            RoutingContext.runAs(WorkloadClass.BACKGROUND, () ->
+                    jdbcTemplate.query("SELECT id, patient_id, version FROM beds", rs -> {
+                        WardOccupancy occupancy = wardsByBed.get(rs.getLong("id"));
+                        if (occupancy != null) {
+                            int position = occupancy.positionOf(rs.getLong("id"));
+                            if (occupancy.apply(position, rs.getObject("patient_id") != null, rs.getLong("version"))) {
+                                changed.add(occupancy.snapshot(position));
+                            }
+                        }
+                    }));
+        } catch (RuntimeException e) {
+            logger.warn("Bed occupancy reconciliation failed; retrying in {} s", RECONCILE_INTERVAL_SECONDS, e);
+            return 0;
+        }
+        if (!changed.isEmpty()) {
+            logger.info("Bed occupancy reconciled: {} beds had missed changes", changed.size());
+            changed.forEach(this::notifyListeners);
+        }
+        return changed.size();
+    }
+
+    public List<String> getWards() {
+        return new ArrayList<>(wards.keySet());
+    }
+
+    public List<Bed> getBeds(String ward) {
+        WardOccupancy occupancy = wards.get(ward);
+        List<Bed> beds = new ArrayList<>();
+        if (occupancy != null) {
+            for (int p = 0; p < occupancy.size(); p++) {
+                beds.add(occupancy.snapshot(p));
+            }
+        }
+        return beds;
+    }
+
+    /**
+     * Free beds of the ward, of {@code bedType} (any type if null), in bed-number order.
+     */
+    public List<Bed> getFreeBeds(String ward, String bedType) {
+        List<Bed> free = new ArrayList<>();
+        for (Bed bed : getBeds(ward)) {
+            if (!bed.isOccupied() && (bedType == null || bedType.equals(bed.getBedType()))) {
+                free.add(bed);
+            }
+        }
+        return free;
+    }
+
+    public int countFreeBeds(String ward, String bedType) {
+        WardOccupancy occupancy = wards.get(ward);
+        return occupancy != null ? occupancy.freeCount(bedType) : 0;
+    }
+
+    /**
+     * The free bed of {@code bedType} (any type if null) in the ward closest to bed number
+     * {@code nearBedNumber}, or null if the ward has none.
+     */
+    public Bed findNearestFreeBed(String ward, String bedType, int nearBedNumber) {
+        WardOccupancy occupancy = wards.get(ward);
+        if (occupancy == null) {
+            return null;
+        }
+        int position = occupancy.nearestFree(positionNear(occupancy, nearBedNumber), bedType);
+        return position >= 0 ? occupancy.snapshot(position) : null;
+    }
+
+    /**
+     * Assigns the bed to the patient. Returns false if it is already occupied.
+     *
+     * @throws org.springframework.dao.DataIntegrityViolationException if the patient already holds a bed
+     */
+    public boolean allocateBed(Long bedId, Long patientId, Long userId) {
+        WardOccupancy occupancy = requireWard(bedId);
+        int position = occupancy.positionOf(bedId);
+        return occupancy.tryOccupy(position) && claim(occupancy, position, patientId, userId);
+    }
+
+    /**
+     * Assigns the patient the free bed of {@code bedType} closest to {@code nearBedNumber}, trying
+     * the next closest whenever another workstation wins the race. Returns the bed, or null if
+     * the ward has no free bed of that type.
+     */
+    public Bed allocateNearestBed(String ward, String bedType, int nearBedNumber, Long patientId, Long userId) {
+        WardOccupancy occupancy = wards.get(ward);
+        if (occupancy == null) {
+            return null;
+        }
+        int near = positionNear(occupancy, nearBedNumber);
+        // Each attempt leaves its bed marked occupied, so this ends after at most one try per bed
+        for (int attempt = 0; attempt < occupancy.size(); attempt++) {
+            int position = occupancy.nearestFree(near, bedType);
+            if (position < 0) {
+                return null;
+            }
+            if (occupancy.tryOccupy(position) && claim(occupancy, position, patientId, userId)) {
+                return occupancy.snapshot(position);
+            }
+        }
+        return null;
+    }
+
+    /**
+     * Frees the bed if the patient holds it. Returns false if they do not.
+     */
+    public boolean releaseBed(Long bedId, Long patientId, Long userId) {
+        WardOccupancy occupancy = requireWard(bedId);
+        String sql = "UPDATE beds SET patient_id = NULL, occupied_since = NULL, version = version + 1 " +
+                "WHERE id = ? AND patient_id = ? RETURNING version";
+        Long version = writer.inTransaction(() -> {
+            Long v = DataAccessUtils.singleResult(jdbcTemplate.queryForList(sql, Long.class, bedId, patientId));
+            if (v != null) {
+                writer.publish(ChangeType.UPDATE, "RELEASE_BED", bedId, userId, 1);
+            }
+            return v;
+        });
+        if (version == null) {
+            return false;
+        }
+        applyCommitted(occupancy, occupancy.positionOf(bedId), false, version);
+        return true;
+    }
+
+    /**
+     * Registers a listener for occupancy changes made here or on any other workstation. It is
+     * called with the changed bed, always on the UI executor.
+     */
+    public void addListener(Consumer<Bed> listener) {
+        listeners.add(listener);
+    }
+
+    public void removeListener(Consumer<Bed> listener) {
+        listeners.remove(listener);
+    }
+
+    /**
+     * Applies an occupancy change announced on {@link #OCCUPANCY_CHANNEL}. This workstation's own
+     * announcements come back here too and are dropped as already applied.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String[] parts = String.valueOf(redisTemplate.getValueSerializer().deserialize(message.getBody())).split(":");
+            Long bedId = Long.valueOf(parts[0]);
+            WardOccupancy occupancy = wardsByBed.get(bedId);
+            if (occupancy != null) {
+                int position = occupancy.positionOf(bedId);
+                if (occupancy.apply(position, "1".equals(parts[1]), Long.parseLong(parts[2]))) {
+                    notifyListeners(occupancy.snapshot(position));
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring malformed bed occupancy message", e);
+        }
+    }
+
+    @Override
+    public void close() {
+        reconciler.shutdownNow();
+        listeners.clear();
+    }
+
+    // Second half of an allocation: the bed is already claimed in the bitmap
+    private boolean claim(WardOccupancy occupancy, int position, Long patientId, Long userId) {
+        Long bedId = occupancy.bedAt(position).getId();
+        String sql = "UPDATE beds SET patient_id = ?, occupied_since = CURRENT_TIMESTAMP, version = version + 1 " +
+                "WHERE id = ? AND patient_id IS NULL RETURNING version";
+        Long version;
+        try {
+            version = writer.inTransaction(() -> {
+                Long v = DataAccessUtils.singleResult(jdbcTemplate.queryForList(sql, Long.class, patientId, bedId));
+                if (v != null) {
+                    writer.publish(ChangeType.UPDATE, "ALLOCATE_BED", bedId, userId, 1);
+                }
+                return v;
+            });
+        } catch (RuntimeException e) {
+            occupancy.vacate(position);
+            throw e;
+        }
+        if (version == null) {
+            // Taken on another workstation; the bit stays set, which is the bed's real state
+            return false;
+        }
+        applyCommitted(occupancy, position, true, version);
+        return true;
+    }
+
+    private void applyCommitted(WardOccupancy occupancy, int position, boolean occupied, long version) {
+        occupancy.apply(position, occupied, version);
+        Bed bed = occupancy.snapshot(position);
+        notifyListeners(bed);
+        try {
+            redisTemplate.convertAndSend(OCCUPANCY_CHANNEL, bed.getId() + ":" + (occupied ? 1 : 0) + ":" + version);
+        } catch (RuntimeException e) {
+            // The change is committed; other workstations catch up on their next load
+            logger.warn("Could not announce occupancy of bed {}", bed.getId(), e);
+        }
+    }
+
+    private void notifyListeners(Bed bed) {
+        for (Consumer<Bed> listener : listeners) {
+            uiExecutor.execute(() -> listener.accept(bed));
+        }
+    }
+
+    private WardOccupancy requireWard(Long bedId) {
+        WardOccupancy occupancy = wardsByBed.get(bedId);
+        if (occupancy == null) {
+            throw new IllegalArgumentException("Unknown bed " + bedId);
+        }
+        return occupancy;
+    }
+
+    // Position of the first bed numbered at or above bedNumber (beds may be numbered with gaps)
+    private static int positionNear(WardOccupancy occupancy, int bedNumber) {
+        for (int p = 0; p < occupancy.size(); p++) {
+            if (occupancy.bedAt(p).getBedNumber() >= bedNumber) {
+                return p;
+            }
+        }
+        return occupancy.size() - 1;
+    }
+}
@@ -0,0 +1,76 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Invoice;
+import com.medisys.desktop.model.InvoiceLine;
+import com.medisys.desktop.model.Tariff;
+import com.medisys.desktop.util.Money;
+
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Prices invoices against the tariff cache, exactly, in paise.
+ *
+ * The invoice discount is shared across the lines in proportion to their gross amount (the
+ * last line takes the rounding remainder, so the shares always add up), and each line is
+ * taxed on its discounted amount at its tariff's rate, rounded half-up to the paisa. All
+ * arithmetic is on {@code long}, with overflow checked, and nothing touches the database,
+ * so a batch run can price thousands of invoices per second on each thread. Thread-safe.
+ */
+public class BillingEngine {
+    private final TariffService tariffs;
+
+    public BillingEngine(TariffService tariffs) {
+        this.tariffs = tariffs;
+    }
+
+    /**
+     * Prices the lines in place and totals them.
+     *
+     * @param discountPaise invoice-level discount; capped at the subtotal, so totals never go negative
+     * @throws IllegalArgumentException for an unknown tariff code or a negative quantity or price
+     */
+    public Invoice price(List<InvoiceLine> lines, long discountPaise) {
+        Map<String, Tariff> priceList = tariffs.snapshot();
+        long subtotal = 0;
+        int lastCharged = -1;
+        for (int i = 0; i < lines.size(); i++) {
+            InvoiceLine line = lines.get(i);
+            Tariff tariff = tariffFor(priceList, line);
+            long unitPrice = line.getUnitPricePaise() == InvoiceLine.TARIFF_PRICE
+                    ? tariff.getPricePaise() : line.getUnitPricePaise();
+            if (unitPrice < 0 || line.getQuantity() < 0) {
+                throw new IllegalArgumentException("Negative price or quantity for " + line.getTariffCode());
+            }
+            line.setUnitPricePaise(unitPrice);
+            line.setGrossPaise(Math.multiplyExact(unitPrice, line.getQuantity()));
+            subtotal = Math.addExact(subtotal, line.getGrossPaise());
+            if (line.getGrossPaise() > 0) {
+                lastCharged = i;
+            }
+        }
+
+        long discount = Math.max(0, Math.min(discountPaise, subtotal));
+        long undistributed = discount;
+        long tax = 0;
+        for (int i = 0; i < lines.size(); i++) {
+            InvoiceLine line = lines.get(i);
+            long share = i == lastCharged ? undistributed
+                    : i < lastCharged ? Math.multiplyExact(line.getGrossPaise(), discount) / subtotal : 0;
+            undistributed -= share;
+            line.setDiscountPaise(share);
+            line.setTaxPaise(Money.percentOf(line.getGrossPaise() - share,
+                    priceList.get(line.getTariffCode()).getTaxRateBasisPoints()));
+            tax += line.getTaxPaise();
+        }
+        return new Invoice(lines, subtotal, discount, tax);
+    }
+
+    private static Tariff tariffFor(Map<String, Tariff> priceList, InvoiceLine line) {
+        Tariff tariff = priceList.get(line.getTariffCode());
+        if (tariff == null) {
+            throw new IllegalArgumentException("No tariff for service " + line.getTariffCode());
+        }
+        return tariff;
+    }
+}
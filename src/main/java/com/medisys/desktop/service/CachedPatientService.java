@@ -1,18 +1,30 @@
 package com.medisys.desktop.service;
 
 import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.PatientSummary;
 import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.springframework.cache.Cache;
 import org.springframework.cache.annotation.CacheEvict;
 import org.springframework.cache.annotation.CachePut;
 import org.springframework.cache.annotation.Cacheable;
+import org.springframework.cache.annotation.Caching;
 import org.springframework.stereotype.Service;
 
 import java.time.Duration;
 import java.time.Instant;
+import java.time.LocalDate;
+import java.util.Collection;
 import java.util.List;
+import java.util.Map;
 
+/**
+ * Redis-cached view of {@link PatientService}. Entries hold single patients by id, plus the
+ * full and summary lists; the lists are the same for every user, so they are shared.
+ */
 @Service
 public class CachedPatientService {
+    static final String ALL_KEY = "all";
+    static final String SUMMARIES_KEY = "summaries";
     
     private final PatientService patientService;
     private final ApplicationMetrics metrics;
@@ -36,7 +48,7 @@ public class CachedPatientService {
         }
     }
     
-    @Cacheable(value = "patients", key = "'all-' + #userId")
+    @Cacheable(value = "patients", key = "'all'")
     public List<Patient> getAllPatients(Long userId) {
         Instant start = Instant.now();
         try {
@@ -50,14 +62,30 @@ public class CachedPatientService {
         }
     }
     
+    @Cacheable(value = "patients", key = "'summaries'")
+    public List<PatientSummary> getPatientSummaries(Long userId) {
+        Instant start = Instant.now();
+        try {
+            List<PatientSummary> summaries = patientService.getPatientSummaries(userId);
+            metrics.recordCacheOperation("miss");
+            metrics.recordDatabaseOperation("select", Duration.between(start, Instant.now()));
+            return summaries;
+        } catch (Exception e) {
+            metrics.recordError("database");
+            throw e;
+        }
+    }
+
     @CachePut(value = "patients", key = "#result.id")
-    @CacheEvict(value = "patients", key = "'all-' + #userId")
+    @Caching(evict = {
+            @CacheEvict(value = "patients", key = "'all'"),
+            @CacheEvict(value = "patients", key = "'summaries'")
+    })
     public Patient createPatient(Patient patient, Long userId) {
         Instant start = Instant.now();
         try {
             Patient createdPatient = patientService.createPatient(patient, userId);
             metrics.recordDatabaseOperation("insert", Duration.between(start, Instant.now()));
-            metrics.recordUserAction("patient_create");
             return createdPatient;
         } catch (Exception e) {
             metrics.recordError("database");
@@ -65,14 +93,21 @@ public class CachedPatientService {
         }
     }
     
+    /**
+     * Saves the patient and caches the saved copy. Other workstations' cached copies are
+     * patched field by field when the outbox relay delivers the update (see {@link #patchCached}).
+     */
     @CachePut(value = "patients", key = "#patient.id")
-    @CacheEvict(value = "patients", key = "'all-' + #userId")
-    public void updatePatient(Patient patient, Long userId) {
+    @Caching(evict = {
+            @CacheEvict(value = "patients", key = "'all'"),
+            @CacheEvict(value = "patients", key = "'summaries'")
+    })
+    public Patient updatePatient(Patient patient, Long userId) {
         Instant start = Instant.now();
         try {
             patientService.updatePatient(patient, userId);
             metrics.recordDatabaseOperation("update", Duration.between(start, Instant.now()));
-            metrics.recordUserAction("patient_update");
+            return patient;
         } catch (Exception e) {
             metrics.recordError("database");
             throw e;
@@ -85,7 +120,19 @@ public class CachedPatientService {
         try {
             patientService.deletePatient(id, userId);
             metrics.recordDatabaseOperation("delete", Duration.between(start, Instant.now()));
-            metrics.recordUserAction("patient_delete");
+        } catch (Exception e) {
+            metrics.recordError("database");
+            throw e;
+        }
+    }
+    
+    @CacheEvict(value = "patients", allEntries = true)
+    public int deletePatients(Collection<Long> ids, Long userId) {
+        Instant start = Instant.now();
+        try {
+            int deleted = patientService.deletePatients(ids, userId);
+            metrics.recordDatabaseOperation("delete", Duration.between(start, Instant.now()));
+            return deleted;
         } catch (Exception e) {
             metrics.recordError("database");
             throw e;
@@ -95,14 +142,17 @@ public class CachedPatientService {
     // Cache warming method
     public void warmCache(Long userId) {
         try {
-            getAllPatients(userId);
+            getPatientSummaries(userId);
         } catch (Exception e) {
             metrics.recordError("cache");
         }
     }
     
-    // Cache invalidation for specific user
-    @CacheEvict(value = "patients", key = "'all-' + #userId")
+    // List entries are shared, so this drops them for every user
+    @Caching(evict = {
+            @CacheEvict(value = "patients", key = "'all'"),
+            @CacheEvict(value = "patients", key = "'summaries'")
+    })
     public void invalidateUserCache(Long userId) {
         // This method just triggers cache eviction
     }
@@ -112,4 +162,35 @@ public class CachedPatientService {
     public void clearAllCache() {
         // This method clears all patient cache entries
     }
+
+    /**
+     * {@link com.medisys.desktop.event.CachePatcher} for the patients cache: applies the
+     * changed columns to the cached patient if it is at the previous version, and drops the
+     * list entries, which are rebuilt from one summary query. A cached patient that missed
+     * an update cannot be patched; returns false so the relay clears the cache.
+     */
+    public static boolean patchCached(Cache cache, Long id, long version, Map<String, String> changes) {
+        Patient cached = cache.get(id, Patient.class);
+        if (cached != null && cached.getVersion() < version) {
+            if (cached.getVersion() != version - 1) {
+                return false;
+            }
+            for (Map.Entry<String, String> change : changes.entrySet()) {
+                String value = change.getValue();
+                switch (change.getKey()) {
+                    case "name" -> cached.setName(value);
+                    case "date_of_birth" -> cached.setDateOfBirth(value != null ? LocalDate.parse(value) : null);
+                    case "contact_info" -> cached.setContactInfo(value);
+                    default -> {
+                        return false;
+                    }
+                }
+            }
+            cached.setVersion(version);
+            cache.put(id, cached);
+        }
+        cache.evict(ALL_KEY);
+        cache.evict(SUMMARIES_KEY);
+        return true;
+    }
 }
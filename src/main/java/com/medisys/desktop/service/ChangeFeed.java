@@ -0,0 +1,113 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.model.ChangeSet;
+import org.springframework.jdbc.core.ConnectionCallback;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.ResultSetExtractor;
+import org.springframework.jdbc.datasource.SingleConnectionDataSource;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.List;
+
+/**
+ * Reads the rows of a tracked table that changed since a watermark, for {@link ChangeSet}s.
+ * Tracked tables have an indexed {@code updated_date} set by trigger on every write, and leave a
+ * {@code row_tombstones} entry per deleted row (see V14__change_tracking.sql).
+ *
+ * The watermark is the latest change time seen, taken from the data rather than a clock, but
+ * never later than the start of the oldest transaction open on the primary: that transaction
+ * may still commit rows stamped before the latest seen, however long it runs. Open transactions
+ * are read from {@code pg_stat_activity}, which shows start times for the application's own
+ * role, the one every workstation connects as.
+ *
+ * A replica is read only if it has replayed the primary's WAL up to where it was when the open
+ * transactions were read, so it holds every row stamped before the oldest of them. Otherwise,
+ * and for reads prompted by a change notification, which can arrive before any replica has the
+ * row, the primary is read.
+ */
+final class ChangeFeed {
+    // Keep in step with the pruning in record_tombstones()
+    static final Duration TOMBSTONE_RETENTION = Duration.ofDays(7);
+    private static final Timestamp BEGINNING = Timestamp.valueOf("1970-01-01 00:00:00");
+    // Rows not committed yet will be stamped at or after the horizon
+    private static final String HORIZON_SQL = """
+            SELECT CAST(COALESCE(MIN(xact_start), clock_timestamp()) AS TIMESTAMP) AS horizon,
+                   (pg_current_wal_insert_lsn() - '0/0'::pg_lsn)::bigint AS wal_lsn
+            FROM pg_stat_activity
+            WHERE datname = current_database() AND backend_type = 'client backend'
+              AND xact_start IS NOT NULL AND pid <> pg_backend_pid()
+            """;
+    // Null on the primary, which has everything
+    private static final String REPLAY_LSN_SQL = "SELECT (pg_last_wal_replay_lsn() - '0/0'::pg_lsn)::bigint";
+
+    private ChangeFeed() {
+    }
+
+    /**
+     * The changes to {@code table} since {@code watermark}, or every row (ordered by id) if the
+     * watermark is null or older than the tombstones go back.
+     *
+     * @param table       a tracked table; a constant of the caller, never user input
+     * @param columns     the select list {@code extractor} reads
+     * @param fromPrimary read the primary rather than a replica that may lag it
+     */
+    static <T> ChangeSet<T> changedSince(JdbcTemplate jdbcTemplate, String table, String columns,
+                                         ResultSetExtractor<List<T>> extractor, LocalDateTime watermark,
+                                         boolean fromPrimary) {
+        Horizon horizon = jdbcTemplate.queryForObject(HORIZON_SQL,
+                (rs, rowNum) -> new Horizon(rs.getTimestamp("horizon").toLocalDateTime(), rs.getLong("wal_lsn")));
+        if (!fromPrimary) {
+            // One connection, so the replay position checked is that of the replica read
+            ChangeSet<T> changes = RoutingContext.onReplica(() -> jdbcTemplate.execute((ConnectionCallback<ChangeSet<T>>) connection -> {
+                JdbcTemplate replica = new JdbcTemplate(new SingleConnectionDataSource(connection, true));
+                Long replayed = replica.queryForObject(REPLAY_LSN_SQL, Long.class);
+                return replayed == null || replayed >= horizon.walLsn
+                        ? read(replica, table, columns, extractor, watermark, horizon.startedAt) : null;
+            }));
+            if (changes != null) {
+                return changes;
+            }
+        }
+        return read(jdbcTemplate, table, columns, extractor, watermark, horizon.startedAt);
+    }
+
+    private static <T> ChangeSet<T> read(JdbcTemplate jdbcTemplate, String table, String columns,
+                                         ResultSetExtractor<List<T>> extractor, LocalDateTime watermark,
+                                         LocalDateTime horizon) {
+        boolean fullReload = watermark == null || watermark.isBefore(LocalDateTime.now().minus(TOMBSTONE_RETENTION));
+        Timestamp from = fullReload ? BEGINNING : Timestamp.valueOf(watermark);
+        String watermarkSql = "SELECT GREATEST(" +
+                "(SELECT MAX(updated_date) FROM " + table + " WHERE updated_date >= ?), " +
+                "(SELECT MAX(deleted_at) FROM row_tombstones WHERE table_name = ? AND deleted_at >= ?))";
+
+        // Read first: rows stamped after it are simply delivered again next time
+        Timestamp latest = jdbcTemplate.queryForObject(watermarkSql, Timestamp.class, from, table, from);
+        LocalDateTime next = watermark;
+        if (latest != null) {
+            next = latest.toLocalDateTime().isAfter(horizon) ? horizon : latest.toLocalDateTime();
+        }
+        if (fullReload) {
+            List<T> rows = jdbcTemplate.query("SELECT " + columns + " FROM " + table + " ORDER BY id", extractor);
+            return new ChangeSet<>(rows, List.of(), next, true);
+        }
+        // Inclusive: the watermark may be the start of a transaction whose rows were not visible yet
+        List<T> rows = jdbcTemplate.query("SELECT " + columns + " FROM " + table +
+                " WHERE updated_date >= ? ORDER BY updated_date", extractor, from);
+        List<Long> deletedIds = jdbcTemplate.queryForList(
+                "SELECT row_id FROM row_tombstones WHERE table_name = ? AND deleted_at >= ?", Long.class, table, from);
+        return new ChangeSet<>(rows, deletedIds, next, false);
+    }
+
+    private static final class Horizon {
+        private final LocalDateTime startedAt;
+        private final long walLsn;
+
+        private Horizon(LocalDateTime startedAt, long walLsn) {
+            this.startedAt = startedAt;
+            this.walLsn = walLsn;
+        }
+    }
+}
@@ -0,0 +1,109 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.AuditLog;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.Map;
+import java.util.function.Supplier;
+
+/**
+ * Runs a service's writes and publishes the changes they make to one entity type.
+ *
+ * With an outbox the write and its event row commit together; otherwise the audit record
+ * is written inline and in-process consumers get the event directly. Either way the write
+ * is reported to {@link RoutingContext} once it has run.
+ */
+final class ChangeWriter {
+    private final String entityType;
+    private final AuditService auditService;
+    private DomainEventBus eventBus;
+    private EventOutbox outbox;
+
+    ChangeWriter(String entityType, AuditService auditService) {
+        this.entityType = entityType;
+        this.auditService = auditService;
+    }
+
+    void setEventBus(DomainEventBus eventBus) {
+        this.eventBus = eventBus;
+    }
+
+    void setOutbox(EventOutbox outbox) {
+        this.outbox = outbox;
+    }
+
+    <T> T inTransaction(Supplier<T> work) {
+        try {
+            return outbox != null ? outbox.inTransaction(work) : work.get();
+        } finally {
+            RoutingContext.recordWrite();
+        }
+    }
+
+    /**
+     * Publishes a change. Must be called from {@link #inTransaction}.
+     */
+    void publish(ChangeType changeType, String action, Long id, Long userId, long affectedRows) {
+        publish(changeType, action, id, userId, affectedRows, null, 0);
+    }
+
+    void publish(ChangeType changeType, String action, Long id, Long userId, long affectedRows,
+                 LocalDate eventDate, double amountDelta) {
+        if (outbox != null) {
+            outbox.record(entityType, changeType, id, userId, action, affectedRows, eventDate, amountDelta);
+        } else {
+            auditService.logAction(userId, action, entityType, id);
+            if (eventBus != null) {
+                eventBus.publish(entityType, changeType, id, userId, action, affectedRows, eventDate, amountDelta);
+            }
+        }
+    }
+
+    /**
+     * Publishes one change to the rows {@code ids}, each of which is audited. Must be called
+     * from {@link #inTransaction}.
+     */
+    void publishBulk(ChangeType changeType, String action, Collection<Long> ids, Long userId) {
+        publishBulk(changeType, action, ids, userId, null, 0);
+    }
+
+    void publishBulk(ChangeType changeType, String action, Collection<Long> ids, Long userId,
+                     LocalDate eventDate, double amountDelta) {
+        if (ids.isEmpty()) {
+            // Nothing matched; the attempt is still audited
+            publish(changeType, action, null, userId, 0, eventDate, amountDelta);
+        } else if (outbox != null) {
+            outbox.recordBulk(entityType, changeType, ids, userId, action, eventDate, amountDelta);
+        } else {
+            LocalDateTime now = LocalDateTime.now();
+            List<AuditLog> auditLogs = new ArrayList<>(ids.size());
+            for (Long id : ids) {
+                auditLogs.add(new AuditLog(null, userId, action, entityType, id, now));
+            }
+            auditService.logActions(auditLogs);
+            if (eventBus != null) {
+                eventBus.publish(entityType, changeType, null, userId, action, ids.size(), eventDate, amountDelta);
+            }
+        }
+    }
+
+    /**
+     * Publishes an update of one row to {@code version}, with the changed columns so cached
+     * copies can be patched. Must be called from {@link #inTransaction}.
+     */
+    void publishUpdate(String action, Long id, Long userId, long version, Map<String, String> changes) {
+        if (outbox != null) {
+            outbox.recordUpdate(entityType, id, userId, action, 1, version, changes);
+        } else {
+            publish(ChangeType.UPDATE, action, id, userId, 1);
+        }
+    }
+}
@@ -1,47 +1,54 @@
 package com.medisys.desktop.service;
 
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
 import com.medisys.desktop.model.Department;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 
-import java.sql.PreparedStatement;
 import java.util.List;
 
 public class DepartmentService {
     private final JdbcTemplate jdbcTemplate;
     private final AuditService auditService;
+    private final HiLoIdAllocator departmentIds;
+    private final ChangeWriter writer;
 
     public DepartmentService(JdbcTemplate jdbcTemplate, AuditService auditService) {
         this.jdbcTemplate = jdbcTemplate;
         this.auditService = auditService;
+        this.writer = new ChangeWriter("Department", auditService);
+        this.departmentIds = new HiLoIdAllocator(jdbcTemplate, "departments_id_seq");
     }
 
-    public Department createDepartment(Department department, Long userId) {
-        String sql = "INSERT INTO departments (name, head_of_department) VALUES (?, ?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
-            ps.setString(1, department.getName());
-            ps.setString(2, department.getHeadOfDepartment());
-            return ps;
-        }, keyHolder);
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
 
-        Long deptId = keyHolder.getKey().longValue();
-        department.setId(deptId);
-        auditService.logAction(userId, "CREATE_DEPARTMENT", "Department", deptId);
-        return department;
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    public Department createDepartment(Department department, Long userId) {
+        department.setId(departmentIds.next());
+        return writer.inTransaction(() -> {
+            String sql = "INSERT INTO departments (id, name, head_of_department) VALUES (?, ?, ?)";
+            jdbcTemplate.update(sql, department.getId(), department.getName(), department.getHeadOfDepartment());
+            writer.publish(ChangeType.CREATE, "CREATE_DEPARTMENT", department.getId(), userId, 1);
+            return department;
+        });
     }
 
     public Department getDepartment(Long id, Long userId) {
         String sql = "SELECT * FROM departments WHERE id = ?";
-        Department department = jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
+        Department department = RoutingContext.onReplica(() -> jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
             Department d = new Department();
             d.setId(rs.getLong("id"));
             d.setName(rs.getString("name"));
             d.setHeadOfDepartment(rs.getString("head_of_department"));
             return d;
-        });
+        }));
 
         auditService.logAction(userId, "VIEW_DEPARTMENT", "Department", id);
         return department;
@@ -49,27 +56,33 @@ public class DepartmentService {
 
     public List<Department> getAllDepartments(Long userId) {
         String sql = "SELECT * FROM departments";
-        List<Department> departments = jdbcTemplate.query(sql, (rs, rowNum) -> {
+        List<Department> departments = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, (rs, rowNum) -> {
             Department d = new Department();
             d.setId(rs.getLong("id"));
             d.setName(rs.getString("name"));
             d.setHeadOfDepartment(rs.getString("head_of_department"));
             return d;
-        });
+        }));
 
         auditService.logAction(userId, "LIST_DEPARTMENTS", "Department", null);
         return departments;
     }
 
     public void updateDepartment(Department department, Long userId) {
-        String sql = "UPDATE departments SET name = ?, head_of_department = ? WHERE id = ?";
-        jdbcTemplate.update(sql, department.getName(), department.getHeadOfDepartment(), department.getId());
-        auditService.logAction(userId, "UPDATE_DEPARTMENT", "Department", department.getId());
+        writer.inTransaction(() -> {
+            String sql = "UPDATE departments SET name = ?, head_of_department = ? WHERE id = ?";
+            int updated = jdbcTemplate.update(sql, department.getName(), department.getHeadOfDepartment(), department.getId());
+            writer.publish(ChangeType.UPDATE, "UPDATE_DEPARTMENT", department.getId(), userId, updated);
+            return null;
+        });
     }
 
     public void deleteDepartment(Long id, Long userId) {
-        String sql = "DELETE FROM departments WHERE id = ?";
-        jdbcTemplate.update(sql, id);
-        auditService.logAction(userId, "DELETE_DEPARTMENT", "Department", id);
+        writer.inTransaction(() -> {
+            String sql = "DELETE FROM departments WHERE id = ?";
+            int deleted = jdbcTemplate.update(sql, id);
+            writer.publish(ChangeType.DELETE, "DELETE_DEPARTMENT", id, userId, deleted);
+            return null;
+        });
     }
 }
\ No newline at end of file
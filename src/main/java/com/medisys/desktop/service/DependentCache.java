@@ -0,0 +1,166 @@
+package com.medisys.desktop.service;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.IdentityHashMap;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+/**
+ * A bounded, least-recently-used cache of composed values by id, invalidated through the rows
+ * each value was built from. Every value is stored with its dependencies ("finance:42",
+ * "doctors:7"...), and {@link #invalidate} drops every value that depends on the changed row.
+ *
+ * Entries are futures, so a value being loaded is shared by everyone who asks for it meanwhile.
+ * A load that overlaps an invalidation of one of its dependencies is handed to its callers but
+ * not kept: it may have read the row before the change.
+ */
+class DependentCache<V> {
+    static final String ANY_ROW = "*";
+
+    private final int capacity;
+    private final LinkedHashMap<Long, CompletableFuture<V>> entries;
+    private final Map<Long, Set<String>> dependencies = new HashMap<>();
+    private final Map<String, Set<Long>> dependents = new HashMap<>();
+    // Invalidations seen while each in-flight load was running
+    private final Map<CompletableFuture<V>, List<String>> missed = new IdentityHashMap<>();
+
+    DependentCache(int capacity) {
+        this.capacity = capacity;
+        this.entries = new LinkedHashMap<>(16, 0.75f, true);
+    }
+
+    /**
+     * The cached or in-flight value; null if there is none and the caller should {@link #reserve} it.
+     */
+    synchronized CompletableFuture<V> lookup(Long id) {
+        CompletableFuture<V> future = entries.get(id);
+        return future != null && !future.isCompletedExceptionally() ? future : null;
+    }
+
+    /**
+     * Registers a load of the value; complete it with {@link #complete} or {@link #fail}.
+     */
+    synchronized CompletableFuture<V> reserve(Long id) {
+        CompletableFuture<V> future = new CompletableFuture<>();
+        evict(id);
+        entries.put(id, future);
+        missed.put(future, new ArrayList<>());
+        trim();
+        return future;
+    }
+
+    /**
+     * Stores the loaded value with the rows it was built from, unless one of them changed
+     * while it was loading, and hands it to everyone waiting. Returns whether it was kept.
+     */
+    boolean complete(Long id, CompletableFuture<V> future, V value, Set<String> rows) {
+        boolean kept;
+        synchronized (this) {
+            List<String> changed = missed.remove(future);
+            kept = entries.get(id) == future && changed != null
+                    && changed.stream().noneMatch(row -> dependsOn(rows, row));
+            if (kept) {
+                dependencies.put(id, rows);
+                for (String row : rows) {
+                    dependents.computeIfAbsent(row, r -> new HashSet<>()).add(id);
+                }
+            } else if (entries.get(id) == future) {
+                entries.remove(id);
+            }
+        }
+        future.complete(value);
+        return kept;
+    }
+
+    void fail(Long id, CompletableFuture<V> future, Throwable failure) {
+        synchronized (this) {
+            missed.remove(future);
+            entries.remove(id, future);
+        }
+        future.completeExceptionally(failure);
+    }
+
+    /**
+     * Drops the values built from {@code row}, e.g. "finance:42"; "finance:*" stands for any
+     * finance row. Returns false if no value is known to depend on the row, which for a newly
+     * created row may just mean its owner's value does not list it yet.
+     */
+    synchronized boolean invalidate(String row) {
+        for (List<String> changed : missed.values()) {
+            changed.add(row);
+        }
+        if (row.endsWith(":" + ANY_ROW)) {
+            List<Long> affected = new ArrayList<>();
+            dependencies.forEach((id, rows) -> {
+                if (dependsOn(rows, row)) {
+                    affected.add(id);
+                }
+            });
+            affected.forEach(this::evict);
+            return true;
+        }
+        Set<Long> affected = dependents.get(row);
+        if (affected == null) {
+            return false;
+        }
+        new ArrayList<>(affected).forEach(this::evict);
+        return true;
+    }
+
+    /**
+     * Drops the value, cached or in flight.
+     */
+    synchronized void evict(Long id) {
+        entries.remove(id);
+        Set<String> rows = dependencies.remove(id);
+        if (rows != null) {
+            for (String row : rows) {
+                Set<Long> ids = dependents.get(row);
+                if (ids != null && ids.remove(id) && ids.isEmpty()) {
+                    dependents.remove(row);
+                }
+            }
+        }
+    }
+
+    /**
+     * Drops every value, cached or in flight; loads in flight are handed to their callers but not kept.
+     */
+    synchronized void clear() {
+        entries.clear();
+        dependencies.clear();
+        dependents.clear();
+    }
+
+    synchronized int size() {
+        return entries.size();
+    }
+
+    private static boolean dependsOn(Set<String> rows, String changed) {
+        if (!changed.endsWith(":" + ANY_ROW)) {
+            return rows.contains(changed);
+        }
+        String type = changed.substring(0, changed.length() - ANY_ROW.length());
+        return rows.stream().anyMatch(row -> row.startsWith(type));
+    }
+
+    // Values still loading are never dropped, so the cache may briefly exceed its capacity
+    private void trim() {
+        int excess = entries.size() - capacity;
+        List<Long> eldest = new ArrayList<>();
+        for (Map.Entry<Long, CompletableFuture<V>> entry : entries.entrySet()) {
+            if (eldest.size() >= excess) {
+                break;
+            }
+            if (entry.getValue().isDone()) {
+                eldest.add(entry.getKey());
+            }
+        }
+        eldest.forEach(this::evict);
+    }
+}
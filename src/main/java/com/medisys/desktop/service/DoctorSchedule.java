@@ -0,0 +1,194 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Doctor;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.EnumSet;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.NavigableMap;
+import java.util.Set;
+import java.util.TreeMap;
+
+/**
+ * One doctor's consulting hours and live bookings, indexed for slot search.
+ *
+ * Live bookings of a doctor never overlap (the appointments table enforces it), so the
+ * bookings are disjoint intervals and sorting them by start also sorts them by end. A range
+ * [start, end) is then free exactly when the last booking starting before {@code end} has
+ * ended by {@code start}: one O(log n) lookup, with no interval tree needed. Free-slot search
+ * walks the consulting hours and jumps straight past every booking in the way.
+ *
+ * Not thread-safe; {@link AppointmentService} locks the schedule while using it.
+ */
+class DoctorSchedule {
+    // Slot search gives up after this many days without finding enough free slots
+    private static final int MAX_SEARCH_DAYS = 90;
+
+    private final WorkingHours hours;
+    private final NavigableMap<LocalDateTime, LocalDateTime> bookings = new TreeMap<>();
+    private final long loadedAtNanos = System.nanoTime();
+
+    DoctorSchedule(WorkingHours hours) {
+        this.hours = hours;
+    }
+
+    WorkingHours getHours() {
+        return hours;
+    }
+
+    boolean isOlderThan(Duration age) {
+        return System.nanoTime() - loadedAtNanos > age.toNanos();
+    }
+
+    boolean isFree(LocalDateTime start, LocalDateTime end) {
+        return conflict(start, end) == null;
+    }
+
+    void book(LocalDateTime start, LocalDateTime end) {
+        bookings.put(start, end);
+    }
+
+    void release(LocalDateTime start) {
+        bookings.remove(start);
+    }
+
+    /**
+     * The first {@code count} free slots of {@code length} starting at or after {@code from}.
+     * Slots sit on a grid of {@code length} from the start of each consulting session.
+     */
+    List<LocalDateTime> nextFreeSlots(LocalDateTime from, int count, Duration length) {
+        List<LocalDateTime> slots = new ArrayList<>(count);
+        LocalDate day = from.toLocalDate();
+        for (int d = 0; d < MAX_SEARCH_DAYS && slots.size() < count; d++, day = day.plusDays(1)) {
+            if (!hours.worksOn(day.getDayOfWeek())) {
+                continue;
+            }
+            for (LocalTime[] session : hours.sessions()) {
+                LocalDateTime sessionStart = day.atTime(session[0]);
+                LocalDateTime sessionEnd = day.atTime(session[1]);
+                LocalDateTime slot = sessionStart.isBefore(from) ? alignUp(from, sessionStart, length) : sessionStart;
+                while (slots.size() < count && !slot.plus(length).isAfter(sessionEnd)) {
+                    Map.Entry<LocalDateTime, LocalDateTime> blocking = conflict(slot, slot.plus(length));
+                    if (blocking == null) {
+                        slots.add(slot);
+                        slot = slot.plus(length);
+                    } else {
+                        slot = alignUp(blocking.getValue(), sessionStart, length);
+                    }
+                }
+            }
+        }
+        return slots;
+    }
+
+    // The last booking starting before end; it overlaps [start, end) iff it ends after start
+    private Map.Entry<LocalDateTime, LocalDateTime> conflict(LocalDateTime start, LocalDateTime end) {
+        Map.Entry<LocalDateTime, LocalDateTime> before = bookings.lowerEntry(end);
+        return before != null && before.getValue().isAfter(start) ? before : null;
+    }
+
+    private static LocalDateTime alignUp(LocalDateTime time, LocalDateTime origin, Duration length) {
+        long offset = Duration.between(origin, time).toNanos();
+        long step = length.toNanos();
+        long steps = (offset + step - 1) / step;
+        return origin.plusNanos(steps * step);
+    }
+
+    /**
+     * Consulting days and sessions of a doctor. Doctors without configured hours are taken
+     * to consult 09:00-17:00, Monday to Friday.
+     */
+    static final class WorkingHours {
+        private static final Set<DayOfWeek> DEFAULT_DAYS = EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY);
+        private static final LocalTime[] DEFAULT_SESSION = {LocalTime.of(9, 0), LocalTime.of(17, 0)};
+
+        private final Set<DayOfWeek> days;
+        private final List<LocalTime[]> sessions;
+
+        WorkingHours(Set<DayOfWeek> days, List<LocalTime[]> sessions) {
+            this.days = days;
+            this.sessions = sessions;
+        }
+
+        static WorkingHours of(Doctor doctor) {
+            List<LocalTime[]> sessions = new ArrayList<>(2);
+            addSession(sessions, doctor.getMorningStartTime(), doctor.getMorningEndTime());
+            addSession(sessions, doctor.getEveningStartTime(), doctor.getEveningEndTime());
+            if (sessions.isEmpty()) {
+                sessions.add(DEFAULT_SESSION);
+            }
+            Set<DayOfWeek> days = parseDays(doctor.getWorkingDays());
+            return new WorkingHours(days.isEmpty() ? DEFAULT_DAYS : days, sessions);
+        }
+
+        boolean worksOn(DayOfWeek day) {
+            return days.contains(day);
+        }
+
+        List<LocalTime[]> sessions() {
+            return sessions;
+        }
+
+        boolean covers(LocalDateTime start, LocalDateTime end) {
+            if (!start.toLocalDate().equals(end.toLocalDate()) || !worksOn(start.getDayOfWeek())) {
+                return false;
+            }
+            for (LocalTime[] session : sessions) {
+                LocalDateTime sessionStart = start.toLocalDate().atTime(session[0]);
+                LocalDateTime sessionEnd = start.toLocalDate().atTime(session[1]);
+                if (!start.isBefore(sessionStart) && !end.isAfter(sessionEnd)) {
+                    return true;
+                }
+            }
+            return false;
+        }
+
+        private static void addSession(List<LocalTime[]> sessions, LocalTime start, LocalTime end) {
+            if (start != null && end != null && start.isBefore(end)) {
+                sessions.add(new LocalTime[]{start, end});
+            }
+        }
+
+        // Accepts the registration form's "Monday,Tuesday,..." and ranges like "Monday to Friday"
+        static Set<DayOfWeek> parseDays(String workingDays) {
+            Set<DayOfWeek> days = EnumSet.noneOf(DayOfWeek.class);
+            if (workingDays == null) {
+                return days;
+            }
+            for (String part : workingDays.split(",")) {
+                String[] range = part.trim().toUpperCase(Locale.ROOT).split("\\s+TO\\s+|\\s*-\\s*");
+                DayOfWeek first = parseDay(range[0]);
+                DayOfWeek last = range.length > 1 ? parseDay(range[1]) : first;
+                if (first == null || last == null) {
+                    continue;
+                }
+                for (DayOfWeek day = first; ; day = day.plus(1)) {
+                    days.add(day);
+                    if (day == last) {
+                        break;
+                    }
+                }
+            }
+            return days;
+        }
+
+        private static DayOfWeek parseDay(String name) {
+            if (name.length() < 3) {
+                return null;
+            }
+            for (DayOfWeek day : DayOfWeek.values()) {
+                if (day.name().startsWith(name.substring(0, 3))) {
+                    return day;
+                }
+            }
+            return null;
+        }
+    }
+}
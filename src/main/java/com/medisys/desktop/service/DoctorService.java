@@ -1,51 +1,157 @@
 package com.medisys.desktop.service;
 
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.ChangeSet;
 import com.medisys.desktop.model.Doctor;
+import com.medisys.desktop.model.DoctorSummary;
+import com.medisys.desktop.util.StringInterner;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 
-import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.sql.Time;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class DoctorService {
+    static final IndexedRowExtractor<Doctor> DOCTOR_EXTRACTOR = new IndexedRowExtractor<>(DoctorService::readDoctor,
+            "id", "name", "specialty", "contact_info", "department_id", "version", "doctor_code",
+            "morning_start_time", "morning_end_time", "evening_start_time", "evening_end_time", "working_days");
+    static final IndexedRowExtractor<DoctorSummary> SUMMARY_EXTRACTOR = new IndexedRowExtractor<>(DoctorService::readSummary,
+            "id", "name", "specialty", "contact_info", "department_id", "email");
+    private static final String INSERT_SQL = "INSERT INTO doctors (id, doctor_code, name, specialty, contact_info, " +
+            "department_id, morning_start_time, morning_end_time, evening_start_time, evening_end_time, working_days) " +
+            "VALUES (?, ?, ?, ?, ?, ?, ?, ?, ?, ?, ?)";
+    private static final List<String> UPDATABLE_COLUMNS = List.of("name", "specialty", "contact_info", "department_id",
+            "morning_start_time", "morning_end_time", "evening_start_time", "evening_end_time", "working_days");
+    private static final String SUMMARY_COLUMNS = "id, name, specialty, contact_info, department_id";
+    private static final StringInterner LOW_CARDINALITY = new StringInterner(10_000);
+
     private final JdbcTemplate jdbcTemplate;
     private final AuditService auditService;
+    private final HiLoIdAllocator doctorIds;
+    private final ChangeWriter writer;
 
     public DoctorService(JdbcTemplate jdbcTemplate, AuditService auditService) {
         this.jdbcTemplate = jdbcTemplate;
         this.auditService = auditService;
+        this.writer = new ChangeWriter("Doctor", auditService);
+        this.doctorIds = new HiLoIdAllocator(jdbcTemplate, "doctors_id_seq");
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    private static Doctor readDoctor(ResultSet rs, int[] c) throws SQLException {
+        Doctor d = Doctor.stored(rs.getLong(c[0]));
+        d.setName(rs.getString(c[1]));
+        d.setSpecialty(LOW_CARDINALITY.intern(rs.getString(c[2])));
+        d.setContactInfo(rs.getString(c[3]));
+        d.setDepartmentId(rs.getLong(c[4]));
+        if (c[6] > 0) d.setDoctorId(rs.getString(c[6]));
+        if (c[7] > 0) d.setMorningStartTime(localTime(rs.getTime(c[7])));
+        if (c[8] > 0) d.setMorningEndTime(localTime(rs.getTime(c[8])));
+        if (c[9] > 0) d.setEveningStartTime(localTime(rs.getTime(c[9])));
+        if (c[10] > 0) d.setEveningEndTime(localTime(rs.getTime(c[10])));
+        if (c[11] > 0) d.setWorkingDays(LOW_CARDINALITY.intern(rs.getString(c[11])));
+        if (c[5] > 0) {
+            // Without the row version a save could not be checked, so only versioned rows track changes
+            d.setVersion(rs.getLong(c[5]));
+            d.markClean();
+        }
+        return d;
+    }
+
+    private static LocalTime localTime(Time time) {
+        return time != null ? time.toLocalTime() : null;
+    }
+
+    private static DoctorSummary readSummary(ResultSet rs, int[] c) throws SQLException {
+        long departmentId = rs.getLong(c[4]);
+        Long department = rs.wasNull() ? null : departmentId;
+        return new DoctorSummary(rs.getLong(c[0]), rs.getString(c[1]), LOW_CARDINALITY.intern(rs.getString(c[2])),
+                rs.getString(c[3]), c[5] > 0 ? rs.getString(c[5]) : null, department, true);
+    }
+
+    /**
+     * Readable doctor number derived from the id, e.g. DOC000042. Unique because the id is.
+     */
+    public static String doctorCode(long id) {
+        return String.format("DOC%06d", id);
     }
 
     public Doctor createDoctor(Doctor doctor, Long userId) {
-        String sql = "INSERT INTO doctors (name, specialty, contact_info, department_id) VALUES (?, ?, ?, ?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
-            ps.setString(1, doctor.getName());
-            ps.setString(2, doctor.getSpecialty());
-            ps.setString(3, doctor.getContactInfo());
-            ps.setLong(4, doctor.getDepartmentId());
-            return ps;
-        }, keyHolder);
-
-        Long doctorId = keyHolder.getKey().longValue();
-        doctor.setId(doctorId);
-        auditService.logAction(userId, "CREATE_DOCTOR", "Doctor", doctorId);
+        assignIds(doctor);
+        writer.inTransaction(() -> {
+            jdbcTemplate.update(INSERT_SQL, insertArgs(doctor));
+            writer.publish(ChangeType.CREATE, "CREATE_DOCTOR", doctor.getId(), userId, 1);
+            return null;
+        });
+        doctor.markClean();
         return doctor;
     }
 
+    /**
+     * Registers several doctors with one batched INSERT and one change event for the set.
+     */
+    public List<Doctor> createDoctors(List<Doctor> doctors, Long userId) {
+        if (doctors.isEmpty()) {
+            return doctors;
+        }
+        List<Object[]> rows = new ArrayList<>(doctors.size());
+        List<Long> ids = new ArrayList<>(doctors.size());
+        for (Doctor doctor : doctors) {
+            assignIds(doctor);
+            rows.add(insertArgs(doctor));
+            ids.add(doctor.getId());
+        }
+        writer.inTransaction(() -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            writer.publishBulk(ChangeType.CREATE, "BULK_CREATE_DOCTORS", ids, userId);
+            return null;
+        });
+        doctors.forEach(Doctor::markClean);
+        return doctors;
+    }
+
+    // Ids come from a locally reserved block, so the row needs no generated-key round trip
+    private void assignIds(Doctor doctor) {
+        long id = doctorIds.next();
+        doctor.setId(id);
+        doctor.setDoctorId(doctorCode(id));
+        doctor.setVersion(0);
+    }
+
+    private static Object[] insertArgs(Doctor doctor) {
+        return new Object[]{doctor.getId(), doctor.getDoctorId(), doctor.getName(), doctor.getSpecialty(),
+                doctor.getContactInfo(), doctor.getDepartmentId(), sqlTime(doctor.getMorningStartTime()),
+                sqlTime(doctor.getMorningEndTime()), sqlTime(doctor.getEveningStartTime()),
+                sqlTime(doctor.getEveningEndTime()), doctor.getWorkingDays()};
+    }
+
+    private static Time sqlTime(LocalTime time) {
+        return time != null ? Time.valueOf(time) : null;
+    }
+
     public Doctor getDoctor(Long id, Long userId) {
         String sql = "SELECT * FROM doctors WHERE id = ?";
-        Doctor doctor = jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
-            Doctor d = new Doctor();
-            d.setId(rs.getLong("id"));
-            d.setName(rs.getString("name"));
-            d.setSpecialty(rs.getString("specialty"));
-            d.setContactInfo(rs.getString("contact_info"));
-            d.setDepartmentId(rs.getLong("department_id"));
-            return d;
-        });
+        Doctor doctor = RoutingContext.onReplica(() ->
+                DataAccessUtils.requiredSingleResult(jdbcTemplate.query(sql, DOCTOR_EXTRACTOR, id)));
 
         auditService.logAction(userId, "VIEW_DOCTOR", "Doctor", id);
         return doctor;
@@ -53,29 +159,166 @@ public class DoctorService {
 
     public List<Doctor> getAllDoctors(Long userId) {
         String sql = "SELECT * FROM doctors";
-        List<Doctor> doctors = jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Doctor d = new Doctor();
-            d.setId(rs.getLong("id"));
-            d.setName(rs.getString("name"));
-            d.setSpecialty(rs.getString("specialty"));
-            d.setContactInfo(rs.getString("contact_info"));
-            d.setDepartmentId(rs.getLong("department_id"));
-            return d;
-        });
+        List<Doctor> doctors = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, DOCTOR_EXTRACTOR));
 
         auditService.logAction(userId, "LIST_DOCTORS", "Doctor", null);
         return doctors;
     }
 
+    /**
+     * List rows for the doctor table: only the displayed columns are selected and no
+     * full entity is built. Open a row with {@link #getDoctor}.
+     */
+    public List<DoctorSummary> getDoctorSummaries(Long userId) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM doctors ORDER BY id";
+        List<DoctorSummary> summaries = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, SUMMARY_EXTRACTOR));
+
+        auditService.logAction(userId, "LIST_DOCTORS", "Doctor", null);
+        return summaries;
+    }
+
+    /**
+     * {@link #getDoctorSummaries(Long)}, with the department names queued on {@code references};
+     * the names are set once the caller dispatches it.
+     */
+    public List<DoctorSummary> getDoctorSummaries(Long userId, ReferenceLoaders references) {
+        List<DoctorSummary> summaries = getDoctorSummaries(userId);
+        BatchLoader<Long, String> departmentNames = references.departmentNames();
+        for (DoctorSummary summary : summaries) {
+            departmentNames.load(summary.getDepartmentId(), summary::setDepartmentName);
+        }
+        return summaries;
+    }
+
+    /**
+     * Doctor list rows with their department names, in two queries.
+     */
+    public List<DoctorSummary> getDoctorSummariesWithDepartments(Long userId) {
+        ReferenceLoaders references = new ReferenceLoaders(jdbcTemplate);
+        List<DoctorSummary> summaries = getDoctorSummaries(userId, references);
+        references.dispatch();
+        return summaries;
+    }
+
+    /**
+     * Doctor list rows changed since {@code watermark}, with their department names, for a
+     * list that is already open to update itself in place; every row if the watermark is null.
+     * See {@link ChangeSet}.
+     */
+    public ChangeSet<DoctorSummary> changedSince(LocalDateTime watermark, Long userId) {
+        return changedSince(watermark, false, userId);
+    }
+
+    /**
+     * As {@link #changedSince(LocalDateTime, Long)}; pass {@code fromPrimary} when refreshing
+     * on a change notification, which can arrive before a replica has the change.
+     */
+    public ChangeSet<DoctorSummary> changedSince(LocalDateTime watermark, boolean fromPrimary, Long userId) {
+        ChangeSet<DoctorSummary> changes = ChangeFeed.changedSince(jdbcTemplate, "doctors", SUMMARY_COLUMNS,
+                SUMMARY_EXTRACTOR, watermark, fromPrimary);
+        ReferenceLoaders references = new ReferenceLoaders(jdbcTemplate);
+        BatchLoader<Long, String> departmentNames = references.departmentNames();
+        for (DoctorSummary summary : changes.getRows()) {
+            departmentNames.load(summary.getDepartmentId(), summary::setDepartmentName);
+        }
+        references.dispatch();
+
+        // Polls that find nothing are not logged
+        if (!changes.isEmpty()) {
+            auditService.logAction(userId, changes.isFullReload() ? "LIST_DOCTORS" : "SYNC_DOCTORS", "Doctor", null);
+        }
+        return changes;
+    }
+
+    /**
+     * Saves a doctor. One loaded through this service writes only the columns changed
+     * since it was loaded, and only if nobody has saved it in the meantime; one built from
+     * scratch overwrites every column. Either way the row version is bumped.
+     *
+     * @throws OptimisticLockingFailureException if a loaded doctor was saved elsewhere first
+     */
     public void updateDoctor(Doctor doctor, Long userId) {
-        String sql = "UPDATE doctors SET name = ?, specialty = ?, contact_info = ?, department_id = ? WHERE id = ?";
-        jdbcTemplate.update(sql, doctor.getName(), doctor.getSpecialty(), doctor.getContactInfo(), doctor.getDepartmentId(), doctor.getId());
-        auditService.logAction(userId, "UPDATE_DOCTOR", "Doctor", doctor.getId());
+        if (doctor.isTracked() && doctor.getChangedColumns().isEmpty()) {
+            return;
+        }
+        Collection<String> columns = doctor.isTracked() ? doctor.getChangedColumns() : UPDATABLE_COLUMNS;
+        Long newVersion = writer.inTransaction(() -> {
+            StringBuilder sql = new StringBuilder("UPDATE doctors SET ");
+            List<Object> args = new ArrayList<>();
+            Map<String, String> changes = new LinkedHashMap<>();
+            for (String column : columns) {
+                Object value = columnValue(doctor, column);
+                sql.append(column).append(" = ?, ");
+                args.add(value);
+                changes.put(column, value != null ? value.toString() : null);
+            }
+            sql.append("version = version + 1 WHERE id = ?");
+            args.add(doctor.getId());
+            if (doctor.isTracked()) {
+                sql.append(" AND version = ?");
+                args.add(doctor.getVersion());
+            }
+            sql.append(" RETURNING version");
+
+            List<Long> versions = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> rs.getLong(1), args.toArray());
+            if (versions.isEmpty()) {
+                if (doctor.isTracked()) {
+                    throw new OptimisticLockingFailureException("Doctor " + doctor.getId()
+                            + " was changed or deleted by another user; reload it and try again");
+                }
+                writer.publish(ChangeType.UPDATE, "UPDATE_DOCTOR", doctor.getId(), userId, 0);
+                return null;
+            }
+            writer.publishUpdate("UPDATE_DOCTOR", doctor.getId(), userId, versions.get(0), changes);
+            return versions.get(0);
+        });
+
+        if (newVersion != null) {
+            doctor.setVersion(newVersion);
+            doctor.markClean();
+        }
     }
 
     public void deleteDoctor(Long id, Long userId) {
-        String sql = "DELETE FROM doctors WHERE id = ?";
-        jdbcTemplate.update(sql, id);
-        auditService.logAction(userId, "DELETE_DOCTOR", "Doctor", id);
+        writer.inTransaction(() -> {
+            String sql = "DELETE FROM doctors WHERE id = ?";
+            int deleted = jdbcTemplate.update(sql, id);
+            writer.publish(ChangeType.DELETE, "DELETE_DOCTOR", id, userId, deleted);
+            return null;
+        });
+    }
+
+    /**
+     * Moves the given doctors to {@code departmentId} in one statement, with one change event
+     * for the whole set. Doctors already in that department are left untouched; the others
+     * get a new row version. Returns the number of doctors moved.
+     */
+    public int updateDoctorsDepartment(Collection<Long> ids, Long departmentId, Long userId) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return writer.inTransaction(() -> {
+            String sql = "UPDATE doctors SET department_id = ?, version = version + 1 " +
+                    "WHERE id = ANY(?) AND department_id IS DISTINCT FROM ? RETURNING id";
+            List<Long> updated = jdbcTemplate.queryForList(sql, Long.class, departmentId, ids.toArray(new Long[0]),
+                    departmentId);
+            writer.publishBulk(ChangeType.UPDATE, "BULK_UPDATE_DOCTORS_DEPARTMENT", updated, userId);
+            return updated.size();
+        });
+    }
+
+    private static Object columnValue(Doctor doctor, String column) {
+        return switch (column) {
+            case "name" -> doctor.getName();
+            case "specialty" -> doctor.getSpecialty();
+            case "contact_info" -> doctor.getContactInfo();
+            case "department_id" -> doctor.getDepartmentId();
+            case "morning_start_time" -> sqlTime(doctor.getMorningStartTime());
+            case "morning_end_time" -> sqlTime(doctor.getMorningEndTime());
+            case "evening_start_time" -> sqlTime(doctor.getEveningStartTime());
+            case "evening_end_time" -> sqlTime(doctor.getEveningEndTime());
+            case "working_days" -> doctor.getWorkingDays();
+            default -> throw new IllegalArgumentException("Not an updatable doctor column: " + column);
+        };
     }
-}
\ No newline at end of file
+}
@@ -1,49 +1,161 @@
 package com.medisys.desktop.service;
 
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
 import com.medisys.desktop.model.Finance;
+import com.medisys.desktop.model.RevenueBucket;
+import com.medisys.desktop.model.RevenueGranularity;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
+import org.springframework.jdbc.core.RowMapper;
 
-import java.sql.PreparedStatement;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class FinanceService {
     private final JdbcTemplate jdbcTemplate;
     private final AuditService auditService;
+    private final ChangeWriter writer;
+
+    // Each write applies its delta to finance_revenue_daily in the same statement,
+    // so the rollup can never drift from the finance table.
+    private static final String ROLLUP_UPSERT = """
+            INSERT INTO finance_revenue_daily (revenue_date, department_id, status, total_amount, bill_count)
+            SELECT revenue_date, department_id, status, SUM(amount), SUM(bill_count) FROM delta
+            GROUP BY revenue_date, department_id, status
+            ON CONFLICT (revenue_date, department_id, status) DO UPDATE
+            SET total_amount = finance_revenue_daily.total_amount + EXCLUDED.total_amount,
+                bill_count = finance_revenue_daily.bill_count + EXCLUDED.bill_count
+            """;
+
+    // Net revenue change per posting date, returned by update/delete for event consumers
+    private static final String REVENUE_DELTA_SELECT = """
+            )
+            SELECT revenue_date, SUM(amount) AS amount FROM delta GROUP BY revenue_date
+            """;
+
+    private static final RowMapper<Map.Entry<LocalDate, Double>> REVENUE_DELTA_ROW_MAPPER = (rs, rowNum) ->
+            Map.entry(rs.getDate("revenue_date").toLocalDate(), rs.getDouble("amount"));
+
+    private static final RowMapper<Finance> FINANCE_ROW_MAPPER = (rs, rowNum) -> {
+        Finance f = new Finance();
+        f.setId(rs.getLong("id"));
+        f.setPatientId(rs.getLong("patient_id"));
+        f.setAmount(rs.getBigDecimal("amount"));
+        f.setStatus(rs.getString("status"));
+        f.setDepartmentId(rs.getObject("department_id", Long.class));
+        Timestamp createdDate = rs.getTimestamp("created_date");
+        if (createdDate != null) {
+            f.setCreatedDate(createdDate.toLocalDateTime());
+        }
+        return f;
+    };
 
     public FinanceService(JdbcTemplate jdbcTemplate, AuditService auditService) {
         this.jdbcTemplate = jdbcTemplate;
         this.auditService = auditService;
+        this.writer = new ChangeWriter("Finance", auditService);
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
     }
 
     public Finance createFinance(Finance finance, Long userId) {
-        String sql = "INSERT INTO finance (patient_id, amount, status) VALUES (?, ?, ?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
-            ps.setLong(1, finance.getPatientId());
-            ps.setDouble(2, finance.getAmount());
-            ps.setString(3, finance.getStatus());
-            return ps;
-        }, keyHolder);
-
-        Long financeId = keyHolder.getKey().longValue();
-        finance.setId(financeId);
-        auditService.logAction(userId, "CREATE_FINANCE", "Finance", financeId);
-        return finance;
+        return writer.inTransaction(() -> {
+            if (finance.getCreatedDate() == null) {
+                finance.setCreatedDate(LocalDateTime.now());
+            }
+            String sql = """
+                    WITH inserted AS (
+                        INSERT INTO finance (patient_id, amount, status, department_id, created_date) VALUES (?, ?, ?, ?, ?)
+                        RETURNING id, amount, status, department_id, created_date
+                    ), delta AS (
+                        SELECT CAST(created_date AS DATE) AS revenue_date, COALESCE(department_id, 0) AS department_id,
+                               status, amount, 1 AS bill_count
+                        FROM inserted
+                    ), rollup AS (
+                    """ + ROLLUP_UPSERT + """
+                    )
+                    SELECT id FROM inserted
+                    """;
+            Long financeId = jdbcTemplate.queryForObject(sql, Long.class,
+                    finance.getPatientId(), finance.getAmount(), finance.getStatus(),
+                    finance.getDepartmentId(), Timestamp.valueOf(finance.getCreatedDate()));
+
+            finance.setId(financeId);
+            writer.publish(ChangeType.CREATE, "CREATE_FINANCE", financeId, userId, 1,
+                    finance.getCreatedDate().toLocalDate(), finance.getAmount().doubleValue());
+            return finance;
+        });
+    }
+
+    /**
+     * Creates the finance records with batched inserts and one rollup update for the whole set.
+     * Ids for the set come from one sequence call, so no row needs a generated-key round trip.
+     */
+    public List<Finance> createFinances(List<Finance> finances, Long userId) {
+        if (finances.isEmpty()) {
+            return finances;
+        }
+        return writer.inTransaction(() -> {
+            List<Long> ids = jdbcTemplate.queryForList(
+                    "SELECT nextval('finance_id_seq') FROM generate_series(1, ?)", Long.class, finances.size());
+            LocalDateTime now = LocalDateTime.now();
+            for (int i = 0; i < finances.size(); i++) {
+                Finance finance = finances.get(i);
+                finance.setId(ids.get(i));
+                if (finance.getCreatedDate() == null) {
+                    finance.setCreatedDate(now);
+                }
+            }
+            jdbcTemplate.batchUpdate("INSERT INTO finance (id, patient_id, amount, status, department_id, created_date) " +
+                    "VALUES (?, ?, ?, ?, ?, ?)", finances, finances.size(), (ps, finance) -> {
+                ps.setLong(1, finance.getId());
+                ps.setObject(2, finance.getPatientId());
+                ps.setBigDecimal(3, finance.getAmount());
+                ps.setString(4, finance.getStatus());
+                ps.setObject(5, finance.getDepartmentId());
+                ps.setTimestamp(6, Timestamp.valueOf(finance.getCreatedDate()));
+            });
+
+            String sql = """
+                    WITH delta AS (
+                        SELECT CAST(created_date AS DATE) AS revenue_date, COALESCE(department_id, 0) AS department_id,
+                               status, amount, 1 AS bill_count
+                        FROM finance WHERE id = ANY(?)
+                    ), rollup AS (
+                    """ + ROLLUP_UPSERT + REVENUE_DELTA_SELECT;
+            List<Map.Entry<LocalDate, Double>> deltas = jdbcTemplate.query(sql, REVENUE_DELTA_ROW_MAPPER,
+                    (Object) ids.toArray(new Long[0]));
+            // One event per posting date, listing that date's records with its revenue delta
+            Map<LocalDate, List<Long>> idsByDate = new LinkedHashMap<>();
+            for (Finance finance : finances) {
+                idsByDate.computeIfAbsent(finance.getCreatedDate().toLocalDate(), d -> new ArrayList<>()).add(finance.getId());
+            }
+            for (Map.Entry<LocalDate, Double> delta : deltas) {
+                writer.publishBulk(ChangeType.CREATE, "BULK_CREATE_FINANCE", idsByDate.get(delta.getKey()), userId,
+                        delta.getKey(), delta.getValue());
+            }
+            return finances;
+        });
     }
 
     public Finance getFinance(Long id, Long userId) {
         String sql = "SELECT * FROM finance WHERE id = ?";
-        Finance finance = jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
-            Finance f = new Finance();
-            f.setId(rs.getLong("id"));
-            f.setPatientId(rs.getLong("patient_id"));
-            f.setAmount(rs.getDouble("amount"));
-            f.setStatus(rs.getString("status"));
-            return f;
-        });
+        Finance finance = RoutingContext.onReplica(() -> jdbcTemplate.queryForObject(sql, FINANCE_ROW_MAPPER, id));
 
         auditService.logAction(userId, "VIEW_FINANCE", "Finance", id);
         return finance;
@@ -51,28 +163,178 @@ public class FinanceService {
 
     public List<Finance> getAllFinance(Long userId) {
         String sql = "SELECT * FROM finance";
-        List<Finance> finances = jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Finance f = new Finance();
-            f.setId(rs.getLong("id"));
-            f.setPatientId(rs.getLong("patient_id"));
-            f.setAmount(rs.getDouble("amount"));
-            f.setStatus(rs.getString("status"));
-            return f;
-        });
+        List<Finance> finances = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, FINANCE_ROW_MAPPER));
 
         auditService.logAction(userId, "LIST_FINANCE", "Finance", null);
         return finances;
     }
 
+    /**
+     * All finance records, with their patient names queued on {@code references}; the names are
+     * set once the caller dispatches it.
+     */
+    public List<Finance> getAllFinance(Long userId, ReferenceLoaders references) {
+        List<Finance> finances = getAllFinance(userId);
+        BatchLoader<Long, String> patientNames = references.patientNames();
+        for (Finance finance : finances) {
+            patientNames.load(finance.getPatientId(), finance::setPatientName);
+        }
+        return finances;
+    }
+
+    /**
+     * All finance records with their patient names, in two queries.
+     */
+    public List<Finance> getAllFinanceWithPatientNames(Long userId) {
+        ReferenceLoaders references = new ReferenceLoaders(jdbcTemplate);
+        List<Finance> finances = getAllFinance(userId, references);
+        references.dispatch();
+        return finances;
+    }
+
     public void updateFinance(Finance finance, Long userId) {
-        String sql = "UPDATE finance SET patient_id = ?, amount = ?, status = ? WHERE id = ?";
-        jdbcTemplate.update(sql, finance.getPatientId(), finance.getAmount(), finance.getStatus(), finance.getId());
-        auditService.logAction(userId, "UPDATE_FINANCE", "Finance", finance.getId());
+        writer.inTransaction(() -> {
+            // The old row is read and locked in the same snapshot as the update,
+            // so the rollup receives -old +new for exactly the row that changed.
+            String sql = """
+                    WITH old AS (
+                        SELECT id, amount, status, department_id, created_date FROM finance WHERE id = ? FOR UPDATE
+                    ), updated AS (
+                        UPDATE finance f SET patient_id = ?, amount = ?, status = ?, department_id = ?
+                        FROM old WHERE f.id = old.id
+                        RETURNING f.amount, f.status, f.department_id, f.created_date
+                    ), delta AS (
+                        SELECT CAST(created_date AS DATE) AS revenue_date, COALESCE(department_id, 0) AS department_id,
+                               status, -amount AS amount, -1 AS bill_count
+                        FROM old
+                        UNION ALL
+                        SELECT CAST(created_date AS DATE), COALESCE(department_id, 0), status, amount, 1
+                        FROM updated
+                    ), rollup AS (
+                    """ + ROLLUP_UPSERT + REVENUE_DELTA_SELECT;
+            List<Map.Entry<LocalDate, Double>> deltas = jdbcTemplate.query(sql, REVENUE_DELTA_ROW_MAPPER, finance.getId(),
+                    finance.getPatientId(), finance.getAmount(), finance.getStatus(), finance.getDepartmentId());
+            publishChanges(ChangeType.UPDATE, "UPDATE_FINANCE", finance.getId(), userId, deltas);
+            return null;
+        });
     }
 
     public void deleteFinance(Long id, Long userId) {
-        String sql = "DELETE FROM finance WHERE id = ?";
-        jdbcTemplate.update(sql, id);
-        auditService.logAction(userId, "DELETE_FINANCE", "Finance", id);
+        writer.inTransaction(() -> {
+            String sql = """
+                    WITH deleted AS (
+                        DELETE FROM finance WHERE id = ?
+                        RETURNING amount, status, department_id, created_date
+                    ), delta AS (
+                        SELECT CAST(created_date AS DATE) AS revenue_date, COALESCE(department_id, 0) AS department_id,
+                               status, -amount AS amount, -1 AS bill_count
+                        FROM deleted
+                    ), rollup AS (
+                    """ + ROLLUP_UPSERT + REVENUE_DELTA_SELECT;
+            List<Map.Entry<LocalDate, Double>> deltas = jdbcTemplate.query(sql, REVENUE_DELTA_ROW_MAPPER, id);
+            publishChanges(ChangeType.DELETE, "DELETE_FINANCE", id, userId, deltas);
+            return null;
+        });
+    }
+
+    /**
+     * Sets the status of the given finance records in one statement, with one change event
+     * for the whole set. Records already in that status are left untouched. The rollup moves
+     * each changed record from its old status bucket to the new one in the same statement.
+     * Returns the number of records changed.
+     */
+    public int updateFinanceStatus(Collection<Long> ids, String status, Long userId) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return writer.inTransaction(() -> {
+            List<Long> updated = jdbcTemplate.queryForList(statusChangeSql("status <> ?"), Long.class,
+                    ids.toArray(new Long[0]), status, status);
+            // Revenue totals do not depend on status, so there is no revenue delta to publish
+            writer.publishBulk(ChangeType.UPDATE, "BULK_UPDATE_FINANCE_STATUS", updated, userId);
+            return updated.size();
+        });
+    }
+
+    /**
+     * Like {@link #updateFinanceStatus}, but only moves records that are currently in one of
+     * {@code fromStatuses}, so a record settled or cancelled meanwhile is not overwritten.
+     * Returns the ids of the records changed.
+     */
+    public List<Long> transitionFinanceStatus(Collection<Long> ids, Collection<String> fromStatuses, String status,
+                                              Long userId) {
+        if (ids.isEmpty()) {
+            return List.of();
+        }
+        return writer.inTransaction(() -> {
+            List<Long> updated = jdbcTemplate.queryForList(statusChangeSql("status = ANY(?) AND status <> ?"), Long.class,
+                    ids.toArray(new Long[0]), fromStatuses.toArray(new String[0]), status, status);
+            writer.publishBulk(ChangeType.UPDATE, "BULK_UPDATE_FINANCE_STATUS", updated, userId);
+            return updated;
+        });
+    }
+
+    // Parameters: the ids, those of the condition, then the new status
+    private static String statusChangeSql(String condition) {
+        return """
+                WITH old AS (
+                    SELECT id, amount, status, department_id, created_date FROM finance
+                    WHERE id = ANY(?) AND %s FOR UPDATE
+                ), updated AS (
+                    UPDATE finance f SET status = ?
+                    FROM old WHERE f.id = old.id
+                    RETURNING f.id, f.amount, f.status, f.department_id, f.created_date
+                ), delta AS (
+                    SELECT CAST(created_date AS DATE) AS revenue_date, COALESCE(department_id, 0) AS department_id,
+                           status, -amount AS amount, -1 AS bill_count
+                    FROM old
+                    UNION ALL
+                    SELECT CAST(created_date AS DATE), COALESCE(department_id, 0), status, amount, 1
+                    FROM updated
+                ), rollup AS (
+                """.formatted(condition) + ROLLUP_UPSERT + """
+                )
+                SELECT id FROM updated
+                """;
+    }
+
+    private void publishChanges(ChangeType changeType, String action, Long id, Long userId,
+                                List<Map.Entry<LocalDate, Double>> deltas) {
+        if (deltas.isEmpty()) {
+            writer.publish(changeType, action, id, userId, 0, null, 0);
+            return;
+        }
+        for (Map.Entry<LocalDate, Double> delta : deltas) {
+            writer.publish(changeType, action, id, userId, 1, delta.getKey(), delta.getValue());
+        }
+    }
+
+    /**
+     * Revenue totals per period / department / status between {@code from} and {@code to} (inclusive).
+     * Reads only the daily rollup, so cost grows with the number of buckets, not finance rows.
+     */
+    public List<RevenueBucket> getRevenueSummary(LocalDate from, LocalDate to, RevenueGranularity granularity, Long userId) {
+        String sql = """
+                SELECT CAST(date_trunc(?, revenue_date) AS DATE) AS period_start, department_id, status,
+                       SUM(total_amount) AS total_amount, SUM(bill_count) AS bill_count
+                FROM finance_revenue_daily
+                WHERE revenue_date BETWEEN ? AND ?
+                GROUP BY 1, department_id, status
+                HAVING SUM(bill_count) > 0
+                ORDER BY 1, department_id, status
+                """;
+        List<RevenueBucket> buckets = RoutingContext.as(WorkloadClass.REPORTING, () -> RoutingContext.onReplica(() ->
+                jdbcTemplate.query(sql, (rs, rowNum) -> {
+                    long departmentId = rs.getLong("department_id");
+                    return new RevenueBucket(
+                            rs.getDate("period_start").toLocalDate(),
+                            departmentId == 0 ? null : departmentId,
+                            rs.getString("status"),
+                            rs.getBigDecimal("total_amount"),
+                            rs.getLong("bill_count"));
+                }, granularity.getSqlUnit(), java.sql.Date.valueOf(from), java.sql.Date.valueOf(to))));
+
+        auditService.logAction(userId, "VIEW_REVENUE_SUMMARY", "Finance", null);
+        return buckets;
     }
-}
\ No newline at end of file
+}
@@ -0,0 +1,48 @@
+package com.medisys.desktop.service;
+
+import org.springframework.jdbc.core.JdbcTemplate;
+
+/**
+ * Hands out primary keys from a database sequence in blocks, so creating an entity needs
+ * no round trip for its id and inserts can be batched.
+ *
+ * The sequence's INCREMENT BY is the block size: one {@code nextval} reserves the whole
+ * range {@code [value, value + increment)} for this allocator. Every workstation (and any
+ * INSERT relying on the column default) draws from the same sequence, so ranges never
+ * overlap. Ids left in a block at shutdown are simply never used.
+ */
+public class HiLoIdAllocator {
+    private final JdbcTemplate jdbcTemplate;
+    private final String sequenceName;
+    private long next;
+    private long limit;
+    private long blockSize;
+
+    public HiLoIdAllocator(JdbcTemplate jdbcTemplate, String sequenceName) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.sequenceName = sequenceName;
+    }
+
+    public synchronized long next() {
+        if (next >= limit) {
+            reserveBlock();
+        }
+        return next++;
+    }
+
+    private void reserveBlock() {
+        if (blockSize == 0) {
+            // Read from the sequence itself so the block size can never disagree with INCREMENT BY
+            Long increment = jdbcTemplate.queryForObject(
+                    "SELECT increment_by FROM pg_sequences WHERE schemaname = current_schema() AND sequencename = ?",
+                    Long.class, sequenceName);
+            if (increment == null || increment < 1) {
+                throw new IllegalStateException("Sequence " + sequenceName + " must count upwards");
+            }
+            blockSize = increment;
+        }
+        Long start = jdbcTemplate.queryForObject("SELECT nextval(?::regclass)", Long.class, sequenceName);
+        next = start;
+        limit = start + blockSize;
+    }
+}
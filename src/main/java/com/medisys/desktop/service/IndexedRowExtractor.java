@@ -0,0 +1,59 @@
+package com.medisys.desktop.service;
+
+import org.springframework.jdbc.core.ResultSetExtractor;
+
+import java.sql.ResultSet;
+import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+
+/**
+ * Maps a result set by column position instead of by name.
+ *
+ * The declared columns are resolved against the result set metadata once, before the
+ * first row; the row reader then gets an index array in declaration order, where 0 means
+ * the column is not in this result set. Name lookups per row (a case-insensitive search
+ * in the driver for every {@code getString("name")}) are gone from the loop.
+ */
+public class IndexedRowExtractor<T> implements ResultSetExtractor<List<T>> {
+
+    @FunctionalInterface
+    public interface RowReader<T> {
+        T read(ResultSet rs, int[] columns) throws SQLException;
+    }
+
+    private final RowReader<T> reader;
+    private final String[] columnNames;
+
+    public IndexedRowExtractor(RowReader<T> reader, String... columnNames) {
+        this.reader = reader;
+        this.columnNames = columnNames;
+    }
+
+    @Override
+    public List<T> extractData(ResultSet rs) throws SQLException {
+        int[] columns = resolve(rs.getMetaData());
+        List<T> rows = new ArrayList<>();
+        while (rs.next()) {
+            rows.add(reader.read(rs, columns));
+        }
+        return rows;
+    }
+
+    private int[] resolve(ResultSetMetaData metaData) throws SQLException {
+        Map<String, Integer> positions = new HashMap<>();
+        for (int i = metaData.getColumnCount(); i >= 1; i--) {
+            // Walking backwards keeps the first occurrence of a duplicated label
+            positions.put(metaData.getColumnLabel(i).toLowerCase(Locale.ROOT), i);
+        }
+        int[] columns = new int[columnNames.length];
+        for (int i = 0; i < columnNames.length; i++) {
+            columns[i] = positions.getOrDefault(columnNames[i], 0);
+        }
+        return columns;
+    }
+}
@@ -0,0 +1,251 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.event.DomainEvent;
+import com.medisys.desktop.event.DomainEventHandler;
+import com.medisys.desktop.model.DashboardStatistics;
+import javafx.application.Platform;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.YearMonth;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
+import java.util.concurrent.Executor;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.DoubleAdder;
+import java.util.concurrent.atomic.LongAdder;
+import java.util.function.Consumer;
+
+/**
+ * Live dashboard counters maintained from service write events.
+ *
+ * The tables are counted once on {@link #start()}; after that every card is
+ * driven by increments. Listeners are notified at most {@code maxUpdatesPerSecond}
+ * times per second, with any burst of writes in between coalesced into one snapshot.
+ */
+public class LiveStatisticsService implements DomainEventHandler, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(LiveStatisticsService.class);
+    private static final int REVENUE_WINDOW_DAYS = 7;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final long publishIntervalMillis;
+    private final Executor uiExecutor;
+    private final ScheduledExecutorService scheduler;
+
+    private final LongAdder totalPatients = new LongAdder();
+    private final LongAdder activeDoctors = new LongAdder();
+    private final LongAdder todaysAppointments = new LongAdder();
+    private final DoubleAdder monthlyRevenue = new DoubleAdder();
+    private final Map<LocalDate, DoubleAdder> dailyRevenue = new ConcurrentHashMap<>();
+    private volatile LocalDate appointmentDay = LocalDate.now();
+    private volatile YearMonth revenueMonth = YearMonth.now();
+
+    private final AtomicBoolean dirty = new AtomicBoolean(true);
+    private final AtomicBoolean dispatchPending = new AtomicBoolean(false);
+    private final List<Consumer<DashboardStatistics>> listeners = new CopyOnWriteArrayList<>();
+    private volatile DashboardStatistics latest;
+
+    public LiveStatisticsService(JdbcTemplate jdbcTemplate, int maxUpdatesPerSecond) {
+        this(jdbcTemplate, maxUpdatesPerSecond, Platform::runLater);
+    }
+
+    public LiveStatisticsService(JdbcTemplate jdbcTemplate, int maxUpdatesPerSecond, Executor uiExecutor) {
+        if (maxUpdatesPerSecond <= 0) {
+            throw new IllegalArgumentException("maxUpdatesPerSecond must be positive");
+        }
+        this.jdbcTemplate = jdbcTemplate;
+        this.publishIntervalMillis = Math.max(1, 1000 / maxUpdatesPerSecond);
+        this.uiExecutor = uiExecutor;
+        this.scheduler = Executors.newSingleThreadScheduledExecutor(r -> {
+            Thread thread = new Thread(r, "Stats-Publisher");
+            thread.setDaemon(true);
+            return thread;
+        });
+        this.latest = snapshot();
+    }
+
+    /**
+     * Seeds the counters from the database once and starts the throttled publisher.
+     */
+    public void start() {
+        RoutingContext.runAs(WorkloadClass.BACKGROUND, () -> {
+            totalPatients.add(count("SELECT COUNT(*) FROM patients"));
+            activeDoctors.add(count("SELECT COUNT(*) FROM doctors"));
+            reseedTodaysAppointments(LocalDate.now());
+            reseedMonthlyRevenue(YearMonth.now());
+            reseedDailyRevenue(LocalDate.now());
+        });
+        dirty.set(true);
+        scheduler.scheduleAtFixedRate(this::publish, publishIntervalMillis, publishIntervalMillis, TimeUnit.MILLISECONDS);
+        logger.info("Live statistics started: publishing every {} ms", publishIntervalMillis);
+    }
+
+    @Override
+    public void onEvent(DomainEvent event, long sequence, boolean endOfBatch) {
+        long sign = switch (event.getChangeType()) {
+            case CREATE -> 1;
+            case DELETE -> -1;
+            case UPDATE -> 0;
+        };
+        switch (event.getEntityType()) {
+            case "Patient" -> recordPatients(sign * event.getAffectedRows());
+            case "Doctor" -> recordDoctors(sign * event.getAffectedRows());
+            case "Finance" -> recordRevenue(event.getEventDate(), event.getAmountDelta());
+            case "Appointment" -> recordAppointments(event.getEventDate(), sign * event.getAffectedRows());
+            default -> {
+                // Not shown on the dashboard
+            }
+        }
+    }
+
+    public void recordPatients(long delta) {
+        totalPatients.add(delta);
+        dirty.set(true);
+    }
+
+    public void recordDoctors(long delta) {
+        activeDoctors.add(delta);
+        dirty.set(true);
+    }
+
+    public void recordAppointments(LocalDate appointmentDate, long delta) {
+        if (appointmentDate != null && appointmentDate.equals(appointmentDay)) {
+            todaysAppointments.add(delta);
+            dirty.set(true);
+        }
+    }
+
+    public void recordRevenue(LocalDate revenueDate, double delta) {
+        if (revenueDate == null) {
+            return;
+        }
+        if (YearMonth.from(revenueDate).equals(revenueMonth)) {
+            monthlyRevenue.add(delta);
+            dirty.set(true);
+        }
+        DoubleAdder day = dailyRevenue.get(revenueDate);
+        if (day != null) {
+            day.add(delta);
+            dirty.set(true);
+        }
+    }
+
+    /**
+     * Registers a listener; it receives the current snapshot right away and then every published update,
+     * always on the UI executor.
+     */
+    public void addListener(Consumer<DashboardStatistics> listener) {
+        listeners.add(listener);
+        DashboardStatistics current = latest;
+        uiExecutor.execute(() -> listener.accept(current));
+    }
+
+    public void removeListener(Consumer<DashboardStatistics> listener) {
+        listeners.remove(listener);
+    }
+
+    public DashboardStatistics getCurrentStatistics() {
+        return snapshot();
+    }
+
+    @Override
+    public void close() {
+        scheduler.shutdownNow();
+        listeners.clear();
+    }
+
+    private void publish() {
+        try {
+            rollOverPeriods();
+            if (!dirty.getAndSet(false)) {
+                return;
+            }
+            latest = snapshot();
+            // Only one runLater in flight; it reads the newest snapshot when it runs
+            if (dispatchPending.compareAndSet(false, true)) {
+                uiExecutor.execute(() -> {
+                    dispatchPending.set(false);
+                    DashboardStatistics current = latest;
+                    for (Consumer<DashboardStatistics> listener : listeners) {
+                        listener.accept(current);
+                    }
+                });
+            }
+        } catch (Exception e) {
+            logger.warn("Failed to publish live statistics", e);
+        }
+    }
+
+    private void rollOverPeriods() {
+        LocalDate today = LocalDate.now();
+        if (!today.equals(appointmentDay)) {
+            reseedTodaysAppointments(today);
+            reseedDailyRevenue(today);
+            dirty.set(true);
+        }
+        YearMonth month = YearMonth.from(today);
+        if (!month.equals(revenueMonth)) {
+            reseedMonthlyRevenue(month);
+            dirty.set(true);
+        }
+    }
+
+    private void reseedTodaysAppointments(LocalDate today) {
+        String sql = "SELECT COUNT(*) FROM appointments WHERE start_time >= ? AND start_time < ? AND status <> 'CANCELLED'";
+        Long count = jdbcTemplate.queryForObject(sql, Long.class,
+                Timestamp.valueOf(today.atStartOfDay()), Timestamp.valueOf(today.plusDays(1).atStartOfDay()));
+        appointmentDay = today;
+        todaysAppointments.reset();
+        todaysAppointments.add(count != null ? count : 0L);
+    }
+
+    private void reseedMonthlyRevenue(YearMonth month) {
+        // Reads the daily revenue rollup, so this is bounded by days x departments x statuses
+        String sql = "SELECT COALESCE(SUM(total_amount), 0) FROM finance_revenue_daily WHERE revenue_date BETWEEN ? AND ?";
+        Double total = jdbcTemplate.queryForObject(sql, Double.class,
+                java.sql.Date.valueOf(month.atDay(1)), java.sql.Date.valueOf(month.atEndOfMonth()));
+        revenueMonth = month;
+        monthlyRevenue.reset();
+        monthlyRevenue.add(total != null ? total : 0.0);
+    }
+
+    private void reseedDailyRevenue(LocalDate today) {
+        LocalDate firstDay = today.minusDays(REVENUE_WINDOW_DAYS - 1);
+        Map<LocalDate, DoubleAdder> window = new LinkedHashMap<>();
+        for (LocalDate day = firstDay; !day.isAfter(today); day = day.plusDays(1)) {
+            window.put(day, new DoubleAdder());
+        }
+        String sql = "SELECT revenue_date, SUM(total_amount) AS total FROM finance_revenue_daily " +
+                "WHERE revenue_date BETWEEN ? AND ? GROUP BY revenue_date";
+        jdbcTemplate.query(sql, rs -> {
+            window.get(rs.getDate("revenue_date").toLocalDate()).add(rs.getDouble("total"));
+        }, java.sql.Date.valueOf(firstDay), java.sql.Date.valueOf(today));
+        dailyRevenue.keySet().retainAll(window.keySet());
+        window.forEach((day, total) -> dailyRevenue.put(day, total));
+    }
+
+    private long count(String sql) {
+        Long count = jdbcTemplate.queryForObject(sql, Long.class);
+        return count != null ? count : 0L;
+    }
+
+    private DashboardStatistics snapshot() {
+        Map<LocalDate, Double> revenueByDay = new LinkedHashMap<>();
+        dailyRevenue.keySet().stream().sorted()
+                .forEach(day -> revenueByDay.put(day, dailyRevenue.get(day).sum()));
+        return new DashboardStatistics(totalPatients.sum(), activeDoctors.sum(), todaysAppointments.sum(),
+                monthlyRevenue.sum(), revenueByDay, LocalDateTime.now());
+    }
+}
@@ -0,0 +1,146 @@
+package com.medisys.desktop.service;
+
+/**
+ * Open finance records by id, for matching settlement lines: an open-addressing hash table over
+ * parallel primitive arrays. Each entry is its id, its amount and the amount settled against it
+ * so far, all in paise, at about 60 bytes per record including free slots; a HashMap of boxed ids
+ * to objects needs three times that and a pointer chase per lookup. Ids must be positive.
+ * Not thread-safe.
+ */
+class OpenInvoiceTable {
+
+    @FunctionalInterface
+    interface SettledEntry {
+        void accept(long financeId, long amountPaise, long settledPaise, int firstLine);
+    }
+
+    // Finance ids start at 1, so 0 marks a free slot
+    private static final long FREE = 0L;
+
+    private long[] ids;
+    private long[] amounts;
+    private long[] settled;
+    private int[] firstLines;
+    private int mask;
+    private int size;
+
+    OpenInvoiceTable(int expectedSize) {
+        allocate(Math.max(16, Integer.highestOneBit(Math.max(1, expectedSize) * 2 - 1) << 1));
+    }
+
+    int size() {
+        return size;
+    }
+
+    /**
+     * Adds an open record. A second put of the same id replaces its amount.
+     */
+    void put(long financeId, long amountPaise) {
+        if (financeId <= 0) {
+            throw new IllegalArgumentException("Finance id must be positive: " + financeId);
+        }
+        // Keep the table at most half full, so probe runs stay short
+        if (size * 2 >= ids.length) {
+            grow();
+        }
+        int slot = slotOf(financeId);
+        if (ids[slot] == FREE) {
+            ids[slot] = financeId;
+            size++;
+        }
+        amounts[slot] = amountPaise;
+    }
+
+    /**
+     * Adds a payment from settlement line {@code lineNumber} to the record. Returns false if no
+     * open record has that id.
+     */
+    boolean settle(long financeId, long paise, int lineNumber) {
+        int slot = find(financeId);
+        if (slot < 0) {
+            return false;
+        }
+        if (firstLines[slot] == 0) {
+            firstLines[slot] = lineNumber;
+        }
+        settled[slot] += paise;
+        return true;
+    }
+
+    /** The record's amount; -1 if it is not in the table */
+    long amountPaise(long financeId) {
+        int slot = find(financeId);
+        return slot >= 0 ? amounts[slot] : -1;
+    }
+
+    /** Amount settled against the record so far; -1 if it is not in the table */
+    long settledPaise(long financeId) {
+        int slot = find(financeId);
+        return slot >= 0 ? settled[slot] : -1;
+    }
+
+    /** First settlement line applied to the record; 0 if none (or not in the table) */
+    int firstLine(long financeId) {
+        int slot = find(financeId);
+        return slot >= 0 ? firstLines[slot] : 0;
+    }
+
+    /**
+     * Visits every record at least one settlement line was applied to.
+     */
+    void forEachSettled(SettledEntry entry) {
+        for (int slot = 0; slot < ids.length; slot++) {
+            if (ids[slot] != FREE && firstLines[slot] != 0) {
+                entry.accept(ids[slot], amounts[slot], settled[slot], firstLines[slot]);
+            }
+        }
+    }
+
+    private int find(long financeId) {
+        if (financeId <= 0) {
+            return -1;
+        }
+        int slot = slotOf(financeId);
+        return ids[slot] != FREE ? slot : -1;
+    }
+
+    // The slot holding the id, or the free slot where it belongs
+    private int slotOf(long financeId) {
+        int slot = hash(financeId) & mask;
+        while (ids[slot] != FREE && ids[slot] != financeId) {
+            slot = (slot + 1) & mask;
+        }
+        return slot;
+    }
+
+    // Ids are sequential, so spread them with a multiplicative hash before masking
+    private static int hash(long financeId) {
+        long h = financeId * 0x9E3779B97F4A7C15L;
+        return (int) (h ^ (h >>> 32));
+    }
+
+    private void grow() {
+        long[] oldIds = ids;
+        long[] oldAmounts = amounts;
+        long[] oldSettled = settled;
+        int[] oldFirstLines = firstLines;
+        allocate(oldIds.length * 2);
+        for (int i = 0; i < oldIds.length; i++) {
+            if (oldIds[i] != FREE) {
+                int slot = slotOf(oldIds[i]);
+                ids[slot] = oldIds[i];
+                amounts[slot] = oldAmounts[i];
+                settled[slot] = oldSettled[i];
+                firstLines[slot] = oldFirstLines[i];
+            }
+        }
+    }
+
+    private void allocate(int capacity) {
+        ids = new long[capacity];
+        amounts = new long[capacity];
+        settled = new long[capacity];
+        firstLines = new int[capacity];
+        mask = capacity - 1;
+    }
+}
@@ -0,0 +1,230 @@
+package com.medisys.desktop.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.EntityChange;
+import com.medisys.desktop.event.HistoryWriter;
+import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.PatientChange;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.sql.Timestamp;
+import java.time.LocalDateTime;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Version history of patient records ({@code patient_history}), for "the patient as it was on"
+ * and "what changed between" questions.
+ *
+ * Each version stores only the columns it changed. Every {@value #SNAPSHOT_INTERVAL}th version
+ * (and the first one seen) also stores the whole row, so a patient as of any time is one index
+ * seek to the last snapshot before it plus at most a few deltas, however long the history.
+ *
+ * The history is written by the outbox relay ({@link HistoryWriter}) from the change events
+ * the writes record anyway, so saving a patient costs nothing more. It trails the patients
+ * table by the relay's delivery delay. Bulk creates and deletes record no per-patient event:
+ * a patient created in bulk starts its history at its first update, and one deleted in bulk
+ * keeps its last version open.
+ */
+public class PatientHistoryService implements HistoryWriter {
+    static final int SNAPSHOT_INTERVAL = 16;
+    private static final ObjectMapper JSON = new ObjectMapper();
+
+    // The whole row is snapshotted when no recent version has one, provided the row is still at
+    // this version (it is unless it changed again within the relay delay; the next version then
+    // tries). A creation's changes are its snapshot.
+    private static final String INSERT_VERSION_SQL = """
+            WITH c (patient_id, version, valid_from, changed_by, changes) AS (
+                VALUES (?::bigint, ?::bigint, ?::timestamp, ?::bigint, ?::jsonb)
+            ), s AS (
+                SELECT c.*, CASE WHEN c.changes IS NULL OR NOT EXISTS (
+                           SELECT 1 FROM patient_history k WHERE k.patient_id = c.patient_id AND k.snapshot IS NOT NULL
+                           AND k.version > c.version - %d AND k.version < c.version)
+                       THEN (SELECT to_jsonb(p) - 'id' - 'version' FROM patients p
+                             WHERE p.id = c.patient_id AND p.version = c.version) END AS snapshot
+                FROM c
+            )
+            INSERT INTO patient_history (patient_id, version, valid_from, valid_to, changed_by, changes, snapshot)
+            SELECT s.patient_id, s.version, s.valid_from,
+                   (SELECT MIN(n.valid_from) FROM patient_history n WHERE n.patient_id = s.patient_id AND n.version > s.version),
+                   s.changed_by, COALESCE(s.changes, s.snapshot, '{}'::jsonb), s.snapshot
+            FROM s
+            ON CONFLICT (patient_id, version) DO NOTHING
+            """.formatted(SNAPSHOT_INTERVAL);
+    // Relays may deliver out of order, so the previous version is whichever is latest before this one
+    private static final String CLOSE_PREVIOUS_SQL = """
+            UPDATE patient_history SET valid_to = ?
+            WHERE patient_id = ? AND version = (
+                SELECT MAX(version) FROM patient_history WHERE patient_id = ? AND version < ?)
+            """;
+    private static final String CLOSE_CURRENT_SQL =
+            "UPDATE patient_history SET valid_to = ? WHERE patient_id = ? AND valid_to IS NULL AND NOT deleted";
+    private static final String INSERT_DELETION_SQL = """
+            INSERT INTO patient_history (patient_id, version, valid_from, changed_by, changes, deleted)
+            SELECT ?::bigint, COALESCE(MAX(version) + 1, 0), ?::timestamp, ?::bigint, '{}'::jsonb, TRUE
+            FROM patient_history WHERE patient_id = ?
+            HAVING NOT COALESCE(BOOL_OR(deleted), FALSE)
+            """;
+    // The last snapshot at or before the time, then every later version up to it
+    private static final String AS_OF_SQL = """
+            WITH k AS (
+                SELECT patient_id, version, valid_from, valid_to, changed_by, snapshot
+                FROM patient_history
+                WHERE patient_id = ? AND valid_from <= ? AND snapshot IS NOT NULL
+                ORDER BY valid_from DESC, version DESC LIMIT 1
+            )
+            SELECT patient_id, version, valid_from, valid_to, changed_by, CAST(snapshot AS TEXT) AS changes, FALSE AS deleted
+            FROM k
+            UNION ALL
+            SELECT h.patient_id, h.version, h.valid_from, h.valid_to, h.changed_by, CAST(h.changes AS TEXT), h.deleted
+            FROM patient_history h, k
+            WHERE h.patient_id = k.patient_id AND h.version > k.version AND h.valid_from <= ?
+            ORDER BY version
+            """;
+    private static final String CHANGES_SQL =
+            "SELECT patient_id, version, valid_from, valid_to, changed_by, CAST(changes AS TEXT) AS changes, deleted " +
+            "FROM patient_history ";
+
+    private static final RowMapper<PatientChange> CHANGE_MAPPER = (rs, rowNum) -> {
+        Timestamp validTo = rs.getTimestamp("valid_to");
+        return new PatientChange(rs.getLong("patient_id"), rs.getLong("version"),
+                rs.getTimestamp("valid_from").toLocalDateTime(), validTo != null ? validTo.toLocalDateTime() : null,
+                rs.getObject("changed_by", Long.class), columns(rs.getString("changes")), rs.getBoolean("deleted"));
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+
+    public PatientHistoryService(JdbcTemplate jdbcTemplate, AuditService auditService) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+    }
+
+    /**
+     * Appends the delivered patient changes to the history. Called by the outbox relay in its
+     * transaction; redelivered changes are ignored.
+     */
+    @Override
+    public void write(List<EntityChange> changes) {
+        for (EntityChange change : changes) {
+            Timestamp at = Timestamp.valueOf(change.getChangedAt());
+            if (change.getChangeType() == ChangeType.DELETE) {
+                jdbcTemplate.update(CLOSE_CURRENT_SQL, at, change.getEntityId());
+                jdbcTemplate.update(INSERT_DELETION_SQL, change.getEntityId(), at, change.getUserId(), change.getEntityId());
+                continue;
+            }
+            // A creation is the row's first version; an update event without a version changed nothing
+            Long version = change.getChangeType() == ChangeType.CREATE ? Long.valueOf(0L) : change.getVersion();
+            if (version == null) {
+                continue;
+            }
+            int inserted = jdbcTemplate.update(INSERT_VERSION_SQL, change.getEntityId(), version, at,
+                    change.getUserId(), change.getChangeType() == ChangeType.CREATE ? null : change.getChanges());
+            if (inserted > 0) {
+                jdbcTemplate.update(CLOSE_PREVIOUS_SQL, at, change.getEntityId(), change.getEntityId(), version);
+            }
+        }
+    }
+
+    /**
+     * The patient as it was at {@code asOf}, or null if it did not exist then (or was deleted),
+     * or the history does not reach back that far. The copy is not tracked: saving it
+     * overwrites the current record with it.
+     */
+    public Patient getPatientAsOf(Long id, LocalDateTime asOf, Long userId) {
+        Timestamp at = Timestamp.valueOf(asOf);
+        List<PatientChange> versions = RoutingContext.onReplica(() ->
+                jdbcTemplate.query(AS_OF_SQL, CHANGE_MAPPER, id, at, at));
+
+        auditService.logAction(userId, "VIEW_PATIENT_HISTORY", "Patient", id);
+        return replay(versions);
+    }
+
+    /**
+     * The versions of one patient that took effect in [{@code from}, {@code to}), oldest first.
+     */
+    public List<PatientChange> getChanges(Long id, LocalDateTime from, LocalDateTime to, Long userId) {
+        String sql = CHANGES_SQL + "WHERE patient_id = ? AND valid_from >= ? AND valid_from < ? ORDER BY valid_from, version";
+        List<PatientChange> changes = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, CHANGE_MAPPER,
+                id, Timestamp.valueOf(from), Timestamp.valueOf(to)));
+
+        auditService.logAction(userId, "VIEW_PATIENT_HISTORY", "Patient", id);
+        return changes;
+    }
+
+    /**
+     * Versions of any patient that took effect in [{@code from}, {@code to}), oldest first, at
+     * most {@code limit} of them.
+     */
+    public List<PatientChange> getChanges(LocalDateTime from, LocalDateTime to, int limit, Long userId) {
+        String sql = CHANGES_SQL + "WHERE valid_from >= ? AND valid_from < ? ORDER BY valid_from, patient_id, version LIMIT ?";
+        List<PatientChange> changes = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, CHANGE_MAPPER,
+                Timestamp.valueOf(from), Timestamp.valueOf(to), limit));
+
+        auditService.logAction(userId, "LIST_PATIENT_HISTORY", "Patient", null);
+        return changes;
+    }
+
+    /**
+     * Folds a snapshot (the first entry's changes hold the whole row) and the versions after it
+     * into the patient they describe. Null if there is nothing to fold or the patient was deleted.
+     */
+    static Patient replay(List<PatientChange> versions) {
+        if (versions.isEmpty()) {
+            return null;
+        }
+        Map<String, String> row = new LinkedHashMap<>();
+        for (PatientChange version : versions) {
+            if (version.isDeleted()) {
+                return null;
+            }
+            row.putAll(version.getChanges());
+        }
+
+        PatientChange last = versions.get(versions.size() - 1);
+        Patient patient = Patient.stored(last.getPatientId());
+        row.forEach((column, value) -> {
+            switch (column) {
+                case "name" -> patient.setName(value);
+                case "date_of_birth" -> {
+                    if (value != null) {
+                        patient.setDateOfBirth(value);
+                    }
+                }
+                case "contact_info" -> patient.setContactInfo(value);
+                case "patient_code" -> patient.setPatientId(value);
+                case "gender" -> patient.setGender(value);
+                case "blood_group" -> patient.setBloodGroup(value);
+                case "city" -> patient.setCity(value);
+                case "state" -> patient.setState(value);
+                case "country" -> patient.setCountry(value);
+                default -> { }
+            }
+        });
+        patient.setVersion(last.getVersion());
+        return patient;
+    }
+
+    // Snapshots hold the row as JSON values, deltas as text; both are read back as text
+    private static Map<String, String> columns(String json) {
+        try {
+            Map<String, String> columns = new LinkedHashMap<>();
+            Iterator<Map.Entry<String, JsonNode>> fields = JSON.readTree(json).fields();
+            while (fields.hasNext()) {
+                Map.Entry<String, JsonNode> field = fields.next();
+                columns.put(field.getKey(), field.getValue().isNull() ? null : field.getValue().asText());
+            }
+            return columns;
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable patient history entry", e);
+        }
+    }
+}
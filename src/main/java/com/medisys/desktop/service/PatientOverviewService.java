@@ -0,0 +1,325 @@
+package com.medisys.desktop.service;
+
+import com.fasterxml.jackson.databind.JsonNode;
+import com.fasterxml.jackson.databind.ObjectMapper;
+import com.medisys.desktop.event.ChangeSubscriber;
+import com.medisys.desktop.event.OutboxRelay;
+import com.medisys.desktop.model.Appointment;
+import com.medisys.desktop.model.AuditLog;
+import com.medisys.desktop.model.DoctorSummary;
+import com.medisys.desktop.model.Finance;
+import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.PatientOverview;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.EmptyResultDataAccessException;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.math.BigDecimal;
+import java.sql.Array;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.CompletionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+/**
+ * The patient screen's data ({@link PatientOverview}), loaded in one round trip and cached.
+ *
+ * One statement returns the patient row with its bills, appointments, doctors and audit trail
+ * aggregated as JSON by lateral subqueries, plus the ids of every row the overview was built
+ * from. Overviews are cached locally with those rows as dependencies and dropped when the outbox
+ * relay announces a change to any of them on {@link OutboxRelay#INVALIDATION_CHANNEL}. A new
+ * bill or appointment is not a dependency yet, so the patients of unknown ids are looked up,
+ * in one query per announcement and off the announcing thread, and their overviews dropped.
+ * A bulk change of bills or appointments names no rows and may have added some to any patient,
+ * so it drops every overview.
+ *
+ * {@link #prefetch} loads an overview in the background, so selecting a list row can start
+ * the query before the row is opened.
+ */
+public class PatientOverviewService implements MessageListener, ChangeSubscriber, AutoCloseable {
+    private static final Logger logger = LoggerFactory.getLogger(PatientOverviewService.class);
+    private static final int RECENT_ROWS = 50;
+    private static final ObjectMapper JSON = new ObjectMapper();
+    // Owner lookups for rows created after the overview was cached
+    private static final Map<String, String> OWNER_SQL = Map.of(
+            "finance", "SELECT DISTINCT patient_id FROM finance WHERE id = ANY(?)",
+            "appointments", "SELECT DISTINCT patient_id FROM appointments WHERE id = ANY(?)");
+
+    static final String OVERVIEW_SQL = """
+            SELECT p.*, b.bills, b.bill_ids, b.bill_count, b.outstanding_amount,
+                   a.appointments, a.appointment_ids, dr.doctors, l.audit_trail
+            FROM patients p
+            LEFT JOIN LATERAL (
+                SELECT COALESCE(json_agg(json_build_object('id', f.id, 'amount', CAST(f.amount AS TEXT),
+                           'status', f.status, 'departmentId', f.department_id, 'createdDate', f.created_date)
+                           ORDER BY f.n) FILTER (WHERE f.n <= %1$d), '[]') AS bills,
+                       array_agg(f.id) AS bill_ids, COUNT(f.id) AS bill_count,
+                       COALESCE(SUM(f.amount) FILTER (WHERE f.status IN ('PENDING', 'OVERDUE')), 0) AS outstanding_amount
+                FROM (SELECT finance.*, row_number() OVER (ORDER BY created_date DESC, id DESC) AS n
+                      FROM finance WHERE patient_id = p.id) f
+            ) b ON TRUE
+            LEFT JOIN LATERAL (
+                SELECT COALESCE(json_agg(json_build_object('id', x.id, 'doctorId', x.doctor_id,
+                           'startTime', x.start_time, 'endTime', x.end_time, 'appointmentType', x.appointment_type,
+                           'status', x.status, 'notes', x.notes) ORDER BY x.n) FILTER (WHERE x.n <= %1$d), '[]') AS appointments,
+                       array_agg(x.id) AS appointment_ids
+                FROM (SELECT appointments.*, row_number() OVER (ORDER BY start_time DESC, id DESC) AS n
+                      FROM appointments WHERE patient_id = p.id) x
+            ) a ON TRUE
+            LEFT JOIN LATERAL (
+                SELECT COALESCE(json_agg(json_build_object('id', d.id, 'name', d.name, 'specialty', d.specialty,
+                           'contactInfo', d.contact_info, 'departmentId', d.department_id, 'departmentName', dep.name)
+                           ORDER BY d.name, d.id), '[]') AS doctors
+                FROM doctors d LEFT JOIN departments dep ON dep.id = d.department_id
+                WHERE d.id IN (SELECT doctor_id FROM appointments WHERE patient_id = p.id)
+            ) dr ON TRUE
+            LEFT JOIN LATERAL (
+                SELECT COALESCE(json_agg(json_build_object('id', t.id, 'userId', t.user_id, 'action', t.action,
+                           'timestamp', t.timestamp) ORDER BY t.timestamp DESC, t.id DESC), '[]') AS audit_trail
+                FROM (SELECT id, user_id, action, timestamp FROM audit_logs
+                      WHERE entity_type = 'Patient' AND entity_id = p.id AND action NOT LIKE 'VIEW%%'
+                      ORDER BY timestamp DESC, id DESC LIMIT %1$d) t
+            ) l ON TRUE
+            WHERE p.id = ?
+            """.formatted(RECENT_ROWS);
+
+    // The patient columns first, in PatientService's order, then the aggregates
+    private static final String[] COLUMNS = {
+            "id", "name", "date_of_birth", "contact_info", "gender", "blood_group", "city", "state", "country",
+            "version", "patient_code",
+            "bills", "bill_ids", "bill_count", "outstanding_amount", "appointments", "appointment_ids", "doctors",
+            "audit_trail"};
+    private static final int PATIENT_COLUMNS = 11;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ApplicationMetrics metrics;
+    private final DependentCache<PatientOverview> cache;
+    // Prefetches and owner lookups
+    private final ExecutorService prefetcher;
+
+    public PatientOverviewService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                                  RedisTemplate<String, Object> redisTemplate, ApplicationMetrics metrics, int capacity) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+        this.cache = new DependentCache<>(capacity);
+        this.prefetcher = Executors.newSingleThreadExecutor(r -> {
+            Thread thread = new Thread(r, "Patient-Overview-Prefetch");
+            thread.setDaemon(true);
+            return thread;
+        });
+    }
+
+    /**
+     * The patient's overview, from the cache or loaded now (joining a prefetch in progress).
+     *
+     * @throws EmptyResultDataAccessException if there is no such patient
+     */
+    public PatientOverview getPatientOverview(Long id, Long userId) {
+        CompletableFuture<PatientOverview> overview = cache.lookup(id);
+        if (overview != null) {
+            metrics.recordCacheOperation("hit");
+        } else {
+            metrics.recordCacheOperation("miss");
+            overview = cache.reserve(id);
+            load(id, overview);
+        }
+        PatientOverview result;
+        try {
+            result = overview.join();
+        } catch (CompletionException e) {
+            throw e.getCause() instanceof RuntimeException cause ? cause : e;
+        }
+        auditService.logAction(userId, "VIEW_PATIENT_OVERVIEW", "Patient", id);
+        return result;
+    }
+
+    /**
+     * Starts loading the overview in the background unless it is cached or already loading.
+     */
+    public void prefetch(Long id) {
+        if (cache.lookup(id) == null) {
+            CompletableFuture<PatientOverview> overview = cache.reserve(id);
+            prefetcher.execute(() -> load(id, overview));
+        }
+    }
+
+    @Override
+    public void close() {
+        prefetcher.shutdownNow();
+    }
+
+    /**
+     * Drops the overviews built from a row the relay reports as changed ("finance:42") or,
+     * for a bulk change, from any row of its type ("finance:*").
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String row = String.valueOf(redisTemplate.getValueSerializer().deserialize(message.getBody()));
+            int colon = row.indexOf(':');
+            String id = row.substring(colon + 1);
+            invalidate(row.substring(0, colon), DependentCache.ANY_ROW.equals(id) ? null : List.of(Long.valueOf(id)));
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring unreadable cache invalidation", e);
+        }
+    }
+
+    /**
+     * Drops overviews built from rows changed on any workstation, announced as the change
+     * commits; the relay's invalidation of the same rows follows a little later.
+     */
+    @Override
+    public void onChanges(String entityType, Set<Long> ids) {
+        String cacheName = OutboxRelay.cacheName(entityType);
+        if (cacheName == null) {
+            return;
+        }
+        try {
+            invalidate(cacheName, ids);
+        } catch (RuntimeException e) {
+            logger.warn("Could not drop overviews for changed {} rows", entityType, e);
+        }
+    }
+
+    // Drops the overviews built from the rows of the type; null ids means any row of it
+    private void invalidate(String type, Collection<Long> ids) {
+        if (ids == null) {
+            if (OWNER_SQL.containsKey(type)) {
+                cache.clear();
+            } else {
+                cache.invalidate(type + ":" + DependentCache.ANY_ROW);
+            }
+            return;
+        }
+        List<Long> unknown = new ArrayList<>();
+        for (Long id : ids) {
+            if (!cache.invalidate(type + ":" + id) && OWNER_SQL.containsKey(type)) {
+                unknown.add(id);
+            }
+        }
+        if (!unknown.isEmpty() && cache.size() > 0) {
+            prefetcher.execute(() -> evictOwners(type, unknown));
+        }
+    }
+
+    private void evictOwners(String type, List<Long> ids) {
+        try {
+            jdbcTemplate.queryForList(OWNER_SQL.get(type), Long.class, (Object) ids.toArray(new Long[0]))
+                    .forEach(cache::evict);
+        } catch (RuntimeException e) {
+            // Keeping an overview that may be stale is worse than reloading every one
+            logger.warn("Could not look up the patients of changed {} rows; dropping all overviews", type, e);
+            cache.clear();
+        }
+    }
+
+    // Reads the primary: a lagging replica could cache a row older than the invalidation that evicted it
+    private void load(Long id, CompletableFuture<PatientOverview> overview) {
+        try {
+            Set<String> rows = new HashSet<>();
+            PatientOverview loaded = DataAccessUtils.requiredSingleResult(jdbcTemplate.query(OVERVIEW_SQL,
+                    new IndexedRowExtractor<>((rs, c) -> readOverview(rs, c, rows), COLUMNS), id));
+            cache.complete(id, overview, loaded, rows);
+        } catch (RuntimeException e) {
+            cache.fail(id, overview, e);
+        }
+    }
+
+    private static PatientOverview readOverview(ResultSet rs, int[] c, Set<String> rows) throws SQLException {
+        Patient patient = PatientService.readPatient(rs, Arrays.copyOf(c, PATIENT_COLUMNS));
+        rows.add("patients:" + patient.getId());
+        addRows(rows, "finance", rs.getArray(c[12]));
+        addRows(rows, "appointments", rs.getArray(c[16]));
+
+        List<Finance> bills = new ArrayList<>();
+        for (JsonNode node : json(rs.getString(c[11]))) {
+            Finance bill = new Finance(node.get("id").asLong(), patient.getId(), new BigDecimal(node.get("amount").asText()),
+                    text(node, "status"));
+            bill.setDepartmentId(longValue(node, "departmentId"));
+            bill.setCreatedDate(dateTime(node, "createdDate"));
+            bills.add(bill);
+        }
+        List<Appointment> appointments = new ArrayList<>();
+        for (JsonNode node : json(rs.getString(c[15]))) {
+            Appointment appointment = new Appointment(patient.getId(), longValue(node, "doctorId"),
+                    dateTime(node, "startTime"), dateTime(node, "endTime"));
+            appointment.setId(node.get("id").asLong());
+            appointment.setAppointmentType(text(node, "appointmentType"));
+            appointment.setStatus(text(node, "status"));
+            appointment.setNotes(text(node, "notes"));
+            appointments.add(appointment);
+        }
+        List<DoctorSummary> doctors = new ArrayList<>();
+        for (JsonNode node : json(rs.getString(c[17]))) {
+            DoctorSummary doctor = new DoctorSummary(node.get("id").asLong(), text(node, "name"), text(node, "specialty"),
+                    text(node, "contactInfo"), null, longValue(node, "departmentId"), true);
+            doctor.setDepartmentName(text(node, "departmentName"));
+            rows.add("doctors:" + doctor.getId());
+            if (doctor.getDepartmentId() != null) {
+                rows.add("departments:" + doctor.getDepartmentId());
+            }
+            doctors.add(doctor);
+        }
+        List<AuditLog> auditTrail = new ArrayList<>();
+        for (JsonNode node : json(rs.getString(c[18]))) {
+            auditTrail.add(new AuditLog(node.get("id").asLong(), longValue(node, "userId"), text(node, "action"),
+                    "Patient", patient.getId(), dateTime(node, "timestamp")));
+        }
+        return new PatientOverview(patient, bills, rs.getInt(c[13]), rs.getBigDecimal(c[14]), appointments, doctors,
+                auditTrail, LocalDateTime.now());
+    }
+
+    private static void addRows(Set<String> rows, String type, Array ids) throws SQLException {
+        if (ids != null) {
+            for (Object id : (Object[]) ids.getArray()) {
+                rows.add(type + ":" + id);
+            }
+        }
+    }
+
+    private static JsonNode json(String text) {
+        try {
+            return JSON.readTree(text);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Unreadable patient overview JSON", e);
+        }
+    }
+
+    private static String text(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asText();
+    }
+
+    private static Long longValue(JsonNode node, String field) {
+        JsonNode value = node.get(field);
+        return value == null || value.isNull() ? null : value.asLong();
+    }
+
+    // json_build_object renders timestamps as ISO local date-times
+    private static LocalDateTime dateTime(JsonNode node, String field) {
+        String value = text(node, field);
+        return value != null ? LocalDateTime.parse(value) : null;
+    }
+}
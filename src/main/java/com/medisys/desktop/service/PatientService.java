@@ -1,52 +1,146 @@
 package com.medisys.desktop.service;
 
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.ChangeSet;
 import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.PatientSummary;
+import com.medisys.desktop.util.StringInterner;
+import org.springframework.dao.OptimisticLockingFailureException;
+import org.springframework.dao.support.DataAccessUtils;
 import org.springframework.jdbc.core.JdbcTemplate;
-import org.springframework.jdbc.support.GeneratedKeyHolder;
-import org.springframework.jdbc.support.KeyHolder;
 
-import java.sql.PreparedStatement;
+import java.sql.ResultSet;
+import java.sql.SQLException;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashMap;
 import java.util.List;
+import java.util.Map;
 
 public class PatientService {
+    // Optional columns (gender onwards) are mapped when the query returns them
+    static final IndexedRowExtractor<Patient> PATIENT_EXTRACTOR = new IndexedRowExtractor<>(PatientService::readPatient,
+            "id", "name", "date_of_birth", "contact_info", "gender", "blood_group", "city", "state", "country", "version", "patient_code");
+    private static final String INSERT_SQL =
+            "INSERT INTO patients (id, patient_code, name, date_of_birth, contact_info) VALUES (?, ?, ?, ?, ?)";
+    private static final List<String> UPDATABLE_COLUMNS = List.of("name", "date_of_birth", "contact_info");
+    static final IndexedRowExtractor<PatientSummary> SUMMARY_EXTRACTOR = new IndexedRowExtractor<>(PatientService::readSummary,
+            "id", "name", "date_of_birth", "contact_info", "gender", "email");
+    private static final String SUMMARY_COLUMNS = "id, name, date_of_birth, contact_info";
+    private static final StringInterner LOW_CARDINALITY = new StringInterner(10_000);
+
     private final JdbcTemplate jdbcTemplate;
     private final AuditService auditService;
+    private final HiLoIdAllocator patientIds;
+    private final ChangeWriter writer;
 
     public PatientService(JdbcTemplate jdbcTemplate, AuditService auditService) {
         this.jdbcTemplate = jdbcTemplate;
         this.auditService = auditService;
+        this.writer = new ChangeWriter("Patient", auditService);
+        this.patientIds = new HiLoIdAllocator(jdbcTemplate, "patients_id_seq");
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    static Patient readPatient(ResultSet rs, int[] c) throws SQLException {
+        Patient p = Patient.stored(rs.getLong(c[0]));
+        p.setName(rs.getString(c[1]));
+        java.sql.Date sqlDate = rs.getDate(c[2]);
+        if (sqlDate != null) {
+            p.setDateOfBirth(sqlDate.toLocalDate());
+        }
+        p.setContactInfo(rs.getString(c[3]));
+        if (c[4] > 0) p.setGender(LOW_CARDINALITY.intern(rs.getString(c[4])));
+        if (c[5] > 0) p.setBloodGroup(LOW_CARDINALITY.intern(rs.getString(c[5])));
+        if (c[6] > 0) p.setCity(LOW_CARDINALITY.intern(rs.getString(c[6])));
+        if (c[7] > 0) p.setState(LOW_CARDINALITY.intern(rs.getString(c[7])));
+        if (c[8] > 0) p.setCountry(LOW_CARDINALITY.intern(rs.getString(c[8])));
+        if (c[9] > 0) {
+            // Without the row version a save could not be checked, so only versioned rows track changes
+            p.setVersion(rs.getLong(c[9]));
+            p.markClean();
+        }
+        if (c[10] > 0) p.setPatientId(rs.getString(c[10]));
+        return p;
+    }
+
+    private static PatientSummary readSummary(ResultSet rs, int[] c) throws SQLException {
+        java.sql.Date sqlDate = rs.getDate(c[2]);
+        return new PatientSummary(rs.getLong(c[0]), rs.getString(c[1]), sqlDate != null ? sqlDate.toLocalDate() : null,
+                c[4] > 0 ? LOW_CARDINALITY.intern(rs.getString(c[4])) : null, rs.getString(c[3]),
+                c[5] > 0 ? rs.getString(c[5]) : null, true);
+    }
+
+    /**
+     * Readable patient number derived from the id, e.g. PAT000123. Unique because the id is.
+     */
+    public static String patientCode(long id) {
+        return String.format("PAT%06d", id);
     }
 
     public Patient createPatient(Patient patient, Long userId) {
-        String sql = "INSERT INTO patients (name, date_of_birth, contact_info) VALUES (?, ?, ?)";
-        KeyHolder keyHolder = new GeneratedKeyHolder();
-        jdbcTemplate.update(connection -> {
-            PreparedStatement ps = connection.prepareStatement(sql, new String[]{"id"});
-            ps.setString(1, patient.getName());
-            ps.setDate(2, patient.getDateOfBirth() != null ? java.sql.Date.valueOf(patient.getDateOfBirth()) : null);
-            ps.setString(3, patient.getContactInfo());
-            return ps;
-        }, keyHolder);
-
-        Long patientId = keyHolder.getKey().longValue();
-        patient.setId(patientId);
-        auditService.logAction(userId, "CREATE_PATIENT", "Patient", patientId);
+        assignIds(patient);
+        writer.inTransaction(() -> {
+            jdbcTemplate.update(INSERT_SQL, insertArgs(patient));
+            writer.publish(ChangeType.CREATE, "CREATE_PATIENT", patient.getId(), userId, 1);
+            return null;
+        });
+        patient.markClean();
         return patient;
     }
 
+    /**
+     * Registers several patients with one batched INSERT and one change event for the set.
+     */
+    public List<Patient> createPatients(List<Patient> patients, Long userId) {
+        if (patients.isEmpty()) {
+            return patients;
+        }
+        List<Object[]> rows = new ArrayList<>(patients.size());
+        List<Long> ids = new ArrayList<>(patients.size());
+        for (Patient patient : patients) {
+            assignIds(patient);
+            rows.add(insertArgs(patient));
+            ids.add(patient.getId());
+        }
+        writer.inTransaction(() -> {
+            jdbcTemplate.batchUpdate(INSERT_SQL, rows);
+            writer.publishBulk(ChangeType.CREATE, "BULK_CREATE_PATIENTS", ids, userId);
+            return null;
+        });
+        patients.forEach(Patient::markClean);
+        return patients;
+    }
+
+    // Ids come from a locally reserved block, so the row needs no generated-key round trip
+    private void assignIds(Patient patient) {
+        long id = patientIds.next();
+        patient.setId(id);
+        patient.setPatientId(patientCode(id));
+        patient.setVersion(0);
+    }
+
+    private static Object[] insertArgs(Patient patient) {
+        return new Object[]{patient.getId(), patient.getPatientId(), patient.getName(),
+                patient.getDateOfBirth() != null ? java.sql.Date.valueOf(patient.getDateOfBirth()) : null,
+                patient.getContactInfo()};
+    }
+
     public Patient getPatient(Long id, Long userId) {
         String sql = "SELECT * FROM patients WHERE id = ?";
-        Patient patient = jdbcTemplate.queryForObject(sql, new Object[]{id}, (rs, rowNum) -> {
-            Patient p = new Patient();
-            p.setId(rs.getLong("id"));
-            p.setName(rs.getString("name"));
-            java.sql.Date sqlDate = rs.getDate("date_of_birth");
-            if (sqlDate != null) {
-                p.setDateOfBirth(sqlDate.toLocalDate());
-            }
-            p.setContactInfo(rs.getString("contact_info"));
-            return p;
-        });
+        Patient patient = RoutingContext.onReplica(() ->
+                DataAccessUtils.requiredSingleResult(jdbcTemplate.query(sql, PATIENT_EXTRACTOR, id)));
 
         auditService.logAction(userId, "VIEW_PATIENT", "Patient", id);
         return patient;
@@ -54,33 +148,127 @@ public class PatientService {
 
     public List<Patient> getAllPatients(Long userId) {
         String sql = "SELECT * FROM patients";
-        List<Patient> patients = jdbcTemplate.query(sql, (rs, rowNum) -> {
-            Patient p = new Patient();
-            p.setId(rs.getLong("id"));
-            p.setName(rs.getString("name"));
-            java.sql.Date sqlDate = rs.getDate("date_of_birth");
-            if (sqlDate != null) {
-                p.setDateOfBirth(sqlDate.toLocalDate());
-            }
-            p.setContactInfo(rs.getString("contact_info"));
-            return p;
-        });
+        List<Patient> patients = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, PATIENT_EXTRACTOR));
 
         auditService.logAction(userId, "LIST_PATIENTS", "Patient", null);
         return patients;
     }
 
+    /**
+     * List rows for the patient table: only the displayed columns are selected and no
+     * full entity is built. Open a row with {@link #getPatient}.
+     */
+    public List<PatientSummary> getPatientSummaries(Long userId) {
+        String sql = "SELECT " + SUMMARY_COLUMNS + " FROM patients ORDER BY id";
+        List<PatientSummary> summaries = RoutingContext.onReplica(() -> jdbcTemplate.query(sql, SUMMARY_EXTRACTOR));
+
+        auditService.logAction(userId, "LIST_PATIENTS", "Patient", null);
+        return summaries;
+    }
+
+    /**
+     * Patient list rows changed since {@code watermark}, for a list that is already open to
+     * update itself in place; every row if the watermark is null. See {@link ChangeSet}.
+     */
+    public ChangeSet<PatientSummary> changedSince(LocalDateTime watermark, Long userId) {
+        return changedSince(watermark, false, userId);
+    }
+
+    /**
+     * As {@link #changedSince(LocalDateTime, Long)}; pass {@code fromPrimary} when refreshing
+     * on a change notification, which can arrive before a replica has the change.
+     */
+    public ChangeSet<PatientSummary> changedSince(LocalDateTime watermark, boolean fromPrimary, Long userId) {
+        ChangeSet<PatientSummary> changes = ChangeFeed.changedSince(jdbcTemplate, "patients", SUMMARY_COLUMNS,
+                SUMMARY_EXTRACTOR, watermark, fromPrimary);
+
+        // Polls that find nothing are not logged
+        if (!changes.isEmpty()) {
+            auditService.logAction(userId, changes.isFullReload() ? "LIST_PATIENTS" : "SYNC_PATIENTS", "Patient", null);
+        }
+        return changes;
+    }
+
+    /**
+     * Saves a patient. One loaded through this service writes only the columns changed
+     * since it was loaded, and only if nobody has saved it in the meantime; one built from
+     * scratch overwrites every column. Either way the row version is bumped.
+     *
+     * @throws OptimisticLockingFailureException if a loaded patient was saved elsewhere first
+     */
     public void updatePatient(Patient patient, Long userId) {
-        String sql = "UPDATE patients SET name = ?, date_of_birth = ?, contact_info = ? WHERE id = ?";
-        jdbcTemplate.update(sql, patient.getName(),
-            patient.getDateOfBirth() != null ? java.sql.Date.valueOf(patient.getDateOfBirth()) : null,
-            patient.getContactInfo(), patient.getId());
-        auditService.logAction(userId, "UPDATE_PATIENT", "Patient", patient.getId());
+        if (patient.isTracked() && patient.getChangedColumns().isEmpty()) {
+            return;
+        }
+        Collection<String> columns = patient.isTracked() ? patient.getChangedColumns() : UPDATABLE_COLUMNS;
+        Long newVersion = writer.inTransaction(() -> {
+            StringBuilder sql = new StringBuilder("UPDATE patients SET ");
+            List<Object> args = new ArrayList<>();
+            Map<String, String> changes = new LinkedHashMap<>();
+            for (String column : columns) {
+                Object value = columnValue(patient, column);
+                sql.append(column).append(" = ?, ");
+                args.add(value);
+                changes.put(column, value != null ? value.toString() : null);
+            }
+            sql.append("version = version + 1 WHERE id = ?");
+            args.add(patient.getId());
+            if (patient.isTracked()) {
+                sql.append(" AND version = ?");
+                args.add(patient.getVersion());
+            }
+            sql.append(" RETURNING version");
+
+            List<Long> versions = jdbcTemplate.query(sql.toString(), (rs, rowNum) -> rs.getLong(1), args.toArray());
+            if (versions.isEmpty()) {
+                if (patient.isTracked()) {
+                    throw new OptimisticLockingFailureException("Patient " + patient.getId()
+                            + " was changed or deleted by another user; reload it and try again");
+                }
+                writer.publish(ChangeType.UPDATE, "UPDATE_PATIENT", patient.getId(), userId, 0);
+                return null;
+            }
+            writer.publishUpdate("UPDATE_PATIENT", patient.getId(), userId, versions.get(0), changes);
+            return versions.get(0);
+        });
+
+        if (newVersion != null) {
+            patient.setVersion(newVersion);
+            patient.markClean();
+        }
     }
 
     public void deletePatient(Long id, Long userId) {
-        String sql = "DELETE FROM patients WHERE id = ?";
-        jdbcTemplate.update(sql, id);
-        auditService.logAction(userId, "DELETE_PATIENT", "Patient", id);
+        writer.inTransaction(() -> {
+            String sql = "DELETE FROM patients WHERE id = ?";
+            int deleted = jdbcTemplate.update(sql, id);
+            writer.publish(ChangeType.DELETE, "DELETE_PATIENT", id, userId, deleted);
+            return null;
+        });
+    }
+
+    /**
+     * Deletes the given patients in one statement, with one change event for the whole set.
+     * Returns the number of patients deleted.
+     */
+    public int deletePatients(Collection<Long> ids, Long userId) {
+        if (ids.isEmpty()) {
+            return 0;
+        }
+        return writer.inTransaction(() -> {
+            String sql = "DELETE FROM patients WHERE id = ANY(?) RETURNING id";
+            List<Long> deleted = jdbcTemplate.queryForList(sql, Long.class, (Object) ids.toArray(new Long[0]));
+            writer.publishBulk(ChangeType.DELETE, "BULK_DELETE_PATIENTS", deleted, userId);
+            return deleted.size();
+        });
+    }
+
+    private static Object columnValue(Patient patient, String column) {
+        return switch (column) {
+            case "name" -> patient.getName();
+            case "date_of_birth" -> patient.getDateOfBirth() != null ? java.sql.Date.valueOf(patient.getDateOfBirth()) : null;
+            case "contact_info" -> patient.getContactInfo();
+            default -> throw new IllegalArgumentException("Not an updatable patient column: " + column);
+        };
     }
-}
\ No newline at end of file
+}
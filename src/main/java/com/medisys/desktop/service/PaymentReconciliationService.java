@@ -0,0 +1,279 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.model.ReconciliationMismatch;
+import com.medisys.desktop.model.ReconciliationMismatch.Reason;
+import com.medisys.desktop.model.ReconciliationReport;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import com.medisys.desktop.util.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowCallbackHandler;
+import org.springframework.transaction.support.TransactionTemplate;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.Reader;
+import java.io.UncheckedIOException;
+import java.io.Writer;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.sql.PreparedStatement;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+/**
+ * Reconciles a bank / UPI settlement file against the open finance records.
+ *
+ * The file is CSV with a header line; each line is {@code reference,amount[,...]}, where the
+ * reference is the finance record id (a prefix such as "INV-" is ignored) and the amount is in
+ * rupees. Further columns (payment time, channel, transaction id) are kept only for the
+ * exceptions report.
+ *
+ * Reconciliation is a hash join: the open records are loaded once into an
+ * {@link OpenInvoiceTable}, then the file is streamed line by line and each payment is added to
+ * its record. A record whose payments add up exactly to its amount is marked {@link #PAID};
+ * split payments are fine. The paid records are updated in bulk, {@link #UPDATE_CHUNK} per
+ * statement, each chunk in its own transaction. Everything else goes to the exceptions report
+ * and is left as it was. Running the same file again marks nothing twice: its records are no
+ * longer open and are reported as such.
+ */
+public class PaymentReconciliationService {
+    private static final Logger logger = LoggerFactory.getLogger(PaymentReconciliationService.class);
+    public static final String PAID = "PAID";
+    static final List<String> OPEN_STATUSES = List.of("PENDING", "OVERDUE");
+    private static final int UPDATE_CHUNK = 10_000;
+    private static final int FETCH_SIZE = 10_000;
+
+    private final JdbcTemplate jdbcTemplate;
+    private final TransactionTemplate transactionTemplate;
+    private final FinanceService financeService;
+    private final ApplicationMetrics metrics;
+
+    public PaymentReconciliationService(JdbcTemplate jdbcTemplate, TransactionTemplate transactionTemplate,
+                                        FinanceService financeService, ApplicationMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.transactionTemplate = transactionTemplate;
+        this.financeService = financeService;
+        this.metrics = metrics;
+    }
+
+    public ReconciliationReport reconcile(Path settlementFile, Long userId) {
+        try (Reader reader = Files.newBufferedReader(settlementFile, StandardCharsets.UTF_8)) {
+            return reconcile(reader, userId);
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read settlement file " + settlementFile, e);
+        }
+    }
+
+    public ReconciliationReport reconcile(Reader settlementFile, Long userId) {
+        return RoutingContext.as(WorkloadClass.BATCH, () -> {
+            long started = System.nanoTime();
+            OpenInvoiceTable open = loadOpenInvoices();
+            List<ReconciliationMismatch> mismatches = new ArrayList<>();
+            // Lines whose reference is not an open record: unknown, or paid / cancelled already
+            List<long[]> unmatched = new ArrayList<>();
+            int lines = readSettlements(settlementFile, open, unmatched, mismatches);
+
+            List<Long> paid = new ArrayList<>();
+            open.forEachSettled((financeId, amountPaise, settledPaise, firstLine) -> {
+                if (settledPaise == amountPaise) {
+                    paid.add(financeId);
+                } else {
+                    mismatches.add(new ReconciliationMismatch(settledPaise < amountPaise ? Reason.UNDERPAID : Reason.OVERPAID,
+                            firstLine, financeId, amountPaise, settledPaise, null));
+                }
+            });
+
+            int invoicesPaid = 0;
+            long paidPaise = 0;
+            for (int from = 0; from < paid.size(); from += UPDATE_CHUNK) {
+                List<Long> chunk = paid.subList(from, Math.min(paid.size(), from + UPDATE_CHUNK));
+                Set<Long> updated = new HashSet<>(financeService.transitionFinanceStatus(chunk, OPEN_STATUSES, PAID, userId));
+                for (Long id : chunk) {
+                    if (updated.contains(id)) {
+                        invoicesPaid++;
+                        paidPaise += open.amountPaise(id);
+                    } else {
+                        // Paid or cancelled elsewhere between loading and updating
+                        unmatched.add(new long[]{id, open.settledPaise(id), open.firstLine(id)});
+                    }
+                }
+            }
+            mismatches.addAll(classifyUnmatched(unmatched));
+            mismatches.sort(Comparator.comparingInt(ReconciliationMismatch::getLineNumber));
+
+            ReconciliationReport report = new ReconciliationReport(lines, invoicesPaid, paidPaise, mismatches,
+                    Duration.ofNanos(System.nanoTime() - started));
+            metrics.recordReconciliation(lines, mismatches.size(), report.getElapsed());
+            logger.info("Reconciled {} settlement lines against {} open records in {} ms: {} paid ({}), {} exceptions",
+                    lines, open.size(), report.getElapsed().toMillis(), invoicesPaid, Money.format(paidPaise),
+                    mismatches.size());
+            return report;
+        });
+    }
+
+    /**
+     * Writes the exceptions report as CSV.
+     */
+    public void writeExceptions(ReconciliationReport report, Writer out) {
+        try {
+            out.write("line,reason,finance_id,expected,settled,detail\n");
+            for (ReconciliationMismatch m : report.getMismatches()) {
+                out.write(m.getLineNumber() + "," + m.getReason() + ","
+                        + (m.getFinanceId() != null ? m.getFinanceId() : "") + ","
+                        + Money.format(m.getExpectedPaise()) + "," + Money.format(m.getSettledPaise()) + ","
+                        + csvField(m.getDetail()) + "\n");
+            }
+            out.flush();
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot write reconciliation exceptions", e);
+        }
+    }
+
+    // Streamed through a cursor, so the rows are never all held as objects
+    private OpenInvoiceTable loadOpenInvoices() {
+        Integer expected = jdbcTemplate.queryForObject(
+                "SELECT COUNT(*) FROM finance WHERE status = ANY(?)", Integer.class, (Object) openStatuses());
+        OpenInvoiceTable open = new OpenInvoiceTable(expected != null ? expected : 0);
+        transactionTemplate.executeWithoutResult(status -> jdbcTemplate.query(con -> {
+            PreparedStatement ps = con.prepareStatement("SELECT id, amount FROM finance WHERE status = ANY(?)");
+            ps.setFetchSize(FETCH_SIZE);
+            ps.setArray(1, con.createArrayOf("varchar", openStatuses()));
+            return ps;
+        }, (RowCallbackHandler) rs -> open.put(rs.getLong(1), Money.toPaise(rs.getBigDecimal(2)))));
+        return open;
+    }
+
+    private static String[] openStatuses() {
+        return OPEN_STATUSES.toArray(new String[0]);
+    }
+
+    // Returns the number of lines read; unmatched lines are {financeId, paise, lineNumber}
+    private static int readSettlements(Reader settlementFile, OpenInvoiceTable open, List<long[]> unmatched,
+                                       List<ReconciliationMismatch> mismatches) {
+        BufferedReader reader = settlementFile instanceof BufferedReader b ? b : new BufferedReader(settlementFile, 1 << 16);
+        int lineNumber = 1;
+        try {
+            reader.readLine(); // header
+            String line;
+            while ((line = reader.readLine()) != null) {
+                lineNumber++;
+                if (line.isBlank()) {
+                    continue;
+                }
+                int comma = line.indexOf(',');
+                int end = comma >= 0 ? line.indexOf(',', comma + 1) : -1;
+                long financeId = comma > 0 ? parseReference(line, 0, comma) : -1;
+                long paise = comma > 0 ? parsePaise(line, comma + 1, end >= 0 ? end : line.length()) : -1;
+                if (financeId <= 0 || paise < 0) {
+                    mismatches.add(new ReconciliationMismatch(Reason.UNREADABLE_LINE, lineNumber, null, 0, 0, line));
+                } else if (!open.settle(financeId, paise, lineNumber)) {
+                    unmatched.add(new long[]{financeId, paise, lineNumber});
+                }
+            }
+        } catch (IOException e) {
+            throw new UncheckedIOException("Cannot read settlement file at line " + lineNumber, e);
+        }
+        return lineNumber - 1;
+    }
+
+    // Looks up why each reference was not open, a chunk of ids per query
+    private List<ReconciliationMismatch> classifyUnmatched(List<long[]> unmatched) {
+        Map<Long, String> statuses = new HashMap<>();
+        List<Long> ids = new ArrayList<>(new HashSet<>(unmatched.stream().map(u -> u[0]).toList()));
+        for (int from = 0; from < ids.size(); from += UPDATE_CHUNK) {
+            Long[] chunk = ids.subList(from, Math.min(ids.size(), from + UPDATE_CHUNK)).toArray(new Long[0]);
+            jdbcTemplate.query("SELECT id, status FROM finance WHERE id = ANY(?)",
+                    (RowCallbackHandler) rs -> statuses.put(rs.getLong(1), rs.getString(2)), (Object) chunk);
+        }
+        List<ReconciliationMismatch> mismatches = new ArrayList<>(unmatched.size());
+        for (long[] u : unmatched) {
+            String status = statuses.get(u[0]);
+            mismatches.add(new ReconciliationMismatch(status != null ? Reason.NOT_OPEN : Reason.UNKNOWN_REFERENCE,
+                    (int) u[2], u[0], 0, u[1], status));
+        }
+        return mismatches;
+    }
+
+    /**
+     * The finance id in {@code text[from, to)}, ignoring any non-digit prefix and surrounding
+     * blanks; -1 if there is none.
+     */
+    static long parseReference(String text, int from, int to) {
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        int digits = to;
+        while (digits > from && isDigit(text.charAt(digits - 1))) {
+            digits--;
+        }
+        if (digits == to || to - digits > 18) {
+            return -1;
+        }
+        long id = 0;
+        for (int i = digits; i < to; i++) {
+            id = id * 10 + (text.charAt(i) - '0');
+        }
+        return id;
+    }
+
+    /**
+     * The rupee amount in {@code text[from, to)} in paise, e.g. "1500", "1500.5", "1500.50";
+     * -1 if it is not a non-negative amount with at most two decimals. Parsed in place, as it
+     * runs once per settlement line.
+     */
+    static long parsePaise(String text, int from, int to) {
+        while (from < to && Character.isWhitespace(text.charAt(from))) {
+            from++;
+        }
+        while (to > from && Character.isWhitespace(text.charAt(to - 1))) {
+            to--;
+        }
+        long rupees = 0;
+        int i = from;
+        while (i < to && isDigit(text.charAt(i))) {
+            if (i - from >= 15) {
+                return -1;
+            }
+            rupees = rupees * 10 + (text.charAt(i++) - '0');
+        }
+        if (i == from) {
+            return -1;
+        }
+        long paise = 0;
+        if (i < to) {
+            if (text.charAt(i++) != '.' || to - i > 2) {
+                return -1;
+            }
+            for (int scale = 10; i < to; scale /= 10) {
+                char c = text.charAt(i++);
+                if (!isDigit(c)) {
+                    return -1;
+                }
+                paise += (c - '0') * scale;
+            }
+        }
+        return rupees * 100 + paise;
+    }
+
+    private static boolean isDigit(char c) {
+        return c >= '0' && c <= '9';
+    }
+
+    private static String csvField(String value) {
+        if (value == null) {
+            return "";
+        }
+        return value.contains(",") || value.contains("\"") ? "\"" + value.replace("\"", "\"\"") + "\"" : value;
+    }
+}
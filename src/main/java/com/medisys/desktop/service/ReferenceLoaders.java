@@ -0,0 +1,75 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.Set;
+import java.util.function.Function;
+
+/**
+ * The {@link BatchLoader}s of one request, one per referenced type. Services queue the
+ * references their rows need (a finance record's patient name, a doctor's department name),
+ * the caller calls {@link #dispatch()} once before showing the rows, and each type is resolved
+ * with a single {@code WHERE id = ANY(?)} query, however many rows and services asked.
+ *
+ * Make one per render or service call; values are memoized for its lifetime. Not thread-safe.
+ */
+public class ReferenceLoaders {
+    private final JdbcTemplate jdbcTemplate;
+    private final Map<String, BatchLoader<?, ?>> loaders = new LinkedHashMap<>();
+
+    public ReferenceLoaders(JdbcTemplate jdbcTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+    }
+
+    public BatchLoader<Long, String> patientNames() {
+        return names("patients");
+    }
+
+    public BatchLoader<Long, String> doctorNames() {
+        return names("doctors");
+    }
+
+    public BatchLoader<Long, String> departmentNames() {
+        return names("departments");
+    }
+
+    /**
+     * The loader for {@code type}, created with {@code batchFunction} on first use. Lets any
+     * service add its own reference types to the request.
+     */
+    @SuppressWarnings("unchecked")
+    public <K, V> BatchLoader<K, V> loader(String type, Function<Set<K>, Map<K, V>> batchFunction) {
+        return (BatchLoader<K, V>) loaders.computeIfAbsent(type, t -> new BatchLoader<>(batchFunction));
+    }
+
+    /**
+     * Resolves everything queued, one batch per type. Repeats while the values handed out queue
+     * further references (a doctor's department, say), so everything is resolved on return.
+     */
+    public void dispatch() {
+        boolean dispatched;
+        do {
+            dispatched = false;
+            for (BatchLoader<?, ?> loader : new ArrayList<>(loaders.values())) {
+                dispatched |= loader.dispatch() > 0;
+            }
+        } while (dispatched);
+    }
+
+    // Table names are constants of this class, never caller input
+    private BatchLoader<Long, String> names(String table) {
+        String sql = "SELECT id, name FROM " + table + " WHERE id = ANY(?)";
+        return loader(table + ".name", ids -> RoutingContext.onReplica(() -> jdbcTemplate.query(sql, rs -> {
+            Map<Long, String> names = new HashMap<>(ids.size() * 2);
+            while (rs.next()) {
+                names.put(rs.getLong(1), rs.getString(2));
+            }
+            return names;
+        }, (Object) ids.toArray(new Long[0]))));
+    }
+}
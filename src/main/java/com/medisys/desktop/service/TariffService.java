@@ -0,0 +1,122 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.Tariff;
+import com.medisys.desktop.util.Money;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+
+import java.math.BigDecimal;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * The service price list, held in memory for the billing engine.
+ *
+ * The whole table is read into an immutable map that is swapped in one volatile write, so
+ * readers never lock and always see one consistent price list. A tariff change on any
+ * workstation is announced on {@link #TARIFF_CHANNEL} and every workstation re-reads the
+ * table (it has tens of rows).
+ */
+public class TariffService implements MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(TariffService.class);
+    public static final String TARIFF_CHANNEL = "medisys:tariffs";
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private volatile Map<String, Tariff> tariffs = Map.of();
+    private final ChangeWriter writer;
+
+    public TariffService(JdbcTemplate jdbcTemplate, AuditService auditService, RedisTemplate<String, Object> redisTemplate) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+        this.writer = new ChangeWriter("Tariff", auditService);
+        this.redisTemplate = redisTemplate;
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    public void start() {
+        reload();
+        logger.info("Tariffs loaded: {} services", tariffs.size());
+    }
+
+    /**
+     * Re-reads the price list. Reads the primary, so a change announced by another
+     * workstation is always visible.
+     */
+    public void reload() {
+        replaceAll(jdbcTemplate.query("SELECT code, description, price, tax_rate FROM service_tariffs", (rs, rowNum) ->
+                new Tariff(rs.getString("code"), rs.getString("description"), Money.toPaise(rs.getBigDecimal("price")),
+                        rs.getBigDecimal("tax_rate").movePointRight(2).intValueExact())));
+    }
+
+    /** The tariff for {@code code}, or null if there is none */
+    public Tariff getTariff(String code) {
+        return tariffs.get(code);
+    }
+
+    public List<Tariff> getTariffs() {
+        return new ArrayList<>(tariffs.values());
+    }
+
+    /**
+     * Creates or replaces the tariff and has every workstation reload the price list.
+     */
+    public void updateTariff(Tariff tariff, Long userId) {
+        String sql = "INSERT INTO service_tariffs (code, description, price, tax_rate) VALUES (?, ?, ?, ?) " +
+                "ON CONFLICT (code) DO UPDATE SET description = EXCLUDED.description, price = EXCLUDED.price, " +
+                "tax_rate = EXCLUDED.tax_rate, updated_at = CURRENT_TIMESTAMP";
+        writer.inTransaction(() -> {
+            jdbcTemplate.update(sql, tariff.getCode(), tariff.getDescription(), Money.toAmount(tariff.getPricePaise()),
+                    BigDecimal.valueOf(tariff.getTaxRateBasisPoints(), 2));
+            writer.publish(ChangeType.UPDATE, "UPDATE_TARIFF", null, userId, 1);
+            return null;
+        });
+        reload();
+        try {
+            redisTemplate.convertAndSend(TARIFF_CHANNEL, tariff.getCode());
+        } catch (RuntimeException e) {
+            logger.warn("Could not announce the change of tariff {}", tariff.getCode(), e);
+        }
+    }
+
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            reload();
+        } catch (RuntimeException e) {
+            // Keep billing with the current price list; the next announcement retries
+            logger.error("Could not reload tariffs", e);
+        }
+    }
+
+    // One consistent price list for a whole invoice
+    Map<String, Tariff> snapshot() {
+        return tariffs;
+    }
+
+    void replaceAll(Collection<Tariff> loaded) {
+        Map<String, Tariff> byCode = new HashMap<>(loaded.size() * 2);
+        for (Tariff tariff : loaded) {
+            byCode.put(tariff.getCode(), tariff);
+        }
+        tariffs = Map.copyOf(byCode);
+    }
+}
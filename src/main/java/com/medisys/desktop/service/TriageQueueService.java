@@ -0,0 +1,253 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.datasource.RoutingContext;
+import com.medisys.desktop.datasource.WorkloadClass;
+import com.medisys.desktop.event.ChangeType;
+import com.medisys.desktop.event.DomainEventBus;
+import com.medisys.desktop.event.EventOutbox;
+import com.medisys.desktop.model.TriageCase;
+import com.medisys.desktop.model.TriagePriority;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import org.slf4j.Logger;
+import org.slf4j.LoggerFactory;
+import org.springframework.dao.support.DataAccessUtils;
+import org.springframework.data.redis.connection.Message;
+import org.springframework.data.redis.connection.MessageListener;
+import org.springframework.data.redis.core.RedisTemplate;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.core.RowMapper;
+
+import java.sql.Timestamp;
+import java.time.Duration;
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentSkipListSet;
+import java.util.concurrent.atomic.AtomicIntegerArray;
+import java.util.function.IntSupplier;
+
+/**
+ * Emergency department triage queue: who is seen next.
+ *
+ * Cases are ordered by the time they are due to be seen (arrival plus their priority's target
+ * wait), with Critical cases always ahead of the rest. That ordering ages the queue without any
+ * re-sorting: a Low case that has waited its two hours is due before a Medium case that just
+ * arrived, so it is not starved by a steady stream of higher priorities.
+ *
+ * The queue is a concurrent skip list, so reading it (the board, the next case, the counts) never
+ * takes a lock, and taking the next case is one atomic poll. Every case is persisted and waiting
+ * cases are reloaded on {@link #start()}. Cases queued or called on other workstations arrive on
+ * {@link #QUEUE_CHANNEL}; calling a case is a conditional update, so a case is only ever called once.
+ */
+public class TriageQueueService implements MessageListener {
+    private static final Logger logger = LoggerFactory.getLogger(TriageQueueService.class);
+    public static final String QUEUE_CHANNEL = "medisys:triage-queue";
+    private static final String WAITING = "WAITING";
+    private static final String CALLED = "CALLED";
+
+    static final Comparator<TriageCase> SEEN_ORDER = Comparator
+            .comparing((TriageCase c) -> c.getPriority() != TriagePriority.CRITICAL)
+            .thenComparing(TriageCase::getDueAt)
+            .thenComparing(TriageCase::getId);
+
+    private static final RowMapper<TriageCase> TRIAGE_CASE_ROW_MAPPER = (rs, rowNum) -> {
+        TriageCase c = new TriageCase(rs.getString("patient_name"), TriagePriority.valueOf(rs.getString("priority")),
+                rs.getString("emergency_type"));
+        c.setId(rs.getLong("id"));
+        c.setPatientId(rs.getObject("patient_id", Long.class));
+        c.setArrivedAt(rs.getTimestamp("arrived_at").toLocalDateTime());
+        return c;
+    };
+
+    private final JdbcTemplate jdbcTemplate;
+    private final AuditService auditService;
+    private final RedisTemplate<String, Object> redisTemplate;
+    private final ApplicationMetrics metrics;
+    private final ConcurrentSkipListSet<TriageCase> waiting = new ConcurrentSkipListSet<>(SEEN_ORDER);
+    private final Map<Long, TriageCase> waitingById = new ConcurrentHashMap<>();
+    // Waiting cases per priority, by ordinal; the skip list's own size() is a full traversal
+    private final AtomicIntegerArray waitingCounts = new AtomicIntegerArray(TriagePriority.values().length);
+    private final ChangeWriter writer;
+
+    public TriageQueueService(JdbcTemplate jdbcTemplate, AuditService auditService,
+                              RedisTemplate<String, Object> redisTemplate, ApplicationMetrics metrics) {
+        this.jdbcTemplate = jdbcTemplate;
+        this.auditService = auditService;
+        this.writer = new ChangeWriter("TriageCase", auditService);
+        this.redisTemplate = redisTemplate;
+        this.metrics = metrics;
+    }
+
+    public void setEventBus(DomainEventBus eventBus) {
+        writer.setEventBus(eventBus);
+    }
+
+    public void setOutbox(EventOutbox outbox) {
+        writer.setOutbox(outbox);
+    }
+
+    /**
+     * Reloads the waiting cases and registers the queue gauges.
+     */
+    public void start() {
+        List<TriageCase> cases = RoutingContext.as(WorkloadClass.BACKGROUND, () ->
+                jdbcTemplate.query("SELECT * FROM triage_queue WHERE status = ?", TRIAGE_CASE_ROW_MAPPER, WAITING));
+        cases.forEach(this::add);
+
+        Map<String, IntSupplier> lengths = new LinkedHashMap<>();
+        for (TriagePriority priority : TriagePriority.values()) {
+            lengths.put(priority.getLabel(), () -> waitingCounts.get(priority.ordinal()));
+        }
+        metrics.registerTriageQueue(lengths, this::getLongestWait);
+        logger.info("Triage queue started: {} cases waiting", cases.size());
+    }
+
+    /**
+     * Adds the case to the queue, arriving now. Returns it with its id and arrival time set.
+     */
+    public TriageCase enqueue(TriageCase triageCase, Long userId) {
+        String sql = "INSERT INTO triage_queue (patient_name, patient_id, priority, emergency_type, created_by) " +
+                "VALUES (?, ?, ?, ?, ?) RETURNING *";
+        TriageCase queued = writer.inTransaction(() -> {
+            TriageCase c = jdbcTemplate.queryForObject(sql, TRIAGE_CASE_ROW_MAPPER, triageCase.getPatientName(),
+                    triageCase.getPatientId(), triageCase.getPriority().name(), triageCase.getEmergencyType(), userId);
+            writer.publish(ChangeType.CREATE, "TRIAGE_ENQUEUE", c.getId(), userId, 1);
+            return c;
+        });
+        add(queued);
+        announce("ENQUEUED", queued.getId());
+        return queued;
+    }
+
+    /**
+     * Takes the case to be seen next off the queue, or returns null if nobody is waiting.
+     */
+    public TriageCase callNext(Long userId) {
+        String sql = "UPDATE triage_queue SET status = ?, called_at = CURRENT_TIMESTAMP, called_by = ? " +
+                "WHERE id = ? AND status = ? RETURNING called_at";
+        TriageCase next;
+        while ((next = waiting.pollFirst()) != null) {
+            removed(next);
+            Long id = next.getId();
+            Timestamp calledAt;
+            try {
+                calledAt = writer.inTransaction(() -> {
+                    Timestamp t = DataAccessUtils.singleResult(
+                            jdbcTemplate.queryForList(sql, Timestamp.class, CALLED, userId, id, WAITING));
+                    if (t != null) {
+                        writer.publish(ChangeType.UPDATE, "TRIAGE_CALL", id, userId, 1);
+                    }
+                    return t;
+                });
+            } catch (RuntimeException e) {
+                // Still waiting in the database, so it goes back where it was
+                add(next);
+                throw e;
+            }
+            if (calledAt != null) {
+                metrics.recordTriageWait(next.getPriority().getLabel(),
+                        Duration.between(next.getArrivedAt(), calledAt.toLocalDateTime()));
+                announce(CALLED, id);
+                return next;
+            }
+            // Called on another workstation before its announcement arrived; try the next case
+        }
+        return null;
+    }
+
+    /**
+     * The case that would be called next, without taking it off the queue; null if none.
+     */
+    public TriageCase peekNext() {
+        Iterator<TriageCase> it = waiting.iterator();
+        return it.hasNext() ? it.next() : null;
+    }
+
+    /**
+     * The waiting cases in the order they will be called.
+     */
+    public List<TriageCase> getWaiting() {
+        return new ArrayList<>(waiting);
+    }
+
+    public int getWaitingCount() {
+        int count = 0;
+        for (int i = 0; i < waitingCounts.length(); i++) {
+            count += waitingCounts.get(i);
+        }
+        return count;
+    }
+
+    public Map<TriagePriority, Integer> getWaitingCounts() {
+        Map<TriagePriority, Integer> counts = new EnumMap<>(TriagePriority.class);
+        for (TriagePriority priority : TriagePriority.values()) {
+            counts.put(priority, waitingCounts.get(priority.ordinal()));
+        }
+        return counts;
+    }
+
+    /**
+     * How long the longest-waiting case has waited so far; zero when nobody is waiting.
+     */
+    public Duration getLongestWait() {
+        LocalDateTime earliest = null;
+        for (TriageCase c : waiting) {
+            if (earliest == null || c.getArrivedAt().isBefore(earliest)) {
+                earliest = c.getArrivedAt();
+            }
+        }
+        return earliest != null ? Duration.between(earliest, LocalDateTime.now()) : Duration.ZERO;
+    }
+
+    /**
+     * Applies a case queued or called on another workstation. This workstation's own
+     * announcements come back here too and change nothing.
+     */
+    @Override
+    public void onMessage(Message message, byte[] pattern) {
+        try {
+            String[] parts = String.valueOf(redisTemplate.getValueSerializer().deserialize(message.getBody())).split(":");
+            Long id = Long.valueOf(parts[1]);
+            if (CALLED.equals(parts[0])) {
+                TriageCase called = waitingById.get(id);
+                if (called != null && waiting.remove(called)) {
+                    removed(called);
+                }
+            } else if (!waitingById.containsKey(id)) {
+                TriageCase queued = DataAccessUtils.singleResult(jdbcTemplate.query(
+                        "SELECT * FROM triage_queue WHERE id = ? AND status = ?", TRIAGE_CASE_ROW_MAPPER, id, WAITING));
+                if (queued != null) {
+                    add(queued);
+                }
+            }
+        } catch (RuntimeException e) {
+            logger.warn("Ignoring unreadable triage queue message", e);
+        }
+    }
+
+    private void add(TriageCase c) {
+        if (waitingById.putIfAbsent(c.getId(), c) == null && waiting.add(c)) {
+            waitingCounts.incrementAndGet(c.getPriority().ordinal());
+        }
+    }
+
+    private void removed(TriageCase c) {
+        waitingById.remove(c.getId());
+        waitingCounts.decrementAndGet(c.getPriority().ordinal());
+    }
+
+    private void announce(String change, Long id) {
+        try {
+            redisTemplate.convertAndSend(QUEUE_CHANNEL, change + ":" + id);
+        } catch (RuntimeException e) {
+            // The change is committed; other workstations pick it up when they next start
+            logger.warn("Could not announce triage case {} {}", id, change, e);
+        }
+    }
+}
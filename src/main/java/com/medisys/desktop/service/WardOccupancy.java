@@ -0,0 +1,183 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Bed;
+
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Occupancy of one ward as a bitmap: bit {@code p} is set while the bed at position
+ * {@code p} (beds in bed-number order) is occupied. A ward of a hundred beds fits in two
+ * longs, and "nearest free bed of a type" is a few word operations against a per-type mask
+ * instead of a scan over bed objects.
+ *
+ * Claiming a bed is a compare-and-set on its word, so two clerks on this workstation can
+ * never claim the same bed; the database update that follows settles it against other
+ * workstations. Notified changes are applied in row-version order, so a late notification
+ * never overwrites a newer state.
+ */
+class WardOccupancy {
+    private final Bed[] beds;
+    private final Map<Long, Integer> positions;
+    private final AtomicLongArray occupied;
+    private final long[] versions;
+    private final long[] allBeds;
+    private final Map<String, long[]> typeMasks = new HashMap<>();
+
+    /**
+     * @param beds the ward's beds in bed-number order, with their current occupancy and version
+     */
+    WardOccupancy(List<Bed> beds) {
+        this.beds = beds.toArray(new Bed[0]);
+        this.positions = new HashMap<>(beds.size() * 2);
+        int words = (beds.size() + 63) >>> 6;
+        this.occupied = new AtomicLongArray(words);
+        this.versions = new long[beds.size()];
+        this.allBeds = new long[words];
+        for (int p = 0; p < this.beds.length; p++) {
+            Bed bed = this.beds[p];
+            positions.put(bed.getId(), p);
+            versions[p] = bed.getVersion();
+            allBeds[p >>> 6] |= 1L << p;
+            typeMasks.computeIfAbsent(bed.getBedType(), type -> new long[words])[p >>> 6] |= 1L << p;
+            if (bed.isOccupied()) {
+                occupied.set(p >>> 6, occupied.get(p >>> 6) | 1L << p);
+            }
+        }
+    }
+
+    int size() {
+        return beds.length;
+    }
+
+    /** Position of the bed in this ward, or -1 if it is not one of the ward's beds */
+    int positionOf(Long bedId) {
+        Integer position = positions.get(bedId);
+        return position != null ? position : -1;
+    }
+
+    Bed bedAt(int position) {
+        return beds[position];
+    }
+
+    boolean isOccupied(int position) {
+        return (occupied.get(position >>> 6) & 1L << position) != 0;
+    }
+
+    /**
+     * Claims the bed if it is free. Returns false if it is already occupied.
+     */
+    boolean tryOccupy(int position) {
+        int word = position >>> 6;
+        long bit = 1L << position;
+        while (true) {
+            long current = occupied.get(word);
+            if ((current & bit) != 0) {
+                return false;
+            }
+            if (occupied.compareAndSet(word, current, current | bit)) {
+                return true;
+            }
+        }
+    }
+
+    /**
+     * Undoes a {@link #tryOccupy} whose database update did not happen.
+     */
+    void vacate(int position) {
+        int word = position >>> 6;
+        long bit = 1L << position;
+        long current;
+        do {
+            current = occupied.get(word);
+        } while ((current & bit) != 0 && !occupied.compareAndSet(word, current, current & ~bit));
+    }
+
+    /**
+     * Records the state a committed allocation or release left the bed in. Ignored (returns
+     * false) if an equal or newer version was already applied.
+     */
+    synchronized boolean apply(int position, boolean nowOccupied, long version) {
+        if (version <= versions[position]) {
+            return false;
+        }
+        versions[position] = version;
+        if (nowOccupied) {
+            tryOccupy(position);
+        } else {
+            vacate(position);
+        }
+        return true;
+    }
+
+    /**
+     * The free bed of {@code bedType} (any type if null) closest to {@code near}, preferring
+     * the higher position on a tie; -1 if there is none.
+     */
+    int nearestFree(int near, String bedType) {
+        long[] mask = bedType != null ? typeMasks.get(bedType) : allBeds;
+        if (mask == null || beds.length == 0) {
+            return -1;
+        }
+        near = Math.max(0, Math.min(near, beds.length - 1));
+        int after = nextFree(near, mask);
+        int before = previousFree(near - 1, mask);
+        if (after < 0 || before < 0) {
+            return after < 0 ? before : after;
+        }
+        return near - before < after - near ? before : after;
+    }
+
+    int freeCount(String bedType) {
+        long[] mask = bedType != null ? typeMasks.get(bedType) : allBeds;
+        if (mask == null) {
+            return 0;
+        }
+        int free = 0;
+        for (int w = 0; w < mask.length; w++) {
+            free += Long.bitCount(mask[w] & ~occupied.get(w));
+        }
+        return free;
+    }
+
+    /**
+     * A copy of the bed with its current occupancy.
+     */
+    synchronized Bed snapshot(int position) {
+        Bed template = beds[position];
+        Bed bed = new Bed(template.getId(), template.getWard(), template.getBedNumber(),
+                template.getBedType(), template.getLabel());
+        bed.setOccupied(isOccupied(position));
+        bed.setVersion(versions[position]);
+        return bed;
+    }
+
+    private int nextFree(int from, long[] mask) {
+        int w = from >>> 6;
+        long free = mask[w] & ~occupied.get(w) & -1L << from;
+        while (free == 0) {
+            if (++w == mask.length) {
+                return -1;
+            }
+            free = mask[w] & ~occupied.get(w);
+        }
+        return (w << 6) + Long.numberOfTrailingZeros(free);
+    }
+
+    private int previousFree(int from, long[] mask) {
+        if (from < 0) {
+            return -1;
+        }
+        int w = from >>> 6;
+        long free = mask[w] & ~occupied.get(w) & -1L >>> (63 - (from & 63));
+        while (free == 0) {
+            if (--w < 0) {
+                return -1;
+            }
+            free = mask[w] & ~occupied.get(w);
+        }
+        return (w << 6) + 63 - Long.numberOfLeadingZeros(free);
+    }
+}
@@ -2,6 +2,11 @@ package com.medisys.desktop.ui;
 
 import com.medisys.desktop.MediSysApp;
 import com.medisys.desktop.model.User;
+import com.medisys.desktop.service.BedService;
+import com.medisys.desktop.service.BillingEngine;
+import com.medisys.desktop.service.LiveStatisticsService;
+import com.medisys.desktop.service.PatientService;
+import com.medisys.desktop.service.TriageQueueService;
 import com.medisys.desktop.ui.components.QuickActionsPanel;
 import com.medisys.desktop.ui.modules.*;
 import javafx.animation.FadeTransition;
@@ -51,7 +56,10 @@ public class MainDashboard {
     }
     
     private void initializeModules() {
-        dashboardModule = new DashboardModule(currentUser);
+        QuickActionsPanel quickActions = new QuickActionsPanel(currentUser,
+                app.getService(BedService.class), app.getService(TriageQueueService.class),
+                app.getService(PatientService.class), app.getService(BillingEngine.class));
+        dashboardModule = new DashboardModule(currentUser, app.getService(LiveStatisticsService.class), quickActions);
         patientsModule = new PatientsModule(currentUser);
         doctorsModule = new DoctorsModule(currentUser);
         appointmentsModule = new AppointmentsModule(currentUser);
@@ -352,7 +360,10 @@ public class MainDashboard {
                 FadeTransition fadeOut = new FadeTransition(Duration.millis(500), root);
                 fadeOut.setFromValue(1.0);
                 fadeOut.setToValue(0.0);
-                fadeOut.setOnFinished(e -> app.logout());
+                fadeOut.setOnFinished(e -> {
+                    dashboardModule.dispose();
+                    app.logout();
+                });
                 fadeOut.play();
             }
         });
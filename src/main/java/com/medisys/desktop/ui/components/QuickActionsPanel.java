@@ -1,6 +1,10 @@
 package com.medisys.desktop.ui.components;
 
 import com.medisys.desktop.model.User;
+import com.medisys.desktop.service.BedService;
+import com.medisys.desktop.service.BillingEngine;
+import com.medisys.desktop.service.PatientService;
+import com.medisys.desktop.service.TriageQueueService;
 import com.medisys.desktop.ui.forms.AppointmentForm;
 import com.medisys.desktop.ui.forms.PatientRegistrationForm;
 import com.medisys.desktop.ui.forms.DoctorRegistrationForm;
@@ -24,10 +28,27 @@ public class QuickActionsPanel {
     
     private final User currentUser;
     private final VBox root;
+    private final BedService bedService;
+    private final TriageQueueService triageQueue;
+    private final PatientService patientService;
+    private final BillingEngine billingEngine;
     
     public QuickActionsPanel(User currentUser) {
+        this(currentUser, null, null, null, null);
+    }
+    
+    /**
+     * With the services, emergency admissions register the patient, allocate a live bed and
+     * join the triage queue, and bills are priced from the service tariffs.
+     */
+    public QuickActionsPanel(User currentUser, BedService bedService, TriageQueueService triageQueue,
+                             PatientService patientService, BillingEngine billingEngine) {
         this.currentUser = currentUser;
         this.root = new VBox(15);
+        this.bedService = bedService;
+        this.triageQueue = triageQueue;
+        this.patientService = patientService;
+        this.billingEngine = billingEngine;
         
         initializePanel();
     }
@@ -199,7 +220,7 @@ public class QuickActionsPanel {
             BillingForm billingForm = new BillingForm(() -> {
                 // Handle billing save - could integrate with actual billing service
                 System.out.println("Bill generated successfully");
-            });
+            }, billingEngine);
             billingForm.show();
         } catch (Exception e) {
             Alert error = new Alert(Alert.AlertType.ERROR);
@@ -308,7 +329,7 @@ public class QuickActionsPanel {
             EmergencyAdmissionForm emergencyForm = new EmergencyAdmissionForm(() -> {
                 // Handle emergency admission save - could integrate with actual emergency service
                 System.out.println("Emergency admission processed successfully");
-            });
+            }, bedService, triageQueue, patientService, currentUser.getId());
             emergencyForm.show();
         } catch (Exception e) {
             Alert error = new Alert(Alert.AlertType.ERROR);
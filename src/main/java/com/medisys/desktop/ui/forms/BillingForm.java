@@ -1,5 +1,9 @@
 package com.medisys.desktop.ui.forms;
 
+import com.medisys.desktop.model.Invoice;
+import com.medisys.desktop.model.InvoiceLine;
+import com.medisys.desktop.service.BillingEngine;
+import com.medisys.desktop.util.Money;
 import com.medisys.desktop.utils.IconLibrary;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -13,6 +17,8 @@ import javafx.stage.Stage;
 import java.time.LocalDate;
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.ArrayList;
+import java.util.List;
 
 /**
  * Complete Billing Form
@@ -20,8 +26,19 @@ import java.time.format.DateTimeFormatter;
  */
 public class BillingForm {
     
+    // Tariffs of the charge fields, in the order of chargeFields
+    private static final String[] CHARGE_CODES = {"CONSULTATION", "MEDICATION", "LAB_TEST", "ROOM", "OTHER"};
+    
     private final Stage stage;
     private final Runnable onSave;
+    private final BillingEngine billingEngine;
+    
+    // Parsed amounts in paise; each field is parsed only when its own text changes
+    private final long[] chargePaise = new long[CHARGE_CODES.length];
+    private long discountPaise;
+    private long taxPaise;
+    // Why the engine could not price the current charges (e.g. a service with no tariff); null if it could
+    private String pricingError;
     
     // Form fields
     private ComboBox<String> patientCombo;
@@ -46,7 +63,15 @@ public class BillingForm {
     private TextArea notesArea;
     
     public BillingForm(Runnable onSave) {
+        this(onSave, null);
+    }
+    
+    /**
+     * With a billing engine the tax is computed from the service tariffs instead of entered by hand.
+     */
+    public BillingForm(Runnable onSave, BillingEngine billingEngine) {
         this.onSave = onSave;
+        this.billingEngine = billingEngine;
         this.stage = new Stage();
         
         initializeForm();
@@ -388,39 +413,67 @@ public class BillingForm {
     
     private void setupCalculations() {
         // Add listeners for automatic calculation
-        consultationFeeField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
-        medicationCostField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
-        testChargesField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
-        roomChargesField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
-        otherChargesField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
-        discountField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
-        taxField.textProperty().addListener((obs, oldVal, newVal) -> calculateTotal());
+        TextField[] chargeFields = {consultationFeeField, medicationCostField, testChargesField, roomChargesField, otherChargesField};
+        for (int i = 0; i < chargeFields.length; i++) {
+            int charge = i;
+            chargeFields[i].textProperty().addListener((obs, oldVal, newVal) -> {
+                chargePaise[charge] = parsePaise(newVal);
+                calculateTotal();
+            });
+        }
+        discountField.textProperty().addListener((obs, oldVal, newVal) -> {
+            discountPaise = parsePaise(newVal);
+            calculateTotal();
+        });
+        if (billingEngine != null) {
+            taxField.setEditable(false);
+            taxField.setStyle("-fx-background-color: #f0f0f0;");
+        } else {
+            taxField.textProperty().addListener((obs, oldVal, newVal) -> {
+                taxPaise = parsePaise(newVal);
+                calculateTotal();
+            });
+        }
     }
     
     private void calculateTotal() {
-        try {
-            double consultation = parseDouble(consultationFeeField.getText());
-            double medication = parseDouble(medicationCostField.getText());
-            double tests = parseDouble(testChargesField.getText());
-            double room = parseDouble(roomChargesField.getText());
-            double other = parseDouble(otherChargesField.getText());
-            double discount = parseDouble(discountField.getText());
-            double tax = parseDouble(taxField.getText());
-            
-            double subtotal = consultation + medication + tests + room + other;
-            double total = subtotal - discount + tax;
-            
-            totalAmountField.setText(String.format("%.2f", Math.max(0, total)));
-        } catch (Exception e) {
-            // Ignore calculation errors during typing
+        long total;
+        if (billingEngine != null) {
+            List<InvoiceLine> lines = new ArrayList<>(CHARGE_CODES.length);
+            for (int i = 0; i < CHARGE_CODES.length; i++) {
+                if (chargePaise[i] > 0) {
+                    lines.add(new InvoiceLine(CHARGE_CODES[i], 1, chargePaise[i]));
+                }
+            }
+            Invoice invoice;
+            try {
+                invoice = billingEngine.price(lines, discountPaise);
+            } catch (IllegalArgumentException e) {
+                pricingError = e.getMessage();
+                taxField.clear();
+                totalAmountField.clear();
+                totalAmountField.setPromptText(pricingError);
+                return;
+            }
+            pricingError = null;
+            taxField.setText(Money.format(invoice.getTaxPaise()));
+            total = invoice.getTotalPaise();
+        } else {
+            long subtotal = 0;
+            for (long charge : chargePaise) {
+                subtotal += charge;
+            }
+            total = subtotal - discountPaise + taxPaise;
         }
+        totalAmountField.setText(Money.format(Math.max(0, total)));
     }
     
-    private double parseDouble(String text) {
+    // Half-typed or invalid amounts count as zero while typing
+    private long parsePaise(String text) {
         try {
-            return text == null || text.trim().isEmpty() ? 0.0 : Double.parseDouble(text.trim());
-        } catch (NumberFormatException e) {
-            return 0.0;
+            return Math.max(0, Money.parse(text));
+        } catch (NumberFormatException | ArithmeticException e) {
+            return 0L;
         }
     }
     
@@ -535,13 +588,16 @@ public class BillingForm {
         }
         
         // Validate total amount
-        try {
-            double total = Double.parseDouble(totalAmountField.getText());
-            if (total <= 0) {
-                errors.append("• Total amount must be greater than zero\n");
+        if (pricingError != null) {
+            errors.append("• ").append(pricingError).append("\n");
+        } else {
+            try {
+                if (Money.parse(totalAmountField.getText()) <= 0) {
+                    errors.append("• Total amount must be greater than zero\n");
+                }
+            } catch (NumberFormatException | ArithmeticException e) {
+                errors.append("• Invalid total amount\n");
             }
-        } catch (NumberFormatException e) {
-            errors.append("• Invalid total amount\n");
         }
         
         if (errors.length() > 0) {
@@ -1,5 +1,12 @@
 package com.medisys.desktop.ui.forms;
 
+import com.medisys.desktop.model.Bed;
+import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.TriageCase;
+import com.medisys.desktop.model.TriagePriority;
+import com.medisys.desktop.service.BedService;
+import com.medisys.desktop.service.PatientService;
+import com.medisys.desktop.service.TriageQueueService;
 import com.medisys.desktop.utils.IconLibrary;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -9,9 +16,13 @@ import javafx.scene.layout.*;
 import javafx.scene.text.Text;
 import javafx.stage.Modality;
 import javafx.stage.Stage;
+import org.springframework.dao.DataAccessException;
 
 import java.time.LocalDateTime;
 import java.time.format.DateTimeFormatter;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.function.Consumer;
 
 /**
  * Emergency Admission Form
@@ -21,6 +32,15 @@ public class EmergencyAdmissionForm {
     
     private final Stage stage;
     private final Runnable onSave;
+    private final BedService bedService;
+    private final TriageQueueService triageQueue;
+    private final PatientService patientService;
+    private final Long userId;
+    // Registered on the first admission attempt, so retrying with another bed does not register twice
+    private Patient admittedPatient;
+    // Free beds offered in bedNumberCombo, by label
+    private final Map<String, Bed> freeBeds = new LinkedHashMap<>();
+    private final Consumer<Bed> occupancyListener = bed -> refreshBeds();
     
     // Form fields
     private TextField patientNameField;
@@ -38,10 +58,35 @@ public class EmergencyAdmissionForm {
     private CheckBox consentCheckBox;
     
     public EmergencyAdmissionForm(Runnable onSave) {
+        this(onSave, null, null);
+    }
+    
+    /**
+     * With a bed service the bed list shows the live free beds, updated while the form is open.
+     * With a triage queue each admission joins the queue at the selected priority.
+     */
+    public EmergencyAdmissionForm(Runnable onSave, BedService bedService, TriageQueueService triageQueue) {
+        this(onSave, bedService, triageQueue, null, null);
+    }
+    
+    /**
+     * With a patient service as well, admitting registers the patient and allocates the selected
+     * bed to them; a bed taken meanwhile by another workstation is reported and the list refreshed.
+     */
+    public EmergencyAdmissionForm(Runnable onSave, BedService bedService, TriageQueueService triageQueue,
+                                  PatientService patientService, Long userId) {
         this.onSave = onSave;
+        this.bedService = bedService;
+        this.triageQueue = triageQueue;
+        this.patientService = patientService;
+        this.userId = userId;
         this.stage = new Stage();
         
         initializeForm();
+        if (bedService != null) {
+            bedService.addListener(occupancyListener);
+            stage.setOnHidden(e -> bedService.removeListener(occupancyListener));
+        }
     }
     
     private void initializeForm() {
@@ -208,10 +253,14 @@ public class EmergencyAdmissionForm {
         VBox bedBox = new VBox(5);
         bedNumberCombo = new ComboBox<>();
         bedNumberCombo.getStyleClass().add("modern-combo-box");
-        bedNumberCombo.getItems().addAll(
-            "Emergency Bed 1", "Emergency Bed 2", "Emergency Bed 3",
-            "ICU Bed 1", "ICU Bed 2", "Trauma Room 1", "Trauma Room 2"
-        );
+        if (bedService != null) {
+            refreshBeds();
+        } else {
+            bedNumberCombo.getItems().addAll(
+                "Emergency Bed 1", "Emergency Bed 2", "Emergency Bed 3",
+                "ICU Bed 1", "ICU Bed 2", "Trauma Room 1", "Trauma Room 2"
+            );
+        }
         bedNumberCombo.setPromptText("Assign bed");
         bedBox.getChildren().addAll(new Label("Bed Assignment *"), bedNumberCombo);
         
@@ -251,6 +300,23 @@ public class EmergencyAdmissionForm {
         return content;
     }
     
+    // Rebuilds the bed list from live occupancy, keeping the selection while that bed is still free
+    private void refreshBeds() {
+        String selected = bedNumberCombo.getValue();
+        freeBeds.clear();
+        for (String ward : bedService.getWards()) {
+            for (Bed bed : bedService.getFreeBeds(ward, null)) {
+                freeBeds.put(bed.getLabel(), bed);
+            }
+        }
+        bedNumberCombo.getItems().setAll(freeBeds.keySet());
+        if (selected != null && freeBeds.containsKey(selected)) {
+            bedNumberCombo.setValue(selected);
+        } else {
+            bedNumberCombo.setValue(null);
+        }
+    }
+    
     private VBox createSection(String title) {
         VBox section = new VBox(15);
         section.getStyleClass().add("form-section");
@@ -317,6 +383,21 @@ public class EmergencyAdmissionForm {
     }
     
     private void processEmergencyAdmission() {
+        if (bedService != null && patientService != null && !allocateSelectedBed()) {
+            return;
+        }
+        
+        String queuePosition = "";
+        if (triageQueue != null) {
+            TriageCase triageCase = new TriageCase(patientNameField.getText().trim(),
+                    TriagePriority.fromLabel(priorityCombo.getValue()), emergencyTypeCombo.getValue());
+            if (admittedPatient != null) {
+                triageCase.setPatientId(admittedPatient.getId());
+            }
+            triageCase = triageQueue.enqueue(triageCase, userId);
+            queuePosition = "Triage queue position: " + (triageQueue.getWaiting().indexOf(triageCase) + 1) + "\n";
+        }
+        
         // Simulate admission process
         Alert progress = new Alert(Alert.AlertType.INFORMATION);
         progress.setTitle("Emergency Admission Processed");
@@ -325,7 +406,8 @@ public class EmergencyAdmissionForm {
                                "Admission ID: EMR" + System.currentTimeMillis() + "\n" +
                                "Patient: " + patientNameField.getText() + "\n" +
                                "Bed: " + bedNumberCombo.getValue() + "\n" +
-                               "Doctor: " + assignedDoctorCombo.getValue() + "\n\n" +
+                               "Doctor: " + assignedDoctorCombo.getValue() + "\n" +
+                               queuePosition + "\n" +
                                "Actions taken:\n" +
                                "• Patient registered in emergency system\n" +
                                "• Bed reserved and prepared\n" +
@@ -342,6 +424,36 @@ public class EmergencyAdmissionForm {
         stage.close();
     }
     
+    private boolean allocateSelectedBed() {
+        String label = bedNumberCombo.getValue();
+        Bed bed = freeBeds.get(label);
+        try {
+            if (admittedPatient == null) {
+                Patient patient = new Patient();
+                patient.setName(patientNameField.getText().trim());
+                String phone = phoneField.getText().trim();
+                patient.setContactInfo(phone.isEmpty() ? emergencyPhoneField.getText().trim() : phone);
+                admittedPatient = patientService.createPatient(patient, userId);
+            }
+            if (bed != null && bedService.allocateBed(bed.getId(), admittedPatient.getId(), userId)) {
+                return true;
+            }
+            showAdmissionError("Bed " + label + " has just been taken. Please choose another bed.");
+        } catch (DataAccessException e) {
+            showAdmissionError("Could not complete the admission: " + e.getMostSpecificCause().getMessage());
+        }
+        refreshBeds();
+        return false;
+    }
+    
+    private void showAdmissionError(String message) {
+        Alert alert = new Alert(Alert.AlertType.ERROR);
+        alert.setTitle("Admission Failed");
+        alert.setHeaderText("Patient not admitted");
+        alert.setContentText(message);
+        alert.showAndWait();
+    }
+    
     private boolean validateForm() {
         StringBuilder errors = new StringBuilder();
         
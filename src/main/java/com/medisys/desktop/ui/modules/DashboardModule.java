@@ -1,6 +1,8 @@
 package com.medisys.desktop.ui.modules;
 
+import com.medisys.desktop.model.DashboardStatistics;
 import com.medisys.desktop.model.User;
+import com.medisys.desktop.service.LiveStatisticsService;
 import com.medisys.desktop.ui.components.QuickActionsPanel;
 import javafx.geometry.Insets;
 import javafx.geometry.Pos;
@@ -12,19 +14,60 @@ import javafx.scene.control.Label;
 import javafx.scene.layout.*;
 import javafx.scene.text.Text;
 
+import java.text.NumberFormat;
+import java.time.LocalDate;
+import java.util.HashMap;
+import java.util.Locale;
+import java.util.Map;
+import java.util.function.Consumer;
+
 /**
  * Modern Dashboard Module with statistics and charts
  */
 public class DashboardModule {
     
+    private static final NumberFormat NUMBER_FORMAT = NumberFormat.getIntegerInstance(new Locale("en", "IN"));
+
     private final User currentUser;
     private final VBox root;
+    private final LiveStatisticsService statisticsService;
+    private final QuickActionsPanel quickActionsPanel;
+    private final Map<String, Text> statValues = new HashMap<>();
+    private final Consumer<DashboardStatistics> statisticsListener = this::applyStatistics;
+    private XYChart.Series<String, Number> revenueSeries;
     
     public DashboardModule(User currentUser) {
+        this(currentUser, null);
+    }
+
+    public DashboardModule(User currentUser, LiveStatisticsService statisticsService) {
+        this(currentUser, statisticsService, new QuickActionsPanel(currentUser));
+    }
+
+    /**
+     * @param quickActionsPanel the quick actions shown beside the chart, wired to the services it should use
+     */
+    public DashboardModule(User currentUser, LiveStatisticsService statisticsService, QuickActionsPanel quickActionsPanel) {
         this.currentUser = currentUser;
         this.root = new VBox(20);
+        this.statisticsService = statisticsService;
+        this.quickActionsPanel = quickActionsPanel;
         
         initializeUI();
+
+        // Cards and chart are patched in place from throttled snapshots
+        if (statisticsService != null) {
+            statisticsService.addListener(statisticsListener);
+        }
+    }
+
+    /**
+     * Stops the live updates. Call once the dashboard is discarded.
+     */
+    public void dispose() {
+        if (statisticsService != null) {
+            statisticsService.removeListener(statisticsListener);
+        }
     }
     
     private void initializeUI() {
@@ -198,6 +241,7 @@ public class DashboardModule {
         labelText.getStyleClass().add("stats-label");
         
         card.getChildren().addAll(iconText, valueText, labelText);
+        statValues.put(label, valueText);
         
         return card;
     }
@@ -212,15 +256,14 @@ public class DashboardModule {
         chartContainer.getStyleClass().add("modern-card");
         chartContainer.setPrefWidth(600);
         
-        Text chartTitle = new Text("Patient Visits This Week");
+        Text chartTitle = new Text(statisticsService != null ? "Revenue This Week" : "Patient Visits This Week");
         chartTitle.getStyleClass().add("section-title");
         
-        BarChart<String, Number> chart = createPatientVisitsChart();
+        BarChart<String, Number> chart = statisticsService != null ? createRevenueChart() : createPatientVisitsChart();
         
         chartContainer.getChildren().addAll(chartTitle, chart);
         
         // Quick actions panel
-        QuickActionsPanel quickActionsPanel = new QuickActionsPanel(currentUser);
         VBox quickActions = quickActionsPanel.getRoot();
         
         chartsRow.getChildren().addAll(chartContainer, quickActions);
@@ -256,6 +299,61 @@ public class DashboardModule {
         return chart;
     }
     
+    private BarChart<String, Number> createRevenueChart() {
+        CategoryAxis xAxis = new CategoryAxis();
+        NumberAxis yAxis = new NumberAxis();
+        xAxis.setLabel("Days");
+        yAxis.setLabel("Revenue (₹)");
+
+        BarChart<String, Number> chart = new BarChart<>(xAxis, yAxis);
+        chart.setTitle("Daily Revenue");
+        chart.setPrefHeight(250);
+        chart.setAnimated(false);
+
+        revenueSeries = new XYChart.Series<>();
+        revenueSeries.setName("Revenue");
+
+        chart.getData().add(revenueSeries);
+        chart.setLegendVisible(false);
+
+        return chart;
+    }
+
+    private void applyStatistics(DashboardStatistics statistics) {
+        setStatValue("Total Patients", NUMBER_FORMAT.format(statistics.getTotalPatients()));
+        setStatValue("Active Doctors", NUMBER_FORMAT.format(statistics.getActiveDoctors()));
+        setStatValue("Today's Appointments", NUMBER_FORMAT.format(statistics.getTodaysAppointments()));
+        setStatValue("Monthly Revenue", "₹" + NUMBER_FORMAT.format(statistics.getMonthlyRevenue()));
+
+        if (revenueSeries == null) {
+            return;
+        }
+        // Update bars in place; the series is only rebuilt when the week window moves
+        Map<LocalDate, Double> dailyRevenue = statistics.getDailyRevenue();
+        if (revenueSeries.getData().size() != dailyRevenue.size()
+                || !revenueSeries.getData().isEmpty() && !revenueSeries.getData().get(0).getExtraValue()
+                        .equals(dailyRevenue.keySet().iterator().next())) {
+            revenueSeries.getData().clear();
+            dailyRevenue.forEach((day, total) -> {
+                XYChart.Data<String, Number> bar = new XYChart.Data<>(day.getDayOfWeek().name().substring(0, 3), total);
+                bar.setExtraValue(day);
+                revenueSeries.getData().add(bar);
+            });
+            return;
+        }
+        int index = 0;
+        for (Double total : dailyRevenue.values()) {
+            revenueSeries.getData().get(index++).setYValue(total);
+        }
+    }
+
+    private void setStatValue(String label, String value) {
+        Text valueText = statValues.get(label);
+        if (valueText != null) {
+            valueText.setText(value);
+        }
+    }
+    
     private VBox createQuickActionsPanel() {
         VBox quickActions = new VBox(15);
         quickActions.getStyleClass().add("modern-card");
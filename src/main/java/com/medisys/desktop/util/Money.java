@@ -0,0 +1,48 @@
+package com.medisys.desktop.util;
+
+import java.math.BigDecimal;
+import java.math.RoundingMode;
+
+/**
+ * Rupee amounts as whole paise in a {@code long}, matching the DECIMAL(10,2) columns exactly.
+ * Arithmetic on paise is exact and allocation-free; conversion to and from text or
+ * {@link BigDecimal} happens only at the edges.
+ */
+public final class Money {
+
+    private Money() {}
+
+    /**
+     * Parses "1234.5" / "1,234.50" into paise. Blank text is zero. More than two decimals are
+     * rounded half-up.
+     *
+     * @throws NumberFormatException if the text is not an amount
+     */
+    public static long parse(String text) {
+        if (text == null || text.isBlank()) {
+            return 0L;
+        }
+        return toPaise(new BigDecimal(text.trim().replace(",", "")));
+    }
+
+    public static long toPaise(BigDecimal amount) {
+        return amount.setScale(2, RoundingMode.HALF_UP).unscaledValue().longValueExact();
+    }
+
+    public static BigDecimal toAmount(long paise) {
+        return BigDecimal.valueOf(paise, 2);
+    }
+
+    /** "1234.50" */
+    public static String format(long paise) {
+        return toAmount(paise).toPlainString();
+    }
+
+    /**
+     * {@code paise * basisPoints / 10000}, rounded half-up (away from zero).
+     */
+    public static long percentOf(long paise, int basisPoints) {
+        long product = Math.multiplyExact(paise, basisPoints);
+        return product >= 0 ? (product + 5_000) / 10_000 : -((-product + 5_000) / 10_000);
+    }
+}
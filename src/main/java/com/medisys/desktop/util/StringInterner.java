@@ -0,0 +1,38 @@
+package com.medisys.desktop.util;
+
+import java.util.concurrent.ConcurrentHashMap;
+
+/**
+ * Deduplicates low-cardinality column values (gender, blood group, city, specialty...)
+ * so a large result set holds one String per distinct value instead of one per row.
+ *
+ * Bounded: once {@code maxEntries} distinct values are held, new values are returned as-is,
+ * so a column that turns out not to be low-cardinality cannot grow the table without limit.
+ */
+public class StringInterner {
+    private final ConcurrentHashMap<String, String> values = new ConcurrentHashMap<>();
+    private final int maxEntries;
+
+    public StringInterner(int maxEntries) {
+        this.maxEntries = maxEntries;
+    }
+
+    public String intern(String value) {
+        if (value == null) {
+            return null;
+        }
+        String existing = values.get(value);
+        if (existing != null) {
+            return existing;
+        }
+        if (values.size() >= maxEntries) {
+            return value;
+        }
+        existing = values.putIfAbsent(value, value);
+        return existing != null ? existing : value;
+    }
+
+    public int size() {
+        return values.size();
+    }
+}
@@ -0,0 +1,21 @@
+-- Price list for billable services. tax_rate is a percentage (18.00 = 18% GST).
+CREATE TABLE IF NOT EXISTS service_tariffs (
+    code VARCHAR(40) PRIMARY KEY,
+    description VARCHAR(200) NOT NULL,
+    price DECIMAL(10, 2) NOT NULL DEFAULT 0,
+    tax_rate DECIMAL(5, 2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
+
+-- One tariff per charge on the billing form (price 0: the amount is entered per bill),
+-- plus fixed-price services
+INSERT INTO service_tariffs (code, description, price, tax_rate) VALUES
+    ('CONSULTATION', 'Consultation', 500.00, 0),
+    ('MEDICATION', 'Medication', 0, 12.00),
+    ('LAB_TEST', 'Diagnostic tests', 0, 0),
+    ('ROOM', 'Room charges', 0, 0),
+    ('OTHER', 'Other charges', 0, 18.00),
+    ('HEALTH_CHECKUP', 'Health checkup package', 1500.00, 0),
+    ('VACCINATION', 'Vaccination', 800.00, 0),
+    ('FOLLOW_UP', 'Follow-up consultation', 300.00, 0)
+ON CONFLICT (code) DO NOTHING;
@@ -0,0 +1,31 @@
+-- Nightly batch billing. An appointment is billed once: the run links it to the finance
+-- record it was invoiced on, in the same transaction that creates that record.
+ALTER TABLE appointments ADD COLUMN IF NOT EXISTS finance_id BIGINT REFERENCES finance(id);
+
+CREATE INDEX IF NOT EXISTS idx_appointments_unbilled ON appointments (patient_id)
+    WHERE finance_id IS NULL AND status <> 'CANCELLED';
+
+-- One run per billing date; a failed or interrupted run is resumed by running that date again
+CREATE TABLE IF NOT EXISTS billing_runs (
+    id BIGSERIAL PRIMARY KEY,
+    billing_date DATE NOT NULL UNIQUE,
+    status VARCHAR(20) NOT NULL DEFAULT 'RUNNING',
+    started_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    finished_at TIMESTAMP
+);
+
+-- A run's patient-id ranges. checkpoint_patient_id is the last patient whose invoices
+-- have committed; a resumed partition carries on after it.
+CREATE TABLE IF NOT EXISTS billing_run_partitions (
+    run_id BIGINT NOT NULL REFERENCES billing_runs(id),
+    partition_no INTEGER NOT NULL,
+    first_patient_id BIGINT NOT NULL,
+    last_patient_id BIGINT NOT NULL,
+    checkpoint_patient_id BIGINT,
+    status VARCHAR(20) NOT NULL DEFAULT 'PENDING',
+    invoice_count INTEGER NOT NULL DEFAULT 0,
+    encounter_count INTEGER NOT NULL DEFAULT 0,
+    total_amount DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    updated_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    PRIMARY KEY (run_id, partition_no)
+);
@@ -0,0 +1,3 @@
+-- The patient overview reads all of one patient's bills and appointments, newest first
+CREATE INDEX IF NOT EXISTS idx_finance_patient ON finance (patient_id, created_date DESC);
+CREATE INDEX IF NOT EXISTS idx_appointments_patient ON appointments (patient_id, start_time DESC);
@@ -0,0 +1,26 @@
+-- Versions of each patient record, written by the outbox relay once the change has committed.
+-- changes holds the columns the version changed (every column for a creation). Every 16th
+-- version or so also keeps the whole row in snapshot, so the record as of any time is the
+-- nearest earlier snapshot plus a few deltas. valid_to is null for the current version; a
+-- deleted patient ends with a deleted version. No foreign key: history outlives the patient.
+CREATE TABLE IF NOT EXISTS patient_history (
+    patient_id BIGINT NOT NULL,
+    version BIGINT NOT NULL,
+    valid_from TIMESTAMP NOT NULL,
+    valid_to TIMESTAMP,
+    changed_by BIGINT,
+    changes JSONB NOT NULL,
+    snapshot JSONB,
+    deleted BOOLEAN NOT NULL DEFAULT FALSE,
+    PRIMARY KEY (patient_id, version)
+);
+
+-- "Patient as of" seeks the last snapshot before a time; "changes between" scans a range
+CREATE INDEX IF NOT EXISTS idx_patient_history_patient_time ON patient_history (patient_id, valid_from);
+CREATE INDEX IF NOT EXISTS idx_patient_history_time ON patient_history (valid_from);
+
+-- History starts now: existing patients get a snapshot of their current row
+INSERT INTO patient_history (patient_id, version, valid_from, changes, snapshot)
+SELECT p.id, p.version, CURRENT_TIMESTAMP, to_jsonb(p) - 'id' - 'version', to_jsonb(p) - 'id' - 'version'
+FROM patients p
+ON CONFLICT (patient_id, version) DO NOTHING;
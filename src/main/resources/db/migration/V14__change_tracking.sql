@@ -0,0 +1,51 @@
+-- Change tracking for open list screens. Every row carries the time it last changed and every
+-- deletion leaves a tombstone, so a screen can fetch just the rows changed since it last looked.
+-- Both are set by triggers, so bulk statements and batch jobs are tracked like single edits.
+-- clock_timestamp(), not now(): rows written late in a long transaction get a late time.
+
+CREATE OR REPLACE FUNCTION touch_updated_date() RETURNS TRIGGER AS $$
+BEGIN
+    NEW.updated_date := clock_timestamp();
+    RETURN NEW;
+END;
+$$ LANGUAGE plpgsql;
+
+CREATE TABLE IF NOT EXISTS row_tombstones (
+    table_name VARCHAR(50) NOT NULL,
+    row_id BIGINT NOT NULL,
+    deleted_at TIMESTAMP NOT NULL DEFAULT clock_timestamp(),
+    PRIMARY KEY (table_name, row_id)
+);
+
+CREATE INDEX IF NOT EXISTS idx_row_tombstones_deleted ON row_tombstones (table_name, deleted_at);
+
+-- One insert per DELETE statement. Tombstones are kept for 7 days (ChangeFeed.TOMBSTONE_RETENTION);
+-- each delete prunes the table's expired ones, and a screen that has not looked for longer reloads.
+CREATE OR REPLACE FUNCTION record_tombstones() RETURNS TRIGGER AS $$
+BEGIN
+    INSERT INTO row_tombstones (table_name, row_id)
+    SELECT TG_TABLE_NAME, id FROM deleted_rows
+    ON CONFLICT (table_name, row_id) DO UPDATE SET deleted_at = EXCLUDED.deleted_at;
+    DELETE FROM row_tombstones
+    WHERE table_name = TG_TABLE_NAME AND deleted_at < clock_timestamp() - INTERVAL '7 days';
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS updated_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_patients_updated_date ON patients (updated_date);
+DROP TRIGGER IF EXISTS patients_touch ON patients;
+CREATE TRIGGER patients_touch BEFORE INSERT OR UPDATE ON patients
+    FOR EACH ROW EXECUTE FUNCTION touch_updated_date();
+DROP TRIGGER IF EXISTS patients_tombstones ON patients;
+CREATE TRIGGER patients_tombstones AFTER DELETE ON patients
+    REFERENCING OLD TABLE AS deleted_rows FOR EACH STATEMENT EXECUTE FUNCTION record_tombstones();
+
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS updated_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+CREATE INDEX IF NOT EXISTS idx_doctors_updated_date ON doctors (updated_date);
+DROP TRIGGER IF EXISTS doctors_touch ON doctors;
+CREATE TRIGGER doctors_touch BEFORE INSERT OR UPDATE ON doctors
+    FOR EACH ROW EXECUTE FUNCTION touch_updated_date();
+DROP TRIGGER IF EXISTS doctors_tombstones ON doctors;
+CREATE TRIGGER doctors_tombstones AFTER DELETE ON doctors
+    REFERENCING OLD TABLE AS deleted_rows FOR EACH STATEMENT EXECUTE FUNCTION record_tombstones();
@@ -0,0 +1,16 @@
+-- Live updates between workstations: every outbox event is announced on the medisys_changes
+-- channel as "EntityType:id" ("EntityType:*" for bulk changes), which ChangeNotifications
+-- LISTENs to. NOTIFY is transactional: the announcement goes out when the change commits and
+-- never for a rollback, and repeats of one payload in a transaction are sent once.
+CREATE OR REPLACE FUNCTION notify_change() RETURNS TRIGGER AS $$
+BEGIN
+    IF NEW.affected_rows > 0 THEN
+        PERFORM pg_notify('medisys_changes', NEW.entity_type || ':' || COALESCE(NEW.entity_id::text, '*'));
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
+
+DROP TRIGGER IF EXISTS event_outbox_notify ON event_outbox;
+CREATE TRIGGER event_outbox_notify AFTER INSERT ON event_outbox
+    FOR EACH ROW EXECUTE FUNCTION notify_change();
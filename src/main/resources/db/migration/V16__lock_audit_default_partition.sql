@@ -0,0 +1,31 @@
+-- audit_logs_ensure_partition (V4) moved a month's rows out of the default partition and then
+-- attached the new partition without holding the default. An audit row for that month written
+-- in between landed in the default again, and the ATTACH failed on it. The default partition is
+-- now locked before the move, so concurrent audit writes wait for the attach instead.
+CREATE OR REPLACE FUNCTION audit_logs_ensure_partition(p_month DATE) RETURNS TEXT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', p_month);
+    month_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    partition_name TEXT := 'audit_logs_' || to_char(date_trunc('month', p_month), '"y"YYYY"m"MM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN partition_name;
+    END IF;
+    IF to_regclass('audit_logs_default') IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month_start, month_end);
+    ELSE
+        LOCK TABLE audit_logs_default IN ACCESS EXCLUSIVE MODE;
+        -- Another session may have created it while this one waited for the lock
+        IF to_regclass(partition_name) IS NOT NULL THEN
+            RETURN partition_name;
+        END IF;
+        EXECUTE format('CREATE TABLE %I (LIKE audit_logs INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+        EXECUTE format('WITH moved AS (DELETE FROM audit_logs_default WHERE timestamp >= %L AND timestamp < %L RETURNING *) '
+                       'INSERT INTO %I SELECT * FROM moved', month_start, month_end, partition_name);
+        EXECUTE format('ALTER TABLE audit_logs ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month_start, month_end);
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,3 @@
+-- A bulk operation records one outbox event listing the ids of the rows it changed (entity_id
+-- stays NULL). The relay expands the list, so each row gets its own audit record and history.
+ALTER TABLE event_outbox ADD COLUMN IF NOT EXISTS entity_ids BIGINT[];
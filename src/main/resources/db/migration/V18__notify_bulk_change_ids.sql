@@ -0,0 +1,20 @@
+-- Bulk outbox events list their rows in entity_ids (V17). Each of those ids is now announced
+-- as a single-row event's would be, rather than "EntityType:*", so a bulk edit no longer makes
+-- every subscriber reload everything. Past 500 ids (ChangeNotifications.MAX_IDS) a subscriber
+-- reloads anyway, so only "EntityType:*" is sent.
+CREATE OR REPLACE FUNCTION notify_change() RETURNS TRIGGER AS $$
+DECLARE
+    row_id BIGINT;
+BEGIN
+    IF NEW.affected_rows > 0 THEN
+        IF NEW.entity_ids IS NOT NULL AND cardinality(NEW.entity_ids) <= 500 THEN
+            FOREACH row_id IN ARRAY NEW.entity_ids LOOP
+                PERFORM pg_notify('medisys_changes', NEW.entity_type || ':' || row_id);
+            END LOOP;
+        ELSE
+            PERFORM pg_notify('medisys_changes', NEW.entity_type || ':' || COALESCE(NEW.entity_id::text, '*'));
+        END IF;
+    END IF;
+    RETURN NULL;
+END;
+$$ LANGUAGE plpgsql;
@@ -0,0 +1,21 @@
+-- Revenue rollups: finance rows carry a posting date and department so totals
+-- can be pre-aggregated per day / department / status.
+ALTER TABLE finance ADD COLUMN IF NOT EXISTS department_id BIGINT REFERENCES departments(id);
+ALTER TABLE finance ADD COLUMN IF NOT EXISTS created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP;
+
+-- department_id 0 stands for "unassigned" so it can take part in the primary key
+CREATE TABLE IF NOT EXISTS finance_revenue_daily (
+    revenue_date DATE NOT NULL,
+    department_id BIGINT NOT NULL DEFAULT 0,
+    status VARCHAR(20) NOT NULL,
+    total_amount DECIMAL(14, 2) NOT NULL DEFAULT 0,
+    bill_count BIGINT NOT NULL DEFAULT 0,
+    PRIMARY KEY (revenue_date, department_id, status)
+);
+
+-- Backfill from existing finance rows
+INSERT INTO finance_revenue_daily (revenue_date, department_id, status, total_amount, bill_count)
+SELECT CAST(created_date AS DATE), COALESCE(department_id, 0), status, SUM(amount), COUNT(*)
+FROM finance
+GROUP BY CAST(created_date AS DATE), COALESCE(department_id, 0), status
+ON CONFLICT (revenue_date, department_id, status) DO NOTHING;
@@ -0,0 +1,12 @@
+-- Transactional outbox: written in the same transaction as the entity change,
+-- drained by the outbox relay into audit_logs and cache invalidation channels.
+CREATE TABLE IF NOT EXISTS event_outbox (
+    id BIGSERIAL PRIMARY KEY,
+    entity_type VARCHAR(50) NOT NULL,
+    change_type VARCHAR(10) NOT NULL,
+    entity_id BIGINT,
+    user_id BIGINT,
+    action VARCHAR(100) NOT NULL,
+    affected_rows INT NOT NULL DEFAULT 1,
+    created_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP
+);
@@ -0,0 +1,65 @@
+-- Monthly range-partitioned audit storage. Audit rows are append-only, so
+-- timestamp correlates with physical order and a BRIN index stays tiny.
+ALTER TABLE audit_logs RENAME TO audit_logs_legacy;
+
+CREATE TABLE audit_logs (
+    id BIGSERIAL,
+    user_id BIGINT,
+    action VARCHAR(100) NOT NULL,
+    entity_type VARCHAR(50),
+    entity_id BIGINT,
+    timestamp TIMESTAMP NOT NULL,
+    PRIMARY KEY (id, timestamp),
+    FOREIGN KEY (user_id) REFERENCES users(id)
+) PARTITION BY RANGE (timestamp);
+
+CREATE INDEX IF NOT EXISTS audit_logs_timestamp_brin ON audit_logs USING BRIN (timestamp);
+CREATE INDEX IF NOT EXISTS audit_logs_entity_idx ON audit_logs (entity_type, entity_id);
+
+-- Creates the partition holding the month of p_month (audit_logs_yYYYYmMM) if missing.
+-- Rows that already landed in the default partition for that month are moved into it.
+CREATE OR REPLACE FUNCTION audit_logs_ensure_partition(p_month DATE) RETURNS TEXT AS $$
+DECLARE
+    month_start DATE := date_trunc('month', p_month);
+    month_end DATE := (date_trunc('month', p_month) + INTERVAL '1 month')::DATE;
+    partition_name TEXT := 'audit_logs_' || to_char(date_trunc('month', p_month), '"y"YYYY"m"MM');
+BEGIN
+    IF to_regclass(partition_name) IS NOT NULL THEN
+        RETURN partition_name;
+    END IF;
+    IF to_regclass('audit_logs_default') IS NULL THEN
+        EXECUTE format('CREATE TABLE %I PARTITION OF audit_logs FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month_start, month_end);
+    ELSE
+        EXECUTE format('CREATE TABLE %I (LIKE audit_logs INCLUDING DEFAULTS INCLUDING CONSTRAINTS)', partition_name);
+        EXECUTE format('WITH moved AS (DELETE FROM audit_logs_default WHERE timestamp >= %L AND timestamp < %L RETURNING *) '
+                       'INSERT INTO %I SELECT * FROM moved', month_start, month_end, partition_name);
+        EXECUTE format('ALTER TABLE audit_logs ATTACH PARTITION %I FOR VALUES FROM (%L) TO (%L)',
+                       partition_name, month_start, month_end);
+    END IF;
+    RETURN partition_name;
+END;
+$$ LANGUAGE plpgsql;
+
+-- Partitions for the legacy data and the months ahead, then move the rows across
+DO $$
+DECLARE
+    first_month DATE := COALESCE((SELECT date_trunc('month', MIN(timestamp))::DATE FROM audit_logs_legacy),
+                                 date_trunc('month', CURRENT_DATE)::DATE);
+    month DATE;
+BEGIN
+    month := first_month;
+    WHILE month <= (date_trunc('month', CURRENT_DATE) + INTERVAL '2 months')::DATE LOOP
+        PERFORM audit_logs_ensure_partition(month);
+        month := (month + INTERVAL '1 month')::DATE;
+    END LOOP;
+END;
+$$;
+
+-- Catches rows beyond the pre-created months until maintenance adds their partition
+CREATE TABLE IF NOT EXISTS audit_logs_default PARTITION OF audit_logs DEFAULT;
+
+INSERT INTO audit_logs (user_id, action, entity_type, entity_id, timestamp)
+SELECT user_id, action, entity_type, entity_id, timestamp FROM audit_logs_legacy ORDER BY timestamp;
+
+DROP TABLE audit_logs_legacy;
@@ -0,0 +1,9 @@
+-- Row versions for optimistic concurrency: every update bumps the version and only
+-- applies when the row still has the version the editor loaded.
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS version BIGINT NOT NULL DEFAULT 0;
+
+-- Partial updates carry the new row version and the changed columns (a JSON object of
+-- column -> new value), so the relay can patch cached entities instead of evicting them.
+ALTER TABLE event_outbox ADD COLUMN IF NOT EXISTS entity_version BIGINT;
+ALTER TABLE event_outbox ADD COLUMN IF NOT EXISTS changes TEXT;
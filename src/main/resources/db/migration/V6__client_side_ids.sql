@@ -0,0 +1,16 @@
+-- Ids are allocated by the application in blocks (hi-lo): one nextval reserves the next
+-- 50 ids for one workstation. Column defaults keep working and just take a whole block.
+ALTER SEQUENCE patients_id_seq INCREMENT BY 50;
+ALTER SEQUENCE doctors_id_seq INCREMENT BY 50;
+ALTER SEQUENCE departments_id_seq INCREMENT BY 50;
+
+-- Human-readable codes, derived from the id so they are unique without coordination
+ALTER TABLE patients ADD COLUMN IF NOT EXISTS patient_code VARCHAR(20);
+UPDATE patients SET patient_code = 'PAT' || lpad(id::text, GREATEST(6, length(id::text)), '0')
+WHERE patient_code IS NULL;
+CREATE UNIQUE INDEX IF NOT EXISTS idx_patients_patient_code ON patients (patient_code);
+
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS doctor_code VARCHAR(20);
+UPDATE doctors SET doctor_code = 'DOC' || lpad(id::text, GREATEST(6, length(id::text)), '0')
+WHERE doctor_code IS NULL;
+CREATE UNIQUE INDEX IF NOT EXISTS idx_doctors_doctor_code ON doctors (doctor_code);
@@ -0,0 +1,33 @@
+-- Consulting hours used to offer appointment slots
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS morning_start_time TIME;
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS morning_end_time TIME;
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS evening_start_time TIME;
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS evening_end_time TIME;
+ALTER TABLE doctors ADD COLUMN IF NOT EXISTS working_days VARCHAR(100);
+
+-- btree_gist lets the exclusion constraint combine doctor_id equality with range overlap
+CREATE EXTENSION IF NOT EXISTS btree_gist;
+
+CREATE TABLE IF NOT EXISTS appointments (
+    id BIGSERIAL PRIMARY KEY,
+    patient_id BIGINT NOT NULL REFERENCES patients(id),
+    doctor_id BIGINT NOT NULL REFERENCES doctors(id),
+    start_time TIMESTAMP NOT NULL,
+    end_time TIMESTAMP NOT NULL,
+    appointment_type VARCHAR(50),
+    status VARCHAR(20) NOT NULL DEFAULT 'SCHEDULED',
+    notes TEXT,
+    created_by BIGINT,
+    created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    CHECK (end_time > start_time),
+    -- A doctor can never hold two live bookings that overlap, whichever workstation books them
+    CONSTRAINT appointments_no_double_booking EXCLUDE USING gist (
+        doctor_id WITH =,
+        tsrange(start_time, end_time) WITH &&
+    ) WHERE (status <> 'CANCELLED')
+);
+
+-- Ids are allocated client-side in blocks of 50, like patients and doctors
+ALTER SEQUENCE appointments_id_seq INCREMENT BY 50;
+
+CREATE INDEX IF NOT EXISTS idx_appointments_start_time ON appointments (start_time);
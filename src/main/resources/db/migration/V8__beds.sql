@@ -0,0 +1,33 @@
+-- Bed inventory. A bed is free while patient_id is NULL; allocation and release are
+-- conditional updates on that column, so two workstations can never hand out the same bed.
+CREATE TABLE IF NOT EXISTS beds (
+    id BIGSERIAL PRIMARY KEY,
+    ward VARCHAR(50) NOT NULL,
+    bed_number INTEGER NOT NULL,
+    bed_type VARCHAR(30) NOT NULL DEFAULT 'STANDARD',
+    label VARCHAR(50) NOT NULL,
+    patient_id BIGINT REFERENCES patients(id),
+    occupied_since TIMESTAMP,
+    -- Bumped on every allocation and release so occupancy notifications can be ordered
+    version BIGINT NOT NULL DEFAULT 0,
+    UNIQUE (ward, bed_number)
+);
+
+-- A patient holds at most one bed
+CREATE UNIQUE INDEX IF NOT EXISTS idx_beds_patient ON beds (patient_id) WHERE patient_id IS NOT NULL;
+
+-- The wards the emergency admission form used to list statically
+INSERT INTO beds (ward, bed_number, bed_type, label)
+SELECT 'Emergency', n, CASE WHEN n > 16 THEN 'ISOLATION' ELSE 'STANDARD' END, 'Emergency Bed ' || n
+FROM generate_series(1, 20) AS n
+ON CONFLICT (ward, bed_number) DO NOTHING;
+
+INSERT INTO beds (ward, bed_number, bed_type, label)
+SELECT 'ICU', n, 'MONITORED', 'ICU Bed ' || n
+FROM generate_series(1, 10) AS n
+ON CONFLICT (ward, bed_number) DO NOTHING;
+
+INSERT INTO beds (ward, bed_number, bed_type, label)
+SELECT 'Trauma', n, 'MONITORED', 'Trauma Room ' || n
+FROM generate_series(1, 4) AS n
+ON CONFLICT (ward, bed_number) DO NOTHING;
@@ -0,0 +1,16 @@
+-- Emergency department triage queue. Waiting cases are reloaded from here on startup,
+-- so a restart of the triage workstation does not lose anyone.
+CREATE TABLE IF NOT EXISTS triage_queue (
+    id BIGSERIAL PRIMARY KEY,
+    patient_name VARCHAR(200) NOT NULL,
+    patient_id BIGINT REFERENCES patients(id),
+    priority VARCHAR(20) NOT NULL,
+    emergency_type VARCHAR(100),
+    status VARCHAR(20) NOT NULL DEFAULT 'WAITING',
+    arrived_at TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP,
+    called_at TIMESTAMP,
+    created_by BIGINT,
+    called_by BIGINT
+);
+
+CREATE INDEX IF NOT EXISTS idx_triage_queue_waiting ON triage_queue (arrived_at) WHERE status = 'WAITING';
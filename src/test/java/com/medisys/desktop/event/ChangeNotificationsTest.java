@@ -0,0 +1,58 @@
+package com.medisys.desktop.event;
+
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class ChangeNotificationsTest {
+
+    @Test
+    public void testBurstIsDeliveredOncePerTypeWithIdsDeduplicated() {
+        ChangeNotifications notifications = new ChangeNotifications(null, new ApplicationMetrics(new SimpleMeterRegistry()), 250);
+        List<String> calls = new ArrayList<>();
+        List<Set<Long>> patientIds = new ArrayList<>();
+        notifications.subscribe("Patient", (type, ids) -> { calls.add(type); patientIds.add(ids); });
+        notifications.subscribe("Doctor", (type, ids) -> { calls.add(type); assertNull(ids); });
+
+        notifications.offer("Patient:1");
+        notifications.offer("Patient:2");
+        notifications.offer("Patient:1");
+        notifications.offer("Doctor:7");
+        notifications.offer("Doctor:*");
+        notifications.offer("Doctor:8");
+        notifications.offer("Finance:3");
+        notifications.offer("garbage");
+        notifications.flush();
+
+        assertEquals(List.of("Patient", "Doctor"), calls);
+        assertEquals(Set.of(1L, 2L), patientIds.get(0));
+
+        notifications.flush();
+        assertEquals(2, calls.size());
+    }
+
+    @Test
+    public void testLargeBurstOrResyncMeansAnyRow() {
+        ChangeNotifications notifications = new ChangeNotifications(null, new ApplicationMetrics(new SimpleMeterRegistry()), 250);
+        List<Set<Long>> delivered = new ArrayList<>();
+        notifications.subscribe("Patient", (type, ids) -> delivered.add(ids != null ? new HashSet<>(ids) : null));
+
+        for (long id = 1; id <= ChangeNotifications.MAX_IDS + 1; id++) {
+            notifications.offer("Patient:" + id);
+        }
+        notifications.flush();
+        notifications.resyncAll();
+
+        assertEquals(2, delivered.size());
+        assertNull(delivered.get(0));
+        assertNull(delivered.get(1));
+    }
+}
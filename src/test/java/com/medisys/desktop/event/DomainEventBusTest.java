@@ -0,0 +1,63 @@
+package com.medisys.desktop.event;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DomainEventBusTest {
+
+    @Test
+    public void testEveryHandlerSeesEveryEventInOrder() throws Exception {
+        int producers = 4;
+        int eventsPerProducer = 10_000;
+        DomainEventBus eventBus = new DomainEventBus(64);
+        List<Long> first = Collections.synchronizedList(new ArrayList<>());
+        List<Long> second = Collections.synchronizedList(new ArrayList<>());
+        eventBus.addHandler("first", (event, sequence, endOfBatch) -> first.add(sequence));
+        eventBus.addHandler("second", (event, sequence, endOfBatch) -> second.add(sequence));
+        eventBus.start();
+
+        CountDownLatch done = new CountDownLatch(producers);
+        for (int p = 0; p < producers; p++) {
+            long producer = p;
+            new Thread(() -> {
+                for (int i = 0; i < eventsPerProducer; i++) {
+                    eventBus.publish("Patient", ChangeType.CREATE, producer, 1L, "CREATE_PATIENT", 1, null, 0);
+                }
+                done.countDown();
+            }).start();
+        }
+        assertTrue(done.await(30, TimeUnit.SECONDS));
+        eventBus.close();
+
+        int expected = producers * eventsPerProducer;
+        assertEquals(expected, first.size());
+        assertEquals(expected, second.size());
+        for (int i = 0; i < expected; i++) {
+            assertEquals(i, first.get(i));
+            assertEquals(i, second.get(i));
+        }
+    }
+
+    @Test
+    public void testPublishAfterCloseIsRejected() {
+        DomainEventBus eventBus = new DomainEventBus(8);
+        eventBus.start();
+        eventBus.close();
+        assertFalse(eventBus.publish("Patient", ChangeType.DELETE, 1L, 1L, "DELETE_PATIENT", 1, null, 0));
+    }
+
+    @Test
+    public void testBufferSizeMustBePowerOfTwo() {
+        assertThrows(IllegalArgumentException.class, () -> new DomainEventBus(100));
+    }
+}
@@ -0,0 +1,46 @@
+package com.medisys.desktop.model;
+
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class ChangeSetTest {
+    private static final LocalDateTime WATERMARK = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+    @Test
+    public void testChangesAreAppliedInPlace() {
+        List<String> view = new ArrayList<>(List.of("1 - Asha", "2 - Ravi", "3 - Meena"));
+        ChangeSet<PatientSummary> changes = new ChangeSet<>(
+                List.of(summary(2L, "Ravi Kumar"), summary(4L, "John"), summary(2L, "Ravi K.")),
+                List.of(3L, 99L), WATERMARK, false);
+
+        changes.applyTo(view, ChangeSetTest::rowId, p -> p.getId() + " - " + p.getName());
+
+        assertEquals(List.of("1 - Asha", "2 - Ravi K.", "4 - John"), view);
+    }
+
+    @Test
+    public void testFullReloadReplacesTheView() {
+        List<String> view = new ArrayList<>(List.of("1 - Asha", "7 - Gone"));
+        ChangeSet<PatientSummary> changes = new ChangeSet<>(List.of(summary(1L, "Asha"), summary(2L, "Ravi")),
+                List.of(), WATERMARK, true);
+
+        changes.applyTo(view, ChangeSetTest::rowId, p -> p.getId() + " - " + p.getName());
+
+        assertEquals(List.of("1 - Asha", "2 - Ravi"), view);
+        assertTrue(new ChangeSet<PatientSummary>(List.of(), List.of(), WATERMARK, false).isEmpty());
+    }
+
+    private static PatientSummary summary(Long id, String name) {
+        return new PatientSummary(id, name, null, null, null, null, true);
+    }
+
+    private static Long rowId(String row) {
+        return Long.parseLong(row.substring(0, row.indexOf(" - ")));
+    }
+}
@@ -0,0 +1,108 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.AuditLog;
+import com.medisys.desktop.monitoring.ApplicationMetrics;
+import io.micrometer.core.instrument.simple.SimpleMeterRegistry;
+import org.junit.jupiter.api.Test;
+import org.junit.jupiter.api.io.TempDir;
+
+import java.nio.file.Path;
+import java.time.Duration;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class AuditJournalTest {
+
+    @TempDir
+    Path journalDirectory;
+
+    @Test
+    public void testReplayShipsAllRecordsAcrossSegmentsAndDeletesThem() {
+        AuditJournal journal = new AuditJournal(journalDirectory, 8 * 1024);
+        for (long i = 0; i < 1000; i++) {
+            journal.append(1L, "VIEW_PATIENT", "Patient", i, System.currentTimeMillis());
+        }
+        journal.append(null, "LIST_PATIENTS", "Patient", null, System.currentTimeMillis());
+        assertTrue(journal.sealedSegments().size() > 1);
+
+        RecordingAuditService auditService = new RecordingAuditService(false);
+        // Seals the active segment however young, so its last record ships too
+        AuditJournalReplayer replayer = new AuditJournalReplayer(journal, auditService,
+                new ApplicationMetrics(new SimpleMeterRegistry()), 100, 1000, Duration.ZERO);
+        assertEquals(1001, replayer.replay());
+
+        assertEquals(1001, auditService.written.size());
+        for (int i = 0; i < 1000; i++) {
+            assertEquals(i, auditService.written.get(i).getEntityId());
+        }
+        assertNull(auditService.written.get(1000).getUserId());
+        assertTrue(journal.sealedSegments().isEmpty());
+        journal.close();
+    }
+
+    @Test
+    public void testActiveSegmentIsSealedOnlyWhenFullOrOldEnough() {
+        AuditJournal journal = new AuditJournal(journalDirectory, 64 * 1024);
+        journal.append(1L, "VIEW_PATIENT", "Patient", 1L, System.currentTimeMillis());
+        RecordingAuditService auditService = new RecordingAuditService(false);
+        ApplicationMetrics metrics = new ApplicationMetrics(new SimpleMeterRegistry());
+
+        // A young, nearly empty segment waits for more records
+        assertEquals(0, new AuditJournalReplayer(journal, auditService, metrics, 100, 1000).replay());
+        assertTrue(auditService.written.isEmpty());
+
+        // 55 bytes a record: 1101 of them fill the segment past 80% without rotating it
+        for (long i = 2; i <= 1101; i++) {
+            journal.append(1L, "VIEW_PATIENT", "Patient", i, System.currentTimeMillis());
+        }
+        assertTrue(journal.sealedSegments().isEmpty());
+        assertEquals(1101, new AuditJournalReplayer(journal, auditService, metrics, 100, 1000).replay());
+        assertEquals(1101, auditService.written.size());
+
+        // An old enough segment is sealed however empty
+        journal.append(1L, "VIEW_PATIENT", "Patient", 0L, System.currentTimeMillis());
+        assertEquals(1, new AuditJournalReplayer(journal, auditService, metrics, 100, 1000, Duration.ZERO).replay());
+        journal.close();
+    }
+
+    @Test
+    public void testRecordsSurviveDatabaseOutageAndRestart() {
+        AuditJournal journal = new AuditJournal(journalDirectory, 64 * 1024);
+        for (long i = 0; i < 250; i++) {
+            journal.append(2L, "UPDATE_DOCTOR", "Doctor", i, System.currentTimeMillis());
+        }
+        RecordingAuditService unavailable = new RecordingAuditService(true);
+        ApplicationMetrics metrics = new ApplicationMetrics(new SimpleMeterRegistry());
+        assertEquals(0, new AuditJournalReplayer(journal, unavailable, metrics, 100, 1000).replay());
+        journal.close();
+
+        // A new journal over the same directory picks up the segments left behind
+        AuditJournal reopened = new AuditJournal(journalDirectory, 64 * 1024);
+        RecordingAuditService auditService = new RecordingAuditService(false);
+        assertEquals(250, new AuditJournalReplayer(reopened, auditService, metrics, 100, 1000).replay());
+        assertEquals(249L, auditService.written.get(249).getEntityId());
+        reopened.close();
+    }
+
+    private static class RecordingAuditService extends AuditService {
+        private final boolean failing;
+        private final List<AuditLog> written = new ArrayList<>();
+
+        RecordingAuditService(boolean failing) {
+            super(null);
+            this.failing = failing;
+        }
+
+        @Override
+        public void logActions(List<AuditLog> auditLogs) {
+            if (failing) {
+                throw new IllegalStateException("database unavailable");
+            }
+            written.addAll(auditLogs);
+        }
+    }
+}
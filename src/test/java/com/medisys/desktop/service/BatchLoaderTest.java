@@ -0,0 +1,72 @@
+package com.medisys.desktop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class BatchLoaderTest {
+
+    @Test
+    public void testQueuedKeysResolveInOneBatchAndAreMemoized() {
+        List<Set<Long>> batches = new ArrayList<>();
+        BatchLoader<Long, String> names = new BatchLoader<>(ids -> {
+            batches.add(Set.copyOf(ids));
+            Map<Long, String> found = new HashMap<>();
+            ids.stream().filter(id -> id != 3L).forEach(id -> found.put(id, "Patient " + id));
+            return found;
+        });
+
+        String[] shown = new String[5];
+        names.load(1L, name -> shown[0] = name);
+        names.load(2L, name -> shown[1] = name);
+        names.load(1L, name -> shown[2] = name);
+        names.load(3L, name -> shown[3] = name);
+        names.load(null, name -> shown[4] = "none");
+        assertEquals("none", shown[4]);
+        assertNull(shown[0]);
+
+        assertEquals(3, names.dispatch());
+        assertEquals(List.of(Set.of(1L, 2L, 3L)), batches);
+        assertEquals("Patient 1", shown[0]);
+        assertEquals("Patient 2", shown[1]);
+        assertEquals("Patient 1", shown[2]);
+        assertNull(shown[3]);
+
+        // Resolved keys, including the missing one, never go back to the batch function
+        names.load(2L, name -> shown[1] = name + "!");
+        assertNull(names.get(3L));
+        assertEquals("Patient 2!", shown[1]);
+        assertEquals(0, names.dispatch());
+        assertEquals("Patient 4", names.get(4L));
+        assertEquals(2, batches.size());
+    }
+
+    @Test
+    public void testDispatchFollowsReferencesQueuedByResolvedValues() {
+        ReferenceLoaders references = new ReferenceLoaders(null);
+        List<Set<Long>> departmentBatches = new ArrayList<>();
+        BatchLoader<Long, Long> doctorDepartments = references.loader("doctors.department_id",
+                ids -> { Map<Long, Long> m = new HashMap<>(); ids.forEach(id -> m.put(id, id % 2 + 10)); return m; });
+        BatchLoader<Long, String> departmentNames = references.loader("departments.name",
+                ids -> { departmentBatches.add(Set.copyOf(ids)); Map<Long, String> m = new HashMap<>();
+                         ids.forEach(id -> m.put(id, "Dept " + id)); return m; });
+
+        Map<Long, String> shown = new HashMap<>();
+        for (long doctor = 1; doctor <= 4; doctor++) {
+            long d = doctor;
+            doctorDepartments.load(d, department -> departmentNames.load(department, name -> shown.put(d, name)));
+        }
+        references.dispatch();
+
+        assertEquals(List.of(Set.of(10L, 11L)), departmentBatches);
+        assertEquals("Dept 11", shown.get(1L));
+        assertEquals("Dept 10", shown.get(4L));
+    }
+}
@@ -0,0 +1,57 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Invoice;
+import com.medisys.desktop.model.InvoiceLine;
+import com.medisys.desktop.model.Tariff;
+import org.junit.jupiter.api.Test;
+
+import java.math.BigDecimal;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertThrows;
+
+public class BillingEngineTest {
+
+    private final BillingEngine engine = new BillingEngine(tariffs());
+
+    @Test
+    public void testDiscountIsSharedExactlyAndTaxedPerLine() {
+        List<InvoiceLine> lines = List.of(
+                new InvoiceLine("CONSULTATION", 1),
+                new InvoiceLine("MEDICATION", 3, 33_333),
+                new InvoiceLine("OTHER", 1, 10_001));
+
+        Invoice invoice = engine.price(lines, 10_000);
+
+        // 500.00 + 3 x 333.33 + 100.01
+        assertEquals(160_000, invoice.getSubtotalPaise());
+        assertEquals(10_000, lines.stream().mapToLong(InvoiceLine::getDiscountPaise).sum());
+        assertEquals(3_125, lines.get(0).getDiscountPaise());
+        assertEquals(6_249, lines.get(1).getDiscountPaise());
+        // The last line takes the rounding remainder
+        assertEquals(626, lines.get(2).getDiscountPaise());
+        // 12% of 937.50, and 18% of 93.75 = 16.875 rounded half-up
+        assertEquals(11_250, lines.get(1).getTaxPaise());
+        assertEquals(1_688, lines.get(2).getTaxPaise());
+        assertEquals(new BigDecimal("1629.38"), invoice.getTotalAmount());
+    }
+
+    @Test
+    public void testDiscountIsCappedAndUnknownServicesRejected() {
+        Invoice invoice = engine.price(List.of(new InvoiceLine("CONSULTATION", 1)), 80_000);
+        assertEquals(50_000, invoice.getDiscountPaise());
+        assertEquals(0, invoice.getTotalPaise());
+
+        assertThrows(IllegalArgumentException.class, () -> engine.price(List.of(new InvoiceLine("MRI", 1)), 0));
+    }
+
+    private static TariffService tariffs() {
+        TariffService tariffs = new TariffService(null, null, null);
+        tariffs.replaceAll(List.of(
+                new Tariff("CONSULTATION", "Consultation", 50_000, 0),
+                new Tariff("MEDICATION", "Medication", 0, 1_200),
+                new Tariff("OTHER", "Other charges", 0, 1_800)));
+        return tariffs;
+    }
+}
@@ -0,0 +1,82 @@
+package com.medisys.desktop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.Set;
+import java.util.concurrent.CompletableFuture;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertNull;
+import static org.junit.jupiter.api.Assertions.assertSame;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DependentCacheTest {
+
+    @Test
+    public void testChangedRowDropsOnlyTheValuesBuiltFromIt() {
+        DependentCache<String> cache = new DependentCache<>(10);
+        assertTrue(cache.complete(1L, cache.reserve(1L), "one", Set.of("patients:1", "finance:10", "doctors:7")));
+        assertTrue(cache.complete(2L, cache.reserve(2L), "two", Set.of("patients:2", "finance:20", "doctors:7")));
+
+        assertTrue(cache.invalidate("finance:10"));
+        assertNull(cache.lookup(1L));
+        assertEquals("two", cache.lookup(2L).join());
+
+        // A row nobody depends on, e.g. a newly created bill
+        assertFalse(cache.invalidate("finance:30"));
+        assertTrue(cache.invalidate("doctors:7"));
+        assertNull(cache.lookup(2L));
+        assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void testLoadOverlappingAnInvalidationIsServedButNotKept() {
+        DependentCache<String> cache = new DependentCache<>(10);
+        CompletableFuture<String> loading = cache.reserve(1L);
+        // Whoever asks while it loads shares the same load
+        assertSame(loading, cache.lookup(1L));
+
+        cache.invalidate("finance:10");
+        assertFalse(cache.complete(1L, loading, "stale", Set.of("patients:1", "finance:10")));
+        assertEquals("stale", loading.join());
+        assertNull(cache.lookup(1L));
+
+        CompletableFuture<String> reloading = cache.reserve(1L);
+        cache.invalidate("finance:*");
+        assertFalse(cache.complete(1L, reloading, "stale", Set.of("patients:1", "finance:10")));
+
+        CompletableFuture<String> unrelated = cache.reserve(1L);
+        cache.invalidate("finance:99");
+        assertTrue(cache.complete(1L, unrelated, "fresh", Set.of("patients:1", "finance:10")));
+        assertNotNull(cache.lookup(1L));
+    }
+
+    @Test
+    public void testClearDropsCachedValuesAndDiscardsLoadsInFlight() {
+        DependentCache<String> cache = new DependentCache<>(10);
+        cache.complete(1L, cache.reserve(1L), "one", Set.of("patients:1"));
+        CompletableFuture<String> loading = cache.reserve(2L);
+
+        cache.clear();
+        assertNull(cache.lookup(1L));
+        assertFalse(cache.complete(2L, loading, "two", Set.of("patients:2")));
+        assertEquals("two", loading.join());
+        assertEquals(0, cache.size());
+        assertFalse(cache.invalidate("patients:1"));
+    }
+
+    @Test
+    public void testLeastRecentlyUsedValuesAreDroppedBeyondCapacity() {
+        DependentCache<String> cache = new DependentCache<>(2);
+        cache.complete(1L, cache.reserve(1L), "one", Set.of("patients:1"));
+        cache.complete(2L, cache.reserve(2L), "two", Set.of("patients:2"));
+        cache.lookup(1L);
+        cache.complete(3L, cache.reserve(3L), "three", Set.of("patients:3"));
+
+        assertNull(cache.lookup(2L));
+        assertNotNull(cache.lookup(1L));
+        assertFalse(cache.invalidate("patients:2"));
+    }
+}
@@ -0,0 +1,77 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Doctor;
+import org.junit.jupiter.api.Test;
+
+import java.time.DayOfWeek;
+import java.time.Duration;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.util.EnumSet;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class DoctorScheduleTest {
+
+    // A Monday
+    private static final LocalDate DAY = LocalDate.of(2024, 6, 3);
+
+    @Test
+    public void testOverlapChecksAgainstNeighbouringBookings() {
+        DoctorSchedule schedule = new DoctorSchedule(DoctorSchedule.WorkingHours.of(doctor()));
+        schedule.book(at(9, 0), at(9, 30));
+        schedule.book(at(10, 0), at(10, 45));
+
+        assertTrue(schedule.isFree(at(9, 30), at(10, 0)));
+        assertFalse(schedule.isFree(at(9, 15), at(9, 45)));
+        assertFalse(schedule.isFree(at(9, 45), at(10, 15)));
+        assertFalse(schedule.isFree(at(8, 0), at(12, 0)));
+        assertTrue(schedule.isFree(at(10, 45), at(11, 0)));
+
+        schedule.release(at(10, 0));
+        assertTrue(schedule.isFree(at(9, 45), at(10, 15)));
+    }
+
+    @Test
+    public void testNextFreeSlotsSkipBookingsSessionsAndDaysOff() {
+        DoctorSchedule schedule = new DoctorSchedule(DoctorSchedule.WorkingHours.of(doctor()));
+        schedule.book(at(9, 0), at(9, 30));
+        schedule.book(at(9, 45), at(11, 0));
+        schedule.book(at(11, 15), at(12, 0));
+
+        List<LocalDateTime> slots = schedule.nextFreeSlots(at(8, 50), 3, Duration.ofMinutes(15));
+        assertEquals(List.of(at(9, 30), at(11, 0), at(16, 0)), slots);
+
+        // Friday evening full: the next slot is on Monday, Saturday and Sunday are days off
+        LocalDate friday = DAY.plusDays(4);
+        schedule.book(friday.atTime(16, 0), friday.atTime(18, 0));
+        assertEquals(List.of(DAY.plusWeeks(1).atTime(9, 0)),
+                schedule.nextFreeSlots(friday.atTime(13, 0), 1, Duration.ofMinutes(30)));
+    }
+
+    @Test
+    public void testWorkingDaysParsing() {
+        assertEquals(EnumSet.range(DayOfWeek.MONDAY, DayOfWeek.FRIDAY),
+                DoctorSchedule.WorkingHours.parseDays("Monday to Friday"));
+        assertEquals(EnumSet.of(DayOfWeek.MONDAY, DayOfWeek.WEDNESDAY, DayOfWeek.SATURDAY),
+                DoctorSchedule.WorkingHours.parseDays("Monday,Wednesday,Saturday"));
+    }
+
+    private static Doctor doctor() {
+        Doctor doctor = new Doctor();
+        doctor.setMorningStartTime(LocalTime.of(9, 0));
+        doctor.setMorningEndTime(LocalTime.of(12, 0));
+        doctor.setEveningStartTime(LocalTime.of(16, 0));
+        doctor.setEveningEndTime(LocalTime.of(18, 0));
+        doctor.setWorkingDays("Monday to Friday");
+        return doctor;
+    }
+
+    private static LocalDateTime at(int hour, int minute) {
+        return DAY.atTime(hour, minute);
+    }
+}
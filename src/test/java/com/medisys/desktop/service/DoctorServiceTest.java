@@ -0,0 +1,84 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Doctor;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.time.DayOfWeek;
+import java.time.LocalDate;
+import java.time.LocalTime;
+import java.time.temporal.TemporalAdjusters;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers
+public class DoctorServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("medisys")
+            .withUsername("postgres")
+            .withPassword("secret");
+
+    private DoctorService doctorService;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        JdbcTemplate jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Initialize the database
+        jdbcTemplate.execute("DROP TABLE IF EXISTS doctors, audit_logs");
+        jdbcTemplate.execute("CREATE TABLE doctors (id SERIAL PRIMARY KEY, doctor_code VARCHAR(20), name VARCHAR(100) NOT NULL, specialty VARCHAR(100), contact_info VARCHAR(255), department_id BIGINT, version BIGINT NOT NULL DEFAULT 0, morning_start_time TIME, morning_end_time TIME, evening_start_time TIME, evening_end_time TIME, working_days VARCHAR(100))");
+        jdbcTemplate.execute("CREATE TABLE audit_logs (id SERIAL PRIMARY KEY, user_id BIGINT, action VARCHAR(100) NOT NULL, entity_type VARCHAR(50), entity_id BIGINT, timestamp TIMESTAMP NOT NULL)");
+
+        doctorService = new DoctorService(jdbcTemplate, new AuditService(jdbcTemplate));
+    }
+
+    @Test
+    public void testConsultingHoursSurviveCreateAndUpdate() {
+        Doctor doctor = new Doctor();
+        doctor.setName("Asha Rao");
+        doctor.setSpecialty("Cardiology");
+        doctor.setMorningStartTime(LocalTime.of(7, 30));
+        doctor.setMorningEndTime(LocalTime.of(11, 0));
+        doctor.setWorkingDays("Saturday,Sunday");
+        doctorService.createDoctor(doctor, 1L);
+
+        Doctor created = doctorService.getDoctor(doctor.getId(), 1L);
+        assertEquals(LocalTime.of(7, 30), created.getMorningStartTime());
+        assertEquals(LocalTime.of(11, 0), created.getMorningEndTime());
+        assertEquals("Saturday,Sunday", created.getWorkingDays());
+        LocalDate saturday = LocalDate.now().with(TemporalAdjusters.next(DayOfWeek.SATURDAY));
+        DoctorSchedule.WorkingHours hours = DoctorSchedule.WorkingHours.of(created);
+        assertTrue(hours.covers(saturday.atTime(8, 0), saturday.atTime(8, 30)));
+        assertFalse(hours.covers(saturday.plusDays(2).atTime(10, 0), saturday.plusDays(2).atTime(10, 30)));
+
+        created.setEveningStartTime(LocalTime.of(18, 0));
+        created.setEveningEndTime(LocalTime.of(20, 0));
+        created.setWorkingDays("Monday to Wednesday");
+        assertEquals(3, created.getChangedColumns().size());
+        doctorService.updateDoctor(created, 1L);
+
+        Doctor updated = doctorService.getDoctor(doctor.getId(), 1L);
+        assertEquals(LocalTime.of(7, 30), updated.getMorningStartTime());
+        assertEquals(LocalTime.of(18, 0), updated.getEveningStartTime());
+        assertEquals(LocalTime.of(20, 0), updated.getEveningEndTime());
+        assertEquals("Monday to Wednesday", updated.getWorkingDays());
+        LocalDate monday = saturday.plusDays(2);
+        hours = DoctorSchedule.WorkingHours.of(updated);
+        assertTrue(hours.covers(monday.atTime(19, 0), monday.atTime(19, 30)));
+        assertFalse(hours.covers(monday.atTime(12, 0), monday.atTime(12, 30)));
+        assertFalse(hours.covers(saturday.atTime(8, 0), saturday.atTime(8, 30)));
+    }
+}
@@ -0,0 +1,105 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Finance;
+import com.medisys.desktop.model.RevenueBucket;
+import com.medisys.desktop.model.RevenueGranularity;
+import org.junit.jupiter.api.BeforeEach;
+import org.junit.jupiter.api.Test;
+import org.springframework.jdbc.core.JdbcTemplate;
+import org.springframework.jdbc.datasource.DriverManagerDataSource;
+import org.testcontainers.containers.PostgreSQLContainer;
+import org.testcontainers.junit.jupiter.Container;
+import org.testcontainers.junit.jupiter.Testcontainers;
+
+import java.math.BigDecimal;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+@Testcontainers
+public class FinanceServiceTest {
+
+    @Container
+    private static final PostgreSQLContainer<?> postgres = new PostgreSQLContainer<>("postgres:15")
+            .withDatabaseName("medisys")
+            .withUsername("postgres")
+            .withPassword("secret");
+
+    private FinanceService financeService;
+    private JdbcTemplate jdbcTemplate;
+
+    @BeforeEach
+    public void setUp() {
+        DriverManagerDataSource dataSource = new DriverManagerDataSource();
+        dataSource.setUrl(postgres.getJdbcUrl());
+        dataSource.setUsername(postgres.getUsername());
+        dataSource.setPassword(postgres.getPassword());
+        jdbcTemplate = new JdbcTemplate(dataSource);
+
+        // Initialize the database
+        jdbcTemplate.execute("DROP TABLE IF EXISTS finance, finance_revenue_daily, audit_logs");
+        jdbcTemplate.execute("CREATE TABLE finance (id SERIAL PRIMARY KEY, patient_id BIGINT, amount DECIMAL(10, 2) NOT NULL, status VARCHAR(20) NOT NULL, department_id BIGINT, created_date TIMESTAMP NOT NULL DEFAULT CURRENT_TIMESTAMP)");
+        jdbcTemplate.execute("CREATE TABLE finance_revenue_daily (revenue_date DATE NOT NULL, department_id BIGINT NOT NULL DEFAULT 0, status VARCHAR(20) NOT NULL, total_amount DECIMAL(14, 2) NOT NULL DEFAULT 0, bill_count BIGINT NOT NULL DEFAULT 0, PRIMARY KEY (revenue_date, department_id, status))");
+        jdbcTemplate.execute("CREATE TABLE audit_logs (id SERIAL PRIMARY KEY, user_id BIGINT, action VARCHAR(100) NOT NULL, entity_type VARCHAR(50), entity_id BIGINT, timestamp TIMESTAMP NOT NULL)");
+
+        financeService = new FinanceService(jdbcTemplate, new AuditService(jdbcTemplate));
+    }
+
+    @Test
+    public void testRollupFollowsWrites() {
+        LocalDateTime posted = LocalDate.of(2024, 3, 15).atTime(10, 0);
+        Finance first = financeService.createFinance(bill(500.0, "PENDING", posted), 1L);
+        financeService.createFinance(bill(250.0, "PENDING", posted), 1L);
+
+        first.setStatus("PAID");
+        financeService.updateFinance(first, 1L);
+
+        List<RevenueBucket> buckets = financeService.getRevenueSummary(
+                LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31), RevenueGranularity.MONTH, 1L);
+        assertEquals(2, buckets.size());
+        assertEquals(500.0, total(buckets, "PAID"));
+        assertEquals(250.0, total(buckets, "PENDING"));
+
+        financeService.deleteFinance(first.getId(), 1L);
+        buckets = financeService.getRevenueSummary(
+                LocalDate.of(2024, 3, 1), LocalDate.of(2024, 3, 31), RevenueGranularity.DAY, 1L);
+        assertEquals(1, buckets.size());
+        assertTrue(buckets.stream().noneMatch(b -> "PAID".equals(b.getStatus())));
+    }
+
+    @Test
+    public void testBulkStatusUpdateAuditsEachChangedRecord() {
+        LocalDateTime posted = LocalDate.of(2024, 4, 2).atTime(9, 0);
+        Finance first = financeService.createFinance(bill(100.0, "PENDING", posted), 1L);
+        Finance second = financeService.createFinance(bill(200.0, "PENDING", posted), 1L);
+        Finance paid = financeService.createFinance(bill(50.0, "PAID", posted), 1L);
+
+        int updated = financeService.updateFinanceStatus(List.of(first.getId(), second.getId(), paid.getId()), "PAID", 1L);
+        assertEquals(2, updated);
+
+        List<RevenueBucket> buckets = financeService.getRevenueSummary(
+                LocalDate.of(2024, 4, 1), LocalDate.of(2024, 4, 30), RevenueGranularity.MONTH, 1L);
+        assertEquals(1, buckets.size());
+        assertEquals(350.0, total(buckets, "PAID"));
+
+        List<Long> audited = jdbcTemplate.queryForList(
+                "SELECT entity_id FROM audit_logs WHERE action = 'BULK_UPDATE_FINANCE_STATUS' ORDER BY entity_id", Long.class);
+        assertEquals(List.of(first.getId(), second.getId()), audited);
+    }
+
+    private Finance bill(double amount, String status, LocalDateTime createdDate) {
+        Finance finance = new Finance(null, 1L, BigDecimal.valueOf(amount), status);
+        finance.setCreatedDate(createdDate);
+        return finance;
+    }
+
+    private double total(List<RevenueBucket> buckets, String status) {
+        return buckets.stream()
+                .filter(b -> status.equals(b.getStatus()))
+                .mapToDouble(b -> b.getTotalAmount().doubleValue())
+                .sum();
+    }
+}
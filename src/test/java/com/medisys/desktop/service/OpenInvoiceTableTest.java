@@ -0,0 +1,52 @@
+package com.medisys.desktop.service;
+
+import org.junit.jupiter.api.Test;
+
+import java.util.HashMap;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class OpenInvoiceTableTest {
+
+    @Test
+    public void testSettlementsAccumulateAcrossGrowth() {
+        // Sized for far fewer records than it gets, so it grows several times
+        OpenInvoiceTable table = new OpenInvoiceTable(10);
+        for (long id = 1; id <= 5_000; id++) {
+            table.put(id, id * 100);
+        }
+        assertEquals(5_000, table.size());
+
+        assertTrue(table.settle(42, 4_000, 2));
+        // A split payment: the first line is kept
+        assertTrue(table.settle(42, 200, 7));
+        assertTrue(table.settle(4_999, 1, 3));
+        assertFalse(table.settle(5_001, 100, 4));
+        assertFalse(table.settle(0, 100, 5));
+
+        Map<Long, long[]> settled = new HashMap<>();
+        table.forEachSettled((id, amount, paid, firstLine) -> settled.put(id, new long[]{amount, paid, firstLine}));
+        assertEquals(2, settled.size());
+        assertEquals(4_200, settled.get(42L)[0]);
+        assertEquals(4_200, settled.get(42L)[1]);
+        assertEquals(2, settled.get(42L)[2]);
+        assertEquals(1, settled.get(4_999L)[1]);
+        assertEquals(-1, table.settledPaise(5_001));
+    }
+
+    @Test
+    public void testSettlementFieldsParseInPlace() {
+        String line = "INV-1042, 1500.5 ,2026-10-18,UPI,TXN9";
+        assertEquals(1042, PaymentReconciliationService.parseReference(line, 0, 8));
+        assertEquals(150_050, PaymentReconciliationService.parsePaise(line, 9, 17));
+        assertEquals(150_000, PaymentReconciliationService.parsePaise("1500", 0, 4));
+        assertEquals(7, PaymentReconciliationService.parsePaise("0.07", 0, 4));
+        assertEquals(-1, PaymentReconciliationService.parsePaise("15.005", 0, 6));
+        assertEquals(-1, PaymentReconciliationService.parsePaise("-15", 0, 3));
+        assertEquals(-1, PaymentReconciliationService.parsePaise("1,500", 0, 5));
+        assertEquals(-1, PaymentReconciliationService.parseReference("INV-", 0, 4));
+    }
+}
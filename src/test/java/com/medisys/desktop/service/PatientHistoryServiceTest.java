@@ -0,0 +1,53 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Patient;
+import com.medisys.desktop.model.PatientChange;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertNull;
+
+public class PatientHistoryServiceTest {
+    private static final LocalDateTime T0 = LocalDateTime.of(2024, 3, 1, 9, 0);
+
+    @Test
+    public void testReplayAppliesDeltasOverTheSnapshot() {
+        Map<String, String> snapshot = new HashMap<>();
+        snapshot.put("name", "Asha Rao");
+        snapshot.put("date_of_birth", "1980-05-17");
+        snapshot.put("contact_info", "98450 00000");
+        snapshot.put("patient_code", "PAT000042");
+        Map<String, String> cleared = new HashMap<>();
+        cleared.put("contact_info", null);
+
+        Patient patient = PatientHistoryService.replay(List.of(
+                version(16, snapshot, false),
+                version(17, Map.of("name", "Asha R. Kumar"), false),
+                version(18, cleared, false)));
+
+        assertEquals(42L, patient.getId());
+        assertEquals(18L, patient.getVersion());
+        assertEquals("Asha R. Kumar", patient.getName());
+        assertEquals(LocalDate.of(1980, 5, 17), patient.getDateOfBirth());
+        assertNull(patient.getContactInfo());
+        assertEquals("PAT000042", patient.getPatientId());
+    }
+
+    @Test
+    public void testReplayOfADeletedOrUnknownPatientIsNull() {
+        assertNull(PatientHistoryService.replay(List.of()));
+        assertNull(PatientHistoryService.replay(List.of(
+                version(0, Map.of("name", "Asha Rao"), false),
+                version(1, Map.of(), true))));
+    }
+
+    private static PatientChange version(long version, Map<String, String> changes, boolean deleted) {
+        return new PatientChange(42L, version, T0.plusDays(version), null, 7L, changes, deleted);
+    }
+}
@@ -3,6 +3,7 @@ package com.medisys.desktop.service;
 import com.medisys.desktop.model.Patient;
 import org.junit.jupiter.api.BeforeEach;
 import org.junit.jupiter.api.Test;
+import org.springframework.dao.OptimisticLockingFailureException;
 import org.springframework.jdbc.core.JdbcTemplate;
 import org.springframework.jdbc.datasource.DriverManagerDataSource;
 import org.testcontainers.containers.PostgreSQLContainer;
@@ -11,6 +12,7 @@ import org.testcontainers.junit.jupiter.Testcontainers;
 
 import static org.junit.jupiter.api.Assertions.assertEquals;
 import static org.junit.jupiter.api.Assertions.assertNotNull;
+import static org.junit.jupiter.api.Assertions.assertThrows;
 
 @Testcontainers
 public class PatientServiceTest {
@@ -34,7 +36,8 @@ public class PatientServiceTest {
         jdbcTemplate = new JdbcTemplate(dataSource);
 
         // Initialize the database
-        jdbcTemplate.execute("CREATE TABLE patients (id SERIAL PRIMARY KEY, name VARCHAR(100) NOT NULL, date_of_birth VARCHAR(10), contact_info VARCHAR(255))");
+        jdbcTemplate.execute("DROP TABLE IF EXISTS patients, audit_logs");
+        jdbcTemplate.execute("CREATE TABLE patients (id SERIAL PRIMARY KEY, name VARCHAR(100) NOT NULL, date_of_birth VARCHAR(10), contact_info VARCHAR(255), version BIGINT NOT NULL DEFAULT 0)");
         jdbcTemplate.execute("CREATE TABLE audit_logs (id SERIAL PRIMARY KEY, user_id BIGINT, action VARCHAR(100) NOT NULL, entity_type VARCHAR(50), entity_id BIGINT, timestamp TIMESTAMP NOT NULL)");
         jdbcTemplate.update("INSERT INTO patients (id, name, date_of_birth, contact_info) VALUES (?, ?, ?, ?)",
                 1L, "John Doe", "1990-01-01", "john.doe@example.com");
@@ -55,4 +58,25 @@ public class PatientServiceTest {
         Integer auditCount = jdbcTemplate.queryForObject("SELECT COUNT(*) FROM audit_logs WHERE action = 'VIEW_PATIENT'", Integer.class);
         assertEquals(1, auditCount);
     }
-}
\ No newline at end of file
+
+    @Test
+    public void testUpdateWritesChangedColumnsAndChecksVersion() {
+        Patient patient = patientService.getPatient(1L, 1L);
+        Patient stale = patientService.getPatient(1L, 1L);
+
+        patient.setContactInfo("john@example.org");
+        assertEquals(1, patient.getChangedColumns().size());
+        patientService.updatePatient(patient, 1L);
+        assertEquals(1L, patient.getVersion());
+        assertEquals(0, patient.getChangedColumns().size());
+
+        // A concurrent edit of the name went into the database behind the loaded copy's back
+        jdbcTemplate.update("UPDATE patients SET name = 'Johnny Doe' WHERE id = 1");
+        Patient reloaded = patientService.getPatient(1L, 1L);
+        assertEquals("Johnny Doe", reloaded.getName());
+        assertEquals("john@example.org", reloaded.getContactInfo());
+
+        stale.setContactInfo("someone-else@example.com");
+        assertThrows(OptimisticLockingFailureException.class, () -> patientService.updatePatient(stale, 1L));
+    }
+}
@@ -0,0 +1,38 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.TriageCase;
+import com.medisys.desktop.model.TriagePriority;
+import org.junit.jupiter.api.Test;
+
+import java.time.LocalDateTime;
+import java.util.List;
+import java.util.concurrent.ConcurrentSkipListSet;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+public class TriageQueueServiceTest {
+
+    private static final LocalDateTime NOW = LocalDateTime.of(2024, 6, 3, 14, 0);
+
+    @Test
+    public void testCriticalFirstThenByDueTimeSoLowCasesAge() {
+        ConcurrentSkipListSet<TriageCase> queue = new ConcurrentSkipListSet<>(TriageQueueService.SEEN_ORDER);
+        TriageCase agedLow = triageCase(1, TriagePriority.LOW, NOW.minusMinutes(130));
+        TriageCase freshLow = triageCase(2, TriagePriority.LOW, NOW.minusMinutes(5));
+        TriageCase medium = triageCase(3, TriagePriority.MEDIUM, NOW);
+        TriageCase high = triageCase(4, TriagePriority.HIGH, NOW.minusMinutes(1));
+        TriageCase critical = triageCase(5, TriagePriority.CRITICAL, NOW);
+        TriageCase secondHigh = triageCase(6, TriagePriority.HIGH, NOW.minusMinutes(1));
+        queue.addAll(List.of(freshLow, medium, agedLow, secondHigh, critical, high));
+
+        // The Low case past its two-hour target is due before the Medium case that just arrived
+        assertEquals(List.of(critical, agedLow, high, secondHigh, medium, freshLow), List.copyOf(queue));
+    }
+
+    private static TriageCase triageCase(long id, TriagePriority priority, LocalDateTime arrivedAt) {
+        TriageCase c = new TriageCase("Patient " + id, priority, "Other");
+        c.setId(id);
+        c.setArrivedAt(arrivedAt);
+        return c;
+    }
+}
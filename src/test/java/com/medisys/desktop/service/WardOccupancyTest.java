@@ -0,0 +1,59 @@
+package com.medisys.desktop.service;
+
+import com.medisys.desktop.model.Bed;
+import org.junit.jupiter.api.Test;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+import static org.junit.jupiter.api.Assertions.assertFalse;
+import static org.junit.jupiter.api.Assertions.assertTrue;
+
+public class WardOccupancyTest {
+
+    @Test
+    public void testNearestFreeBedOfTypeAcrossWords() {
+        // 70 beds span two words; every tenth bed is an isolation bed
+        WardOccupancy ward = new WardOccupancy(beds(70));
+
+        assertEquals(40, ward.nearestFree(40, null));
+        assertEquals(39, ward.nearestFree(42, "ISOLATION"));
+        assertTrue(ward.tryOccupy(39));
+        assertEquals(49, ward.nearestFree(42, "ISOLATION"));
+        for (int p = 49; p < 70; p += 10) {
+            assertTrue(ward.tryOccupy(p));
+        }
+        assertEquals(29, ward.nearestFree(65, "ISOLATION"));
+        assertEquals(-1, ward.nearestFree(0, "MONITORED"));
+        assertEquals(3, ward.freeCount("ISOLATION"));
+        assertEquals(66, ward.freeCount(null));
+    }
+
+    @Test
+    public void testClaimIsExclusiveAndNotificationsApplyInVersionOrder() {
+        WardOccupancy ward = new WardOccupancy(beds(3));
+
+        assertTrue(ward.tryOccupy(1));
+        assertFalse(ward.tryOccupy(1));
+        ward.vacate(1);
+        assertFalse(ward.isOccupied(1));
+
+        assertTrue(ward.apply(1, true, 2));
+        assertTrue(ward.isOccupied(1));
+        // A late notification of an older release must not free the bed
+        assertFalse(ward.apply(1, false, 1));
+        assertTrue(ward.isOccupied(1));
+        assertTrue(ward.apply(1, false, 3));
+        assertFalse(ward.snapshot(1).isOccupied());
+        assertEquals(3, ward.snapshot(1).getVersion());
+    }
+
+    private static List<Bed> beds(int count) {
+        List<Bed> beds = new ArrayList<>();
+        for (int n = 1; n <= count; n++) {
+            beds.add(new Bed((long) n, "Emergency", n, n % 10 == 0 ? "ISOLATION" : "STANDARD", "Emergency Bed " + n));
+        }
+        return beds;
+    }
+}